@@ -0,0 +1,88 @@
+package com.atm;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link BankAccount#deposit(int)} and {@link BankAccount#withdraw(int)}
+ * for each account type, without the {@link Bank} around them.
+ * <p>
+ * Each call logs a transaction; {@code store=memory} only counts it and
+ * {@code store=csv} appends it to a file, as in {@link BankBenchmark}. Run
+ * with:
+ * <pre>
+ * mvn -P benchmark test-compile exec:exec -Djmh.args=BankAccountBenchmark
+ * </pre>
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BankAccountBenchmark {
+
+    /** The account type: student, gold or platinum. */
+    @Param({ "student", "gold", "platinum" })
+    public String type;
+
+    /** Where transactions are logged: memory or csv. */
+    @Param({ "memory", "csv" })
+    public String store;
+
+    private BankAccount account;
+    private Path dir;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Debug.setLevel(Debug.Level.OFF);
+        dir = Files.createTempDirectory("account-benchmark");
+        List<String[]> rows = new ArrayList<>();
+        rows.add(new String[] { "00000000", BankBenchmark.PIN, type, String.valueOf(BankBenchmark.BALANCE) });
+        Bank bank = new Bank(BankBenchmark.open(store, dir, rows));
+        bank.login("00000000", BankBenchmark.PIN);
+        account = bank.getCurrentAccount();
+    }
+
+    /**
+     * Refills the account, so that no iteration runs out of money.
+     */
+    @Setup(Level.Iteration)
+    public void refill() {
+        account.balance = BankBenchmark.BALANCE;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BankBenchmark.delete(dir);
+    }
+
+    @Benchmark
+    public boolean deposit() {
+        return account.deposit(20);
+    }
+
+    @Benchmark
+    public boolean withdraw() {
+        return account.withdraw(20);
+    }
+}
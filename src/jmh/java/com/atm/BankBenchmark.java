@@ -0,0 +1,155 @@
+package com.atm;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.atm.utils.AccountStore;
+import com.atm.utils.AccountWriter;
+import com.atm.utils.CsvAccountStore;
+import com.atm.utils.MemoryAccountStore;
+import com.atm.utils.PinHasher;
+
+/**
+ * Measures the {@link Bank} and {@link BankAccount} operations behind each
+ * ATM keypress.
+ * <p>
+ * {@code accounts} sets how many accounts the bank holds, in equal numbers of
+ * each type. {@code store=memory} keeps them in a {@link MemoryAccountStore},
+ * so the score is the CPU cost of the operation alone; {@code store=csv}
+ * saves to CSV files in a temporary directory after every change, as the ATM
+ * does. Debug output is off. PINs are hashed with {@value #LOGIN_ITERATIONS}
+ * PBKDF2 iterations so that {@code login} is not all hashing; see
+ * {@link PinVerificationBenchmark} for the cost of the real setting. Transfers
+ * are confirmed without showing the dialog. {@link BankAccountBenchmark}
+ * measures the account classes on their own. Run with:
+ * <pre>
+ * mvn -P benchmark test-compile exec:exec -Djmh.args="BankBenchmark -p store=memory"
+ * </pre>
+ * Results are written as JSON to {@code target/jmh-result.json}; compare two
+ * runs with any JMH visualizer, or by {@code benchmark} and {@code params}.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BankBenchmark {
+
+    static final String PIN = "12345";
+    static final int LOGIN_ITERATIONS = 1000;
+    static final double BALANCE = 1e9;
+    static final String[] TYPES = { "student", "gold", "platinum" };
+
+    /** Accounts held by the bank. */
+    @Param({ "100", "10000" })
+    public int accounts;
+
+    /** Where the bank keeps its accounts: memory or csv. */
+    @Param({ "memory", "csv" })
+    public String store;
+
+    private Path dir;
+    private Bank bank;
+    private String[] numbers;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Debug.setLevel(Debug.Level.OFF);
+        String hash = PinHasher.hash(PIN, LOGIN_ITERATIONS);
+        List<String[]> rows = new ArrayList<>(accounts);
+        numbers = new String[accounts];
+        for (int i = 0; i < accounts; i++) {
+            numbers[i] = String.format("%08d", i);
+            rows.add(new String[] { numbers[i], hash, TYPES[i % TYPES.length], String.valueOf(BALANCE) });
+        }
+        dir = Files.createTempDirectory("bank-benchmark");
+        bank = new Bank(open(store, dir, rows));
+        bank.setTransferConfirmation((recipient, amount) -> true);
+    }
+
+    /**
+     * Logs in to the first account with a full balance, so that no iteration
+     * runs out of money.
+     */
+    @Setup(Level.Iteration)
+    public void logIn() {
+        bank.login(numbers[0], PIN);
+        bank.getCurrentAccount().balance = BALANCE;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        delete(dir);
+    }
+
+    @Benchmark
+    public boolean login() {
+        next = (next + 1) % accounts;
+        return bank.login(numbers[next], PIN);
+    }
+
+    @Benchmark
+    public boolean deposit() {
+        return bank.deposit(20);
+    }
+
+    @Benchmark
+    public boolean withdraw() {
+        return bank.withdraw(20);
+    }
+
+    @Benchmark
+    public boolean transfer() {
+        return bank.transfer(numbers[1], 20);
+    }
+
+    @Benchmark
+    public boolean isValidAccount() {
+        next = (next + 1) % accounts;
+        return bank.isValidAccount(numbers[next]);
+    }
+
+    static AccountStore open(String store, Path dir, List<String[]> rows) {
+        switch (store) {
+            case "memory":
+                return new MemoryAccountStore(rows);
+            case "csv":
+                String accountsPath = dir.resolve("accounts.csv").toString();
+                AccountWriter.writeAccounts(accountsPath, rows);
+                return new CsvAccountStore(accountsPath, dir.resolve("transactions.csv").toString());
+            default:
+                throw new IllegalArgumentException("Unknown store: " + store);
+        }
+    }
+
+    static void delete(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.atm;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the cost at the call site of a trace message with the asynchronous
+ * {@link Debug} and with the synchronized {@code printf} it replaced.
+ * <p>
+ * Both print to a stream that discards its output, so the numbers are the
+ * cost of the lock, formatting and handoff, not of the terminal. The legacy
+ * calls concatenate their message as the old call sites did. With
+ * {@code enabled=false} the score is the cost of a disabled trace. Add
+ * {@code -t 4} to see the lock under contention. Run with:
+ * <pre>
+ * mvn -P benchmark test-compile exec:exec -Djmh.args="DebugBenchmark -prof gc"
+ * </pre>
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DebugBenchmark {
+
+    /** Whether tracing is switched on. */
+    @Param({ "true", "false" })
+    public boolean enabled;
+
+    private final String accNumber = "12345678";
+    private final String action = "NUM";
+    private PrintStream oldOut;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        PrintStream sink = new PrintStream(OutputStream.nullOutputStream());
+        LegacyDebug.out = sink;
+        LegacyDebug.set(enabled);
+        oldOut = Debug.setOutput(sink);
+        Debug.set(enabled);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Debug.setOutput(oldOut);
+        System.out.println("dropped: " + Debug.getDropped());
+    }
+
+    @Benchmark
+    public void legacyTrace() {
+        LegacyDebug.trace("Bank::login: accNumber = " + accNumber);
+        LegacyDebug.trace("Controller::process: action = " + action);
+    }
+
+    @Benchmark
+    public void asyncTrace() {
+        Debug.trace("Bank::login: accNumber = %s", accNumber);
+        Debug.trace("Controller::process: action = %s", action);
+    }
+
+    /**
+     * The trace facility as it was before it became asynchronous.
+     */
+    static class LegacyDebug {
+        private static boolean debug = true;
+        static PrintStream out = System.out;
+
+        static synchronized boolean set(boolean state) {
+            boolean oldState = debug;
+            debug = state;
+            return oldState;
+        }
+
+        static void trace(String fmt, Object... params) {
+            if (debug) {
+                synchronized (LegacyDebug.class) {
+                    out.printf(fmt, params);
+                    out.println();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.atm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.atm.utils.MemoryAccountStore;
+import com.atm.utils.PinHasher;
+
+/**
+ * Measures the cost of dispatching one keypress through the
+ * {@link Controller} and the {@link Model}'s transition table.
+ * <p>
+ * The session waits for an account number, on a display that keeps only the
+ * last screen, and each press leaves it there: digits stop at five,
+ * {@code CLR} clears them, and {@code W/D} and unknown labels are refused and
+ * reset the screen. No press reaches the bank, so the score is the label
+ * lookup, the table lookup, the transition and the screen update. Run with:
+ * <pre>
+ * mvn -P benchmark test-compile exec:exec -Djmh.args="ModelDispatchBenchmark -prof gc"
+ * </pre>
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ModelDispatchBenchmark {
+
+    /** The button pressed. */
+    @Param({ "5", "CLR", "W/D", "Nope" })
+    public String label;
+
+    private Controller controller;
+    private Model.Key key;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Debug.setLevel(Debug.Level.OFF);
+        List<String[]> rows = new ArrayList<>();
+        rows.add(new String[] { "11111", PinHasher.hash("12345", 1000), "gold", "500.0" });
+        controller = HeadlessDisplay.start(new Bank(new MemoryAccountStore(rows)), new HeadlessDisplay());
+        key = Model.Key.of(label);
+    }
+
+    /**
+     * A press as the View makes it: label to key, then the transition.
+     */
+    @Benchmark
+    public Model.State press() {
+        controller.process(label);
+        return controller.model.state;
+    }
+
+    /**
+     * The transition alone, for a key already looked up.
+     */
+    @Benchmark
+    public Model.State transition() {
+        controller.model.process(key, label);
+        return controller.model.state;
+    }
+}
@@ -0,0 +1,81 @@
+package com.atm;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.atm.utils.PinHasher;
+
+/**
+ * Measures how many PIN verifications per second the {@link PinVerificationService}
+ * pool sustains at each PBKDF2 cost setting.
+ * <p>
+ * Each invocation submits a burst of {@value #BURST} logins, as a queue of
+ * customers at several terminals would, and waits for all of them. The score
+ * is logins per second. Run with:
+ * <pre>
+ * mvn -P benchmark test-compile exec:exec -Djmh.args=PinVerificationBenchmark
+ * </pre>
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PinVerificationBenchmark {
+
+    private static final int BURST = 32;
+
+    /** PBKDF2 iteration count stored with the hash. */
+    @Param({ "10000", "65536", "200000" })
+    public int iterations;
+
+    /** Hashing threads in the pool. */
+    @Param({ "1", "4" })
+    public int threads;
+
+    private PinVerificationService service;
+    private String stored;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        service = new PinVerificationService(threads, BURST);
+        stored = PinHasher.hash("12345", iterations);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public boolean loginBurst() {
+        @SuppressWarnings("unchecked")
+        CompletableFuture<Boolean>[] results = new CompletableFuture[BURST];
+        for (int i = 0; i < BURST; i++) {
+            results[i] = service.verifyAsync("12345", stored);
+        }
+        boolean ok = true;
+        for (CompletableFuture<Boolean> result : results) {
+            ok &= result.join();
+        }
+        return ok;
+    }
+}
@@ -0,0 +1,151 @@
+package com.atm.utils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.atm.Debug;
+
+/**
+ * Measures the CSV storage utilities against files of increasing size, on
+ * tmpfs and on disk.
+ * <p>
+ * Each trial generates {@code rows} accounts and {@code rows} transactions
+ * (spread over a tenth as many accounts) in a fresh directory: under
+ * {@code /dev/shm} for {@code fs=tmpfs} and under {@code target} for
+ * {@code fs=disk}. Either can be moved with
+ * {@code -jvmArgsAppend -Datm.bench.tmpfs=...} or {@code -Datm.bench.disk=...}.
+ * Disk reads are mostly served from the page cache, as they would be on the
+ * ATM; writes reach the page cache and are not forced to the device, as
+ * {@link AccountWriter} does not force them either.
+ * </p>
+ * <p>
+ * The score is operations per second. Add {@code -prof gc} for the
+ * allocation rate per operation and {@code -prof com.atm.utils.SyscallProfiler}
+ * for read and write system calls per operation:
+ * <pre>
+ * mvn -P benchmark test-compile exec:exec -Djmh.args="StorageBenchmark -prof gc -prof com.atm.utils.SyscallProfiler"
+ * </pre>
+ * The default sizes stop at a million rows; {@code -p rows=10000000} runs
+ * ten million, which needs {@code -jvmArgsAppend -Xmx4g} for the methods that
+ * hold every row in memory. Results are written as JSON to
+ * {@code target/jmh-result.json}.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StorageBenchmark {
+
+    private static final String[] TYPES = { "student", "gold", "platinum" };
+
+    /** Rows in each file. */
+    @Param({ "1000", "100000", "1000000" })
+    public int rows;
+
+    /** Where the files live: tmpfs or disk. */
+    @Param({ "tmpfs", "disk" })
+    public String fs;
+
+    private Path dir;
+    private String accountsPath;
+    private String transactionsPath;
+    private List<String[]> accounts;
+    /** An account in the middle of each file, so lookups scan half of it or more */
+    private String accNumber;
+    private int appended = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Debug.setLevel(Debug.Level.OFF);
+        Path root = Paths.get(fs.equals("tmpfs")
+                ? System.getProperty("atm.bench.tmpfs", "/dev/shm")
+                : System.getProperty("atm.bench.disk", "target"));
+        Files.createDirectories(root);
+        dir = Files.createTempDirectory(root, "storage-benchmark");
+        accountsPath = dir.resolve("accounts.csv").toString();
+        transactionsPath = dir.resolve("transactions.csv").toString();
+
+        String hash = PinHasher.hash("12345", 1000);
+        accounts = new ArrayList<>(rows);
+        try (BufferedWriter out = Files.newBufferedWriter(Paths.get(accountsPath))) {
+            for (int i = 0; i < rows; i++) {
+                String[] account = { String.format("%08d", i), hash, TYPES[i % TYPES.length], "1000.0" };
+                accounts.add(account);
+                out.write(String.join(",", account));
+                out.newLine();
+            }
+        }
+        int holders = Math.max(1, rows / 10);
+        try (BufferedWriter out = Files.newBufferedWriter(Paths.get(transactionsPath))) {
+            for (int i = 0; i < rows; i++) {
+                out.write(String.format("2025-01-01 12:00:00,%08d,Deposit,20.0,%d.0%n", i % holders, 1000 + i));
+            }
+        }
+        accNumber = String.format("%08d", holders / 2);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public List<String[]> readAccounts() {
+        return AccountReader.readAccounts(accountsPath);
+    }
+
+    @Benchmark
+    public String[] findAccount() {
+        return AccountReader.findAccount(accountsPath, accNumber);
+    }
+
+    @Benchmark
+    public long writeAccounts() {
+        return AccountWriter.writeAccounts(accountsPath, accounts);
+    }
+
+    @Benchmark
+    public void writeAccount() {
+        AccountWriter.writeAccount(accountsPath, String.format("9%07d", appended++ % 10_000_000),
+                accounts.get(0)[1], "gold", 0);
+    }
+
+    @Benchmark
+    public int logTransaction() {
+        return TransactionWriter.logTransaction(transactionsPath, accNumber, "Deposit", 20, 1020);
+    }
+
+    @Benchmark
+    public List<String> getTransactions() {
+        return TransactionReader.getTransactions(transactionsPath, accNumber, 10);
+    }
+}
@@ -0,0 +1,81 @@
+package com.atm.utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+/**
+ * JMH profiler reporting read and write system calls and bytes per operation.
+ * <p>
+ * Reads the kernel's I/O accounting for the benchmark JVM from
+ * {@code /proc/self/io} before and after each iteration, and divides the
+ * difference by the operations run. The counts cover the whole JVM, so they
+ * include the little I/O JMH itself does; they count {@code read} and
+ * {@code write} style calls only, not {@code open} or {@code fsync}. Linux
+ * only; elsewhere it reports nothing. Enable with
+ * {@code -prof com.atm.utils.SyscallProfiler}.
+ * </p>
+ */
+public class SyscallProfiler implements InternalProfiler {
+
+    private static final Path PROC_IO = Paths.get("/proc/self/io");
+    private static final String[] FIELDS = { "syscr", "syscw", "rchar", "wchar" };
+
+    private long[] before;
+
+    @Override
+    public String getDescription() {
+        return "Read and write system calls per operation, from /proc/self/io";
+    }
+
+    @Override
+    public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+        before = read();
+    }
+
+    @Override
+    public Collection<? extends Result> afterIteration(BenchmarkParams benchmarkParams,
+                                                       IterationParams iterationParams, IterationResult result) {
+        long[] after = read();
+        List<Result> results = new ArrayList<>();
+        long ops = result.getMetadata().getAllOps();
+        if (before == null || after == null || ops == 0) {
+            return results;
+        }
+        for (int i = 0; i < FIELDS.length; i++) {
+            String unit = FIELDS[i].startsWith("sys") ? "calls/op" : "bytes/op";
+            results.add(new ScalarResult("io." + FIELDS[i], (double) (after[i] - before[i]) / ops, unit,
+                    AggregationPolicy.AVG));
+        }
+        return results;
+    }
+
+    private static long[] read() {
+        try {
+            long[] values = new long[FIELDS.length];
+            for (String line : Files.readAllLines(PROC_IO)) {
+                String[] parts = line.split(":\\s*");
+                for (int i = 0; i < FIELDS.length; i++) {
+                    if (parts[0].equals(FIELDS[i])) {
+                        values[i] = Long.parseLong(parts[1].trim());
+                    }
+                }
+            }
+            return values;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -62,34 +62,48 @@ public class AccountCreator {
      *                    PLATINUM_ACCOUNT)
      * @param password    the password for the new account
      * @return the account number of the newly created account, or null if creation failed
+     * @throws java.util.concurrent.RejectedExecutionException if the PIN hashing pool is saturated
      */
     public static String createAccount(Bank bank, String accountType, String password) {
+        // Only the salted hash of the PIN is kept
+        return createHashedAccount(bank, accountType, PinVerificationService.getDefault().hash(password));
+    }
+
+    /**
+     * Creates a new account whose PIN has already been hashed.
+     *
+     * @param bank           the Bank in which to create the account
+     * @param accountType    the type of account to create
+     * @param storedPassword the salted hash of the account's PIN
+     * @return the account number of the newly created account, or null if creation failed
+     */
+    public static String createHashedAccount(Bank bank, String accountType, String storedPassword) {
         // Generate a unique account number
         String accountNumber = generateUniqueAccountNumber(bank);
-        
+
         // Create the appropriate account type
         BankAccount newAccount;
         switch (accountType.toLowerCase()) {
             case STUDENT_ACCOUNT:
-                newAccount = new StudentAccount(accountNumber, password, 0);
+                newAccount = new StudentAccount(accountNumber, storedPassword, 0);
                 break;
             case GOLD_ACCOUNT:
-                newAccount = new GoldAccount(accountNumber, password, 0);
+                newAccount = new GoldAccount(accountNumber, storedPassword, 0);
                 break;
             case PLATINUM_ACCOUNT:
-                newAccount = new PlatinumAccount(accountNumber, password, 0);
+                newAccount = new PlatinumAccount(accountNumber, storedPassword, 0);
                 break;
             default:
                 // Default to student account if type is unknown
-                newAccount = new StudentAccount(accountNumber, password, 0);
+                newAccount = new StudentAccount(accountNumber, storedPassword, 0);
         }
         
         // Add the account to the bank and save to storage
         if (bank.addBankAccount(newAccount)) {
             // Also save to persistent storage
-            AccountWriter.writeAccount(accountNumber, password, accountType.toLowerCase(), 0);
-            Debug.trace("AccountCreator::createAccount: Created new " + accountType + 
-                    " account with number " + accountNumber);
+            AccountWriter.writeAccount(accountNumber, storedPassword, accountType.toLowerCase(), 0);
+            Debug.trace("AccountCreator::createAccount: Created new %s account with number %s",
+                    accountType, accountNumber);
             return accountNumber;
         } else {
             Debug.trace("AccountCreator::createAccount: Failed to create account");
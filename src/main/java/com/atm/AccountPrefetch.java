@@ -0,0 +1,159 @@
+package com.atm;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import com.atm.utils.AccountStore;
+
+/**
+ * Looks up an account and reads its recent transactions in the background,
+ * while the customer is still typing their PIN.
+ * <p>
+ * {@link Bank#prefetch(String)} starts one as soon as an account number is
+ * entered, and {@link Bank#login(String, String)} takes the account from it
+ * rather than looking it up again. The recent transactions stay with the
+ * session, so the receipt does not read the log while the customer waits.
+ * The PIN itself can only be checked once it has been entered, so it is not
+ * part of the prefetch.
+ * </p>
+ * <p>
+ * Prefetches run on a small pool of daemon threads, sized by the
+ * {@code atm.prefetch.threads} and {@code atm.prefetch.queue} system
+ * properties. A prefetch that would not fit in the queue is simply not made.
+ * Discarding one only drops its references and sets a flag, which a queued
+ * prefetch checks before doing any work.
+ * </p>
+ */
+final class AccountPrefetch implements Runnable {
+
+    /** How many recent transactions are read. */
+    static final int RECENT = 5;
+
+    private static final ThreadPoolExecutor pool = createPool(
+            Integer.getInteger("atm.prefetch.threads", 2), Integer.getInteger("atm.prefetch.queue", 64));
+
+    private final Function<String, BankAccount> lookup;
+    private final AccountStore store;
+    private final String accNumber;
+    private final CountDownLatch done = new CountDownLatch(1);
+    private volatile boolean discarded = false;
+    private volatile BankAccount account;
+    private volatile List<String> recent;
+    private volatile int recentCount; // The account's transaction count when recent was read
+
+    private AccountPrefetch(Function<String, BankAccount> lookup, AccountStore store, String accNumber) {
+        this.lookup = lookup;
+        this.store = store;
+        this.accNumber = accNumber;
+    }
+
+    private static ThreadPoolExecutor createPool(int threads, int queueCapacity) {
+        AtomicInteger count = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread t = new Thread(r, "account-prefetch-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    /**
+     * Starts prefetching an account.
+     *
+     * @param lookup    finds an account of the bank by its number
+     * @param store     the store to read its transactions from
+     * @param accNumber the account number entered
+     * @return the prefetch, already discarded if the pool was saturated
+     */
+    static AccountPrefetch start(Function<String, BankAccount> lookup, AccountStore store, String accNumber) {
+        AccountPrefetch prefetch = new AccountPrefetch(lookup, store, accNumber);
+        try {
+            pool.execute(prefetch);
+        } catch (RejectedExecutionException e) {
+            Debug.trace("AccountPrefetch::start: pool saturated, not prefetching %s", accNumber);
+            prefetch.discard();
+            prefetch.done.countDown();
+        }
+        return prefetch;
+    }
+
+    @Override
+    public void run() {
+        try {
+            if (discarded) {
+                return;
+            }
+            BankAccount found = lookup.apply(accNumber);
+            if (found == null || discarded) {
+                return;
+            }
+            account = found;
+            int count = found.getTransactionCount();
+            List<String> read = store.readTransactions(accNumber, RECENT);
+            recentCount = count;
+            recent = read; // Written last, so whoever sees it also sees recentCount
+        } catch (RuntimeException e) {
+            System.err.println("Account prefetch failed: " + e);
+        } finally {
+            done.countDown();
+        }
+    }
+
+    /**
+     * @return the account number this prefetch is for
+     */
+    String getAccNumber() {
+        return accNumber;
+    }
+
+    /**
+     * @return the account, or {@code null} if it has not been found (yet)
+     */
+    BankAccount getAccount() {
+        return discarded ? null : account;
+    }
+
+    /**
+     * Returns the account's most recent transactions, if they have been read
+     * and the account has logged none since.
+     *
+     * @param count the most transactions to return, up to {@value #RECENT}
+     * @return the transaction lines, oldest first, or {@code null} if they
+     *         have to be read again
+     */
+    List<String> getRecentTransactions(int count) {
+        List<String> lines = recent;
+        BankAccount found = account;
+        if (discarded || lines == null || found == null || count > RECENT
+                || found.getTransactionCount() != recentCount) {
+            return null;
+        }
+        return lines.subList(Math.max(0, lines.size() - count), lines.size());
+    }
+
+    /**
+     * Drops what has been prefetched; a prefetch still queued does nothing.
+     */
+    void discard() {
+        discarded = true;
+        account = null;
+        recent = null;
+    }
+
+    /**
+     * Waits for the prefetch to finish, for tests.
+     *
+     * @param millis the longest wait
+     * @return {@code true} if it finished
+     * @throws InterruptedException if interrupted while waiting
+     */
+    boolean await(long millis) throws InterruptedException {
+        return done.await(millis, TimeUnit.MILLISECONDS);
+    }
+}
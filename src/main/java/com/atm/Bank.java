@@ -1,9 +1,28 @@
 package com.atm;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiPredicate;
 
-import com.atm.utils.AccountReader;
-import com.atm.utils.AccountWriter;
+import com.atm.jfr.AccountCreateEvent;
+import com.atm.jfr.AccountSaveEvent;
+import com.atm.jfr.AtmEvent;
+import com.atm.jfr.DepositEvent;
+import com.atm.jfr.LoginEvent;
+import com.atm.jfr.TransactionReadEvent;
+import com.atm.jfr.TransferEvent;
+import com.atm.jfr.WithdrawEvent;
+import com.atm.metrics.KeypressTracer;
+import com.atm.metrics.Metrics;
+import com.atm.utils.AccountStore;
+import com.atm.utils.CsvAccountStore;
 
 /**
  * The Bank class is a simple implementation of a bank that manages a collection
@@ -25,6 +44,14 @@ import com.atm.utils.AccountWriter;
  * password changing functionality.
  * - Bora Task Week 5 version 3.0.4: Implemented account creation process and
  * integrated with AccountCreator class.
+ * - Accounts are indexed by account number so that lookups no longer scan the
+ * whole collection, and transfers validate both legs before moving any money.<br>
+ * - Accounts and transactions are kept in an {@link AccountStore}; the
+ * default is the CSV files in the working directory.<br>
+ * - {@link #openSession()} gives each terminal its own logged-in account over
+ * the same accounts; changes to accounts are made under one shared lock.<br>
+ * - {@link #prefetch(String)} looks up an account and its recent transactions
+ * in the background while its PIN is being typed.
  * </p>
  * <p>
  * Note: The {@code login} method is partially implemented as part of the lab
@@ -34,13 +61,22 @@ import com.atm.utils.AccountWriter;
 public class Bank {
     // Instance variables containing the bank information
     int maxAccounts = 10; // maximum number of accounts the bank can hold
-    int numAccounts = 0; // the number of accounts currently in the bank
 
     // Week 2 implementation
     // Implemented by Mertcan, version 1.0.0
-    private ArrayList<BankAccount> accounts = new ArrayList<>(); // ArrayList to hold the bank accounts
+    // Keyed by account number; insertion order is kept so saved files stay in the same order
+    private final Map<String, BankAccount> accounts;
+    private final Object lock; // Shared with every session; guards the accounts and their balances
+    private final AtomicInteger activeSessions; // Shared with every session; the sessions logged in
     private BankAccount currentAccount = null; // Currently logged-in account ('null' if no-one is logged in)
-    private String lastMessage = ""; // Last message generated by bank operations
+    private String lastMessage = ""; // Last message generated by bank operations; null until lastResult's is built
+    private TransactionResult lastResult = null; // Result of the last deposit or withdrawal, its message not yet built
+    private final AccountStore store; // Where accounts and transactions are kept
+    private AccountPrefetch prefetch = null; // For the account being logged in to, or the one logged in
+    // Asks the customer to confirm a transfer of an amount to an account; a lambda rather than
+    // a method reference, so that JavaFX is only loaded if the dialog is actually shown
+    private BiPredicate<String, Double> transferConfirmation =
+            (recipient, amount) -> TransferConfirmationScreen.showAndWaitForConfirmation(recipient, amount);
 
     /**
      * Constructs a new Bank instance and initializes the accounts list.
@@ -49,13 +85,59 @@ public class Bank {
      * </p>
      */
     public Bank() {
+        this(CsvAccountStore.DEFAULT);
+    }
+
+    /**
+     * Constructs a Bank that keeps its accounts in the given store.
+     *
+     * @param store where accounts are loaded from and saved to
+     */
+    public Bank(AccountStore store) {
         Debug.trace("Bank::<constructor>");
+        this.store = store;
+        this.accounts = new LinkedHashMap<>();
+        this.lock = new Object();
+        this.activeSessions = new AtomicInteger();
         loadAccounts(); // Load accounts from persistent storage
     }
 
+    /**
+     * Constructs a session on another bank's accounts.
+     */
+    private Bank(Bank bank) {
+        Debug.trace("Bank::<constructor>: session");
+        this.store = bank.store;
+        this.accounts = bank.accounts;
+        this.lock = bank.lock;
+        this.activeSessions = bank.activeSessions;
+        this.maxAccounts = bank.maxAccounts;
+        this.transferConfirmation = bank.transferConfirmation;
+    }
+
+    /**
+     * Opens a session on this bank, for one more terminal.
+     * <p>
+     * The session shares this bank's accounts and store, so a deposit made in
+     * one session is seen by all of them, but it has its own logged-in
+     * account and last message. Each session is used by one thread at a time;
+     * any number of sessions can run at once.
+     * </p>
+     *
+     * @return a new session, with no-one logged in
+     */
+    public Bank openSession() {
+        return new Bank(this);
+    }
+
     private void loadAccounts() {
+        long start = System.nanoTime();
         // Load accounts from persistent storage
-        for (String[] accountData : AccountReader.readAccounts()) {
+        StartupTimer.begin(StartupTimer.Phase.ACCOUNT_READ);
+        List<String[]> rows = store.readAccounts();
+        StartupTimer.end(StartupTimer.Phase.ACCOUNT_READ);
+        StartupTimer.begin(StartupTimer.Phase.ACCOUNT_BUILD);
+        for (String[] accountData : rows) {
             String accNumber = accountData[0];
             String accPasswd = accountData[1];
             String accType = accountData[2];
@@ -75,25 +157,63 @@ public class Bank {
                 default:
                     account = new StudentAccount(accNumber, accPasswd, balance);
             }
-            accounts.add(account);
-            numAccounts++;
+            account.setStore(store);
+            accounts.put(accNumber, account);
         }
+        StartupTimer.end(StartupTimer.Phase.ACCOUNT_BUILD);
+        FlightRecorder.timed(FlightRecorder.Kind.LOAD_ACCOUNTS, true, accounts.size(), start);
     }
 
     public void saveAccounts() {
+        long start = System.nanoTime();
+        AccountSaveEvent event = new AccountSaveEvent();
+        event.begin();
+        KeypressTracer.enter(KeypressTracer.Stage.STORAGE);
         // Save all accounts to persistent storage
         ArrayList<String[]> accountData = new ArrayList<>();
-        for (BankAccount account : accounts) {
-            String accType = account instanceof StudentAccount ? "student" :
-                           account instanceof GoldAccount ? "gold" : "platinum";
-            accountData.add(new String[]{
-                account.getAccNumber(),
-                account.getAccPasswd(),
-                accType,
-                String.valueOf(account.getBalance())
-            });
+        long bytes;
+        synchronized (lock) {
+            for (BankAccount account : accounts.values()) {
+                accountData.add(new String[]{
+                    account.getAccNumber(),
+                    account.getAccPasswd(),
+                    account.getAccountType(),
+                    String.valueOf(account.getBalance())
+                });
+            }
+            bytes = store.writeAccounts(accountData);
         }
-        AccountWriter.writeAccounts(accountData);
+        KeypressTracer.exit();
+        event.finish(null, 0, Outcome.SUCCESS, bytes);
+        timed(FlightRecorder.Kind.SAVE_ACCOUNTS, Metrics.Operation.SAVE_ACCOUNTS, Outcome.SUCCESS, accountData.size(), start);
+    }
+
+    /**
+     * Moves every encrypted password held by this bank to the given key version
+     * and saves the accounts once.
+     * <p>
+     * This is the online counterpart of {@link com.atm.utils.KeyRotator}: it
+     * works on the passwords already in memory, so the running ATM's next save
+     * cannot write the old key's passwords back.
+     * </p>
+     *
+     * @param keyVersion the key version to move to
+     * @return the number of passwords re-encrypted
+     */
+    public int rotateKeys(int keyVersion) {
+        int rotated = 0;
+        synchronized (lock) {
+            for (BankAccount account : accounts.values()) {
+                if (account.reencryptPassword(keyVersion)) {
+                    rotated++;
+                }
+            }
+            if (rotated > 0) {
+                saveAccounts();
+            }
+        }
+        Debug.trace("Bank::rotateKeys: re-encrypted %d passwords to key version %d", rotated, keyVersion);
+        return rotated;
     }
 
     /**
@@ -126,20 +246,40 @@ public class Bank {
      * @return true if an account with the given number exists, false otherwise
      */
     public boolean accountExists(String accNumber) {
-        for (BankAccount account : accounts) {
-            if (account.getAccNumber().equals(accNumber)) {
-                return true;
-            }
+        synchronized (lock) {
+            return accounts.containsKey(accNumber);
+        }
+    }
+
+    /**
+     * Returns the number of accounts held by this bank.
+     *
+     * @return the account count
+     */
+    public int getAccountCount() {
+        synchronized (lock) {
+            return accounts.size();
+        }
+    }
+
+    /**
+     * Looks up an account by its account number.
+     *
+     * @param accNumber The account number to look up
+     * @return the matching account, or {@code null} if there is none
+     */
+    private BankAccount findAccount(String accNumber) {
+        synchronized (lock) {
+            return accounts.get(accNumber);
         }
-        return false;
     }
 
     /**
      * Adds a bank account to the bank's account repository.
      * <p>
      * This method checks if an account with the same account number already exists.
-     * If not, it adds the account to the bank's collection and increments the
-     * account counter.
+     * If not, and the bank holds fewer than {@code maxAccounts} accounts across
+     * all its sessions, it adds the account to the bank's collection.
      * </p>
      * <p>
      * Bora Week 5 version 3.0.4: Added to support account creation
@@ -149,18 +289,20 @@ public class Bank {
      * @return true if the account was added successfully, false otherwise
      */
     public boolean addBankAccount(BankAccount account) {
-        if (accountExists(account.getAccNumber())) {
-            return false;
-        }
-        if (numAccounts < maxAccounts) {
-            accounts.add(account);
-            numAccounts++;
-            saveAccounts(); // Save after adding new account
-            Debug.trace("Bank::addBankAccount: Added account " + account.getAccNumber());
-            return true;
-        } else {
-            Debug.trace("Bank::addBankAccount: can't add bank account - too many accounts");
-            return false;
+        synchronized (lock) {
+            if (accountExists(account.getAccNumber())) {
+                return false;
+            }
+            if (accounts.size() < maxAccounts) { // Counts the accounts every session has added
+                account.setStore(store);
+                accounts.put(account.getAccNumber(), account);
+                saveAccounts(); // Save after adding new account
+                Debug.trace("Bank::addBankAccount: Added account %s", account.getAccNumber());
+                return true;
+            } else {
+                Debug.trace("Bank::addBankAccount: can't add bank account - too many accounts");
+                return false;
+            }
         }
     }
 
@@ -187,32 +329,114 @@ public class Bank {
      * @return {@code true} if login is successful; {@code false} otherwise.
      */
     public boolean login(String accNumber, String accPasswd) {
-        Debug.trace("Bank::login: accNumber = " + accNumber);
+        return loginAsync(accNumber, accPasswd, Runnable::run).join() == Outcome.SUCCESS;
+    }
+
+    /**
+     * Starts logging in to a bank account, without waiting for the PIN to be
+     * checked.
+     * <p>
+     * The account is looked up at once, using the prefetch for the same
+     * account number if there is one, and any previous account is logged
+     * out. The PIN is then checked on the {@link PinVerificationService}
+     * pool, and the session is only changed once the check is done, on the
+     * given executor, which should be the display's thread.
+     * </p>
+     *
+     * @param accNumber the account number to log in.
+     * @param accPasswd the account password.
+     * @param finish    where the session is changed once the PIN is checked.
+     * @return a future that completes on {@code finish} with
+     *         {@link Outcome#SUCCESS}, {@link Outcome#NOT_FOUND},
+     *         {@link Outcome#REJECTED} for a wrong or unreadable PIN, or
+     *         {@link Outcome#BUSY} if the pool was too busy to check it.
+     */
+    public CompletableFuture<Outcome> loginAsync(String accNumber, String accPasswd, Executor finish) {
+        long start = System.nanoTime();
+        LoginEvent event = new LoginEvent();
+        event.begin();
+        KeypressTracer.enter(KeypressTracer.Stage.BANK);
+        Debug.trace("Bank::login: accNumber = %s", accNumber);
+        AccountPrefetch prefetched = prefetch != null && prefetch.getAccNumber().equals(accNumber) ? prefetch : null;
+        prefetch = null;
         logout(); // logout of any previous account
 
-        // Iterate through all the bank accounts in the accounts list
-        for (BankAccount account : accounts) {
-            /**
-             * Check if the account number and password match the provided ones.
-             * <p>
-             * Week 5 - Bora - Version 3.0.1: Changed from int comparison to String.equals()
-             * to support leading zeros.
-             * </p>
-             */
-            if (account.getAccNumber().equals(accNumber) && account.getAccPasswd().equals(accPasswd)) {
-                // If a match is found, set the current account to the matched account
-                currentAccount = account;
-                // Log a message indicating the login was successful
-                Debug.trace("Bank::login: Login successful for account number: " + accNumber);
-                // Return true to indicate that the login was successful
-                return true;
+        BankAccount found = prefetched != null ? prefetched.getAccount() : null;
+        BankAccount account = found != null ? found : findAccount(accNumber); // Not prefetched, or not found yet
+        /**
+         * Check if the password matches the one stored for the account.
+         * <p>
+         * Week 5 - Bora - Version 3.0.1: Changed from int comparison to String.equals()
+         * to support leading zeros.
+         * The stored password is now a salted hash checked by PinVerificationService.
+         * </p>
+         */
+        CompletableFuture<Boolean> check = account != null ? account.checkPasswordAsync(accPasswd)
+                : CompletableFuture.completedFuture(false);
+        KeypressTracer.exit();
+        return check.handle((matched, failure) -> loginOutcome(account, matched, failure))
+                .thenApplyAsync(outcome -> finishLogin(accNumber, accPasswd, account, prefetched, outcome,
+                        start, event), finish);
+    }
+
+    static Outcome loginOutcome(BankAccount account, Boolean matched, Throwable failure) {
+        if (failure != null) {
+            Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+            if (cause instanceof RejectedExecutionException) {
+                return Outcome.BUSY;
             }
+            // An unreadable stored PIN, e.g. encrypted under a key that is gone
+            Debug.trace("Bank::login: PIN could not be checked: %s", cause);
+            return Outcome.REJECTED;
+        }
+        if (account == null) {
+            return Outcome.NOT_FOUND;
         }
+        return matched ? Outcome.SUCCESS : Outcome.REJECTED;
+    }
 
-        // not found - return false
-        Debug.trace("Bank::login: Login failed for accNumber = " + accNumber);
-        currentAccount = null;
-        return false;
+    private Outcome finishLogin(String accNumber, String accPasswd, BankAccount account, AccountPrefetch prefetched,
+            Outcome outcome, long start, LoginEvent event) {
+        if (outcome == Outcome.SUCCESS) {
+            // If a match is found, set the current account to the matched account
+            currentAccount = account;
+            activeSessions.incrementAndGet();
+            prefetch = prefetched;
+            // Accounts from older files still hold the encrypted PIN; store a hash instead
+            if (account.needsPasswordUpgrade()) {
+                upgradePassword(account, accPasswd);
+            }
+            // Log a message indicating the login was successful
+            Debug.trace("Bank::login: Login successful for account number: %s", accNumber);
+        } else {
+            // not found, wrong PIN or too busy to check it
+            if (prefetched != null) {
+                prefetched.discard();
+            }
+            Debug.trace("Bank::login: Login failed for accNumber = %s: %s", accNumber, outcome);
+        }
+        FlightRecorder.timed(FlightRecorder.Kind.LOGIN, outcome == Outcome.SUCCESS, 0, start);
+        event.finish(account == null ? null : account.getAccountType(), 0, outcome, 0);
+        return outcome;
+    }
+
+    /**
+     * Replaces an encrypted PIN with a hash, hashed on the pool; if the pool
+     * is busy, it is left for the next login.
+     */
+    private void upgradePassword(BankAccount account, String accPasswd) {
+        PinVerificationService.getDefault().hashAsync(accPasswd).whenComplete((hashed, failure) -> {
+            if (failure != null) {
+                Debug.trace("Bank::login: PIN upgrade postponed: %s", failure);
+                return;
+            }
+            synchronized (lock) {
+                if (account.needsPasswordUpgrade()) {
+                    account.setHashedPasswd(hashed);
+                    saveAccounts();
+                }
+            }
+        });
     }
 
     /**
@@ -220,10 +444,77 @@ public class Bank {
      * {@code null}.
      */
     public void logout() {
+        discardPrefetch();
         if (loggedIn()) {
-            Debug.trace("Bank::logout: logging out, accNumber = " + currentAccount.accNumber);
+            Debug.trace("Bank::logout: logging out, accNumber = %s", currentAccount.accNumber);
             currentAccount = null;
+            activeSessions.decrementAndGet();
+            FlightRecorder.record(FlightRecorder.Kind.LOGOUT, true, 0, 0);
+        }
+    }
+
+    /**
+     * Starts looking up an account and reading its recent transactions in the
+     * background, so that they are ready when {@link #login(String, String)}
+     * is called with the same account number. Any earlier prefetch of this
+     * session is discarded.
+     *
+     * @param accNumber the account number entered
+     */
+    public void prefetch(String accNumber) {
+        discardPrefetch();
+        prefetch = AccountPrefetch.start(this::findAccount, store, accNumber);
+    }
+
+    private void discardPrefetch() {
+        if (prefetch != null) {
+            prefetch.discard();
+            prefetch = null;
+        }
+    }
+
+    /**
+     * Returns the most recent transactions of the logged-in account, from the
+     * prefetch made at login if the account has logged none since.
+     * The read is timed as {@link Metrics.Operation#READ_TRANSACTIONS}, with
+     * the number of lines read as its amount.
+     *
+     * @param count the most transactions to return
+     * @return the transaction lines, oldest first, or an empty list if there
+     *         are none or no account is logged in
+     */
+    public List<String> getRecentTransactions(int count) {
+        if (!loggedIn()) {
+            return List.of();
         }
+        long start = System.nanoTime();
+        TransactionReadEvent event = new TransactionReadEvent();
+        event.begin();
+        KeypressTracer.enter(KeypressTracer.Stage.STORAGE);
+        List<String> recent = prefetch != null ? prefetch.getRecentTransactions(count) : null;
+        if (recent == null) {
+            recent = store.readTransactions(currentAccount.accNumber, count);
+        }
+        timed(event, FlightRecorder.Kind.READ_TRANSACTIONS, Metrics.Operation.READ_TRANSACTIONS,
+                recent.isEmpty() ? Outcome.NOT_FOUND : Outcome.SUCCESS, recent.size(), start);
+        return recent;
+    }
+
+    /**
+     * @return the prefetch held by this session, for tests
+     */
+    AccountPrefetch getPrefetch() {
+        return prefetch;
+    }
+
+    /**
+     * Returns how many sessions of this bank have an account logged in. Any
+     * thread may call it, e.g. to report it.
+     *
+     * @return the number of sessions logged in
+     */
+    public int getActiveSessions() {
+        return activeSessions.get();
     }
 
     /**
@@ -238,8 +529,8 @@ public class Bank {
     /**
      * Deposits money into the currently logged-in account.
      * <p>
-     * This method calls the {@code deposit} method on the {@code BankAccount}
-     * object.
+     * This method calls the {@code makeDeposit} method on the {@code BankAccount}
+     * object, and keeps the result for this session.
      * Gur Task Week 4 version 2.0.1.
      * </p>
      *
@@ -247,22 +538,26 @@ public class Bank {
      * @return {@code true} if the deposit was successful; {@code false} otherwise.
      */
     public boolean deposit(int amount) {
+        long start = System.nanoTime();
+        DepositEvent event = new DepositEvent();
+        event.begin();
+        KeypressTracer.enter(KeypressTracer.Stage.BANK);
         if (loggedIn()) {
-            lastMessage = "";
-            boolean success = currentAccount.deposit(amount);
-            if (success) {
-                saveAccounts(); // Save after successful deposit
-                lastMessage = "Deposit successful: £" + amount + " deposited.\nCurrent balance: £" + currentAccount.getBalance();
-                String accountMessage = currentAccount.getLastMessage();
-                if (accountMessage.contains("WARNING: LOW BALANCE ALERT!")) {
-                    lastMessage += "\n" + accountMessage.substring(accountMessage.indexOf("WARNING:"));
+            TransactionResult result;
+            // Under the lock, as other sessions share the account
+            synchronized (lock) {
+                result = currentAccount.makeDeposit(amount);
+                if (result.isSuccess()) {
+                    saveAccounts(); // Save after successful deposit
                 }
-            } else {
-                lastMessage = "Deposit failed: " + currentAccount.getLastMessage();
             }
-            return success;
+            lastResult = result;
+            lastMessage = null; // Built from the result when it is shown
+            timed(event, FlightRecorder.Kind.DEPOSIT, Metrics.Operation.DEPOSIT, result.getOutcome(), amount, start);
+            return result.isSuccess();
         } else {
             lastMessage = "No account is currently logged in";
+            timed(event, FlightRecorder.Kind.DEPOSIT, Metrics.Operation.DEPOSIT, Outcome.REJECTED, amount, start);
             return false;
         }
     }
@@ -270,8 +565,8 @@ public class Bank {
     /**
      * Withdraws money from the currently logged-in account.
      * <p>
-     * This method calls the {@code withdraw} method on the {@code BankAccount}
-     * object.
+     * This method calls the {@code makeWithdrawal} method on the {@code BankAccount}
+     * object, and keeps the result for this session.
      * Gur Task Week 4 version 2.0.1.
      * </p>
      *
@@ -280,22 +575,26 @@ public class Bank {
      *         otherwise.
      */
     public boolean withdraw(int amount) {
+        long start = System.nanoTime();
+        WithdrawEvent event = new WithdrawEvent();
+        event.begin();
+        KeypressTracer.enter(KeypressTracer.Stage.BANK);
         if (loggedIn()) {
-            lastMessage = "";
-            boolean success = currentAccount.withdraw(amount);
-            if (success) {
-                saveAccounts(); // Save after successful withdrawal
-                lastMessage = "Withdrawal successful: £" + amount + " withdrawn\n Current Balance: £" + currentAccount.getBalance();
-                String accountMessage = currentAccount.getLastMessage();
-                if (accountMessage.contains("WARNING: LOW BALANCE ALERT!")) {
-                    lastMessage += "\n" + accountMessage.substring(accountMessage.indexOf("WARNING:"));
+            TransactionResult result;
+            // Under the lock, as other sessions share the account
+            synchronized (lock) {
+                result = currentAccount.makeWithdrawal(amount);
+                if (result.isSuccess()) {
+                    saveAccounts(); // Save after successful withdrawal
                 }
-            } else {
-                lastMessage = "Withdrawal failed: " + currentAccount.getLastMessage();
             }
-            return success;
+            lastResult = result;
+            lastMessage = null; // Built from the result when it is shown
+            timed(event, FlightRecorder.Kind.WITHDRAW, Metrics.Operation.WITHDRAW, result.getOutcome(), amount, start);
+            return result.isSuccess();
         } else {
             lastMessage = "No account is currently logged in";
+            timed(event, FlightRecorder.Kind.WITHDRAW, Metrics.Operation.WITHDRAW, Outcome.REJECTED, amount, start);
             return false;
         }
     }
@@ -327,9 +626,36 @@ public class Bank {
      * @return the last message generated by the account.
      */
     public String getLastMessage() {
+        if (lastMessage == null) {
+            lastMessage = describe(lastResult);
+        }
         return lastMessage;
     }
 
+    /**
+     * Returns how the last deposit or withdrawal of this session ended.
+     *
+     * @return the result, or {@code null} if there has been none.
+     */
+    public TransactionResult getLastResult() {
+        return lastResult;
+    }
+
+    /**
+     * Puts together the message for a deposit or withdrawal, once it is
+     * asked for.
+     */
+    private static String describe(TransactionResult result) {
+        boolean deposit = result.getKind() == TransactionResult.Kind.DEPOSIT;
+        if (!result.isSuccess()) {
+            return (deposit ? "Deposit failed: " : "Withdrawal failed: ") + result.getMessage();
+        }
+        String message = deposit
+                ? "Deposit successful: £" + result.getAmount() + " deposited.\nCurrent balance: £" + result.getBalance()
+                : "Withdrawal successful: £" + result.getAmount() + " withdrawn\n Current Balance: £" + result.getBalance();
+        return result.isLowBalance() ? message + "\n" + result.getWarning() : message;
+    }
+
     /**
      * Changes the password for the currently logged-in account.
      * <p>
@@ -346,14 +672,45 @@ public class Bank {
      *         otherwise
      */
     public boolean changePassword(String accNumber, String newPassword) {
-        if (loggedIn() && currentAccount.getAccNumber().equals(accNumber)) {
-            currentAccount.setAccPasswd(newPassword);
-            saveAccounts(); // Save after password change
-            Debug.trace("Bank::changePassword: Password changed for account " + accNumber);
-            return true;
+        return changePasswordAsync(accNumber, newPassword, Runnable::run).join() == Outcome.SUCCESS;
+    }
+
+    /**
+     * Starts changing the password of the logged-in account. The new PIN is
+     * hashed on the {@link PinVerificationService} pool, and the account is
+     * only changed once it has been, on the given executor.
+     *
+     * @param accNumber   the account number whose password is to be changed.
+     * @param newPassword the new password.
+     * @param finish      where the account is changed once the PIN is hashed.
+     * @return a future that completes on {@code finish} with
+     *         {@link Outcome#SUCCESS}, {@link Outcome#REJECTED} if that account
+     *         is not logged in, or {@link Outcome#BUSY} if the pool was too
+     *         busy to hash the PIN.
+     */
+    public CompletableFuture<Outcome> changePasswordAsync(String accNumber, String newPassword, Executor finish) {
+        long start = System.nanoTime();
+        KeypressTracer.enter(KeypressTracer.Stage.BANK);
+        CompletableFuture<String> hashing = PinVerificationService.getDefault().hashAsync(newPassword);
+        KeypressTracer.exit();
+        return hashing.handle((hashed, failure) -> failure != null ? null : hashed)
+                .thenApplyAsync(hashed -> finishPasswordChange(accNumber, hashed, start), finish);
+    }
+
+    private Outcome finishPasswordChange(String accNumber, String hashed, long start) {
+        Outcome outcome = hashed == null ? Outcome.BUSY : Outcome.REJECTED;
+        if (hashed != null && loggedIn() && currentAccount.getAccNumber().equals(accNumber)) {
+            synchronized (lock) {
+                currentAccount.setHashedPasswd(hashed);
+                saveAccounts(); // Save after password change
+            }
+            outcome = Outcome.SUCCESS;
+            Debug.trace("Bank::changePassword: Password changed for account %s", accNumber);
+        } else {
+            Debug.trace("Bank::changePassword: Failed to change password for account %s: %s", accNumber, outcome);
         }
-        Debug.trace("Bank::changePassword: Failed to change password for account " + accNumber);
-        return false;
+        FlightRecorder.timed(FlightRecorder.Kind.CHANGE_PASSWORD, outcome == Outcome.SUCCESS, 0, start);
+        return outcome;
     }
 
     /**
@@ -372,7 +729,47 @@ public class Bank {
      *         failed
      */
     public String createNewAccount(String accountType, String password) {
-        return AccountCreator.createAccount(this, accountType, password);
+        return createNewAccountAsync(accountType, password, Runnable::run).join();
+    }
+
+    /**
+     * Starts creating a new account. The PIN is hashed on the
+     * {@link PinVerificationService} pool, and the account is only added once
+     * it has been, on the given executor.
+     *
+     * @param accountType The type of account to create (student, gold, platinum)
+     * @param password    The password for the new account
+     * @param finish      where the account is added once the PIN is hashed
+     * @return a future that completes on {@code finish} with the new account
+     *         number, or null if creation failed or the pool was too busy
+     */
+    public CompletableFuture<String> createNewAccountAsync(String accountType, String password, Executor finish) {
+        long start = System.nanoTime();
+        AccountCreateEvent event = new AccountCreateEvent();
+        event.begin();
+        KeypressTracer.enter(KeypressTracer.Stage.BANK);
+        CompletableFuture<String> hashing = PinVerificationService.getDefault().hashAsync(password);
+        KeypressTracer.exit();
+        return hashing.handle((hashed, failure) -> failure != null ? null : hashed)
+                .thenApplyAsync(hashed -> {
+                    String accNumber = hashed == null ? null
+                            : AccountCreator.createHashedAccount(this, accountType, hashed);
+                    FlightRecorder.timed(FlightRecorder.Kind.CREATE_ACCOUNT, accNumber != null, 0, start);
+                    event.finish(accountType == null ? null : accountType.toLowerCase(), 0,
+                            accNumber != null ? Outcome.SUCCESS : hashed == null ? Outcome.BUSY : Outcome.REJECTED, 0);
+                    return accNumber;
+                }, finish);
+    }
+
+    /**
+     * Replaces the dialog that asks the customer to confirm a transfer, e.g.
+     * to confirm automatically when there is no screen.
+     *
+     * @param confirmation given the recipient's account number and the
+     *                     amount, returns {@code true} to go ahead
+     */
+    public void setTransferConfirmation(BiPredicate<String, Double> confirmation) {
+        this.transferConfirmation = confirmation;
     }
 
     /**
@@ -392,10 +789,8 @@ public class Bank {
             return false;
         }
         
-        for (BankAccount account : accounts) {
-            if (account.getAccNumber().equals(accNumber)) {
-                return true;
-            }
+        if (accountExists(accNumber)) {
+            return true;
         }
         
         lastMessage = "Recipient account not found";
@@ -404,6 +799,12 @@ public class Bank {
 
     /**
      * Transfers money from the current account to another account.
+     * <p>
+     * The transfer runs in two phases. The prepare phase checks that the sender
+     * can withdraw the amount and that the recipient can accept it as a deposit;
+     * nothing is changed if either leg would be rejected. The commit phase then
+     * applies both legs and saves once.
+     * </p>
      * @Author Mertcan Week 8
      * @Modified Bora Week 9 - Added confirmation dialog
      * @param recipientAccNumber The account number of the recipient
@@ -411,47 +812,120 @@ public class Bank {
      * @return true if the transfer was successful, false otherwise
      */
     public boolean transfer(String recipientAccNumber, double amount) {
+        return transfer(recipientAccNumber, amount, transferConfirmation);
+    }
+
+    /**
+     * Transfers money from the current account to another account, asking
+     * the given confirmation instead of the bank's.
+     *
+     * @param recipientAccNumber The account number of the recipient
+     * @param amount             The amount to transfer
+     * @param confirmation       given the recipient and the amount, returns
+     *                           {@code true} to go ahead
+     * @return true if the transfer was successful, false otherwise
+     */
+    public boolean transfer(String recipientAccNumber, double amount, BiPredicate<String, Double> confirmation) {
+        long start = System.nanoTime();
+        TransferEvent event = new TransferEvent();
+        event.begin();
+        KeypressTracer.enter(KeypressTracer.Stage.BANK);
+        long[] confirming = { 0 };
+        Outcome outcome = transferFunds(recipientAccNumber, amount, (recipient, sum) -> {
+            long asked = System.nanoTime();
+            try {
+                return confirmation.test(recipient, sum);
+            } finally {
+                // The customer's time at the dialog is not the bank's: stop the clock, and restart the event
+                confirming[0] += System.nanoTime() - asked;
+                event.begin();
+            }
+        });
+        timed(event, FlightRecorder.Kind.TRANSFER, Metrics.Operation.TRANSFER, outcome, (long) amount,
+                start + confirming[0]);
+        return outcome == Outcome.SUCCESS;
+    }
+
+    private Outcome transferFunds(String recipientAccNumber, double amount,
+                                  BiPredicate<String, Double> confirmation) {
         if (!loggedIn()) {
             lastMessage = "No account is currently logged in";
-            return false;
+            return Outcome.REJECTED;
         }
         
         if (!isValidAccount(recipientAccNumber)) {
-            return false;
+            return accountExists(recipientAccNumber) ? Outcome.REJECTED : Outcome.NOT_FOUND;
         }
         
         if (amount <= 0) {
             lastMessage = "Transfer amount must be positive";
-            return false;
+            return Outcome.REJECTED;
         }
         
         if (currentAccount.getBalance() < amount) {
             lastMessage = "Insufficient funds for transfer";
-            return false;
+            return Outcome.OVERDRAFT;
+        }
+        
+        // Prepare: both legs must be accepted before any balance changes
+        BankAccount recipient = findAccount(recipientAccNumber);
+        Outcome withdrawal = currentAccount.withdrawalOutcome((int) amount);
+        if (withdrawal != Outcome.SUCCESS) {
+            lastMessage = "Transfer failed: amount exceeds your withdrawal or overdraft limit";
+            return withdrawal;
+        }
+        Outcome deposit = recipient.depositOutcome((int) amount);
+        if (deposit != Outcome.SUCCESS) {
+            lastMessage = "Transfer failed: recipient account cannot accept this amount";
+            return deposit;
         }
         
         // Show confirmation dialog before proceeding with transfer
-        if (!TransferConfirmationScreen.showAndWaitForConfirmation(recipientAccNumber, amount)) {
+        if (!confirmation.test(recipientAccNumber, amount)) {
             lastMessage = "Transfer cancelled by user";
-            return false;
+            return Outcome.REJECTED;
         }
-        
-        BankAccount recipient = null;
-        for (BankAccount account : accounts) {
-            if (account.getAccNumber().equals(recipientAccNumber)) {
-                recipient = account;
-                break;
-            }
+        if (!loggedIn()) {
+            // Logged out while the dialog was shown, e.g. by a session timeout
+            lastMessage = "No account is currently logged in";
+            return Outcome.REJECTED;
         }
         
-        if (currentAccount.withdraw((int)amount)) {
-            recipient.deposit((int)amount);
+        // Commit: prepare again under the lock, as another session may have moved
+        // money while the customer was confirming; then neither leg can be rejected
+        synchronized (lock) {
+            withdrawal = currentAccount.withdrawalOutcome((int) amount);
+            deposit = recipient.depositOutcome((int) amount);
+            if (withdrawal != Outcome.SUCCESS || deposit != Outcome.SUCCESS) {
+                lastMessage = "Transfer failed: balances changed, please try again";
+                return withdrawal != Outcome.SUCCESS ? withdrawal : deposit;
+            }
+            currentAccount.makeWithdrawal((int) amount);
+            recipient.makeDeposit((int) amount);
             saveAccounts(); // Save after successful transfer
-            lastMessage = "Transfer successful: £" + amount + " sent to account " + recipientAccNumber;
-            return true;
         }
-        
-        lastMessage = "Transfer failed: Insufficient funds";
-        return false;
+        lastMessage = "Transfer successful: £" + amount + " sent to account " + recipientAccNumber;
+        return Outcome.SUCCESS;
+    }
+
+    /**
+     * Records a finished operation in the flight recorder and the metrics.
+     */
+    private static void timed(FlightRecorder.Kind kind, Metrics.Operation operation, Outcome outcome,
+                              long amount, long start) {
+        long took = System.nanoTime() - start;
+        FlightRecorder.record(kind, outcome == Outcome.SUCCESS, amount, took);
+        Metrics.record(operation, outcome, took);
+    }
+
+    /**
+     * Records a finished operation on the current account, and ends its JFR
+     * event and keypress stage.
+     */
+    private void timed(AtmEvent event, FlightRecorder.Kind kind, Metrics.Operation operation, Outcome outcome,
+                       long amount, long start) {
+        KeypressTracer.exit();
+        timed(kind, operation, outcome, amount, start);
+        event.finish(loggedIn() ? currentAccount.getAccountType() : null, amount, outcome, 0);
     }
 }
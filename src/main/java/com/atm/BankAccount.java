@@ -1,6 +1,14 @@
 package com.atm;
 
-import com.atm.utils.TransactionWriter;
+import java.util.concurrent.CompletableFuture;
+
+import com.atm.jfr.TransactionAppendEvent;
+import com.atm.metrics.KeypressTracer;
+import com.atm.metrics.Metrics;
+import com.atm.utils.AccountStore;
+import com.atm.utils.CsvAccountStore;
+import com.atm.utils.PasswordCrypt;
+import com.atm.utils.PinHasher;
 
 /**
  * Abstract representation of a bank account.
@@ -40,16 +48,23 @@ public abstract class BankAccount {
      * The account password for the bank account.
      * Week 5 - Bora - Version 3.0.1: Changed type from int to String to preserve
      * leading zeros.
+     * Holds a PBKDF2 hash (see {@link com.atm.utils.PinHasher}) once the PIN has
+     * been set or verified; accounts loaded from older files hold the encrypted
+     * PIN, which is only decrypted at login, until their first successful login.
      */
     protected String accPasswd;
     /** The current balance of the bank account. */
     protected double balance;
     /**
-     * The last message generated by account operations, useful for status feedback.
+     * How the last {@link #withdraw(int)} or {@link #deposit(int)} ended; its
+     * message is only built when asked for. The bank does not use it, as
+     * sessions share accounts.
      */
-    protected String lastMessage;
-    // Low Balance Treshold
-    private static final double LOW_BALANCE_THRESHOLD = 10.0;
+    private TransactionResult lastResult = null;
+    /** Where transactions are logged; set by the {@link Bank} holding the account. */
+    private AccountStore store = CsvAccountStore.DEFAULT;
+    /** Transactions logged since loading; written under the bank's lock, read by prefetches without it. */
+    private volatile int transactionCount = 0;
 
     /**
      * Constructs a bank account with the specified account number, password, and
@@ -86,29 +101,36 @@ public abstract class BankAccount {
      *
      * @param amount the amount to withdraw.
      * @return {@code true} if the withdrawal was successful, {@code false}
-     *         otherwise.
+     *         otherwise; {@link #getLastResult()} then says why.
      */
     public boolean withdraw(int amount) {
-        if (amount <= 0 || amount > getWithdrawalLimit()) {
-            lastMessage = "Invalid withdrawal amount.\nMust be positive and no more than £" + getWithdrawalLimit() + ".";
-            Debug.trace(this.getClass().getSimpleName() + "::withdraw: " + lastMessage);
-            return false;
-        }
-        if (balance - amount < getOverdraftLimit()) {
-            lastMessage = "Withdrawal would exceed overdraft limit. Current balance: £" + balance;
-            Debug.trace(this.getClass().getSimpleName() + "::withdraw: " + lastMessage);
-            return false;
+        lastResult = makeWithdrawal(amount);
+        return lastResult.isSuccess();
+    }
+
+    /**
+     * Withdraws the specified amount, as {@link #withdraw(int)} does, and
+     * returns how it ended instead of keeping it on the account.
+     *
+     * @param amount the amount to withdraw.
+     * @return the result of the withdrawal.
+     */
+    public TransactionResult makeWithdrawal(int amount) {
+        Outcome outcome = withdrawalOutcome(amount);
+        if (outcome != Outcome.SUCCESS) {
+            TransactionResult result = result(TransactionResult.Kind.WITHDRAWAL, outcome, amount, getWithdrawalLimit());
+            Debug.trace("%s::withdraw: %s", getClass(), result);
+            return result;
         }
         balance -= (amount + getCommission());
         
         // Round balance to 2 decimal places to avoid floating-point precision issues (Bora - Week 9)
         balance = Math.round(balance * 100.0) / 100.0;
         
-        lastMessage = "Withdrawn £" + amount + ". New balance: £" + balance;
-        TransactionWriter.logTransaction(accNumber, "Withdraw", amount, balance); // <- NEW LINE Week 8 @Mertcan
-        checkLowBalance(); // <- NEW LINE Week 8 @Mertcan
-        Debug.trace(this.getClass().getSimpleName() + "::withdraw: " + lastMessage);
-        return true;
+        TransactionResult result = result(TransactionResult.Kind.WITHDRAWAL, outcome, amount, getWithdrawalLimit());
+        logTransaction("Withdraw", amount); // <- NEW LINE Week 8 @Mertcan
+        Debug.trace("%s::withdraw: %s", getClass(), result);
+        return result;
     }
 
     /**
@@ -125,32 +147,166 @@ public abstract class BankAccount {
      * </p>
      *
      * @param amount the amount to deposit.
-     * @return {@code true} if the deposit was successful, {@code false} otherwise.
+     * @return {@code true} if the deposit was successful, {@code false} otherwise;
+     *         {@link #getLastResult()} then says why.
      */
     public boolean deposit(int amount) {
-        if (amount <= 0 || amount > getDepositLimit()) {
-            lastMessage = "Invalid deposit amount.\nMust be positive and no more than £" + getDepositLimit() + ".";
-            Debug.trace(this.getClass().getSimpleName() + "::deposit: " + lastMessage);
-            return false;
+        lastResult = makeDeposit(amount);
+        return lastResult.isSuccess();
+    }
+
+    /**
+     * Deposits the specified amount, as {@link #deposit(int)} does, and
+     * returns how it ended instead of keeping it on the account.
+     *
+     * @param amount the amount to deposit.
+     * @return the result of the deposit.
+     */
+    public TransactionResult makeDeposit(int amount) {
+        Outcome outcome = depositOutcome(amount);
+        if (outcome != Outcome.SUCCESS) {
+            TransactionResult result = result(TransactionResult.Kind.DEPOSIT, outcome, amount, getDepositLimit());
+            Debug.trace("%s::deposit: %s", getClass(), result);
+            return result;
         }
         double netDeposit = amount - getCommission();
-        if (netDeposit <= 0) {
-            lastMessage = "Deposit amount too low after commission deduction.";
-            Debug.trace(this.getClass().getSimpleName() + "::deposit: " + lastMessage);
-            return false;
-        }
         balance += netDeposit;
         
         // Round balance to 2 decimal places to avoid floating-point precision issues (Bora - Week 9)
         balance = Math.round(balance * 100.0) / 100.0;
         
-        lastMessage = "Deposited £" + amount + " (Commission: £" + getCommission() + "). New balance: £" + balance;
-        TransactionWriter.logTransaction(accNumber, "Deposit", amount, balance); // <- NEW LINE Week 8 @Mertcan
-        checkLowBalance(); // <- NEW LINE Week 8 @Mertcan
-        Debug.trace(this.getClass().getSimpleName() + "::deposit: " + lastMessage);
-        return true;
+        TransactionResult result = result(TransactionResult.Kind.DEPOSIT, outcome, amount, getDepositLimit());
+        logTransaction("Deposit", amount); // <- NEW LINE Week 8 @Mertcan
+        Debug.trace("%s::deposit: %s", getClass(), result);
+        return result;
+    }
+
+    private TransactionResult result(TransactionResult.Kind kind, Outcome outcome, int amount, int limit) {
+        return new TransactionResult(kind, outcome, amount, balance, getCommission(), limit);
+    }
+
+    /**
+     * Logs a transaction that has just changed the balance to the store.
+     */
+    private void logTransaction(String type, int amount) {
+        long start = System.nanoTime();
+        TransactionAppendEvent event = new TransactionAppendEvent();
+        event.begin();
+        KeypressTracer.enter(KeypressTracer.Stage.STORAGE);
+        int bytes = store.logTransaction(accNumber, type, amount, balance);
+        transactionCount++; // Only once logged, so a read that missed it is seen to be stale
+        KeypressTracer.exit();
+        boolean logged = bytes >= 0; // -1 if the store could not append it
+        Outcome outcome = logged ? Outcome.SUCCESS : Outcome.REJECTED;
+        event.finish(getAccountType(), amount, outcome, Math.max(0, bytes));
+        long took = System.nanoTime() - start;
+        FlightRecorder.record(FlightRecorder.Kind.LOG_TRANSACTION, logged, 1, took);
+        Metrics.record(Metrics.Operation.LOG_TRANSACTION, outcome, took);
+    }
+
+    /**
+     * @return how many transactions this account has logged since it was loaded
+     */
+    int getTransactionCount() {
+        return transactionCount;
+    }
+
+    /**
+     * Sets where this account logs its transactions.
+     *
+     * @param store the store of the bank holding this account
+     */
+    void setStore(AccountStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Checks whether {@link #withdraw(int)} would accept the given amount,
+     * without changing the account.
+     *
+     * @param amount the amount to withdraw.
+     * @return {@code true} if the withdrawal would succeed.
+     */
+    protected boolean canWithdraw(int amount) {
+        return withdrawalOutcome(amount) == Outcome.SUCCESS;
+    }
+
+    /**
+     * Checks whether {@link #deposit(int)} would accept the given amount,
+     * without changing the account.
+     *
+     * @param amount the amount to deposit.
+     * @return {@code true} if the deposit would succeed.
+     */
+    protected boolean canDeposit(int amount) {
+        return depositOutcome(amount) == Outcome.SUCCESS;
+    }
+
+    /**
+     * Returns how the last withdrawal or deposit on this account ended.
+     *
+     * @return the outcome of the last withdrawal or deposit.
+     */
+    public Outcome getLastOutcome() {
+        return lastResult == null ? Outcome.SUCCESS : lastResult.getOutcome();
     }
 
+    /**
+     * Returns how the last withdrawal or deposit on this account ended.
+     *
+     * @return the result, or {@code null} if there has been none.
+     */
+    public TransactionResult getLastResult() {
+        return lastResult;
+    }
+
+    /**
+     * Works out how {@link #withdraw(int)} would end, without changing the
+     * account.
+     *
+     * @param amount the amount to withdraw.
+     * @return {@link Outcome#SUCCESS} or the reason it would be refused.
+     */
+    protected Outcome withdrawalOutcome(int amount) {
+        if (amount <= 0) {
+            return Outcome.REJECTED;
+        }
+        if (amount > getWithdrawalLimit()) {
+            return Outcome.LIMIT_EXCEEDED;
+        }
+        if (balance - amount - getCommission() < getOverdraftLimit()) { // The commission is taken too
+            return Outcome.OVERDRAFT;
+        }
+        return Outcome.SUCCESS;
+    }
+
+    /**
+     * Works out how {@link #deposit(int)} would end, without changing the
+     * account.
+     *
+     * @param amount the amount to deposit.
+     * @return {@link Outcome#SUCCESS} or the reason it would be refused.
+     */
+    protected Outcome depositOutcome(int amount) {
+        if (amount <= 0) {
+            return Outcome.REJECTED;
+        }
+        if (amount > getDepositLimit()) {
+            return Outcome.LIMIT_EXCEEDED;
+        }
+        if (amount - getCommission() <= 0) {
+            return Outcome.REJECTED; // nothing left after commission
+        }
+        return Outcome.SUCCESS;
+    }
+
+    /**
+     * Returns the account type name used in the accounts file.
+     *
+     * @return "student", "gold" or "platinum".
+     */
+    public abstract String getAccountType();
+
     /**
      * Returns the maximum allowed withdrawal amount for this account.
      * <p>
@@ -214,12 +370,13 @@ public abstract class BankAccount {
     }
 
     /**
-     * Returns the last message generated by an account operation.
+     * Returns the message of the last withdrawal or deposit, built now from
+     * its result.
      *
      * @return the last status message.
      */
     protected String getLastMessage() {
-        return lastMessage;
+        return lastResult == null ? null : lastResult.getMessage();
     }
 
     /**
@@ -252,25 +409,80 @@ public abstract class BankAccount {
      * Sets a new password for this account.
      * <p>
      * This method allows changing the account password for security purposes.
+     * The password is stored as a salted hash, never as the PIN itself.
      * </p>
      * <p>
      * Week 5 - Made by Bora - Version 3.0.2: Added change password functionality
      * </p>
      *
      * @param newPassword the new password to set for the account.
+     * @throws java.util.concurrent.RejectedExecutionException if the PIN
+     *         hashing pool is saturated; the password is then unchanged.
      */
     protected void setAccPasswd(String newPassword) {
-        this.accPasswd = newPassword;
+        this.accPasswd = PinVerificationService.getDefault().hash(newPassword);
     }
 
     /**
-     * Checks if the balance is below the low balance threshold and appends a
-     * warning to lastMessage.
-     * @Author Mertcan Week 8
+     * Replaces the stored password with a PIN already hashed by
+     * {@link PinVerificationService#hashAsync(String)}.
+     *
+     * @param hashed the stored form of the new PIN.
      */
-    private void checkLowBalance() {
-        if (balance < LOW_BALANCE_THRESHOLD) {
-            lastMessage = lastMessage + "\n\nWARNING: LOW BALANCE ALERT!\nYour balance (£" + balance + ") is below the threshold of £" + LOW_BALANCE_THRESHOLD + ".\nPlease deposit funds to avoid potential issues.";
+    protected void setHashedPasswd(String hashed) {
+        this.accPasswd = hashed;
+    }
+
+    /**
+     * Checks an entered PIN against this account's stored password.
+     * <p>
+     * Hashing runs on the {@link PinVerificationService} pool and the result is
+     * compared in constant time.
+     * </p>
+     *
+     * @param pin the PIN entered by the user.
+     * @return {@code true} if the PIN is correct.
+     */
+    protected boolean checkPassword(String pin) {
+        return PinVerificationService.getDefault().verify(pin, accPasswd);
+    }
+
+    /**
+     * Starts checking an entered PIN against this account's stored password,
+     * without waiting for the hashing.
+     *
+     * @param pin the PIN entered by the user.
+     * @return a future that completes with {@code true} if the PIN is correct,
+     *         or exceptionally if it could not be checked.
+     */
+    protected CompletableFuture<Boolean> checkPasswordAsync(String pin) {
+        return PinVerificationService.getDefault().verifyAsync(pin, accPasswd);
+    }
+
+    /**
+     * Moves an encrypted password to another key version without decrypting it
+     * outside {@link PasswordCrypt}. Hashed and plain passwords are left alone.
+     *
+     * @param keyVersion the key version to move to.
+     * @return {@code true} if the stored password changed.
+     */
+    protected boolean reencryptPassword(int keyVersion) {
+        if (!PasswordCrypt.isEncrypted(accPasswd)) {
+            return false;
         }
+        String rotated = PasswordCrypt.reencrypt(accPasswd, keyVersion);
+        boolean changed = !rotated.equals(accPasswd);
+        accPasswd = rotated;
+        return changed;
+    }
+
+    /**
+     * Tells whether the stored password is still an encrypted or plain PIN and
+     * should be replaced by a hash.
+     *
+     * @return {@code true} if the password has not been hashed yet.
+     */
+    protected boolean needsPasswordUpgrade() {
+        return !PinHasher.isHashed(accPasswd);
     }
 }
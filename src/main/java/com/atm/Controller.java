@@ -1,5 +1,6 @@
 package com.atm;
 
+import com.atm.metrics.KeypressTracer;
 
 // The ATM controller is quite simple - the process method is passed
 // the label on the button that was pressed, and it calls different
@@ -21,7 +22,9 @@ package com.atm;
 public class Controller
 {
     public Model model;
-    public View  view;
+    public DisplayPort view;
+    // Where this terminal's presses are recorded; null unless a SessionRecorder is attached
+    SessionRecorder.Tap recording;
 
     // we don't really need a constructor method, but include one to print a
     // debugging message if required
@@ -33,50 +36,20 @@ public class Controller
     // This is how the View talks to the Controller
     // AND how the Controller talks to the Model
     // This method is called by the View to respond to some user interface event
-    // The controller's job is to decide what to do. In this case it uses a switch
-    // statement to select the right method in the Model
+    // The controller's job is to decide what to do. In this case it turns the
+    // label into a key, and the Model's transition table picks the method
     public void process( String action )
     {
-        Debug.trace("Controller::process: action = " + action);
-        switch (action) {
-            case "1" : case "2" : case "3" : case "4" : case "5" :
-            case "6" : case "7" : case "8" : case "9" : case "0" :
-                model.processNumber(action);
-                break;
-            case "CLR":
-                model.processClear();
-                break;
-            case "Ent":
-                model.processEnter();
-                break;
-            case "W/D":
-                model.processWithdraw();
-                break;
-            case "Dep":
-                model.processDeposit();
-                break;
-            case "Bal":
-                model.processBalance();
-                break;
-            case "Fin":
-                model.processFinish();
-                break;
-            case "Change PIN":
-                model.processChangePassword();
-                break;
-            case "New Account":
-                model.processNewAccount();
-                break;
-            case "Send Money":
-                model.processSendMoney();
-                break;
-            default:
-                model.processUnknownKey(action);
-                break;
-            case "Logout":
-                model.processLogout();
-                break;
-            
+        Debug.trace("Controller::process: action = %s", action);
+        if (recording != null) {
+            recording.press(action, model.isEnteringPin() && action.length() == 1
+                    && Character.isDigit(action.charAt(0)));
+        }
+        KeypressTracer.enter(KeypressTracer.Stage.MODEL);
+        try {
+            model.process(Model.Key.of(action), action);
+        } finally {
+            KeypressTracer.exit();
         }
 
     }
@@ -86,7 +59,7 @@ public class Controller
      */
     private void confirmExit()
     {
-        boolean confirm = view.showConfirmationDialog("Are you sure you want to exit?");
+        boolean confirm = view.confirm("Are you sure you want to exit?");
         if (confirm) {
             model.processFinish();
         }
@@ -98,8 +71,8 @@ public class Controller
      */
     private void handleUnknownAction(String action)
     {
-        Debug.trace("Controller::process: Unknown action - " + action);
-        view.showErrorMessage("Invalid action: " + action);
+        Debug.trace("Controller::process: Unknown action - %s", action);
+        view.showError("Invalid action: " + action);
     }
     
 }
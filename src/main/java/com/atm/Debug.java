@@ -1,12 +1,91 @@
 package com.atm;
 
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
 /**
  * Print information about the running program
+ * <p>
+ * Messages are leveled. A call below the current level returns after one
+ * volatile read, before any formatting, so call sites should pass their values
+ * as parameters rather than concatenating them: {@code trace("x = %s", x)}
+ * costs nothing when tracing is off, {@code trace("x = " + x)} always builds
+ * the string. The fixed-arity overloads avoid the varargs array as well.
+ * A {@code Class} parameter prints as its simple name, so a call site can
+ * pass {@code getClass()} and leave the name lookup to the writer.
+ * </p>
+ * <p>
+ * Enabled messages are not printed by the caller. The format and parameters
+ * are copied into a preallocated ring and a background thread formats and
+ * prints them, so the JavaFX thread never waits for the console or a lock.
+ * Parameters are formatted later on that thread and should not be mutated
+ * after the call. When the ring is full the message is dropped and counted
+ * rather than blocking the caller.
+ * </p>
  */
 
 public class Debug
 {
-    private static boolean debug = true;
+    /**
+     * How much is printed. Each level includes the ones before it.
+     */
+    public enum Level
+    {
+        /** Print nothing */
+        OFF,
+        /** Print errors and failed assertions */
+        ERROR,
+        /** Print notable events as well */
+        INFO,
+        /** Print everything */
+        TRACE
+    }
+
+    /** Number of slots in the ring, a power of two */
+    private static final int CAPACITY = 1 << 13;
+    private static final int MASK = CAPACITY - 1;
+    /** Parameters kept inline per slot; calls with more are packed into one array */
+    private static final int MAX_ARGS = 3;
+    private static final Object[] NO_ARGS = new Object[0];
+
+    private static volatile Level level = Level.TRACE;
+    private static volatile PrintStream out = System.out;
+
+    // The ring. A slot at position p is free to write when its sequence is p,
+    // and ready to print when its sequence is p + 1.
+    private static final AtomicLongArray sequence = new AtomicLongArray(CAPACITY);
+    private static final Level[] levels = new Level[CAPACITY];
+    private static final String[] formats = new String[CAPACITY];
+    private static final Object[] params = new Object[CAPACITY * MAX_ARGS];
+    private static final int[] counts = new int[CAPACITY];
+
+    /** Next position to claim; shared by all producers */
+    private static final AtomicLong tail = new AtomicLong();
+    /** Next position to print; owned by the writer thread */
+    private static long head;
+    /** Position up to which everything has been printed */
+    private static final AtomicLong printed = new AtomicLong();
+    private static final LongAdder dropped = new LongAdder();
+
+    private static volatile boolean writerParked;
+    private static final Thread writer;
+
+    static
+    {
+        for ( int i = 0; i < CAPACITY; i++ )
+        {
+            sequence.set( i, i );
+        }
+        writer = new Thread( Debug::drainLoop, "debug-writer" );
+        writer.setDaemon( true );
+        writer.start();
+        Runtime.getRuntime().addShutdownHook( new Thread( Debug::flush, "debug-flush" ) );
+    }
 
     /**
      * Set true/false to print debugging information
@@ -15,26 +94,116 @@ public class Debug
      */
     public static synchronized boolean set( boolean state )
     {
-        boolean oldState = debug;
-        debug = state;
+        boolean oldState = level == Level.TRACE;
+        level = state ? Level.TRACE : Level.ERROR;
         return oldState;
     }
 
+    /**
+     * Set how much is printed
+     * @param newLevel The lowest level to print
+     * @return The old level
+     */
+    public static synchronized Level setLevel( Level newLevel )
+    {
+        Level oldLevel = level;
+        level = newLevel;
+        return oldLevel;
+    }
+
+    /**
+     * Read a level from its name, in any case, e.g. from {@code -Datm.debug}
+     * @param name The name of the level, or null
+     * @param fallback The level to use if the name is missing or unknown
+     * @return The level
+     */
+    public static Level parseLevel( String name, Level fallback )
+    {
+        if ( name == null )
+        {
+            return fallback;
+        }
+        try
+        {
+            return Level.valueOf( name.trim().toUpperCase( Locale.ROOT ) );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            System.err.println( "Debug: unknown level \"" + name + "\", using " + fallback );
+            return fallback;
+        }
+    }
+
+    /**
+     * Is a message at this level printed
+     * @param at The level of the message
+     * @return true if it would be printed
+     */
+    public static boolean isEnabled( Level at )
+    {
+        return at.compareTo( level ) <= 0 && at != Level.OFF;
+    }
+
+    /**
+     * Display text for debugging purposes
+     * @param msg The text, printed as it is
+     */
+    public static void trace( String msg )
+    {
+        if ( level == Level.TRACE ) enqueue( Level.TRACE, "%s", 1, msg, null, null );
+    }
+
+    /**
+     * Display text for debugging purposes
+     * @param fmt The same as printf etc
+     * @param a   The parameter to fmt
+     */
+    public static void trace( String fmt, Object a )
+    {
+        if ( level == Level.TRACE ) enqueue( Level.TRACE, fmt, 1, a, null, null );
+    }
+
+    /**
+     * Display text for debugging purposes
+     * @param fmt The same as printf etc
+     * @param a   The first parameter to fmt
+     * @param b   The second parameter to fmt
+     */
+    public static void trace( String fmt, Object a, Object b )
+    {
+        if ( level == Level.TRACE ) enqueue( Level.TRACE, fmt, 2, a, b, null );
+    }
+
+    /**
+     * Display text for debugging purposes
+     * @param fmt The same as printf etc
+     * @param a   The first parameter to fmt
+     * @param b   The second parameter to fmt
+     * @param c   The third parameter to fmt
+     */
+    public static void trace( String fmt, Object a, Object b, Object c )
+    {
+        if ( level == Level.TRACE ) enqueue( Level.TRACE, fmt, 3, a, b, c );
+    }
+
     /**
      * Display text for debugging purposes
      * @param fmt  The same as printf etc
      * @param params The parameters to fmt
      */
-    public static void trace(String fmt, Object... params )
+    public static void trace( String fmt, Object... params )
     {
-        if ( debug )
-        {
-            synchronized( Debug.class )
-            {
-                System.out.printf( fmt, params );
-                System.out.println();
-            }
-        }
+        if ( level == Level.TRACE ) enqueue( Level.TRACE, fmt, params );
+    }
+
+    /**
+     * Display a notable event
+     * @param fmt  The same as printf etc
+     * @param params The parameters to fmt
+     */
+    public static void info( String fmt, Object... params )
+    {
+        if ( isEnabled( Level.INFO ) ) enqueue( Level.INFO, fmt, params );
     }
 
     /**
@@ -57,11 +226,179 @@ public class Debug
      * @param fmt The same as printf etc
      * @param params The parameters to fmt
      */
-    public static synchronized void error(String fmt, Object... params )
+    public static void error( String fmt, Object... params )
     {
-        System.out.printf( "ERROR: " + fmt, params );
-        System.out.println();
+        if ( isEnabled( Level.ERROR ) ) enqueue( Level.ERROR, fmt, params );
     }
 
-}
+    /**
+     * Wait until every message logged so far has been printed
+     */
+    public static void flush()
+    {
+        long target = tail.get();
+        LockSupport.unpark( writer );
+        // A slot claimed but not yet published is waited for too
+        while ( printed.get() < target && writer.isAlive() )
+        {
+            LockSupport.parkNanos( TimeUnit.MICROSECONDS.toNanos( 100 ) );
+        }
+    }
+
+    /**
+     * Number of messages dropped because the ring was full
+     * @return Messages dropped since start up
+     */
+    public static long getDropped()
+    {
+        return dropped.sum();
+    }
+
+    /**
+     * Print to another stream, for tests
+     * @param stream Where to print
+     * @return The old stream
+     */
+    static PrintStream setOutput( PrintStream stream )
+    {
+        flush();
+        PrintStream old = out;
+        out = stream;
+        return old;
+    }
 
+    private static void enqueue( Level at, String fmt, Object[] args )
+    {
+        if ( args.length <= MAX_ARGS )
+        {
+            Object a = args.length > 0 ? args[0] : null;
+            Object b = args.length > 1 ? args[1] : null;
+            Object c = args.length > 2 ? args[2] : null;
+            enqueue( at, fmt, args.length, a, b, c );
+        }
+        else
+        {
+            enqueue( at, fmt, -1, args, null, null );
+        }
+    }
+
+    /**
+     * Claim a slot and publish a message into it; count -1 means a is the whole
+     * parameter array
+     */
+    private static void enqueue( Level at, String fmt, int count,
+                                 Object a, Object b, Object c )
+    {
+        long pos = tail.get();
+        int slot;
+        while ( true )
+        {
+            slot = (int) ( pos & MASK );
+            long diff = sequence.get( slot ) - pos;
+            if ( diff == 0 )
+            {
+                if ( tail.compareAndSet( pos, pos + 1 ) ) break;
+                pos = tail.get();
+            }
+            else if ( diff < 0 )
+            {
+                dropped.increment(); // ring full - never block the caller
+                return;
+            }
+            else
+            {
+                pos = tail.get();
+            }
+        }
+        int base = slot * MAX_ARGS;
+        levels[slot] = at;
+        formats[slot] = fmt;
+        counts[slot] = count;
+        params[base] = a;
+        params[base + 1] = b;
+        params[base + 2] = c;
+        sequence.lazySet( slot, pos + 1 );
+        if ( writerParked ) LockSupport.unpark( writer );
+    }
+
+    private static void drainLoop()
+    {
+        while ( true )
+        {
+            if ( ! drain() )
+            {
+                writerParked = true;
+                // Re-check after advertising, so a message published meanwhile is not missed
+                if ( sequence.get( (int) ( head & MASK ) ) != head + 1 )
+                {
+                    LockSupport.parkNanos( TimeUnit.MILLISECONDS.toNanos( 50 ) );
+                }
+                writerParked = false;
+            }
+        }
+    }
+
+    /**
+     * Print every published message
+     * @return true if anything was printed
+     */
+    private static boolean drain()
+    {
+        PrintStream stream = out;
+        boolean any = false;
+        while ( true )
+        {
+            int slot = (int) ( head & MASK );
+            if ( sequence.get( slot ) != head + 1 ) break;
+            int base = slot * MAX_ARGS;
+            Level at = levels[slot];
+            String fmt = formats[slot];
+            int count = counts[slot];
+            Object[] args;
+            if ( count < 0 )
+            {
+                args = (Object[]) params[base];
+            }
+            else if ( count == 0 )
+            {
+                args = NO_ARGS;
+            }
+            else
+            {
+                args = new Object[count];
+                System.arraycopy( params, base, args, 0, count );
+            }
+            formats[slot] = null;
+            params[base] = params[base + 1] = params[base + 2] = null;
+            sequence.lazySet( slot, head + CAPACITY );
+            head++;
+            print( stream, at, fmt, args );
+            any = true;
+        }
+        if ( any )
+        {
+            stream.flush();
+            printed.set( head );
+        }
+        return any;
+    }
+
+    private static void print( PrintStream stream, Level at, String fmt, Object[] args )
+    {
+        try
+        {
+            for ( int i = 0; i < args.length; i++ )
+            {
+                if ( args[i] instanceof Class<?> type ) args[i] = type.getSimpleName();
+            }
+            String text = String.format( fmt, args );
+            stream.println( at == Level.ERROR ? "ERROR: " + text : text );
+        }
+        catch ( RuntimeException e )
+        {
+            // A bad format must not kill the writer
+            stream.println( "Debug: cannot format \"" + fmt + "\": " + e );
+        }
+    }
+
+}
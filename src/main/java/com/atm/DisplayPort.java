@@ -0,0 +1,76 @@
+package com.atm;
+
+/**
+ * What the {@link Model} and {@link Controller} need from a screen.
+ * <p>
+ * The session logic only talks to the screen through this interface, so it
+ * runs the same with the JavaFX {@link View} as with a
+ * {@link HeadlessDisplay}, which needs no display and lets many sessions run
+ * in one JVM.
+ * </p>
+ */
+public interface DisplayPort {
+
+    /**
+     * Shows the current screen.
+     *
+     * @param message the single-line message area
+     * @param reply   the multi-line reply area
+     */
+    void display(String message, String reply);
+
+    /**
+     * Shows an error to the customer.
+     *
+     * @param message what went wrong
+     */
+    void showError(String message);
+
+    /**
+     * Asks the customer a yes or no question.
+     *
+     * @param message the question
+     * @return {@code true} if the customer said yes
+     */
+    boolean confirm(String message);
+
+    /**
+     * Asks the customer to accept the terms before an account is created.
+     *
+     * @return {@code true} if the customer accepted them
+     */
+    boolean confirmConsent();
+
+    /**
+     * Asks the customer to confirm a transfer.
+     *
+     * @param recipientAccNumber the account receiving the money
+     * @param amount             the amount
+     * @return {@code true} to go ahead with the transfer
+     */
+    boolean confirmTransfer(String recipientAccNumber, double amount);
+
+    /**
+     * Runs an action on the thread that updates this screen, for work that
+     * starts elsewhere, such as a session timing out. By default it runs at
+     * once, on the calling thread.
+     *
+     * @param action what to run
+     */
+    default void runLater(Runnable action) {
+        action.run();
+    }
+
+    /**
+     * Says whether this screen has a thread of its own that must not wait on
+     * slow work, such as hashing a PIN. If so, that work finishes in the
+     * background and its result comes back through {@link #runLater};
+     * otherwise the thread pressing the key waits for it. By default it
+     * waits.
+     *
+     * @return {@code true} if key presses must not wait
+     */
+    default boolean hasEventThread() {
+        return false;
+    }
+}
@@ -0,0 +1,248 @@
+package com.atm;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.invoke.VarHandle;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Always-on black box of the most recent ATM events.
+ * <p>
+ * Every state change, bank operation and persistence call is written as a
+ * fixed-size record of four longs into a preallocated ring; the oldest records
+ * are overwritten once the ring is full. Recording takes a counter increment,
+ * a clock read and a handful of array stores, with no locks and no
+ * allocation, so it stays on in production. Nothing is printed until the ring
+ * is dumped, which happens on request ({@link #dump(String)}), when an
+ * uncaught exception reaches a thread, and at shutdown once
+ * {@link #install()} has been called.
+ * </p>
+ * <p>
+ * Dumps are written as text to {@code flight/} (or the {@code atm.flight.dir}
+ * system property); the ring holds {@code atm.flight.records} records,
+ * rounded up to a power of two (default 16384).
+ * </p>
+ */
+public class FlightRecorder {
+
+    /**
+     * What a record describes. For bank operations {@code a} is the amount and
+     * {@code b} the time taken; for persistence {@code a} is the number of rows.
+     */
+    public enum Kind {
+        /** A Model state change; a and b are the old and new state */
+        STATE("from", "to"),
+        LOGIN("amount", "took"),
+        LOGOUT("amount", "took"),
+        DEPOSIT("amount", "took"),
+        WITHDRAW("amount", "took"),
+        TRANSFER("amount", "took"),
+        CHANGE_PASSWORD("amount", "took"),
+        CREATE_ACCOUNT("amount", "took"),
+        LOAD_ACCOUNTS("rows", "took"),
+        SAVE_ACCOUNTS("rows", "took"),
+        LOG_TRANSACTION("rows", "took"),
+        READ_TRANSACTIONS("rows", "took"),
+        /** An uncaught exception; a is the exception class */
+        EXCEPTION("type", "thread");
+
+        private final String aName;
+        private final String bName;
+
+        Kind(String aName, String bName) {
+            this.aName = aName;
+            this.bName = bName;
+        }
+    }
+
+    private static final Kind[] KINDS = Kind.values();
+    /** Longs per record: time, kind and outcome, a, b */
+    private static final int WIDTH = 4;
+    private static final int CAPACITY = Integer.highestOneBit(
+            Math.max(2, Integer.getInteger("atm.flight.records", 1 << 14)) * 2 - 1);
+    private static final int MASK = CAPACITY - 1;
+
+    private static final long[] records = new long[CAPACITY * WIDTH];
+    /** Sequence + 1 of the record in each slot, or 0 while it is being written */
+    private static final AtomicLongArray published = new AtomicLongArray(CAPACITY);
+    private static final AtomicLong next = new AtomicLong();
+
+    /** Strings recorded by id (states, exception types); a small, fixed set */
+    private static final Map<String, Integer> nameIds = new ConcurrentHashMap<>();
+    private static final List<String> names = new CopyOnWriteArrayList<>();
+
+    // Anchor for turning System.nanoTime() into wall clock time in dumps
+    private static final long startMillis = System.currentTimeMillis();
+    private static final long startNanos = System.nanoTime();
+
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss.SSS");
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+    private static boolean installed = false;
+
+    private FlightRecorder() {
+    }
+
+    /**
+     * Records an event.
+     *
+     * @param kind what happened
+     * @param ok   whether it succeeded
+     * @param a    the first value, see {@link Kind}
+     * @param b    the second value, see {@link Kind}
+     */
+    public static void record(Kind kind, boolean ok, long a, long b) {
+        long seq = next.getAndIncrement();
+        int slot = (int) (seq & MASK);
+        int base = slot * WIDTH;
+        published.setOpaque(slot, 0);
+        VarHandle.storeStoreFence(); // a dump must not see new data under the old sequence
+        records[base] = System.nanoTime();
+        records[base + 1] = (long) kind.ordinal() << 1 | (ok ? 1 : 0);
+        records[base + 2] = a;
+        records[base + 3] = b;
+        published.setRelease(slot, seq + 1);
+    }
+
+    /**
+     * Records a Model state change.
+     *
+     * @param from the old state
+     * @param to   the new state
+     */
+    public static void state(String from, String to) {
+        record(Kind.STATE, true, nameId(from), nameId(to));
+    }
+
+    /**
+     * Records a timed operation that started at {@code startNanos}.
+     *
+     * @param kind       what happened
+     * @param ok         whether it succeeded
+     * @param a          the amount or number of rows
+     * @param startNanos the {@link System#nanoTime()} when it started
+     */
+    public static void timed(Kind kind, boolean ok, long a, long startNanos) {
+        record(kind, ok, a, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Writes the ring to a new file, oldest record first.
+     *
+     * @param reason why the dump was taken; part of the file name
+     * @return the file written, or {@code null} if it could not be written
+     */
+    public static synchronized Path dump(String reason) {
+        Path dir = Paths.get(System.getProperty("atm.flight.dir", "flight"));
+        String stamp = LocalDateTime.now().format(FILE_TIME);
+        Path file = dir.resolve("flight-" + stamp + "-" + reason.replaceAll("[^A-Za-z0-9_-]", "_") + ".log");
+        try {
+            Files.createDirectories(dir);
+            try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+                out.println("# flight recorder dump: " + reason);
+                write(out);
+            }
+            return file;
+        } catch (IOException e) {
+            System.err.println("Error writing flight recorder dump: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes the ring as text, oldest record first. Records overwritten while
+     * they are read are skipped.
+     *
+     * @param out where to write
+     */
+    public static void write(PrintWriter out) {
+        long end = next.get();
+        long first = Math.max(0, end - CAPACITY);
+        for (long seq = first; seq < end; seq++) {
+            int slot = (int) (seq & MASK);
+            int base = slot * WIDTH;
+            if (published.getAcquire(slot) != seq + 1) {
+                continue;
+            }
+            long time = records[base];
+            long header = records[base + 1];
+            long a = records[base + 2];
+            long b = records[base + 3];
+            VarHandle.loadLoadFence();
+            if (published.getOpaque(slot) != seq + 1) {
+                continue; // overwritten while we were reading it
+            }
+            out.println(format(time, header, a, b));
+        }
+        out.flush();
+    }
+
+    /**
+     * Dumps the ring when a thread dies of an uncaught exception and when the
+     * JVM shuts down. Safe to call more than once.
+     */
+    public static synchronized void install() {
+        if (installed) {
+            return;
+        }
+        installed = true;
+        Thread.UncaughtExceptionHandler previous = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler((thread, e) -> {
+            record(Kind.EXCEPTION, false, nameId(e.getClass().getName()), thread.threadId());
+            Path file = dump("exception");
+            System.err.println("Uncaught " + e + " in " + thread.getName() + ", flight recorder dumped to " + file);
+            if (previous != null) {
+                previous.uncaughtException(thread, e);
+            } else {
+                e.printStackTrace();
+            }
+        });
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> dump("shutdown"), "flight-recorder-dump"));
+    }
+
+    private static String format(long time, long header, long a, long b) {
+        Kind kind = KINDS[(int) (header >>> 1)];
+        boolean ok = (header & 1) != 0;
+        long millis = startMillis + (time - startNanos) / 1_000_000;
+        String when = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault()).format(TIME);
+        switch (kind) {
+            case STATE:
+                return String.format("%s %s %s -> %s", when, kind, name(a), name(b));
+            case EXCEPTION:
+                return String.format("%s %s %s thread=%d", when, kind, name(a), b);
+            default:
+                return String.format("%s %s %s %s=%d %s=%.3fms", when, kind, ok ? "ok" : "failed",
+                        kind.aName, a, kind.bName, b / 1e6);
+        }
+    }
+
+    private static int nameId(String name) {
+        Integer id = nameIds.get(name);
+        if (id != null) {
+            return id;
+        }
+        synchronized (names) {
+            return nameIds.computeIfAbsent(name, n -> {
+                names.add(n);
+                return names.size() - 1;
+            });
+        }
+    }
+
+    private static String name(long id) {
+        return id >= 0 && id < names.size() ? names.get((int) id) : "?";
+    }
+}
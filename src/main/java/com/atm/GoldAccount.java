@@ -64,4 +64,14 @@ public class GoldAccount extends BankAccount {
     protected int getOverdraftLimit() {
         return -1000;
     }
+
+    /**
+     * Returns the type name stored for Gold accounts.
+     *
+     * @return {@code "gold"}.
+     */
+    @Override
+    public String getAccountType() {
+        return "gold";
+    }
 }
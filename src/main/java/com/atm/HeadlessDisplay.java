@@ -0,0 +1,112 @@
+package com.atm;
+
+/**
+ * A {@link DisplayPort} without a screen, for load tests, benchmarks and
+ * server deployments.
+ * <p>
+ * It keeps the last screen shown and answers every question with a fixed
+ * answer. It holds no JavaFX objects, so any number of sessions can each
+ * have one. Like the session it belongs to, it is used by one thread at a
+ * time.
+ * </p>
+ */
+public class HeadlessDisplay implements DisplayPort {
+
+    private final boolean answer;
+    private String message = "";
+    private String reply = "";
+    private String error = null;
+    private long updates = 0;
+
+    /**
+     * Creates a display that accepts every confirmation.
+     */
+    public HeadlessDisplay() {
+        this(true);
+    }
+
+    /**
+     * Creates a display that gives the same answer to every confirmation.
+     *
+     * @param answer the answer to every question
+     */
+    public HeadlessDisplay(boolean answer) {
+        this.answer = answer;
+    }
+
+    /**
+     * Creates a session on a bank with a headless display: a Model and a
+     * Controller wired together and showing the welcome screen.
+     *
+     * @param bank    the bank the session uses
+     * @param display the display the session shows its screens on
+     * @return the session's controller; press buttons with
+     *         {@link Controller#process(String)}
+     */
+    public static Controller start(Bank bank, HeadlessDisplay display) {
+        Model model = new Model(bank);
+        Controller controller = new Controller();
+        model.view = display;
+        model.controller = controller;
+        controller.model = model;
+        controller.view = display;
+        model.initialise("Welcome to the ATM");
+        model.display();
+        return controller;
+    }
+
+    @Override
+    public void display(String message, String reply) {
+        this.message = message;
+        this.reply = reply;
+        updates++;
+    }
+
+    @Override
+    public void showError(String message) {
+        this.error = message;
+    }
+
+    @Override
+    public boolean confirm(String message) {
+        return answer;
+    }
+
+    @Override
+    public boolean confirmConsent() {
+        return answer;
+    }
+
+    @Override
+    public boolean confirmTransfer(String recipientAccNumber, double amount) {
+        return answer;
+    }
+
+    /**
+     * @return the message area of the last screen shown
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * @return the reply area of the last screen shown
+     */
+    public String getReply() {
+        return reply;
+    }
+
+    /**
+     * @return the last error shown, or {@code null} if there was none
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * @return how many screens have been shown
+     */
+    public long getUpdates() {
+        return updates;
+    }
+}
@@ -0,0 +1,414 @@
+package com.atm;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import com.atm.metrics.LatencyHistogram;
+import com.atm.utils.AccountReader;
+import com.atm.utils.AccountStore;
+import com.atm.utils.CsvAccountStore;
+import com.atm.utils.DatasetGenerator;
+import com.atm.utils.MemoryAccountStore;
+import com.atm.utils.PasswordCrypt;
+import com.atm.utils.PinHasher;
+
+/**
+ * Drives a fleet of simulated ATM terminals against one shared {@link Bank},
+ * for capacity planning.
+ * <p>
+ * Each terminal is a thread with its own {@link Bank#openSession() session},
+ * {@link HeadlessDisplay} and {@link Controller}, and presses buttons through
+ * {@link Controller#process(String)} exactly as the keypad does. A customer
+ * session logs in to a random account with the PIN given by the
+ * {@link DatasetGenerator} that made the accounts, runs one flow chosen from
+ * a configurable mix, and presses "Fin". Terminals start the next session
+ * straight away unless a think time is set, so the fleet measures how much
+ * the bank can take rather than how fast people type.
+ * </p>
+ * <p>
+ * {@link #ramp(int[], long)} runs the fleet at each terminal count in turn and
+ * reports sessions per second, the latency of each operation (every key of
+ * the operation, from the first press to the screen it ends on) and the share
+ * of operations that did not end on their success screen. Withdrawals that
+ * would go overdrawn count as errors, as the customer sees them that way.
+ * {@link #main(String[])} hashes every PIN before the first step, so every
+ * step checks logins the same way.
+ * </p>
+ * <p>
+ * The keypad takes at most five digits, so the bank can hold at most 100000
+ * accounts numbered as the dataset generator numbers them.
+ * </p>
+ */
+public class LoadGenerator {
+
+    /**
+     * What a customer does once logged in.
+     */
+    public enum Flow {
+        /** Logs in and finishes; the latency is the login's */
+        LOGIN,
+        /** Checks the balance */
+        BALANCE,
+        /** Checks the balance, then withdraws */
+        WITHDRAW,
+        /** Deposits */
+        DEPOSIT,
+        /** Sends money to another random account */
+        TRANSFER
+    }
+
+    private static final Flow[] FLOWS = Flow.values();
+
+    /**
+     * The results of running a number of terminals for a while.
+     */
+    public static class Step {
+        /** Terminals that ran at once */
+        public final int terminals;
+        private final LatencyHistogram[] latencies = new LatencyHistogram[FLOWS.length];
+        private final LongAdder[] errors = new LongAdder[FLOWS.length];
+        private final LongAdder sessions = new LongAdder();
+        private long nanos;
+
+        Step(int terminals) {
+            this.terminals = terminals;
+            for (int i = 0; i < FLOWS.length; i++) {
+                latencies[i] = new LatencyHistogram();
+                errors[i] = new LongAdder();
+            }
+        }
+
+        /**
+         * @return the customer sessions completed
+         */
+        public long getSessions() {
+            return sessions.sum();
+        }
+
+        /**
+         * @return customer sessions completed per second
+         */
+        public double sessionsPerSecond() {
+            return nanos == 0 ? 0 : sessions.sum() * 1e9 / nanos;
+        }
+
+        /**
+         * @param flow an operation; {@link Flow#LOGIN} is every session's login
+         * @return the latencies of that operation
+         */
+        public LatencyHistogram latency(Flow flow) {
+            return latencies[flow.ordinal()];
+        }
+
+        /**
+         * @param flow an operation
+         * @return the fraction of that operation that did not succeed, or 0 if
+         *         it never ran
+         */
+        public double errorRate(Flow flow) {
+            long count = latencies[flow.ordinal()].getCount();
+            return count == 0 ? 0 : (double) errors[flow.ordinal()].sum() / count;
+        }
+
+        void record(Flow flow, long took, boolean success) {
+            latencies[flow.ordinal()].record(took);
+            if (!success) {
+                errors[flow.ordinal()].increment();
+            }
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder(String.format("terminals=%d sessions=%d sessions/s=%.1f%n",
+                    terminals, sessions.sum(), sessionsPerSecond()));
+            for (Flow flow : FLOWS) {
+                LatencyHistogram latency = latency(flow);
+                if (latency.getCount() > 0) {
+                    text.append(String.format("  %-8s n=%-7d p50=%8.3fms p99=%8.3fms max=%8.3fms errors=%.2f%%%n",
+                            flow.name().toLowerCase(), latency.getCount(), latency.getPercentile(50) / 1e6,
+                            latency.getPercentile(99) / 1e6, latency.getMax() / 1e6, errorRate(flow) * 100));
+                }
+            }
+            return text.toString();
+        }
+    }
+
+    private final Bank bank;
+    private final DatasetGenerator dataset;
+    private final int accounts;
+    private final int[] weights = { 1, 4, 3, 2, 1 };
+    private long seed = 42;
+    private long thinkMillis = 0;
+
+    /**
+     * Creates a load generator for a bank holding the accounts a dataset
+     * generator made.
+     *
+     * @param bank    the shared bank; each terminal opens a session on it
+     * @param dataset the generator that made the bank's accounts, for their
+     *                numbers and PINs
+     */
+    public LoadGenerator(Bank bank, DatasetGenerator dataset) {
+        this.bank = bank;
+        this.dataset = dataset;
+        this.accounts = bank.getAccountCount();
+        if (accounts < 2 || dataset.accountNumber(accounts - 1).length() > 5) {
+            throw new IllegalArgumentException("need between 2 and 100000 accounts, not " + accounts);
+        }
+    }
+
+    /**
+     * Sets how often each flow is chosen, in proportion to its weight.
+     *
+     * @return this generator
+     */
+    public LoadGenerator mix(int login, int balance, int withdraw, int deposit, int transfer) {
+        int[] mix = { login, balance, withdraw, deposit, transfer };
+        int total = 0;
+        for (int weight : mix) {
+            if (weight < 0) {
+                throw new IllegalArgumentException("weights must not be negative");
+            }
+            total += weight;
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("at least one weight must be positive");
+        }
+        System.arraycopy(mix, 0, weights, 0, weights.length);
+        return this;
+    }
+
+    /**
+     * @param seed where the random choices of accounts, flows and amounts start
+     * @return this generator
+     */
+    public LoadGenerator seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * @param thinkMillis how long a terminal waits between customer sessions
+     * @return this generator
+     */
+    public LoadGenerator thinkMillis(long thinkMillis) {
+        this.thinkMillis = thinkMillis;
+        return this;
+    }
+
+    /**
+     * Runs the fleet at each number of terminals in turn.
+     *
+     * @param terminals      the terminal counts, e.g. 1, 2, 4, 8
+     * @param durationMillis how long each count runs for
+     * @return one step per terminal count
+     */
+    public List<Step> ramp(int[] terminals, long durationMillis) throws InterruptedException {
+        List<Step> steps = new ArrayList<>();
+        for (int count : terminals) {
+            steps.add(run(count, durationMillis));
+        }
+        return steps;
+    }
+
+    /**
+     * Runs a number of terminals at once until the time is up; sessions under
+     * way then finish.
+     *
+     * @param terminals      how many terminals run at once
+     * @param durationMillis how long they run for
+     * @return what they did
+     */
+    public Step run(int terminals, long durationMillis) throws InterruptedException {
+        Step step = new Step(terminals);
+        long start = System.nanoTime();
+        long deadline = start + durationMillis * 1_000_000;
+        Thread[] threads = new Thread[terminals];
+        for (int i = 0; i < terminals; i++) {
+            SplittableRandom random = new SplittableRandom(seed * 31 + terminals * 1009L + i);
+            threads[i] = new Thread(() -> terminal(step, random, deadline), "terminal-" + i);
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        step.nanos = System.nanoTime() - start;
+        return step;
+    }
+
+    private void terminal(Step step, SplittableRandom random, long deadline) {
+        HeadlessDisplay display = new HeadlessDisplay();
+        Controller controller = HeadlessDisplay.start(bank.openSession(), display);
+        while (System.nanoTime() < deadline) {
+            session(controller, display, step, random);
+            step.sessions.increment();
+            if (thinkMillis > 0) {
+                try {
+                    Thread.sleep(thinkMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void session(Controller controller, HeadlessDisplay display, Step step, SplittableRandom random) {
+        int index = random.nextInt(accounts);
+        long start = System.nanoTime();
+        type(controller, dataset.accountNumber(index));
+        controller.process("Ent");
+        type(controller, dataset.pin(index));
+        controller.process("Ent");
+        boolean loggedIn = display.getReply().startsWith("Accepted");
+        step.record(Flow.LOGIN, System.nanoTime() - start, loggedIn);
+        if (!loggedIn) {
+            return;
+        }
+
+        Flow flow = pick(random);
+        String amount = String.valueOf(10 * (1 + random.nextInt(10)));
+        start = System.nanoTime();
+        String success;
+        switch (flow) {
+            case BALANCE:
+                controller.process("Bal");
+                success = "Your balance is";
+                break;
+            case WITHDRAW:
+                controller.process("Bal");
+                type(controller, amount);
+                controller.process("W/D");
+                success = "Withdrawal successful";
+                break;
+            case DEPOSIT:
+                type(controller, amount);
+                controller.process("Dep");
+                success = "Deposit successful";
+                break;
+            case TRANSFER:
+                int recipient = (index + 1 + random.nextInt(accounts - 1)) % accounts;
+                controller.process("Send Money");
+                type(controller, dataset.accountNumber(recipient));
+                controller.process("Ent");
+                type(controller, amount);
+                controller.process("Ent");
+                success = "Transfer successful";
+                break;
+            default:
+                success = null;
+        }
+        if (success != null) {
+            step.record(flow, System.nanoTime() - start, display.getReply().startsWith(success));
+        }
+        controller.process("Fin");
+    }
+
+    private Flow pick(SplittableRandom random) {
+        int total = 0;
+        for (int weight : weights) {
+            total += weight;
+        }
+        int choice = random.nextInt(total);
+        for (Flow flow : FLOWS) {
+            choice -= weights[flow.ordinal()];
+            if (choice < 0) {
+                return flow;
+            }
+        }
+        return Flow.LOGIN;
+    }
+
+    private static void type(Controller controller, String digits) {
+        for (int i = 0; i < digits.length(); i++) {
+            controller.process(String.valueOf(digits.charAt(i)));
+        }
+    }
+
+    /**
+     * Generates a dataset in a temporary directory, opens a bank on it and
+     * ramps the fleet up, printing each step.
+     *
+     * @param args accounts, then optionally comma-separated terminal counts,
+     *             seconds per step, login:balance:withdraw:deposit:transfer
+     *             mix, store (memory or csv) and seed
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.err.println("usage: LoadGenerator <accounts> [terminals,...] [secondsPerStep] "
+                    + "[login:balance:withdraw:deposit:transfer] [memory|csv] [seed]");
+            System.exit(2);
+        }
+        int accounts = Integer.parseInt(args[0]);
+        String[] counts = (args.length > 1 ? args[1] : "1,2,4,8,16").split(",");
+        int[] terminals = new int[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            terminals[i] = Integer.parseInt(counts[i]);
+        }
+        long seconds = args.length > 2 ? Long.parseLong(args[2]) : 10;
+        String store = args.length > 4 ? args[4] : "memory";
+        long seed = args.length > 5 ? Long.parseLong(args[5]) : 42;
+
+        Debug.setLevel(Debug.Level.OFF);
+        Path dir = Files.createTempDirectory("atm-load");
+        try {
+            DatasetGenerator dataset = new DatasetGenerator(accounts, 0).seed(seed);
+            LoadGenerator generator = new LoadGenerator(openBank(dataset, dir, store), dataset).seed(seed);
+            if (args.length > 3) {
+                String[] mix = args[3].split(":");
+                generator.mix(Integer.parseInt(mix[0]), Integer.parseInt(mix[1]), Integer.parseInt(mix[2]),
+                        Integer.parseInt(mix[3]), Integer.parseInt(mix[4]));
+            }
+            for (int count : terminals) {
+                System.out.print(generator.run(count, seconds * 1000));
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+
+    /**
+     * Generates a dataset's accounts in a directory and opens a bank on them.
+     * <p>
+     * The dataset stores its PINs encrypted, the form older account files
+     * use, and the bank replaces each with a PBKDF2 hash on the account's
+     * first login. Left to the ramp, those upgrades would compete with the
+     * logins for the hashing pool and the early steps would check mostly
+     * encrypted PINs while the later ones check hashes. Every PIN is
+     * therefore hashed here, on all processors, before the bank is opened;
+     * that costs one hash per account, so large datasets take a while unless
+     * {@code atm.pin.iterations} is lowered.
+     * </p>
+     *
+     * @param dataset the accounts to generate
+     * @param dir     an empty directory for the files
+     * @param store   "csv" to keep the accounts in the files, or "memory"
+     * @return the bank
+     */
+    static Bank openBank(DatasetGenerator dataset, Path dir, String store) throws IOException {
+        dataset.generate(dir);
+        String accountsPath = dir.resolve("accounts.csv").toString();
+        AccountStore accountStore = store.equals("csv")
+                ? new CsvAccountStore(accountsPath, dir.resolve("transactions.csv").toString())
+                : new MemoryAccountStore(AccountReader.readAccounts(accountsPath));
+        List<String[]> rows = accountStore.readAccounts();
+        rows.parallelStream().forEach(row -> row[1] = PinHasher.hash(PasswordCrypt.decryptStored(row[1])));
+        accountStore.writeAccounts(rows);
+        return new Bank(accountStore);
+    }
+
+    static void delete(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -1,6 +1,18 @@
 package com.atm;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+
+import com.atm.metrics.Metrics;
+import com.atm.metrics.MetricsServer;
+import com.atm.utils.AccountStore;
+import com.atm.utils.CsvAccountStore;
+import com.atm.utils.ShadowAccountStore;
+
 import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.scene.Scene;
 import javafx.stage.Stage;
 
 /**
@@ -20,10 +32,18 @@ import javafx.stage.Stage;
 public class Main extends Application {
 
     private Stage primaryStage; // Store the primary stage to reuse it
+    private MetricsServer metricsServer; // Only running with -Datm.metrics.port
+    private SessionRecorder recorder; // Only recording with -Datm.record
+    private ShadowAccountStore shadowStore; // Only mirroring writes with -Datm.shadow
 
     @Override
     public void start(Stage primaryStage) {
+        StartupTimer.recordJavaFxInit();
         this.primaryStage = primaryStage;
+        // Keep the black box running and dump it if anything goes wrong
+        FlightRecorder.install();
+        // Publish operation latencies and outcomes over JMX
+        Metrics.registerMBeans();
 
         // First, launch the WelcomePage
         WelcomePage welcomePage = new WelcomePage();
@@ -33,7 +53,18 @@ public class Main extends Application {
         });
 
         // Start Welcome Page (pass the primaryStage to it)
-        welcomePage.start(new Stage());
+        Stage welcomeStage = new Stage();
+        StartupTimer.begin(StartupTimer.Phase.WELCOME_PAGE);
+        welcomePage.start(welcomeStage);
+        StartupTimer.end(StartupTimer.Phase.WELCOME_PAGE);
+
+        // A startup benchmark does not wait for anyone to click "Get Started"
+        if (StartupTimer.isBenchmark()) {
+            Platform.runLater(() -> {
+                welcomeStage.close();
+                launchMainATM();
+            });
+        }
     }
 
     /**
@@ -45,14 +76,16 @@ public class Main extends Application {
      */
     private void launchMainATM() {
         // Set up debugging and print initial debugging message
-        Debug.set(true);
+        // (-Datm.debug=info, error or off prints less)
+        Debug.setLevel(Debug.parseLevel(System.getProperty("atm.debug"), Debug.Level.TRACE));
         Debug.trace("atm starting");
         Debug.trace("Main::start");
 
         // Create a Bank object for this ATM
         // The Bank constructor will automatically load existing accounts from storage
-        Bank b = new Bank();
+        Bank b = new Bank(openStore());
 
+        StartupTimer.begin(StartupTimer.Phase.UI_CONSTRUCTION);
         // Create the Model, View, and Controller objects
         Model model = new Model(b);   // The model needs the Bank object to 'talk to' the bank
         View view = new View(b);
@@ -66,10 +99,17 @@ public class Main extends Application {
         view.model = model;
         view.controller = controller;
 
+        // Serve metrics to a scraper if asked to (-Datm.metrics.port=9404)
+        startMetricsServer(b);
+        // Record the keypad for replay if asked to (-Datm.record=session.atmr)
+        startRecorder(controller);
+
         // Display the main ATM interface on the primary stage
         view.start(primaryStage); // Pass the same primaryStage to the View
         model.initialise("Welcome to the ATM");
         model.display();
+        StartupTimer.end(StartupTimer.Phase.UI_CONSTRUCTION);
+        awaitFirstFrame(primaryStage.getScene());
 
         // Application is now running
         Debug.trace("ATM running");
@@ -78,11 +118,134 @@ public class Main extends Application {
         primaryStage.setOnCloseRequest(event -> {
             // Save any pending changes before closing
             b.saveAccounts();
+            stopRecorder();
+            if (shadowStore != null) {
+                shadowStore.close();
+                Debug.info("Shadow store:%n%s", shadowStore);
+            }
             GoodbyePage goodbyePage = new GoodbyePage();
             goodbyePage.start(primaryStage); // Reuse the primaryStage for GoodbyePage
         });
     }
 
+    /**
+     * Times the first layout pulse of the ATM window, then writes the startup
+     * report; a startup benchmark exits here, failing if a phase went over
+     * its budget.
+     *
+     * @param scene the ATM scene, just shown
+     */
+    private void awaitFirstFrame(Scene scene) {
+        StartupTimer.begin(StartupTimer.Phase.FIRST_FRAME);
+        Runnable firstFrame = new Runnable() {
+            private boolean seen = false;
+
+            @Override
+            public void run() {
+                if (seen) {
+                    return;
+                }
+                seen = true;
+                StartupTimer.end(StartupTimer.Phase.FIRST_FRAME);
+                Platform.runLater(() -> scene.removePostLayoutPulseListener(this));
+                boolean withinBudget = StartupTimer.finish();
+                if (StartupTimer.isBenchmark()) {
+                    Debug.flush();
+                    Platform.exit();
+                    System.exit(withinBudget ? 0 : 1);
+                }
+            }
+        };
+        scene.addPostLayoutPulseListener(firstFrame);
+    }
+
+    /**
+     * Starts the metrics endpoint if {@code atm.metrics.port} is set, with
+     * gauges for the bank and its session.
+     *
+     * @param bank the bank to report on
+     */
+    private void startMetricsServer(Bank bank) {
+        String port = System.getProperty("atm.metrics.port");
+        if (port == null) {
+            return;
+        }
+        try {
+            File transactions = new File("transactions.csv");
+            metricsServer = new MetricsServer(System.getProperty("atm.metrics.host", "127.0.0.1"),
+                    Integer.parseInt(port))
+                    .gauge("atm_accounts", "Accounts held by the bank.", bank::getAccountCount)
+                    .gauge("atm_transaction_log_bytes", "Size of transactions.csv.", transactions::length)
+                    .gauge("atm_pin_verification_queue_depth", "PIN verifications waiting for a thread.",
+                            () -> PinVerificationService.getDefault().getQueueDepth())
+                    .gauge("atm_active_sessions", "Customers logged in.", bank::getActiveSessions);
+            if (shadowStore != null) {
+                metricsServer.gauge("atm_shadow_mismatches", "Writes the candidate store got wrong.",
+                                shadowStore::getMismatches)
+                        .gauge("atm_shadow_dropped", "Writes not mirrored because the candidate fell behind.",
+                                shadowStore::getDropped);
+            }
+            metricsServer.start();
+            Debug.info("Metrics served on port %s", metricsServer.getPort());
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Error starting metrics server: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Opens the store the bank keeps its accounts in: the CSV files in the
+     * working directory, mirrored to candidate CSV files in the directory
+     * named by {@code atm.shadow} if it is set.
+     *
+     * @return the store
+     */
+    private AccountStore openStore() {
+        String dir = System.getProperty("atm.shadow");
+        if (dir == null) {
+            return CsvAccountStore.DEFAULT;
+        }
+        File candidate = new File(dir);
+        candidate.mkdirs();
+        shadowStore = new ShadowAccountStore(CsvAccountStore.DEFAULT, new CsvAccountStore(
+                new File(candidate, "accounts.csv").getPath(), new File(candidate, "transactions.csv").getPath()));
+        Debug.info("Mirroring account writes to %s", dir);
+        return shadowStore;
+    }
+
+    /**
+     * Starts recording the controller's presses if {@code atm.record} names a
+     * file.
+     *
+     * @param controller the ATM's controller
+     */
+    private void startRecorder(Controller controller) {
+        String file = System.getProperty("atm.record");
+        if (file == null) {
+            return;
+        }
+        try {
+            recorder = new SessionRecorder(Paths.get(file));
+            recorder.attach(controller);
+            Debug.info("Recording sessions to %s", file);
+        } catch (IOException e) {
+            System.err.println("Error starting session recording: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Ends the session recording, if there is one.
+     */
+    private void stopRecorder() {
+        if (recorder == null) {
+            return;
+        }
+        try {
+            recorder.close();
+        } catch (IOException e) {
+            System.err.println("Error closing session recording: " + e.getMessage());
+        }
+    }
+
     /**
      * The main method is the entry point when launching the application from the command line.
      * <p>
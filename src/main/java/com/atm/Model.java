@@ -1,5 +1,14 @@
 package com.atm;
 
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import com.atm.metrics.KeypressTracer;
+import com.atm.utils.TimingWheel;
+
 /**
  * The Model class represents the business logic for the ATM system.
  * <p>
@@ -26,6 +35,9 @@ package com.atm;
  * <li>{@code TRANSFER_ACCOUNT}: User entering recipient's account number for transfer.</li>
  * <li>{@code TRANSFER_AMOUNT}: User entering amount to transfer.</li>
  * </ul>
+ * What each key does in each state is set once, in a table of
+ * (state, key) to transition, so every state answers every key and a key the
+ * state does not accept is refused without any checks of its own.
  * </p>
  * 
  * <p>
@@ -43,36 +55,146 @@ package com.atm;
  * </p>
  */
 public class Model {
-    /** State: Waiting for account number input */
-    final String ACCOUNT_NO = "account_no";
-    /** State: Waiting for password input */
-    final String PASSWORD = "password";
-    /**
-     * State: User successfully logged in and can perform various transactions like
-     * withdraw, deposit, etc.
-     */
-    final String LOGGED_IN = "logged_in";
-    /** State: User changing password (v3.0.2 - Bora Week 5) */
-    final String CHANGE_PASSWORD = "change_password";
-    /** State: User confirming new password (v3.0.2 - Bora Week 5) */
-    final String CONFIRM_PASSWORD = "confirm_password";
-    /**
-     * State: User selecting account type(Student, Gold, or Platinum) for new
-     * account (v3.0.4 - Bora Week 5)
-     */
-    final String SELECT_ACCOUNT_TYPE = "select_account_type";
-    /** State: User setting password for new account (v3.0.4 - Bora Week 5) */
-    final String NEW_ACCOUNT_PASSWORD = "new_account_password";
-    /** State: User confirming password for new account (v3.0.4 - Bora Week 5) */
-    final String CONFIRM_NEW_PASSWORD = "confirm_new_password";
-    /** State: User entering recipient's account number for transfer */
-    final String TRANSFER_ACCOUNT = "transfer_account";
-    /** State: User entering amount to transfer */
-    final String TRANSFER_AMOUNT = "transfer_amount";
+
+    /**
+     * The states the Model can be in. Each has the name it is traced and
+     * recorded under, and says whether the digits typed in it are a PIN.
+     */
+    enum State {
+        /** Waiting for account number input */
+        ACCOUNT_NO("account_no", false),
+        /** Waiting for password input */
+        PASSWORD("password", true),
+        /**
+         * User successfully logged in and can perform various transactions like
+         * withdraw, deposit, etc.
+         */
+        LOGGED_IN("logged_in", false),
+        /** User changing password (v3.0.2 - Bora Week 5) */
+        CHANGE_PASSWORD("change_password", true),
+        /** User confirming new password (v3.0.2 - Bora Week 5) */
+        CONFIRM_PASSWORD("confirm_password", true),
+        /**
+         * User selecting account type(Student, Gold, or Platinum) for new
+         * account (v3.0.4 - Bora Week 5)
+         */
+        SELECT_ACCOUNT_TYPE("select_account_type", false),
+        /** User setting password for new account (v3.0.4 - Bora Week 5) */
+        NEW_ACCOUNT_PASSWORD("new_account_password", true),
+        /** User confirming password for new account (v3.0.4 - Bora Week 5) */
+        CONFIRM_NEW_PASSWORD("confirm_new_password", true),
+        /** User entering recipient's account number for transfer */
+        TRANSFER_ACCOUNT("transfer_account", false),
+        /** User entering amount to transfer */
+        TRANSFER_AMOUNT("transfer_amount", false);
+
+        final String id;
+        final boolean pin;
+
+        State(String id, boolean pin) {
+            this.id = id;
+            this.pin = pin;
+        }
+    }
+
+    /**
+     * The keys of the ATM, as the Controller passes them to the Model. Every
+     * digit is the one key {@code DIGIT}; any label the ATM does not have is
+     * {@code UNKNOWN}.
+     */
+    enum Key {
+        DIGIT(), CLEAR("CLR"), ENTER("Ent"), WITHDRAW("W/D"), DEPOSIT("Dep"), BALANCE("Bal"), FINISH("Fin"),
+        CHANGE_PIN("Change PIN"), NEW_ACCOUNT("New Account"), SEND_MONEY("Send Money"), LOGOUT("Logout"),
+        UNKNOWN();
+
+        private static final Map<String, Key> byLabel = new HashMap<>();
+
+        static {
+            for (Key key : values()) {
+                for (String label : key.labels) {
+                    byLabel.put(label, key);
+                }
+            }
+            for (char digit = '0'; digit <= '9'; digit++) {
+                byLabel.put(String.valueOf(digit), DIGIT);
+            }
+        }
+
+        private final String[] labels;
+
+        Key(String... labels) {
+            this.labels = labels;
+        }
+
+        /**
+         * @param label the label of a button
+         * @return the key it is, or {@code UNKNOWN}
+         */
+        static Key of(String label) {
+            return byLabel.getOrDefault(label, UNKNOWN);
+        }
+    }
+
+    /**
+     * What the Model does when a key is pressed in a state.
+     */
+    private interface Transition {
+        void run(Model model, String label);
+    }
+
+    // (state, key) -> transition, built once; every state has every key
+    private static final Map<State, Map<Key, Transition>> transitions = new EnumMap<>(State.class);
+
+    static {
+        for (State state : State.values()) {
+            // What a key does in any state, unless the state says otherwise below
+            Map<Key, Transition> row = new EnumMap<>(Key.class);
+            row.put(Key.DIGIT, Model::appendDigit);
+            row.put(Key.CLEAR, (model, label) -> model.clear());
+            row.put(Key.ENTER, (model, label) -> { }); // No action
+            row.put(Key.NEW_ACCOUNT, (model, label) -> model.startNewAccount());
+            row.put(Key.LOGOUT, (model, label) -> model.logOut("You have been logged out"));
+            row.put(Key.UNKNOWN, Model::unknownKey);
+            for (Key key : new Key[] { Key.WITHDRAW, Key.DEPOSIT, Key.BALANCE, Key.FINISH, Key.CHANGE_PIN,
+                    Key.SEND_MONEY }) {
+                row.put(key, (model, label) -> model.reset("You are not logged in"));
+            }
+            transitions.put(state, row);
+        }
+        on(State.ACCOUNT_NO, Key.ENTER, (model, label) -> model.enterAccountNumber());
+        on(State.PASSWORD, Key.ENTER, (model, label) -> model.enterPassword());
+
+        on(State.LOGGED_IN, Key.WITHDRAW, (model, label) -> model.withdraw());
+        on(State.LOGGED_IN, Key.DEPOSIT, (model, label) -> model.deposit());
+        on(State.LOGGED_IN, Key.BALANCE, (model, label) -> model.balance());
+        on(State.LOGGED_IN, Key.FINISH, (model, label) -> model.finish());
+        on(State.LOGGED_IN, Key.CHANGE_PIN, (model, label) -> model.startPasswordChange());
+        on(State.LOGGED_IN, Key.SEND_MONEY, (model, label) -> model.startTransfer());
+
+        on(State.TRANSFER_ACCOUNT, Key.ENTER, (model, label) -> model.enterRecipient());
+        on(State.TRANSFER_AMOUNT, Key.ENTER, (model, label) -> model.enterTransferAmount());
+
+        for (State state : new State[] { State.CHANGE_PASSWORD, State.CONFIRM_PASSWORD }) {
+            on(state, Key.CLEAR, (model, label) -> model.cancelPasswordChange());
+            on(state, Key.WITHDRAW, (model, label) -> model.passwordChangePending());
+            on(state, Key.DEPOSIT, (model, label) -> model.passwordChangePending());
+            on(state, Key.BALANCE, (model, label) -> model.passwordChangePending());
+        }
+        on(State.CHANGE_PASSWORD, Key.ENTER, (model, label) -> model.enterNewPassword());
+        on(State.CONFIRM_PASSWORD, Key.ENTER, (model, label) -> model.confirmNewPassword());
+
+        on(State.SELECT_ACCOUNT_TYPE, Key.ENTER, (model, label) -> model.selectAccountType());
+        on(State.NEW_ACCOUNT_PASSWORD, Key.ENTER, (model, label) -> model.enterNewAccountPassword());
+        on(State.CONFIRM_NEW_PASSWORD, Key.ENTER, (model, label) -> model.confirmNewAccountPassword());
+    }
+
+    private static void on(State state, Key key, Transition transition) {
+        transitions.get(state).put(key, transition);
+    }
 
     // Model state variables
     /** The current state of the ATM model. */
-    String state = ACCOUNT_NO;
+    State state = State.ACCOUNT_NO;
     /** The current number entered by the user (as an integer). */
     int number = 0;
     /** The Bank object with which the ATM interacts. */
@@ -110,14 +232,29 @@ public class Model {
     }
 
     // MVC references
-    /** The View associated with this Model. */
-    public View view;
+    /** The screen this Model shows itself on: the JavaFX View or a headless display. */
+    public DisplayPort view;
     /** The Controller associated with this Model. */
     public Controller controller;
 
     /** Selected account type for new account creation */
     private String selectedAccountType;
 
+    /** Set while a PIN is checked or hashed in the background; keys are ignored until it is done. */
+    private boolean waiting = false;
+
+    /** Set while a key is handled, which may show a dialog and run other events meanwhile. */
+    private boolean inTransition = false;
+
+    /** A session that ran out while a key was handled or work awaited; looked at again after. */
+    private SessionTimeouts.Session deferredExpiry;
+
+    /** Where login outcomes are recorded; null unless a SessionRecorder is attached. */
+    SessionRecorder.Tap recording;
+
+    /** Logs the customer out when they leave the terminal, or stay too long. */
+    private SessionTimeouts timeouts = new SessionTimeouts(this::sessionExpired);
+
     /**
      * Constructs a Model instance that interacts with the specified Bank.
      *
@@ -144,13 +281,26 @@ public class Model {
      * @param message the message to be shown in the primary display.
      */
     public void initialise(String message) {
+        reset(message);
+        display();
+    }
+
+    /**
+     * Does what {@link #initialise(String)} does, except refresh the display,
+     * which a key press does once it has been handled.
+     *
+     * @param message the message to be shown in the primary display.
+     */
+    private void reset(String message) {
         display1 = ""; // Start empty
         display2 = message + "\n" +
                 "Enter your account number\n" +
                 "Followed by \"Ent\"";
         number = 0;
-        state = ACCOUNT_NO; // Direct state assignment for initialization
-        display();
+        if (state != State.ACCOUNT_NO) {
+            FlightRecorder.state(state.id, State.ACCOUNT_NO.id);
+        }
+        state = State.ACCOUNT_NO; // Direct state assignment for initialization
     }
 
     /**
@@ -162,16 +312,137 @@ public class Model {
      *
      * @param newState the new state to set.
      */
-    public void setState(String newState) {
-        if (!state.equals(newState)) {
-            String oldState = state;
+    void setState(State newState) {
+        if (state != newState) {
+            State oldState = state;
             state = newState;
-            Debug.trace("Model::setState: changed state from " + oldState + " to " + newState);
+            FlightRecorder.state(oldState.id, newState.id);
+            Debug.trace("Model::setState: changed state from %s to %s", oldState.id, newState.id);
+        }
+    }
+
+    /**
+     * Checks whether the digits typed now are a PIN: the password at login,
+     * or a new password being set or confirmed.
+     *
+     * @return {@code true} if the Model is waiting for a PIN
+     */
+    boolean isEnteringPin() {
+        return state.pin;
+    }
+
+    /**
+     * Handles a key pressed in the current state and refreshes the display.
+     * <p>
+     * The transition is looked up in a table built once for every state and
+     * key, so a key that does nothing in a state, or is refused in it, costs
+     * two array lookups like any other. The Controller of the JavaFX View and
+     * of a headless display both come through here.
+     * </p>
+     *
+     * @param key   the key pressed
+     * @param label the label of the button, for digits and unknown keys
+     */
+    synchronized void process(Key key, String label) {
+        if (waiting) {
+            Debug.trace("Model::process: busy, ignoring %s", label);
+            return;
         }
+        timeouts.touch();
+        inTransition = true;
+        try {
+            transitions.get(state).get(key).run(this, label);
+        } finally {
+            inTransition = false;
+        }
+        timeouts.touch(); // The customer was busy until now, e.g. answering a dialog
+        display();
+        recheckExpiry();
     }
 
     /**
      * Processes a numeric key press.
+     *
+     * @param label the label of the numeric key pressed
+     */
+    public void processNumber(String label) {
+        process(Key.DIGIT, label);
+    }
+
+    /**
+     * Processes the Clear button press.
+     */
+    public void processClear() {
+        process(Key.CLEAR, "CLR");
+    }
+
+    /**
+     * Processes the Enter button press.
+     */
+    public void processEnter() {
+        process(Key.ENTER, "Ent");
+    }
+
+    /**
+     * Processes a withdrawal request.
+     */
+    public void processWithdraw() {
+        process(Key.WITHDRAW, "W/D");
+    }
+
+    /**
+     * Processes a deposit request.
+     */
+    public void processDeposit() {
+        process(Key.DEPOSIT, "Dep");
+    }
+
+    /**
+     * Processes a balance inquiry.
+     */
+    public void processBalance() {
+        process(Key.BALANCE, "Bal");
+    }
+
+    /**
+     * Processes a finish request.
+     */
+    public void processFinish() {
+        process(Key.FINISH, "Fin");
+    }
+
+    /**
+     * Initiates the password change process.
+     */
+    public void processChangePassword() {
+        process(Key.CHANGE_PIN, "Change PIN");
+    }
+
+    /**
+     * Initiates the new account creation process.
+     */
+    public void processNewAccount() {
+        process(Key.NEW_ACCOUNT, "New Account");
+    }
+
+    /**
+     * Processes a money transfer request.
+     */
+    public void processSendMoney() {
+        process(Key.SEND_MONEY, "Send Money");
+    }
+
+    /**
+     * Processes an unknown key press.
+     *
+     * @param action the label of the unknown key pressed.
+     */
+    public void processUnknownKey(String action) {
+        process(Key.UNKNOWN, action);
+    }
+
+    /**
+     * Adds a digit to the number being typed.
      * <p>
      * Maintains two separate representations:
      * 1. display1 (String): Preserves leading zeros for account/password display
@@ -191,7 +462,7 @@ public class Model {
      *
      * @param label the label of the numeric key pressed
      */
-    public void processNumber(String label) {
+    private void appendDigit(String label) {
         // Only allow up to 5 digits
         if (display1.length() >= 5) {
             return;
@@ -210,465 +481,425 @@ public class Model {
         } catch (NumberFormatException e) {
             number = 0;
         }
+    }
 
-        display();
+    /**
+     * Resets the current number and clears the primary display.
+     */
+    private void clear() {
+        number = 0;
+        display1 = "";
     }
 
     /**
-     * Processes the Clear button press.
+     * Cancels a password change and returns to the logged in state.
+     */
+    private void cancelPasswordChange() {
+        setState(State.LOGGED_IN);
+        display1 = "";
+        display2 = "Password change cancelled\n" +
+                "You can continue with transactions";
+    }
+
+    /**
+     * Tells a user in the middle of changing their password to finish or
+     * cancel first.
      * <p>
-     * Resets the current number and clears the primary display, then updates the
-     * GUI.
+     * Bora Week 5 version 3.0.6: Updated to handle non-logged in states properly
+     * during password change process
      * </p>
      */
-    public void processClear() {
-        if (state.equals(CHANGE_PASSWORD) || state.equals(CONFIRM_PASSWORD)) {
-            // Cancel password change and return to logged in state
-            setState(LOGGED_IN);
-            display1 = "";
-            display2 = "Password change cancelled\n" +
-                    "You can continue with transactions";
-        } else {
-            // Reset the entered number.
-            number = 0;
-            display1 = "";
-            display(); // Refresh the GUI.
-        }
+    private void passwordChangePending() {
+        display1 = "";
+        display2 = "Please complete password change\n" +
+                "or press CLR to cancel";
     }
 
     /**
-     * Processes the Enter button press.
+     * Saves the entered number as the account number and prompts the user
+     * for a password.
      * <p>
-     * This method handles multiple behaviors depending on the current state:
-     * <ul>
-     * <li>In the {@code ACCOUNT_NO} state, it saves the entered number as the
-     * account number,
-     * resets the number, changes the state to {@code PASSWORD}, and prompts the
-     * user for a password.</li>
-     * <li>In the {@code PASSWORD} state, it saves the entered number as the
-     * password and attempts to log in.
-     * If the login is successful, the state changes to {@code LOGGED_IN} and a
-     * success message is displayed.
-     * If not, the model is re-initialized with an error message.</li>
-     * <li>In the {@code TRANSFER_ACCOUNT} state, it stores the recipient's account number and asks for the amount.</li>
-     * <li>In the {@code TRANSFER_AMOUNT} state, it processes the transfer amount.</li>
-     * <li>In the {@code LOGGED_IN} state, no action is taken.</li>
-     * </ul>
-     * </p>
-     * 
      * Week 5 - Bora - Version 3.0.1:
      * - Added empty input handling (defaults to "0")
      * - Uses display1 String value for credentials instead of number
+     * </p>
      */
-    public void processEnter() {
-        // Process the Enter action based on the current state.
-        switch (state) {
-            case ACCOUNT_NO:
-                // Save the account number as string
-                accNumber = display1.isEmpty() ? "0" : display1;
-                number = 0;
-                setState(PASSWORD);
-                display1 = "";
-                display2 = "Now enter your password\n" +
-                        "Followed by \"Ent\"";
-                break;
-
-            case PASSWORD:
-                // Save the password as string and prepare for password entry.
-                accPasswd = display1.isEmpty() ? "0" : display1;
-                number = 0;
-                display1 = "";
-                if (bank.login(accNumber, accPasswd)) {
-                    setState(LOGGED_IN);
-                    display2 = "Accepted\n" +
-                            "Now enter the transaction you require";
-                } else {
-                    initialise("Unknown account/password");
-                }
-                break;
-
-            case TRANSFER_ACCOUNT:
-                // Store recipient's account number and ask for amount
-                String recipientAccount = display1.isEmpty() ? "0" : display1;
-                if (bank.isValidAccount(recipientAccount)) {
-                    accNumber = recipientAccount; // Temporarily store recipient account
-                    setState(TRANSFER_AMOUNT);
-                    display1 = "";
-                    display2 = "Enter amount to transfer\n" +
-                            "Followed by \"Ent\"";
-                } else {
-                    display1 = "";
-                    display2 = "Invalid recipient account\n" +
-                            "Please try again";
-                }
-                break;
-            /**
-             * @Author Mertcan Week 8
-             * Added transfer amount state and process
-             */
-            case TRANSFER_AMOUNT:
-                // Process the transfer amount
-                double transferAmount = number;
-                if (transferAmount > 0) {
-                    boolean success = bank.transfer(accNumber, transferAmount);
-                    if (success) {
-                        display1 = "";
-                        display2 = "Transfer successful!\n" +
-                                "Amount: £" + transferAmount + "\n" +
-                                "To account: " + accNumber;
-                        setState(LOGGED_IN);
-                    } else {
-                        display1 = "";
-                        display2 = "Transfer failed: " + "\n" + bank.getLastMessage();
-                        setState(LOGGED_IN);
-                    }
-                } else {
-                    display1 = "";
-                    display2 = "Invalid amount\n" +
-                            "Please enter a positive amount";
-                }
-                break;
-
-            /**
-             * Week 5 - Bora - Version 3.0.2:
-             * - Added change password functionality
-             */
-            case CHANGE_PASSWORD:
-                // Store the new password and ask for confirmation
-                String newPassword = display1.isEmpty() ? "0" : display1;
-
-                if (!PasswordValidator.isValidLength(newPassword)) {
-                    display1 = "";
-                    display2 = PasswordValidator.getLengthErrorMessage() + "\n" +
-                            "Enter your new password\n" +
-                            "Followed by \"Ent\"";
-                } else {
-                    accPasswd = newPassword;
-                    setState(CONFIRM_PASSWORD);
-                    display1 = "";
-                    display2 = "Confirm your new password\n" +
-                            "Followed by \"Ent\"";
-                }
-                break;
-
-            case CONFIRM_PASSWORD:
-                // Check if the confirmation matches
-                String confirmPassword = display1.isEmpty() ? "0" : display1;
-                if (confirmPassword.equals(accPasswd)) {
-                    // Passwords match, update the password
-                    if (bank.changePassword(accNumber, accPasswd)) {
-                        setState(LOGGED_IN);
-                        display1 = "";
-                        display2 = "Password Changed Successfully!\n" +
-                                "------------------------\n" +
-                                "Your new password is now active\n" +
-                                "You can continue with transactions";
-                    } else {
-                        setState(LOGGED_IN);
-                        display1 = "";
-                        display2 = "Password Change Failed\n" +
-                                "------------------------\n" +
-                                "Please try again later or\n" +
-                                "contact support for assistance";
-                    }
-                } else {
-                    // Passwords don't match
-                    setState(CHANGE_PASSWORD);
-                    display1 = "";
-                    display2 = "Passwords do not match\n" +
-                            "Enter your new password again\n" +
-                            "Followed by \"Ent\"";
-                }
-                break;
-
-            /**
-             * Week 5 - Bora - Version 3.0.3:
-             * - Added new account creation functionality
-             */
-            case SELECT_ACCOUNT_TYPE:
-                // Process account type selection
-                String choice = display1.isEmpty() ? "0" : display1;
-                switch (choice) {
-                    case "1":
-                        selectedAccountType = AccountCreator.STUDENT_ACCOUNT;
-                        break;
-                    case "2":
-                        selectedAccountType = AccountCreator.GOLD_ACCOUNT;
-                        break;
-                    case "3":
-                        selectedAccountType = AccountCreator.PLATINUM_ACCOUNT;
-                        break;
-                    default:
-                        display1 = "";
-                        display2 = "Invalid choice. Please select:\n" +
-                                "1 - Student\n" +
-                                "2 - Gold\n" +
-                                "3 - Platinum\n" +
-                                "Enter choice followed by \"Ent\"";
-                        return;
-                }
+    private void enterAccountNumber() {
+        // Save the account number as string
+        accNumber = display1.isEmpty() ? "0" : display1;
+        bank.prefetch(accNumber); // Ready by the time the PIN is
+        number = 0;
+        setState(State.PASSWORD);
+        display1 = "";
+        display2 = "Now enter your password\n" +
+                "Followed by \"Ent\"";
+    }
 
-                setState(NEW_ACCOUNT_PASSWORD);
-                display1 = "";
-                display2 = "Enter password for new " + selectedAccountType + " account\n" +
-                        "Followed by \"Ent\"";
-                break;
+    /**
+     * Saves the entered number as the password and attempts to log in. If the
+     * login is not successful, the model is re-initialized with an error
+     * message.
+     */
+    private void enterPassword() {
+        // Save the password as string and prepare for password entry.
+        accPasswd = display1.isEmpty() ? "0" : display1;
+        number = 0;
+        display1 = "";
+        await(bank.loginAsync(accNumber, accPasswd, view::runLater), "Checking your password...",
+                this::loginFinished);
+    }
 
-            case NEW_ACCOUNT_PASSWORD:
-                // Store the new account password and ask for confirmation
-                String newAccPassword = display1.isEmpty() ? "0" : display1;
-
-                if (!PasswordValidator.isValidLength(newAccPassword)) {
-                    display1 = "";
-                    display2 = PasswordValidator.getLengthErrorMessage() + "\n" +
-                            "Enter password for new account\n" +
-                            "Followed by \"Ent\"";
-                } else {
-                    accPasswd = newAccPassword;
-                    setState(CONFIRM_NEW_PASSWORD);
-                    display1 = "";
-                    display2 = "Confirm your password\n" +
-                            "Followed by \"Ent\"";
-                }
-                break;
+    /**
+     * Shows the result of a login once the PIN has been checked. If the bank
+     * was too busy to check it, the customer is asked for it again.
+     */
+    private void loginFinished(Outcome outcome) {
+        if (recording != null) {
+            recording.login(outcome == Outcome.SUCCESS);
+        }
+        if (outcome == Outcome.SUCCESS) {
+            timeouts.start();
+            setState(State.LOGGED_IN);
+            display2 = "Accepted\n" +
+                    "Now enter the transaction you require";
+        } else if (outcome == Outcome.BUSY) {
+            display2 = "The bank is busy, please try again\n" +
+                    "Enter your password\n" +
+                    "Followed by \"Ent\"";
+        } else {
+            reset("Unknown account/password");
+        }
+    }
 
-            case CONFIRM_NEW_PASSWORD:
-                // Check if the confirmation matches
-                String confirmNewPassword = display1.isEmpty() ? "0" : display1;
-                if (confirmNewPassword.equals(accPasswd)) {
-                    // Passwords match, create the account with selected type
-                    String newAccountNumber = bank.createNewAccount(selectedAccountType, accPasswd);
-                    if (newAccountNumber != null) {
-                        initialise("Account Created Successfully!\n" +
-                                "------------------------\n" +
-                                "Your Account Number: " + newAccountNumber + "\n" +
-                                "------------------------\n" +
-                                "Please login with your new credentials");
-                    } else {
-                        initialise("Account Creation Failed\n" +
-                                "Please try again or contact support");
-                    }
-                } else {
-                    // Passwords don't match
-                    setState(NEW_ACCOUNT_PASSWORD);
-                    display1 = "";
-                    display2 = "Passwords do not match\n" +
-                            "Enter password for new account again\n" +
-                            "Followed by \"Ent\"";
-                }
-                break;
+    /**
+     * Finishes a key press with the result of slow work it started, such as
+     * checking or hashing a PIN.
+     * <p>
+     * A display without an event thread of its own simply waits. Otherwise
+     * the message is shown, keys are ignored until the work is done, and
+     * {@code then} runs on the display's thread, where the work completes.
+     * </p>
+     *
+     * @param work    the work, completing on the display's thread
+     * @param message shown while it runs
+     * @param then    finishes the key press with the result
+     */
+    private <T> void await(CompletableFuture<T> work, String message, Consumer<T> then) {
+        if (!view.hasEventThread()) {
+            then.accept(work.join());
+            return;
+        }
+        waiting = true;
+        display2 = message;
+        work.whenComplete((result, failure) -> finishWaiting(then, result, failure));
+    }
 
-            case LOGGED_IN:
-            default:
-                // No action for additional Enter presses when already logged in.
+    private synchronized <T> void finishWaiting(Consumer<T> then, T result, Throwable failure) {
+        waiting = false;
+        if (failure != null) {
+            System.err.println("ATM: " + failure);
+            logOut("Sorry, something went wrong");
+        } else {
+            then.accept(result);
         }
         display();
+        recheckExpiry();
     }
 
     /**
-     * Processes a withdrawal request.
-     * <p>
-     * If the user is logged in, attempts to withdraw the amount represented by the
-     * current number.
-     * The resulting message from the Bank is displayed. If the user is not logged
-     * in, the model
-     * is re-initialized with an error message.
-     * </p>
+     * Stores the recipient's account number and asks for the amount.
+     */
+    private void enterRecipient() {
+        String recipientAccount = display1.isEmpty() ? "0" : display1;
+        if (bank.isValidAccount(recipientAccount)) {
+            accNumber = recipientAccount; // Temporarily store recipient account
+            setState(State.TRANSFER_AMOUNT);
+            display1 = "";
+            display2 = "Enter amount to transfer\n" +
+                    "Followed by \"Ent\"";
+        } else {
+            display1 = "";
+            display2 = "Invalid recipient account\n" +
+                    "Please try again";
+        }
+    }
+
+    /**
+     * Processes the transfer amount.
      * <p>
-     * Made by Gur Week 4 - version 1.0.1.
-     * Bora Week 5 version 3.0.6: Updated to handle non-logged in states properly
-     * during password change process
-     * 
-     * @Mertcan week 7 - version 3.0.7
-     * Modified with switch-case added !hasCheckedBalance boolean to prompt to user before withdrawing.
+     * @Author Mertcan Week 8
+     * Added transfer amount state and process
      * </p>
      */
-    public void processWithdraw() {
-        switch (state) {
-            case LOGGED_IN -> {
-                if (!hasCheckedBalance) { // Check if the user has seen the balance
-                    display2 = "Please check your balance before withdrawing.\nPress 'Bal' to view balance.";
-                    display();
-                } else {
-                    boolean success = bank.withdraw(number);
-                    display2 = bank.getLastMessage(); // Display the message from the Bank.
-                    number = 0;
-                    display1 = "";
-                    display(); // Refresh the GUI.
-                }
-            }
-
-            case CHANGE_PASSWORD, CONFIRM_PASSWORD -> {
-                // User is in password change flow, show appropriate message
+    private void enterTransferAmount() {
+        double transferAmount = number;
+        if (transferAmount > 0) {
+            boolean success = bank.transfer(accNumber, transferAmount, view::confirmTransfer);
+            if (success) {
                 display1 = "";
-                display2 = "Please complete password change\n" + "or press CLR to cancel";
-                display();
+                display2 = "Transfer successful!\n" +
+                        "Amount: £" + transferAmount + "\n" +
+                        "To account: " + accNumber;
+                setState(State.LOGGED_IN);
+            } else {
+                display1 = "";
+                display2 = "Transfer failed: " + "\n" + bank.getLastMessage();
+                setState(State.LOGGED_IN);
             }
-
-            default -> initialise("You are not logged in");
+        } else {
+            display1 = "";
+            display2 = "Invalid amount\n" +
+                    "Please enter a positive amount";
         }
     }
 
     /**
-     * Processes a deposit request.
+     * Stores the new password and asks for confirmation.
      * <p>
-     * If the user is logged in, attempts to deposit the amount represented by the
-     * current number.
-     * The resulting status message from the Bank is then displayed. If the user is
-     * not logged in,
-     * the model is re-initialized with an error message.
-     * </p>
-     * <p>
-     * Made by Gur Week 4 - version 1.0.1.
-     * Bora Week 5 version 3.0.6: Updated to handle non-logged in states properly
-     * during password change process
+     * Week 5 - Bora - Version 3.0.2:
+     * - Added change password functionality
      * </p>
      */
-    public void processDeposit() {
-        if (state.equals(LOGGED_IN)) {
-            bank.deposit(number);
+    private void enterNewPassword() {
+        String newPassword = display1.isEmpty() ? "0" : display1;
+
+        if (!PasswordValidator.isValidLength(newPassword)) {
             display1 = "";
-            display2 = bank.getLastMessage();
-            number = 0;
-        } else if (state.equals(CHANGE_PASSWORD) || state.equals(CONFIRM_PASSWORD)) {
-            // User is in password change flow, show appropriate message
+            display2 = PasswordValidator.getLengthErrorMessage() + "\n" +
+                    "Enter your new password\n" +
+                    "Followed by \"Ent\"";
+        } else {
+            accPasswd = newPassword;
+            setState(State.CONFIRM_PASSWORD);
+            display1 = "";
+            display2 = "Confirm your new password\n" +
+                    "Followed by \"Ent\"";
+        }
+    }
+
+    /**
+     * Checks the confirmation matches and, if it does, changes the password.
+     */
+    private void confirmNewPassword() {
+        String confirmPassword = display1.isEmpty() ? "0" : display1;
+        if (confirmPassword.equals(accPasswd)) {
+            // Passwords match, update the password
             display1 = "";
-            display2 = "Please complete password change\n" +
-                    "or press CLR to cancel";
-            display();
+            await(bank.changePasswordAsync(accNumber, accPasswd, view::runLater), "Changing your password...",
+                    this::passwordChanged);
         } else {
-            initialise("You are not logged in");
+            // Passwords don't match
+            setState(State.CHANGE_PASSWORD);
+            display1 = "";
+            display2 = "Passwords do not match\n" +
+                    "Enter your new password again\n" +
+                    "Followed by \"Ent\"";
         }
-        display(); // Refresh the GUI.
     }
 
     /**
-     * Processes a balance inquiry.
+     * Processes the account type selection.
      * <p>
-     * If the user is logged in, retrieves the current account balance from the Bank
-     * and updates the display.
-     * If not, the model is re-initialized with an error message.
-     * </p>
-     * <p>
-     * Made by Gur Week 4 - version 1.0.1.
-     * Bora Week 5 version 3.0.6: Updated to handle non-logged in states properly
-     * during password change process
-     * @Mertcan week 7 - version 3.0.7:
-     * Added hassCheckedBalance boolean inside the function and state to true after checking balance. 
+     * Week 5 - Bora - Version 3.0.3:
+     * - Added new account creation functionality
      * </p>
      */
-    public void processBalance() {
-        if (state.equals(LOGGED_IN)) {
-            number = 0;
-            display2 = "Your balance is: " + bank.getBalance();
-            hasCheckedBalance = true; // @Mertcan week 7: Set flag to true once balance is checked 
-        } else if (state.equals(CHANGE_PASSWORD) || state.equals(CONFIRM_PASSWORD)) {
-            // User is in password change flow, show appropriate message
+    private void selectAccountType() {
+        String choice = display1.isEmpty() ? "0" : display1;
+        switch (choice) {
+            case "1":
+                selectedAccountType = AccountCreator.STUDENT_ACCOUNT;
+                break;
+            case "2":
+                selectedAccountType = AccountCreator.GOLD_ACCOUNT;
+                break;
+            case "3":
+                selectedAccountType = AccountCreator.PLATINUM_ACCOUNT;
+                break;
+            default:
+                display1 = "";
+                display2 = "Invalid choice. Please select:\n" +
+                        "1 - Student\n" +
+                        "2 - Gold\n" +
+                        "3 - Platinum\n" +
+                        "Enter choice followed by \"Ent\"";
+                return;
+        }
+
+        setState(State.NEW_ACCOUNT_PASSWORD);
+        display1 = "";
+        display2 = "Enter password for new " + selectedAccountType + " account\n" +
+                "Followed by \"Ent\"";
+    }
+
+    /**
+     * Stores the new account password and asks for confirmation.
+     */
+    private void enterNewAccountPassword() {
+        String newAccPassword = display1.isEmpty() ? "0" : display1;
+
+        if (!PasswordValidator.isValidLength(newAccPassword)) {
             display1 = "";
-            display2 = "Please complete password change\n" +
-                    "or press CLR to cancel";
-            display();
+            display2 = PasswordValidator.getLengthErrorMessage() + "\n" +
+                    "Enter password for new account\n" +
+                    "Followed by \"Ent\"";
         } else {
-            initialise("You are not logged in");
+            accPasswd = newAccPassword;
+            setState(State.CONFIRM_NEW_PASSWORD);
+            display1 = "";
+            display2 = "Confirm your password\n" +
+                    "Followed by \"Ent\"";
         }
-        display(); // Refresh the GUI.
     }
 
     /**
-     * Processes a finish request.
-     * <p>
-     * If the user is logged in, this method logs out the user by resetting the
-     * state to
-     * {@code ACCOUNT_NO}, clearing the current number, updating the display, and
-     * instructing
-     * the Bank to log out. If the user is not logged in, the model is
-     * re-initialized with an error message.
-     * </p>
+     * Checks the confirmation matches and, if it does, creates the account
+     * with the selected type.
      */
-    public void processFinish() {
-        if (state.equals(LOGGED_IN)) {
-            setState(ACCOUNT_NO);
-            number = 0;
-            display2 = "Welcome: Enter your account number";
-            bank.logout();
+    private void confirmNewAccountPassword() {
+        String confirmNewPassword = display1.isEmpty() ? "0" : display1;
+        if (confirmNewPassword.equals(accPasswd)) {
+            // Passwords match, create the account with selected type
+            display1 = "";
+            await(bank.createNewAccountAsync(selectedAccountType, accPasswd, view::runLater),
+                    "Creating your account...", this::accountCreated);
         } else {
-            initialise("You are not logged in");
+            // Passwords don't match
+            setState(State.NEW_ACCOUNT_PASSWORD);
+            display1 = "";
+            display2 = "Passwords do not match\n" +
+                    "Enter password for new account again\n" +
+                    "Followed by \"Ent\"";
         }
-        display(); // Refresh the GUI.
     }
 
     /**
-     * Processes an unknown key press.
+     * Shows the result of a password change once the new PIN has been hashed.
+     */
+    private void passwordChanged(Outcome outcome) {
+        setState(State.LOGGED_IN);
+        display1 = "";
+        if (outcome == Outcome.SUCCESS) {
+            display2 = "Password Changed Successfully!\n" +
+                    "------------------------\n" +
+                    "Your new password is now active\n" +
+                    "You can continue with transactions";
+        } else {
+            display2 = "Password Change Failed\n" +
+                    "------------------------\n" +
+                    "Please try again later or\n" +
+                    "contact support for assistance";
+        }
+    }
+
+    /**
+     * Shows the result of creating an account once its PIN has been hashed.
+     */
+    private void accountCreated(String newAccountNumber) {
+        if (newAccountNumber != null) {
+            reset("Account Created Successfully!\n" +
+                    "------------------------\n" +
+                    "Your Account Number: " + newAccountNumber + "\n" +
+                    "------------------------\n" +
+                    "Please login with your new credentials");
+        } else {
+            reset("Account Creation Failed\n" +
+                    "Please try again or contact support");
+        }
+    }
+
+    /**
+     * Attempts to withdraw the amount represented by the current number, and
+     * shows the resulting message from the Bank.
      * <p>
-     * When an unrecognized key is pressed, this method logs the error, resets the
-     * model,
-     * and displays an "Invalid command" message.
+     * Made by Gur Week 4 - version 1.0.1.
+     * @Mertcan week 7 - version 3.0.7
+     * Added !hasCheckedBalance boolean to prompt to user before withdrawing.
      * </p>
-     *
-     * @param action the label of the unknown key pressed.
      */
-    public void processUnknownKey(String action) {
-        Debug.trace("Model::processUnknownKey: unknown button \"" + action + "\", re-initialising");
-        initialise("Invalid command");
-        display();
+    private void withdraw() {
+        if (!hasCheckedBalance) { // Check if the user has seen the balance
+            display2 = "Please check your balance before withdrawing.\nPress 'Bal' to view balance.";
+        } else {
+            bank.withdraw(number);
+            display2 = bank.getLastMessage(); // Display the message from the Bank.
+            number = 0;
+            display1 = "";
+        }
     }
 
     /**
-     * Updates the View with the current state of the Model.
+     * Attempts to deposit the amount represented by the current number, and
+     * shows the resulting status message from the Bank.
      * <p>
-     * This method calls the {@code update} method on the associated {@link View} to
-     * refresh
-     * the displayed information.
+     * Made by Gur Week 4 - version 1.0.1.
      * </p>
      */
-    public void display() {
-        Debug.trace("Model::display");
-        view.update();
+    private void deposit() {
+        bank.deposit(number);
+        display1 = "";
+        display2 = bank.getLastMessage();
+        number = 0;
     }
 
     /**
-     * Initiates the password change process.
+     * Shows the current account balance from the Bank.
      * <p>
-     * If the user is logged in, this method transitions to the change password
-     * state
-     * and prompts the user to enter a new password. If not logged in, it displays
-     * an error message.
+     * Made by Gur Week 4 - version 1.0.1.
+     * @Mertcan week 7 - version 3.0.7:
+     * Added hassCheckedBalance boolean inside the function and state to true after checking balance.
      * </p>
-     * Week 5 - Made by Bora - Version 3.0.2: Added change password functionality
      */
-    public void processChangePassword() {
-        if (state.equals(LOGGED_IN)) {
-            setState(CHANGE_PASSWORD);
-            number = 0;
-            display1 = "";
-            display2 = "Enter your new password\n" +
-                    "Followed by \"Ent\"";
-        } else {
-            initialise("You are not logged in");
-        }
-        display();
+    private void balance() {
+        number = 0;
+        display2 = "Your balance is: " + bank.getBalance();
+        hasCheckedBalance = true; // @Mertcan week 7: Set flag to true once balance is checked
     }
 
     /**
-     * Initiates the new account creation process.
+     * Logs out the user by resetting the state to {@code ACCOUNT_NO},
+     * clearing the current number and instructing the Bank to log out.
+     */
+    private void finish() {
+        setState(State.ACCOUNT_NO);
+        number = 0;
+        display2 = "Welcome: Enter your account number";
+        bank.logout();
+        timeouts.stop();
+    }
+
+    /**
+     * Moves to the change password state and prompts the user to enter a new
+     * password.
      * <p>
-     * This method transitions to the account type selection state and prompts
-     * the user to select an account type (Student, Gold, or Platinum).
+     * Week 5 - Made by Bora - Version 3.0.2: Added change password functionality
      * </p>
+     */
+    private void startPasswordChange() {
+        setState(State.CHANGE_PASSWORD);
+        number = 0;
+        display1 = "";
+        display2 = "Enter your new password\n" +
+                "Followed by \"Ent\"";
+    }
+
+    /**
+     * Shows the consent screen and, if the user agrees, moves to the account
+     * type selection state.
      * <p>
      * Bora Week 5 version 3.0.4: Updated to start with account type selection
      * </p>
      */
-    public void processNewAccount() {
+    private void startNewAccount() {
         // Show consent screen first
-        if (!ConsentScreen.showAndWaitForConsent()) {
+        if (!view.confirmConsent()) {
             // User did not consent, return to initial state
-            initialise("Account creation cancelled: Terms not accepted");
+            reset("Account creation cancelled: Terms not accepted");
             return;
         }
-        
+
         // User consented, proceed with account type selection
-        setState(SELECT_ACCOUNT_TYPE);
+        setState(State.SELECT_ACCOUNT_TYPE);
         number = 0;
         display1 = "";
         display2 = "Select account type:\n" +
@@ -676,30 +907,110 @@ public class Model {
                 "2 - Gold\n" +
                 "3 - Platinum\n" +
                 "Enter choice followed by \"Ent\"";
-        display();
     }
 
     /**
-     * Processes a money transfer request.
+     * Prompts the user to enter the recipient's account number.
+     */
+    private void startTransfer() {
+        display1 = "";
+        display2 = "Enter recipient's account number\n" +
+                "Followed by \"Ent\"";
+        setState(State.TRANSFER_ACCOUNT);
+    }
+
+    /**
+     * Logs the unrecognized key, resets the model and displays an "Invalid
+     * command" message.
+     *
+     * @param action the label of the unknown key pressed.
+     */
+    private void unknownKey(String action) {
+        Debug.trace("Model::processUnknownKey: unknown button \"%s\", re-initialising", action);
+        reset("Invalid command");
+    }
+
+    /**
+     * Updates the View with the current state of the Model.
      * <p>
-     * If the user is logged in, this method initiates the money transfer process.
-     * It prompts the user to enter the recipient's account number and the amount to transfer.
+     * This method passes the two display areas to the associated
+     * {@link DisplayPort} to refresh the displayed information.
      * </p>
      */
-    public void processSendMoney() {
-        if (state.equals(LOGGED_IN)) {
-            display1 = "";
-            display2 = "Enter recipient's account number\n" +
-                    "Followed by \"Ent\"";
-            setState(TRANSFER_ACCOUNT);
-        } else {
-            initialise("You are not logged in");
-        }
-        display();
+    public void display() {
+        KeypressTracer.enter(KeypressTracer.Stage.DISPLAY);
+        Debug.trace("Model::display");
+        view.display(display1, display2);
+        KeypressTracer.exit();
     }
 
+    /**
+     * Processes the Logout button press.
+     */
     void processLogout() {
+        process(Key.LOGOUT, "Logout");
+    }
+
+    /**
+     * Logs the customer out and returns to the start screen, from any state.
+     *
+     * @param message why, shown above the prompt for an account number
+     */
+    private void logOut(String message) {
         hasCheckedBalance = false; // @Mertcan week 7: Reset the flag on logout
-        throw new UnsupportedOperationException("Not supported yet.");
+        bank.logout();
+        timeouts.stop();
+        reset(message);
+    }
+
+    /**
+     * Times this terminal's sessions on the given wheel instead of the shared
+     * one, with the given timeouts.
+     *
+     * @param wheel          the wheel
+     * @param idleMillis     the longest time between keypresses, 0 for no limit
+     * @param absoluteMillis the longest session, 0 for no limit
+     */
+    synchronized void timeSessions(TimingWheel wheel, long idleMillis, long absoluteMillis) {
+        timeouts.stop();
+        timeouts = new SessionTimeouts(wheel, idleMillis, absoluteMillis, this::sessionExpired);
+    }
+
+    /**
+     * Called on the timeout thread when a session runs out; the logout runs
+     * on the display's thread.
+     */
+    private void sessionExpired(SessionTimeouts.Session session, SessionTimeouts.Reason reason) {
+        view.runLater(() -> expire(session, reason));
+    }
+
+    private synchronized void expire(SessionTimeouts.Session session, SessionTimeouts.Reason reason) {
+        if (!timeouts.isCurrent(session)) {
+            return; // logged out, or logged in again, since it ran out
+        }
+        if (inTransition || waiting) {
+            // E.g. delivered by the nested event loop of the transfer dialog: logging out now
+            // would pull the account from under the transfer
+            deferredExpiry = session;
+            return;
+        }
+        Debug.trace("Model::expire: session ended, %s", reason);
+        logOut(reason == SessionTimeouts.Reason.IDLE
+                ? "Session timed out: no activity"
+                : "Session ended: time limit reached");
+        display();
+    }
+
+    /**
+     * Looks again at a session that ran out while it could not be logged
+     * out; an idle one has been touched since, so only a session past its
+     * time limit ends now.
+     */
+    private void recheckExpiry() {
+        SessionTimeouts.Session session = deferredExpiry;
+        if (session != null) {
+            deferredExpiry = null;
+            timeouts.recheck(session);
+        }
     }
 }
@@ -0,0 +1,23 @@
+package com.atm;
+
+/**
+ * How a bank operation ended.
+ * <p>
+ * Set alongside the human-readable message so callers such as the metrics
+ * can tell failures apart without parsing text.
+ * </p>
+ */
+public enum Outcome {
+    /** The operation was carried out */
+    SUCCESS,
+    /** The amount was over the account's withdrawal or deposit limit */
+    LIMIT_EXCEEDED,
+    /** The balance would have dropped below the overdraft limit */
+    OVERDRAFT,
+    /** The account involved does not exist */
+    NOT_FOUND,
+    /** Refused for any other reason, e.g. not logged in or an invalid amount */
+    REJECTED,
+    /** Not attempted because the bank was too busy; it may be tried again */
+    BUSY
+}
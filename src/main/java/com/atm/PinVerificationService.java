@@ -0,0 +1,174 @@
+package com.atm;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.atm.utils.PasswordCrypt;
+import com.atm.utils.PinHasher;
+
+/**
+ * Checks entered PINs against stored credentials on a dedicated, bounded
+ * worker pool.
+ * <p>
+ * PBKDF2 is deliberately slow, so running it on the JavaFX thread would stall
+ * the screen and running it on an unbounded number of threads would let a
+ * burst of logins starve everything else. All hashing goes through this
+ * service instead. The pool size and queue length are read from the
+ * {@code atm.pin.threads} and {@code atm.pin.queue} system properties; when
+ * the queue is full a verification is refused rather than queued without
+ * limit.
+ * </p>
+ * <p>
+ * Credentials that are not yet hashed (accounts loaded from older files) are
+ * decrypted only at this point, compared in constant time, and never reach
+ * the pool.
+ * </p>
+ */
+public class PinVerificationService {
+
+    /** Default number of hashing threads. */
+    private static final int DEFAULT_THREADS = Math.min(4, Runtime.getRuntime().availableProcessors());
+    /** Default number of verifications that may wait for a thread. */
+    private static final int DEFAULT_QUEUE = 64;
+
+    private static final PinVerificationService defaultService = new PinVerificationService(
+            Integer.getInteger("atm.pin.threads", DEFAULT_THREADS),
+            Integer.getInteger("atm.pin.queue", DEFAULT_QUEUE));
+
+    private final ThreadPoolExecutor pool;
+
+    /**
+     * Creates a service with its own hashing pool.
+     *
+     * @param threads       the number of hashing threads
+     * @param queueCapacity how many requests may wait for a free thread
+     */
+    public PinVerificationService(int threads, int queueCapacity) {
+        AtomicInteger count = new AtomicInteger();
+        pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread t = new Thread(r, "pin-verifier-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    /**
+     * Returns the shared service used by {@link Bank}.
+     *
+     * @return the default service
+     */
+    public static PinVerificationService getDefault() {
+        return defaultService;
+    }
+
+    /**
+     * Starts checking a PIN against a stored credential.
+     *
+     * @param pin    the PIN entered by the user
+     * @param stored the stored credential (a PBKDF2 hash, an encrypted PIN or
+     *               a plain PIN)
+     * @return a future that completes with {@code true} if the PIN matches; it
+     *         completes exceptionally with {@link RejectedExecutionException}
+     *         if the pool is saturated, or with the decryption's exception if
+     *         an encrypted PIN cannot be read
+     */
+    public CompletableFuture<Boolean> verifyAsync(String pin, String stored) {
+        if (!PinHasher.isHashed(stored)) {
+            try {
+                String expected = PasswordCrypt.isEncrypted(stored) ? PasswordCrypt.decryptStored(stored) : stored;
+                return CompletableFuture.completedFuture(PinHasher.constantTimeEquals(pin, expected));
+            } catch (RuntimeException e) {
+                // A corrupt ciphertext, or one under a key that is gone
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        try {
+            return CompletableFuture.supplyAsync(() -> PinHasher.verify(pin, stored), pool);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Checks a PIN and waits for the answer. The display's thread should use
+     * {@link #verifyAsync(String, String)} instead, as {@link Bank#loginAsync}
+     * does.
+     * <p>
+     * A verification refused because the pool is saturated counts as a
+     * mismatch.
+     * </p>
+     *
+     * @param pin    the PIN entered by the user
+     * @param stored the stored credential
+     * @return {@code true} if the PIN matches
+     */
+    public boolean verify(String pin, String stored) {
+        try {
+            return verifyAsync(pin, stored).join();
+        } catch (CompletionException e) {
+            Debug.trace("PinVerificationService::verify: %s", e.getCause());
+            return false;
+        }
+    }
+
+    /**
+     * Starts hashing a new PIN on the pool.
+     *
+     * @param pin the plain text PIN
+     * @return a future that completes with the stored form of the hash; it
+     *         completes exceptionally with {@link RejectedExecutionException}
+     *         if the pool is saturated
+     */
+    public CompletableFuture<String> hashAsync(String pin) {
+        try {
+            return CompletableFuture.supplyAsync(() -> PinHasher.hash(pin), pool);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Hashes a new PIN on the pool and waits for the result. The display's
+     * thread should use {@link #hashAsync(String)} instead.
+     * <p>
+     * Like a verification, a hash is refused when the pool is saturated; it
+     * is never run on the caller's thread instead.
+     * </p>
+     *
+     * @param pin the plain text PIN
+     * @return the stored form of the hash
+     * @throws RejectedExecutionException if the pool is saturated
+     */
+    public String hash(String pin) {
+        try {
+            return hashAsync(pin).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Returns how many verifications are waiting for a hashing thread.
+     *
+     * @return the current queue length
+     */
+    public int getQueueDepth() {
+        return pool.getQueue().size();
+    }
+
+    /**
+     * Stops the hashing threads once queued work has finished.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+}
@@ -75,4 +75,14 @@ public class PlatinumAccount extends BankAccount {
     protected double getCommission() {
         return 0.7;
     }
+
+    /**
+     * Returns the type name stored for Platinum accounts.
+     *
+     * @return {@code "platinum"}.
+     */
+    @Override
+    public String getAccountType() {
+        return "platinum";
+    }
 }
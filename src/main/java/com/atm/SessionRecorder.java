@@ -0,0 +1,312 @@
+package com.atm;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records the buttons pressed on one or more terminals to a compact binary
+ * file, for {@link SessionReplayer} to play back.
+ * <p>
+ * {@link #attach(Controller)} gives a controller its own recorded session;
+ * from then on every label passed to {@link Controller#process(String)} is
+ * written with the time since the session's previous press. Digits typed
+ * while the Model is asking for a PIN are written as {@link #PIN_DIGIT}, never
+ * as their value, so a recording holds no credentials. Instead, each login is
+ * followed by whether the PIN was accepted, so that a replay can type a wrong
+ * PIN where the customer did.
+ * </p>
+ * <p>
+ * The file is a header (magic, version, start time in epoch milliseconds)
+ * followed by one record per press: the microseconds since the session's
+ * previous press (or, for its first press, since the recording started) and
+ * the session number as unsigned varints, then one byte for the label. Labels
+ * outside {@link #LABELS} are written as {@code 0xFF} and the label itself.
+ * A login is written as a record with no delay, the code {@code 0x7E} and one
+ * byte, 1 if the PIN was accepted. A press costs three to six bytes. Records
+ * go through a buffer, so recording is cheap enough to leave on;
+ * {@link #close()} flushes it.
+ * </p>
+ */
+public class SessionRecorder implements Closeable {
+
+    /** The labels of the keypad, each written as its index */
+    static final String[] LABELS = { "0", "1", "2", "3", "4", "5", "6", "7", "8", "9", "CLR", "Ent", "W/D",
+            "Dep", "Bal", "Fin", "Change PIN", "New Account", "Send Money", "Logout" };
+    /** Stands for a digit of a PIN in a recording */
+    public static final String PIN_DIGIT = "#";
+
+    private static final int MAGIC = 0x41544D52; // "ATMR"
+    private static final int VERSION = 2; // 1 had no logins
+    private static final int LOGIN_CODE = 0x7E;
+    private static final int PIN_CODE = 0x7F;
+    private static final int OTHER_CODE = 0xFF;
+    private static final Map<String, Integer> CODES = new LinkedHashMap<>();
+
+    static {
+        for (int i = 0; i < LABELS.length; i++) {
+            CODES.put(LABELS[i], i);
+        }
+    }
+
+    /**
+     * One recorded press.
+     */
+    public static class Press {
+        /** The label pressed, or {@link #PIN_DIGIT} for a digit of a PIN */
+        public final String label;
+        /** Nanoseconds since the session's previous press */
+        public final long delayNanos;
+
+        Press(String label, long delayNanos) {
+            this.label = label;
+            this.delayNanos = delayNanos;
+        }
+    }
+
+    /**
+     * The presses of one recorded terminal, in order.
+     */
+    public static class Session {
+        /** The session's number in the recording */
+        public final int id;
+        /** Its presses; the first delay is from the start of the recording */
+        public final List<Press> presses = new ArrayList<>();
+        /** Whether the PIN was accepted, for each login in order */
+        public final List<Boolean> logins = new ArrayList<>();
+
+        Session(int id) {
+            this.id = id;
+        }
+    }
+
+    /**
+     * The recording side of one attached controller.
+     */
+    class Tap {
+        private final int id;
+        private long lastNanos = startNanos;
+
+        Tap(int id) {
+            this.id = id;
+        }
+
+        void press(String label, boolean pin) {
+            long now = System.nanoTime();
+            long delayMicros = (now - lastNanos) / 1000;
+            lastNanos = now;
+            write(delayMicros, id, label, pin);
+        }
+
+        void login(boolean accepted) {
+            writeLogin(id, accepted);
+        }
+    }
+
+    private final DataOutputStream out;
+    private final long startNanos = System.nanoTime();
+    private int sessions = 0;
+    private boolean failed = false;
+    private boolean closed = false;
+
+    /**
+     * Starts a recording in a new file, replacing any file already there.
+     *
+     * @param file where the recording is written
+     * @throws IOException if the file cannot be created
+     */
+    public SessionRecorder(Path file) throws IOException {
+        this(Files.newOutputStream(file));
+    }
+
+    /**
+     * Starts a recording on a stream.
+     *
+     * @param stream where the recording is written; closed by {@link #close()}
+     * @throws IOException if the header cannot be written
+     */
+    public SessionRecorder(OutputStream stream) throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(stream, 8192));
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeLong(System.currentTimeMillis());
+    }
+
+    /**
+     * Records every button the controller processes from now on, as a new
+     * session.
+     *
+     * @param controller the controller of one terminal
+     */
+    public synchronized void attach(Controller controller) {
+        Tap tap = new Tap(sessions++);
+        controller.recording = tap;
+        controller.model.recording = tap;
+    }
+
+    /**
+     * @return the number of sessions attached so far
+     */
+    public synchronized int getSessionCount() {
+        return sessions;
+    }
+
+    private synchronized void write(long delayMicros, int id, String label, boolean pin) {
+        if (failed || closed) {
+            return;
+        }
+        try {
+            writeVarint(delayMicros);
+            writeVarint(id);
+            Integer code = CODES.get(label);
+            if (pin) {
+                out.writeByte(PIN_CODE);
+            } else if (code != null) {
+                out.writeByte(code);
+            } else {
+                out.writeByte(OTHER_CODE);
+                out.writeUTF(label);
+            }
+        } catch (IOException e) {
+            // Recording must never stop the ATM; give up on the recording instead
+            System.err.println("Error recording session: " + e.getMessage());
+            failed = true;
+        }
+    }
+
+    private synchronized void writeLogin(int id, boolean accepted) {
+        if (failed || closed) {
+            return;
+        }
+        try {
+            writeVarint(0);
+            writeVarint(id);
+            out.writeByte(LOGIN_CODE);
+            out.writeByte(accepted ? 1 : 0);
+        } catch (IOException e) {
+            System.err.println("Error recording session: " + e.getMessage());
+            failed = true;
+        }
+    }
+
+    private void writeVarint(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    /**
+     * Flushes the recording to its file.
+     */
+    public synchronized void flush() throws IOException {
+        if (!closed) {
+            out.flush();
+        }
+    }
+
+    /**
+     * Ends the recording; later presses are not recorded.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            out.close();
+        }
+    }
+
+    /**
+     * Reads a recording back, split into its sessions.
+     *
+     * @param file a file written by a recorder
+     * @return the sessions, ordered by session number
+     * @throws IOException if the file cannot be read or is not a recording
+     */
+    public static List<Session> read(Path file) throws IOException {
+        try (InputStream stream = Files.newInputStream(file)) {
+            return read(stream);
+        }
+    }
+
+    /**
+     * Reads a recording back from a stream, split into its sessions; a
+     * recording cut short ends at its last whole press.
+     *
+     * @param stream a recording
+     * @return the sessions, ordered by session number
+     * @throws IOException if the stream cannot be read or is not a recording
+     */
+    public static List<Session> read(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+        int magic = in.readInt();
+        int version = in.readUnsignedByte();
+        if (magic != MAGIC || version < 1 || version > VERSION) {
+            throw new IOException("Not a session recording");
+        }
+        in.readLong(); // start time, for people reading the file
+        List<Session> sessions = new ArrayList<>();
+        while (true) {
+            long delayMicros;
+            int id;
+            String label = null;
+            Boolean accepted = null; // Set for a login rather than a press
+            try {
+                int first = in.read();
+                if (first < 0) {
+                    break;
+                }
+                delayMicros = readVarint(in, first);
+                id = (int) readVarint(in, in.readUnsignedByte());
+                int code = in.readUnsignedByte();
+                if (code == LOGIN_CODE && version > 1) {
+                    accepted = in.readUnsignedByte() == 1;
+                } else if (code == PIN_CODE) {
+                    label = PIN_DIGIT;
+                } else if (code == OTHER_CODE) {
+                    label = in.readUTF();
+                } else if (code < LABELS.length) {
+                    label = LABELS[code];
+                } else {
+                    throw new IOException("Unknown label code " + code);
+                }
+            } catch (EOFException e) {
+                break;
+            }
+            while (sessions.size() <= id) {
+                sessions.add(new Session(sessions.size()));
+            }
+            if (accepted != null) {
+                sessions.get(id).logins.add(accepted);
+            } else {
+                sessions.get(id).presses.add(new Press(label, delayMicros * 1000));
+            }
+        }
+        return sessions;
+    }
+
+    private static long readVarint(DataInputStream in, int first) throws IOException {
+        long value = first & 0x7F;
+        int shift = 7;
+        int b = first;
+        while ((b & 0x80) != 0) {
+            b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        }
+        return value;
+    }
+}
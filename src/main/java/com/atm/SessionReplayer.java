@@ -0,0 +1,331 @@
+package com.atm;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import com.atm.metrics.LatencyHistogram;
+import com.atm.utils.DatasetGenerator;
+
+/**
+ * Plays recorded terminal sessions back against a bank and measures how
+ * long each press takes to process.
+ * <p>
+ * Every session in a {@link SessionRecorder} recording runs on its own
+ * thread, with its own {@link Bank#openSession() bank session},
+ * {@link HeadlessDisplay} and {@link Controller}, so the recorded overlap
+ * between terminals is kept. At recorded speed each press waits until its
+ * recorded time; as fast as possible the presses follow each other directly.
+ * Recordings do not hold PINs: at the first {@link SessionRecorder#PIN_DIGIT}
+ * of a run the replayer types a whole PIN, and the rest of the run only keeps
+ * the timing. At login it types the PIN of the account entered if the
+ * recorded login was accepted, and otherwise a wrong PIN of the recorded
+ * length. A new PIN for the logged-in account is its own PIN, so later
+ * logins still work; any other PIN is {@link #UNKNOWN_PIN}.
+ * </p>
+ * <p>
+ * The result holds a latency histogram per label. {@link Result#toCsv()}
+ * saves it, and {@link Result#compare(Map)} sets it against a saved run of
+ * another build, label by label.
+ * </p>
+ */
+public class SessionReplayer {
+
+    /** Typed for a PIN of no known account, e.g. of an account being created */
+    static final String UNKNOWN_PIN = "00000";
+
+    /**
+     * The latencies of one replay.
+     */
+    public static class Result {
+        private final Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+        private final LongAdder presses = new LongAdder();
+        private long nanos;
+
+        void record(String label, long took) {
+            latencies.computeIfAbsent(label, l -> new LatencyHistogram()).record(took);
+            presses.increment();
+        }
+
+        /**
+         * @param label a button label, or {@link SessionRecorder#PIN_DIGIT} for PIN digits
+         * @return the latencies of that label, or {@code null} if it was never pressed
+         */
+        public LatencyHistogram latency(String label) {
+            return latencies.get(label);
+        }
+
+        /**
+         * @return the presses replayed
+         */
+        public long getPresses() {
+            return presses.sum();
+        }
+
+        /**
+         * @return how long the replay took, in nanoseconds
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * @return one line per label, {@code label,count,p50,p90,p99,max} in
+         *         nanoseconds, under a header line
+         */
+        public String toCsv() {
+            StringBuilder csv = new StringBuilder("label,count,p50,p90,p99,max\n");
+            for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(latencies).entrySet()) {
+                LatencyHistogram latency = entry.getValue();
+                csv.append(String.format("%s,%d,%d,%d,%d,%d%n", entry.getKey(), latency.getCount(),
+                        latency.getPercentile(50), latency.getPercentile(90), latency.getPercentile(99),
+                        latency.getMax()));
+            }
+            return csv.toString();
+        }
+
+        /**
+         * Compares this replay with a baseline, label by label.
+         *
+         * @param baseline a saved replay, as read by {@link #readCsv(Path)}
+         * @return a table of the baseline and current p50 and p99 in
+         *         milliseconds, with the change in p99
+         */
+        public String compare(Map<String, long[]> baseline) {
+            StringBuilder text = new StringBuilder(String.format("%-12s %10s %10s %10s %10s %8s%n",
+                    "label", "base p50", "p50", "base p99", "p99", "p99"));
+            for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(latencies).entrySet()) {
+                long[] base = baseline.get(entry.getKey());
+                LatencyHistogram latency = entry.getValue();
+                long p50 = latency.getPercentile(50);
+                long p99 = latency.getPercentile(99);
+                if (base == null) {
+                    text.append(String.format("%-12s %10s %10.3f %10s %10.3f %8s%n",
+                            entry.getKey(), "-", p50 / 1e6, "-", p99 / 1e6, "new"));
+                } else {
+                    text.append(String.format("%-12s %10.3f %10.3f %10.3f %10.3f %+7.1f%%%n", entry.getKey(),
+                            base[1] / 1e6, p50 / 1e6, base[3] / 1e6, p99 / 1e6,
+                            base[3] == 0 ? 0 : (p99 - base[3]) * 100.0 / base[3]));
+                }
+            }
+            return text.toString();
+        }
+
+        /**
+         * Reads a replay saved with {@link #toCsv()}.
+         *
+         * @param file the saved replay
+         * @return the count, p50, p90, p99 and max of each label
+         */
+        public static Map<String, long[]> readCsv(Path file) throws IOException {
+            Map<String, long[]> rows = new LinkedHashMap<>();
+            List<String> lines = Files.readAllLines(file);
+            for (String line : lines.subList(1, lines.size())) {
+                String[] parts = line.split(",");
+                long[] values = new long[parts.length - 1];
+                for (int i = 1; i < parts.length; i++) {
+                    values[i - 1] = Long.parseLong(parts[i]);
+                }
+                rows.put(parts[0], values);
+            }
+            return rows;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder(String.format("presses=%d took=%.1fs%n",
+                    presses.sum(), nanos / 1e9));
+            for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(latencies).entrySet()) {
+                LatencyHistogram latency = entry.getValue();
+                text.append(String.format("  %-12s n=%-7d p50=%8.3fms p99=%8.3fms max=%8.3fms%n", entry.getKey(),
+                        latency.getCount(), latency.getPercentile(50) / 1e6, latency.getPercentile(99) / 1e6,
+                        latency.getMax() / 1e6));
+            }
+            return text.toString();
+        }
+    }
+
+    private final List<SessionRecorder.Session> sessions;
+    private final Function<String, String> pins;
+    private boolean recordedSpeed = false;
+
+    /**
+     * Creates a replayer for a recording.
+     *
+     * @param sessions the recorded sessions
+     * @param pins     gives the PIN of an account number, or {@code null} if
+     *                 there is no such account
+     */
+    public SessionReplayer(List<SessionRecorder.Session> sessions, Function<String, String> pins) {
+        this.sessions = sessions;
+        this.pins = pins;
+    }
+
+    /**
+     * @param recordedSpeed {@code true} to wait for each press's recorded
+     *                      time, {@code false} (the default) to replay as fast
+     *                      as possible
+     * @return this replayer
+     */
+    public SessionReplayer recordedSpeed(boolean recordedSpeed) {
+        this.recordedSpeed = recordedSpeed;
+        return this;
+    }
+
+    /**
+     * Replays every session against a bank.
+     *
+     * @param bank the bank; each session opens its own session on it
+     * @return the latencies of the presses
+     */
+    public Result replay(Bank bank) throws InterruptedException {
+        Result result = new Result();
+        long start = System.nanoTime();
+        Thread[] threads = new Thread[sessions.size()];
+        for (int i = 0; i < threads.length; i++) {
+            SessionRecorder.Session session = sessions.get(i);
+            threads[i] = new Thread(() -> replay(session, bank.openSession(), result, start),
+                    "replay-" + session.id);
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        result.nanos = System.nanoTime() - start;
+        return result;
+    }
+
+    private void replay(SessionRecorder.Session session, Bank bank, Result result, long start) {
+        HeadlessDisplay display = new HeadlessDisplay();
+        Controller controller = HeadlessDisplay.start(bank, display);
+        long due = start;
+        boolean inPin = false;
+        int logins = 0;
+        List<SessionRecorder.Press> presses = session.presses;
+        for (int p = 0; p < presses.size(); p++) {
+            SessionRecorder.Press press = presses.get(p);
+            due += press.delayNanos;
+            if (recordedSpeed) {
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    try {
+                        Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+            if (!press.label.equals(SessionRecorder.PIN_DIGIT)) {
+                inPin = false;
+                if (press.label.equals("Ent") && controller.model.state == Model.State.PASSWORD) {
+                    logins++; // Logs in, so the next PIN is of the next login
+                }
+                long begin = System.nanoTime();
+                controller.process(press.label);
+                result.record(press.label, System.nanoTime() - begin);
+            } else if (!inPin) {
+                inPin = true;
+                String pin;
+                if (controller.model.state == Model.State.PASSWORD) {
+                    // Recordings made before logins were recorded only hold accepted ones
+                    boolean accepted = logins >= session.logins.size() || session.logins.get(logins);
+                    pin = pin(controller.model.accNumber);
+                    if (!accepted) {
+                        pin = wrongPin(pin, runLength(presses, p));
+                    }
+                } else if (bank.loggedIn()) {
+                    pin = pin(bank.getCurrentAccount().getAccNumber());
+                } else {
+                    pin = UNKNOWN_PIN;
+                }
+                for (int i = 0; i < pin.length(); i++) {
+                    long begin = System.nanoTime();
+                    controller.process(String.valueOf(pin.charAt(i)));
+                    result.record(SessionRecorder.PIN_DIGIT, System.nanoTime() - begin);
+                }
+            }
+        }
+    }
+
+    private String pin(String accNumber) {
+        String pin = accNumber == null || accNumber.isEmpty() ? null : pins.apply(accNumber);
+        return pin != null ? pin : UNKNOWN_PIN;
+    }
+
+    /**
+     * Returns a PIN of the given length that is not the right one.
+     *
+     * @param pin    the right PIN
+     * @param length the number of digits to type
+     * @return the wrong PIN
+     */
+    static String wrongPin(String pin, int length) {
+        if (pin.length() != length) {
+            return "0".repeat(length);
+        }
+        char last = pin.charAt(length - 1);
+        return pin.substring(0, length - 1) + (char) ('0' + (last - '0' + 1) % 10);
+    }
+
+    private static int runLength(List<SessionRecorder.Press> presses, int from) {
+        int end = from;
+        while (end < presses.size() && presses.get(end).label.equals(SessionRecorder.PIN_DIGIT)) {
+            end++;
+        }
+        return end - from;
+    }
+
+    /**
+     * Replays a recording against the accounts of a generated dataset and
+     * prints the latencies, optionally against a baseline.
+     *
+     * @param args recording, accounts, then optionally seed, "fast" or
+     *             "recorded", a baseline CSV to compare with and a CSV to
+     *             save this run to
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.err.println("usage: SessionReplayer <recording> <accounts> [seed] [fast|recorded] "
+                    + "[baseline.csv] [result.csv]");
+            System.exit(2);
+        }
+        List<SessionRecorder.Session> sessions = SessionRecorder.read(Paths.get(args[0]));
+        int accounts = Integer.parseInt(args[1]);
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+        boolean recorded = args.length > 3 && args[3].equals("recorded");
+
+        Debug.setLevel(Debug.Level.OFF);
+        Path dir = Files.createTempDirectory("atm-replay");
+        try {
+            DatasetGenerator dataset = new DatasetGenerator(accounts, 0).seed(seed);
+            Bank bank = LoadGenerator.openBank(dataset, dir, "memory");
+            Function<String, String> pins = accNumber -> {
+                try {
+                    int index = Integer.parseInt(accNumber);
+                    return index < accounts ? dataset.pin(index) : null;
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            };
+            Result result = new SessionReplayer(sessions, pins).recordedSpeed(recorded).replay(bank);
+            System.out.print(result);
+            if (args.length > 4) {
+                System.out.print(result.compare(Result.readCsv(Paths.get(args[4]))));
+            }
+            if (args.length > 5) {
+                Files.writeString(Paths.get(args[5]), result.toCsv());
+            }
+        } finally {
+            LoadGenerator.delete(dir);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.atm;
+
+import java.util.function.BiConsumer;
+
+import com.atm.utils.TimingWheel;
+
+/**
+ * Logs a terminal's customer out when they stop pressing keys, or when they
+ * have been logged in too long.
+ * <p>
+ * A session may be idle for {@code -Datm.session.idleSeconds} (120 by
+ * default) and last {@code -Datm.session.maxSeconds} (900 by default); 0
+ * turns either off. Every terminal in the JVM shares one
+ * {@link TimingWheel}, ticking every {@value #TICK_MILLIS} ms on its own
+ * thread. A keypress only notes the time: each session has one timeout on
+ * the wheel, set for the earlier of its two deadlines as they were when it
+ * was scheduled. When it fires it looks again, and if the customer has
+ * pressed a key since, it is set again for what is left. So keypresses never
+ * touch the wheel, and a session costs one reschedule per idle period.
+ * </p>
+ */
+public class SessionTimeouts {
+
+    static final long TICK_MILLIS = 100;
+
+    /**
+     * Why a session was ended.
+     */
+    public enum Reason {
+        /** No key was pressed for the idle timeout */
+        IDLE,
+        /** The session reached its longest allowed length */
+        ABSOLUTE
+    }
+
+    /**
+     * One logged in session. Compared by identity, so a timeout for a session
+     * that has since ended is recognised and ignored.
+     */
+    final class Session {
+        private final long started;
+        private volatile long lastPress;
+        private TimingWheel.Timeout timeout;
+
+        private Session(long now) {
+            started = now;
+            lastPress = now;
+        }
+    }
+
+    private static TimingWheel shared;
+
+    private final TimingWheel wheel;
+    private final long idleMillis;
+    private final long absoluteMillis;
+    private final BiConsumer<Session, Reason> expired;
+    private volatile Session current;
+
+    /**
+     * Times sessions on the shared wheel with the configured timeouts.
+     *
+     * @param expired told, on the wheel's thread, which session ran out and why
+     */
+    SessionTimeouts(BiConsumer<Session, Reason> expired) {
+        this(null, Long.getLong("atm.session.idleSeconds", 120) * 1000,
+                Long.getLong("atm.session.maxSeconds", 900) * 1000, expired);
+    }
+
+    /**
+     * Times sessions on the given wheel.
+     *
+     * @param wheel          the wheel, or {@code null} for the shared one
+     * @param idleMillis     the longest time between keypresses, 0 for no limit
+     * @param absoluteMillis the longest session, 0 for no limit
+     * @param expired        told, on the wheel's thread, which session ran out and why
+     */
+    SessionTimeouts(TimingWheel wheel, long idleMillis, long absoluteMillis, BiConsumer<Session, Reason> expired) {
+        this.idleMillis = idleMillis;
+        this.absoluteMillis = absoluteMillis;
+        this.expired = expired;
+        this.wheel = wheel != null || !isEnabled() ? wheel : sharedWheel();
+    }
+
+    private static synchronized TimingWheel sharedWheel() {
+        if (shared == null) {
+            // 1024 buckets of 100 ms: a turn of the wheel is about 100 seconds
+            shared = new TimingWheel(TICK_MILLIS, 1024).start("session-timeouts");
+        }
+        return shared;
+    }
+
+    /**
+     * @return {@code true} if sessions are limited at all
+     */
+    boolean isEnabled() {
+        return idleMillis > 0 || absoluteMillis > 0;
+    }
+
+    /**
+     * Starts timing a newly logged in session, ending any earlier one.
+     */
+    synchronized void start() {
+        stop();
+        if (isEnabled()) {
+            Session session = new Session(wheel.now());
+            current = session;
+            schedule(session, session.started);
+        }
+    }
+
+    /**
+     * Notes a keypress. Only a write of the time: the wheel is not touched.
+     */
+    void touch() {
+        Session session = current;
+        if (session != null) {
+            session.lastPress = wheel.now();
+        }
+    }
+
+    /**
+     * Stops timing the current session, if there is one.
+     */
+    synchronized void stop() {
+        if (current != null) {
+            if (current.timeout != null) {
+                current.timeout.cancel();
+            }
+            current = null;
+        }
+    }
+
+    /**
+     * @param session a session passed to the expiry callback
+     * @return {@code true} if it is still the session being timed
+     */
+    boolean isCurrent(Session session) {
+        return session == current;
+    }
+
+    /**
+     * Checks a session again whose expiry could not be acted on, e.g. because
+     * the terminal was in the middle of a transfer. It ends now if it is
+     * still out of time, and is otherwise timed again.
+     *
+     * @param session a session passed to the expiry callback
+     */
+    void recheck(Session session) {
+        check(session);
+    }
+
+    private void schedule(Session session, long now) {
+        long due = deadline(session);
+        session.timeout = wheel.schedule(() -> check(session), due - now);
+    }
+
+    private long deadline(Session session) {
+        long due = Long.MAX_VALUE;
+        if (idleMillis > 0) {
+            due = session.lastPress + idleMillis;
+        }
+        if (absoluteMillis > 0) {
+            due = Math.min(due, session.started + absoluteMillis);
+        }
+        return due;
+    }
+
+    private void check(Session session) {
+        Reason reason;
+        synchronized (this) {
+            if (session != current) {
+                return;
+            }
+            long now = wheel.now();
+            if (absoluteMillis > 0 && now >= session.started + absoluteMillis) {
+                reason = Reason.ABSOLUTE;
+            } else if (idleMillis > 0 && now >= session.lastPress + idleMillis) {
+                reason = Reason.IDLE;
+            } else {
+                // A key was pressed since this was scheduled
+                schedule(session, now);
+                return;
+            }
+        }
+        expired.accept(session, reason);
+    }
+}
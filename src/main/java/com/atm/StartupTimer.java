@@ -0,0 +1,205 @@
+package com.atm;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Times each phase of starting the ATM and reports against budgets.
+ * <p>
+ * {@code Main} and {@code Bank} mark phases with {@link #begin(Phase)} and
+ * {@link #end(Phase)}; when the first frame has been laid out,
+ * {@link #finish()} writes the timings as JSON to
+ * {@code startup-report.json} (or the {@code atm.startup.report} system
+ * property). A phase may be given a budget in milliseconds with
+ * {@code -Datm.startup.budget.<phase>}, e.g.
+ * {@code -Datm.startup.budget.account_read=200}; the report flags phases over
+ * their budget. With {@code -Datm.startup.benchmark=true} the welcome page is
+ * dismissed as soon as it is shown and the ATM exits after the first frame,
+ * with status 1 if any phase went over budget, so a script can catch startup
+ * regressions.
+ * </p>
+ * <p>
+ * Phases are marked from the JavaFX thread, so no synchronization is used.
+ * Each phase keeps its first timing, so a bank built after startup, e.g. a
+ * replayed session or a load test, does not overwrite the startup report.
+ * </p>
+ */
+public class StartupTimer {
+
+    /**
+     * The phases of startup, in order.
+     */
+    public enum Phase {
+        /** From JVM start to {@code Main.start}, including JavaFX start-up */
+        JAVAFX_INIT,
+        /** Building and showing the welcome page */
+        WELCOME_PAGE,
+        /** Reading and parsing accounts.csv */
+        ACCOUNT_READ,
+        /** Creating the account objects */
+        ACCOUNT_BUILD,
+        /** Building the Model, View and scene, including loading images */
+        UI_CONSTRUCTION,
+        /** From showing the window to its first layout pulse */
+        FIRST_FRAME
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private static final long[] startNanos = new long[PHASES.length];
+    private static final long[] tookNanos = new long[PHASES.length];
+    private static final boolean[] done = new boolean[PHASES.length];
+
+    private StartupTimer() {
+    }
+
+    /**
+     * Starts timing a phase.
+     *
+     * @param phase the phase
+     */
+    public static void begin(Phase phase) {
+        if (done[phase.ordinal()]) {
+            return;
+        }
+        startNanos[phase.ordinal()] = System.nanoTime();
+    }
+
+    /**
+     * Stops timing a phase started with {@link #begin(Phase)}.
+     *
+     * @param phase the phase
+     */
+    public static void end(Phase phase) {
+        if (done[phase.ordinal()]) {
+            return;
+        }
+        record(phase, System.nanoTime() - startNanos[phase.ordinal()]);
+    }
+
+    /**
+     * Records a phase timed some other way, unless it has been recorded
+     * already.
+     *
+     * @param phase the phase
+     * @param nanos how long it took
+     */
+    public static void record(Phase phase, long nanos) {
+        if (done[phase.ordinal()]) {
+            return;
+        }
+        tookNanos[phase.ordinal()] = nanos;
+        done[phase.ordinal()] = true;
+    }
+
+    /**
+     * Records {@link Phase#JAVAFX_INIT} as the JVM's uptime. Call first thing
+     * in {@code Application.start}.
+     */
+    public static void recordJavaFxInit() {
+        record(Phase.JAVAFX_INIT, ManagementFactory.getRuntimeMXBean().getUptime() * 1_000_000);
+    }
+
+    /**
+     * Returns how long a phase took.
+     *
+     * @param phase the phase
+     * @return milliseconds, or -1 if it has not finished
+     */
+    public static double millis(Phase phase) {
+        return done[phase.ordinal()] ? tookNanos[phase.ordinal()] / 1e6 : -1;
+    }
+
+    /**
+     * Returns the budget of a phase, from {@code atm.startup.budget.<phase>}.
+     *
+     * @param phase the phase
+     * @return milliseconds, or -1 if it has no budget
+     */
+    public static long budgetMillis(Phase phase) {
+        return Long.getLong("atm.startup.budget." + phase.name().toLowerCase(Locale.ROOT), -1);
+    }
+
+    /**
+     * @return the finished phases that took longer than their budget
+     */
+    public static List<Phase> overBudget() {
+        List<Phase> over = new ArrayList<>();
+        for (Phase phase : PHASES) {
+            long budget = budgetMillis(phase);
+            if (budget >= 0 && millis(phase) > budget) {
+                over.add(phase);
+            }
+        }
+        return over;
+    }
+
+    /**
+     * @return {@code true} if {@code atm.startup.benchmark} is set
+     */
+    public static boolean isBenchmark() {
+        return Boolean.getBoolean("atm.startup.benchmark");
+    }
+
+    /**
+     * Renders the timings as a JSON object, with the same phase names and
+     * number format in every locale.
+     *
+     * @return the report
+     */
+    public static String toJson() {
+        StringBuilder json = new StringBuilder("{\n  \"phases\": [\n");
+        double total = 0;
+        for (Phase phase : PHASES) {
+            double millis = millis(phase);
+            long budget = budgetMillis(phase);
+            total += Math.max(0, millis);
+            json.append(String.format(Locale.ROOT, "    {\"phase\": \"%s\", \"millis\": %.3f, \"budgetMillis\": %d, \"overBudget\": %b}%s%n",
+                    phase.name().toLowerCase(Locale.ROOT), millis, budget, budget >= 0 && millis > budget,
+                    phase.ordinal() < PHASES.length - 1 ? "," : ""));
+        }
+        json.append(String.format(Locale.ROOT, "  ],%n  \"totalMillis\": %.3f,%n  \"withinBudget\": %b%n}%n",
+                total, overBudget().isEmpty()));
+        return json.toString();
+    }
+
+    /**
+     * Writes the report and logs any phase over budget.
+     *
+     * @return {@code true} if every phase was within its budget
+     */
+    public static boolean finish() {
+        Path report = Paths.get(System.getProperty("atm.startup.report", "startup-report.json"));
+        try {
+            Files.write(report, toJson().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            System.err.println("Error writing startup report: " + e.getMessage());
+        }
+        List<Phase> over = overBudget();
+        for (Phase phase : over) {
+            System.err.printf("Startup phase %s took %.1fms, over its budget of %dms%n",
+                    phase, millis(phase), budgetMillis(phase));
+        }
+        Debug.info("StartupTimer: first frame after %sms, report in %s",
+                ManagementFactory.getRuntimeMXBean().getUptime(), report);
+        return over.isEmpty();
+    }
+
+    /**
+     * Forgets every timing.
+     */
+    static void reset() {
+        for (Phase phase : PHASES) {
+            startNanos[phase.ordinal()] = 0;
+            tookNanos[phase.ordinal()] = 0;
+            done[phase.ordinal()] = false;
+        }
+    }
+}
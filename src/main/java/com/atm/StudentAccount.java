@@ -79,4 +79,14 @@ public class StudentAccount extends BankAccount {
     protected int getDepositLimit() {
         return 250;
     }
+
+    /**
+     * Returns the type name stored for Student accounts.
+     *
+     * @return {@code "student"}.
+     */
+    @Override
+    public String getAccountType() {
+        return "student";
+    }
 }
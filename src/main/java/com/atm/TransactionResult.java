@@ -0,0 +1,142 @@
+package com.atm;
+
+/**
+ * How a withdrawal or deposit on an account ended: the outcome, the balance
+ * it left and whether that balance is low.
+ * <p>
+ * Accounts return these instead of building a message on every call. The
+ * message a customer sees is only put together by {@link #getMessage()},
+ * when a screen or a trace asks for it, from the values kept here. Results
+ * never change once made, so they can be handed to other threads.
+ * </p>
+ */
+public final class TransactionResult {
+
+    /**
+     * The operation a result is for.
+     */
+    public enum Kind {
+        WITHDRAWAL, DEPOSIT
+    }
+
+    /** Balances below this are reported as low. */
+    static final double LOW_BALANCE_THRESHOLD = 10.0;
+
+    private final Kind kind;
+    private final Outcome outcome;
+    private final int amount;
+    private final double balance;
+    private final double commission;
+    private final int limit;
+
+    /**
+     * @param kind       the operation
+     * @param outcome    how it ended
+     * @param amount     the amount asked for
+     * @param balance    the balance afterwards
+     * @param commission the account's commission
+     * @param limit      the account's limit for this operation
+     */
+    TransactionResult(Kind kind, Outcome outcome, int amount, double balance, double commission, int limit) {
+        this.kind = kind;
+        this.outcome = outcome;
+        this.amount = amount;
+        this.balance = balance;
+        this.commission = commission;
+        this.limit = limit;
+    }
+
+    /**
+     * @return the operation
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return how the operation ended
+     */
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * @return {@code true} if the operation was carried out
+     */
+    public boolean isSuccess() {
+        return outcome == Outcome.SUCCESS;
+    }
+
+    /**
+     * @return the amount asked for
+     */
+    public int getAmount() {
+        return amount;
+    }
+
+    /**
+     * @return the balance after the operation, the same as before if it was refused
+     */
+    public double getBalance() {
+        return balance;
+    }
+
+    /**
+     * @return {@code true} if the operation was carried out and left the
+     *         balance below {@value #LOW_BALANCE_THRESHOLD}
+     */
+    public boolean isLowBalance() {
+        return isSuccess() && balance < LOW_BALANCE_THRESHOLD;
+    }
+
+    /**
+     * @return the low balance warning, or {@code null} if the balance is not low
+     * @Author Mertcan Week 8
+     */
+    public String getWarning() {
+        if (!isLowBalance()) {
+            return null;
+        }
+        return "WARNING: LOW BALANCE ALERT!\nYour balance (£" + balance + ") is below the threshold of £"
+                + LOW_BALANCE_THRESHOLD + ".\nPlease deposit funds to avoid potential issues.";
+    }
+
+    /**
+     * Puts together the message the account used to keep after each
+     * operation.
+     *
+     * @return the status message, with the low balance warning if there is one
+     */
+    public String getMessage() {
+        String message;
+        if (kind == Kind.WITHDRAWAL) {
+            switch (outcome) {
+                case SUCCESS:
+                    message = "Withdrawn £" + amount + ". New balance: £" + balance;
+                    break;
+                case OVERDRAFT:
+                    return "Withdrawal would exceed overdraft limit. Current balance: £" + balance;
+                default:
+                    return "Invalid withdrawal amount.\nMust be positive and no more than £" + limit + ".";
+            }
+        } else {
+            if (outcome == Outcome.SUCCESS) {
+                message = "Deposited £" + amount + " (Commission: £" + commission + "). New balance: £" + balance;
+            } else if (outcome == Outcome.LIMIT_EXCEEDED || amount <= 0) {
+                return "Invalid deposit amount.\nMust be positive and no more than £" + limit + ".";
+            } else {
+                return "Deposit amount too low after commission deduction.";
+            }
+        }
+        return isLowBalance() ? message + "\n\n" + getWarning() : message;
+    }
+
+    /**
+     * @return the same as {@link #getMessage()}, so traces render it only
+     *         when they are printed
+     */
+    @Override
+    public String toString() {
+        return getMessage();
+    }
+}
@@ -2,8 +2,9 @@ package com.atm;
 
 import java.util.List;
 
-import com.atm.utils.TransactionReader;
+import com.atm.metrics.KeypressTracer;
 
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.geometry.Insets;
 import javafx.scene.Group;
@@ -19,6 +20,7 @@ import javafx.scene.image.ImageView;
 import javafx.scene.layout.Pane;
 import javafx.scene.layout.StackPane;
 import javafx.scene.layout.TilePane;
+import javafx.scene.text.Font;
 import javafx.scene.text.Text;
 import javafx.stage.Stage; // Import for sound
 
@@ -42,9 +44,11 @@ import javafx.stage.Stage; // Import for sound
  * 4. Gur week 7:
  * - Implementing sound effects when pressing buttons.
  * - Welcome prompt.
+ * 5. The View is the JavaFX {@link DisplayPort}; the Model and Controller
+ * only use it through that interface, so they also run headless.
  */
 
-class View {
+class View implements DisplayPort {
 
     private Bank bank;
     public Model model;
@@ -226,6 +230,18 @@ class View {
         extraPad.setLayoutY(150);
         basePane.getChildren().add(extraPad);
 
+        // Live keypress latencies for debugging (-Datm.trace.overlay=true)
+        if (Boolean.getBoolean("atm.trace.overlay")) {
+            Text traceOverlay = new Text();
+            traceOverlay.setId("traceOverlay");
+            traceOverlay.setFont(Font.font("Monospaced", 10));
+            traceOverlay.setLayoutX(10);
+            traceOverlay.setLayoutY(20);
+            traceOverlay.setMouseTransparent(true);
+            basePane.getChildren().add(traceOverlay);
+            KeypressTracer.setListener(() -> traceOverlay.setText(KeypressTracer.summary()));
+        }
+
         // 8) Wrap basePane inside a Group so we can scale the entire ATM layout
         Group atmGroup = new Group(basePane);
 
@@ -241,6 +257,8 @@ class View {
         // 10) Create the Scene
         Scene scene = new Scene(root, DESIGN_WIDTH, DESIGN_HEIGHT);
         scene.getStylesheets().add("atm.css");
+        // A keypress trace ends once the screen it changed has been laid out
+        scene.addPostLayoutPulseListener(KeypressTracer::endPending);
 
         // 11) Scale the atmGroup whenever the window is resized (uniform scale)
         root.widthProperty().addListener((obs, oldV, newV) -> scaleAll(atmGroup, scene.getWidth(), scene.getHeight()));
@@ -272,15 +290,21 @@ class View {
      */
     public void buttonClicked(ActionEvent event) {
         Button b = (Button) event.getSource();
+        KeypressTracer.begin(b.getText()); // trace this press until the screen is laid out
+        KeypressTracer.enter(KeypressTracer.Stage.BEEP);
         Sound.beep(); // make a beep sound when button is clicked - Gur version 05.04.2025
+        KeypressTracer.exit();
         // Play the sound when any button is clicked
         // buttonClickSound.play();
 
         if (controller != null) {
             String label = b.getText();
-            Debug.trace("View::buttonClicked: label = " + label);
+            Debug.trace("View::buttonClicked: label = %s", label);
+            KeypressTracer.enter(KeypressTracer.Stage.CONTROLLER);
             controller.process(label);
+            KeypressTracer.exit();
         }
+        KeypressTracer.awaitRender();
     }
 
     /**
@@ -300,7 +324,7 @@ class View {
         // Ensure account is not null before proceeding
         if (account != null) {
             // Get the last transaction for this account
-            List<String> transactions = TransactionReader.getTransactions(account.getAccNumber(), 1);
+            List<String> transactions = bank.getRecentTransactions(1);
 
             if (!transactions.isEmpty()) {
                 String[] fields = transactions.get(0).split(",");
@@ -377,6 +401,43 @@ class View {
         }
     }
 
+    @Override
+    public void display(String message, String reply) {
+        Debug.trace("View::display");
+        this.message.setText(message);
+        this.reply.setText(reply);
+    }
+
+    @Override
+    public void showError(String message) {
+        showErrorMessage(message);
+    }
+
+    @Override
+    public boolean confirm(String message) {
+        return showConfirmationDialog(message);
+    }
+
+    @Override
+    public boolean confirmConsent() {
+        return ConsentScreen.showAndWaitForConsent();
+    }
+
+    @Override
+    public boolean confirmTransfer(String recipientAccNumber, double amount) {
+        return TransferConfirmationScreen.showAndWaitForConfirmation(recipientAccNumber, amount);
+    }
+
+    @Override
+    public void runLater(Runnable action) {
+        Platform.runLater(action);
+    }
+
+    @Override
+    public boolean hasEventThread() {
+        return true;
+    }
+
     /**
      * Displays an error message to the user.
      * 
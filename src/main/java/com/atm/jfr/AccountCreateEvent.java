@@ -0,0 +1,14 @@
+package com.atm.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Creation of a new account.
+ */
+@Name("com.atm.AccountCreate")
+@Label("Account Creation")
+@Description("Creation of a new account")
+public class AccountCreateEvent extends AtmEvent {
+}
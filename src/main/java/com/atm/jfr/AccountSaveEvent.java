@@ -0,0 +1,14 @@
+package com.atm.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Rewrite of the accounts file.
+ */
+@Name("com.atm.AccountSave")
+@Label("Account Save")
+@Description("Rewrite of the accounts file")
+public class AccountSaveEvent extends AtmEvent {
+}
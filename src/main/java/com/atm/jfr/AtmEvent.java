@@ -0,0 +1,85 @@
+package com.atm.jfr;
+
+import com.atm.Outcome;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+
+/**
+ * Base of the JDK Flight Recorder events for ATM operations.
+ * <p>
+ * Create the event and call {@link #begin()} when the operation starts, then
+ * {@link #finish} when it ends. While JFR is not recording these events,
+ * {@code begin} and {@code finish} do nothing and the JIT removes the
+ * unused event object, so the calls can stay in place permanently. The fields
+ * are only filled in when the event will actually be committed.
+ * </p>
+ * <p>
+ * Record with, for example,
+ * {@code -XX:StartFlightRecording=filename=atm.jfr,settings=profile} and view
+ * the events under the ATM category in JDK Mission Control, next to the GC,
+ * file I/O and lock events of the same period.
+ * </p>
+ */
+@Category("ATM")
+public abstract class AtmEvent extends Event {
+
+    @Label("Account Type")
+    @Description("student, gold or platinum; empty if no single account is involved or it was not found")
+    String accountType;
+
+    @Label("Amount Bucket")
+    @Description("Range the amount falls in, in pounds")
+    String amountBucket;
+
+    @Label("Outcome")
+    String outcome;
+
+    @Label("Bytes Written")
+    @DataAmount
+    long bytesWritten;
+
+    /**
+     * Ends the event and commits it if JFR wants it.
+     *
+     * @param accountType  the account type, or {@code null} if there is none
+     * @param amount       the amount involved, or 0
+     * @param outcome      how the operation ended
+     * @param bytesWritten bytes written to storage, or 0
+     */
+    public void finish(String accountType, double amount, Outcome outcome, long bytesWritten) {
+        end();
+        if (shouldCommit()) {
+            this.accountType = accountType;
+            this.amountBucket = amountBucket(amount);
+            this.outcome = outcome.name();
+            this.bytesWritten = bytesWritten;
+            commit();
+        }
+    }
+
+    /**
+     * Returns the range an amount falls in, so events can be grouped without
+     * recording exact sums.
+     *
+     * @param amount the amount in pounds
+     * @return the bucket label
+     */
+    static String amountBucket(double amount) {
+        if (amount <= 0) {
+            return "0";
+        } else if (amount < 50) {
+            return "1-49";
+        } else if (amount < 100) {
+            return "50-99";
+        } else if (amount < 200) {
+            return "100-199";
+        } else if (amount < 500) {
+            return "200-499";
+        }
+        return "500+";
+    }
+}
@@ -0,0 +1,14 @@
+package com.atm.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A deposit into the logged-in account.
+ */
+@Name("com.atm.Deposit")
+@Label("Deposit")
+@Description("A deposit into the logged-in account")
+public class DepositEvent extends AtmEvent {
+}
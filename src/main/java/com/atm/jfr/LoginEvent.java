@@ -0,0 +1,14 @@
+package com.atm.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A PIN check, successful or not.
+ */
+@Name("com.atm.Login")
+@Label("Login")
+@Description("A PIN check, successful or not")
+public class LoginEvent extends AtmEvent {
+}
@@ -0,0 +1,14 @@
+package com.atm.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Append of one row to the transaction log.
+ */
+@Name("com.atm.TransactionAppend")
+@Label("Transaction Append")
+@Description("Append of one row to the transaction log")
+public class TransactionAppendEvent extends AtmEvent {
+}
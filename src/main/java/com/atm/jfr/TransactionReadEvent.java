@@ -0,0 +1,14 @@
+package com.atm.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Read of recent rows from the transaction log.
+ */
+@Name("com.atm.TransactionRead")
+@Label("Transaction Read")
+@Description("Read of recent rows from the transaction log")
+public class TransactionReadEvent extends AtmEvent {
+}
@@ -0,0 +1,15 @@
+package com.atm.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A transfer. Once the customer has been asked to confirm it, the event
+ * starts again, so it times the commit and not the dialog.
+ */
+@Name("com.atm.Transfer")
+@Label("Transfer")
+@Description("A transfer, without the time the confirmation dialog was open")
+public class TransferEvent extends AtmEvent {
+}
@@ -0,0 +1,14 @@
+package com.atm.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A withdrawal from the logged-in account.
+ */
+@Name("com.atm.Withdraw")
+@Label("Withdraw")
+@Description("A withdrawal from the logged-in account")
+public class WithdrawEvent extends AtmEvent {
+}
@@ -0,0 +1,288 @@
+package com.atm.metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.atm.Debug;
+
+/**
+ * Traces each keypress from the button handler to the next screen layout.
+ * <p>
+ * {@link #begin(String)} opens a trace for a button label, and the code a
+ * press runs through marks its stages with {@link #enter(Stage)} and
+ * {@link #exit()}. Stages nest, and each stage is charged only its own time,
+ * so a Model call that saves accounts is split into MODEL and STORAGE and the
+ * stages add up to the whole press. {@link #awaitRender()} marks the end of
+ * the handler; the trace closes at the next layout pulse
+ * ({@link #endPending()}), and that wait is reported as RENDER.
+ * </p>
+ * <p>
+ * Finished traces go into a {@link LatencyHistogram} per label and per label
+ * and stage; a stage the press never entered is not recorded, so its
+ * percentiles are not pulled towards zero. {@link #summary()} gives p50/p99
+ * per label with the slowest stage, for the debug overlay. A press slower
+ * than {@code atm.trace.slowMillis} (default 100) is logged at INFO with its
+ * breakdown.
+ * </p>
+ * <p>
+ * A trace belongs to the thread that began it, normally the JavaFX thread.
+ * Marks from other threads are ignored, and so are marks made when no trace
+ * is open.
+ * </p>
+ */
+public class KeypressTracer {
+
+    /**
+     * The stages of a keypress.
+     */
+    public enum Stage {
+        /** Sound.beep, including starting its thread */
+        BEEP,
+        /** Controller.process dispatch */
+        CONTROLLER,
+        /** Model.process* logic */
+        MODEL,
+        /** Bank operations, not counting storage */
+        BANK,
+        /** Reading and writing the account and transaction files */
+        STORAGE,
+        /** Model.display and View.update */
+        DISPLAY,
+        /** From the end of the handler to the next layout pulse */
+        RENDER
+    }
+
+    private static final Stage[] STAGES = Stage.values();
+    private static final int MAX_DEPTH = 16;
+    private static final long SLOW_NANOS = Long.getLong("atm.trace.slowMillis", 100) * 1_000_000;
+
+    /**
+     * Latencies of one button label.
+     */
+    private static class LabelStats {
+        final LatencyHistogram total = new LatencyHistogram();
+        final LatencyHistogram[] stages = new LatencyHistogram[STAGES.length];
+
+        LabelStats() {
+            for (int i = 0; i < stages.length; i++) {
+                stages[i] = new LatencyHistogram();
+            }
+        }
+    }
+
+    private static final Map<String, LabelStats> stats = new ConcurrentHashMap<>();
+
+    // The open trace; only touched by its owner thread
+    private static volatile Thread owner;
+    private static String label;
+    private static long beginNanos;
+    private static long renderStart;
+    private static boolean pending;
+    private static final long[] stageNanos = new long[STAGES.length];
+    private static int entered; // One bit per stage ordinal
+    private static final Stage[] stack = new Stage[MAX_DEPTH];
+    private static final long[] enteredAt = new long[MAX_DEPTH];
+    private static final long[] childNanos = new long[MAX_DEPTH];
+    private static int depth;
+
+    private static Runnable listener;
+
+    private KeypressTracer() {
+    }
+
+    /**
+     * Opens a trace for a keypress, closing any trace still waiting for its
+     * layout pulse.
+     *
+     * @param buttonLabel the label of the button pressed
+     */
+    public static void begin(String buttonLabel) {
+        if (owner == Thread.currentThread() && pending) {
+            endPending();
+        }
+        owner = Thread.currentThread();
+        label = buttonLabel;
+        pending = false;
+        depth = 0;
+        Arrays.fill(stageNanos, 0);
+        entered = 0;
+        beginNanos = System.nanoTime();
+    }
+
+    /**
+     * Starts a stage of the open trace.
+     *
+     * @param stage the stage being entered
+     */
+    public static void enter(Stage stage) {
+        if (owner != Thread.currentThread() || depth == MAX_DEPTH) {
+            return;
+        }
+        stack[depth] = stage;
+        entered |= 1 << stage.ordinal();
+        enteredAt[depth] = System.nanoTime();
+        childNanos[depth] = 0;
+        depth++;
+    }
+
+    /**
+     * Ends the stage most recently entered.
+     */
+    public static void exit() {
+        if (owner != Thread.currentThread() || depth == 0) {
+            return;
+        }
+        depth--;
+        long elapsed = System.nanoTime() - enteredAt[depth];
+        stageNanos[stack[depth].ordinal()] += elapsed - childNanos[depth];
+        if (depth > 0) {
+            childNanos[depth - 1] += elapsed;
+        }
+    }
+
+    /**
+     * Marks the end of the button handler; the trace closes at the next
+     * {@link #endPending()}.
+     */
+    public static void awaitRender() {
+        if (owner != Thread.currentThread()) {
+            return;
+        }
+        renderStart = System.nanoTime();
+        pending = true;
+    }
+
+    /**
+     * Closes a trace waiting for its layout pulse. Called from the scene's
+     * post-layout pulse listener; does nothing if no trace is waiting.
+     */
+    public static void endPending() {
+        if (owner != Thread.currentThread() || !pending) {
+            return;
+        }
+        stageNanos[Stage.RENDER.ordinal()] = System.nanoTime() - renderStart;
+        entered |= 1 << Stage.RENDER.ordinal();
+        finish();
+    }
+
+    /**
+     * Closes the open trace now, without waiting for a layout pulse.
+     */
+    public static void end() {
+        if (owner != Thread.currentThread()) {
+            return;
+        }
+        if (pending) {
+            endPending();
+        } else {
+            finish();
+        }
+    }
+
+    /**
+     * Sets what to run after each trace is recorded, e.g. refreshing the
+     * overlay. It runs on the traced thread.
+     *
+     * @param onTrace the callback, or {@code null} for none
+     */
+    public static void setListener(Runnable onTrace) {
+        listener = onTrace;
+    }
+
+    /**
+     * Returns the keypress latency histogram of a button label.
+     *
+     * @param buttonLabel the label
+     * @return its histogram, or {@code null} if it was never traced
+     */
+    public static LatencyHistogram histogram(String buttonLabel) {
+        LabelStats s = stats.get(buttonLabel);
+        return s == null ? null : s.total;
+    }
+
+    /**
+     * Returns the latency histogram of one stage of a button label.
+     *
+     * @param buttonLabel the label
+     * @param stage       the stage
+     * @return its histogram, empty if no press of the label entered the
+     *         stage, or {@code null} if the label was never traced
+     */
+    public static LatencyHistogram histogram(String buttonLabel, Stage stage) {
+        LabelStats s = stats.get(buttonLabel);
+        return s == null ? null : s.stages[stage.ordinal()];
+    }
+
+    /**
+     * Clears every recorded trace.
+     */
+    public static void reset() {
+        stats.clear();
+    }
+
+    /**
+     * Returns one line per button label, slowest p99 first, with p50, p99 and
+     * the stage with the highest p99.
+     *
+     * @return the summary, empty if nothing was traced
+     */
+    public static String summary() {
+        List<Map.Entry<String, LabelStats>> entries = new ArrayList<>(stats.entrySet());
+        entries.sort(Comparator.comparingLong(
+                (Map.Entry<String, LabelStats> e) -> e.getValue().total.getPercentile(99)).reversed());
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, LabelStats> entry : entries) {
+            LabelStats s = entry.getValue();
+            Stage slowest = null;
+            for (Stage stage : STAGES) {
+                LatencyHistogram h = s.stages[stage.ordinal()];
+                if (h.getCount() > 0 && (slowest == null
+                        || h.getPercentile(99) > s.stages[slowest.ordinal()].getPercentile(99))) {
+                    slowest = stage;
+                }
+            }
+            text.append(String.format("%-11s n=%-4d p50=%6.1fms p99=%6.1fms slowest=%s%n",
+                    entry.getKey(), s.total.getCount(), s.total.getPercentile(50) / 1e6,
+                    s.total.getPercentile(99) / 1e6, slowest == null ? "-" : slowest));
+        }
+        return text.toString();
+    }
+
+    private static void finish() {
+        long total = System.nanoTime() - beginNanos;
+        pending = false;
+        owner = null;
+        LabelStats s = stats.computeIfAbsent(label, l -> new LabelStats());
+        s.total.record(total);
+        for (Stage stage : STAGES) {
+            if ((entered & 1 << stage.ordinal()) != 0) {
+                s.stages[stage.ordinal()].record(stageNanos[stage.ordinal()]);
+            }
+        }
+        if (total > SLOW_NANOS && Debug.isEnabled(Debug.Level.INFO)) {
+            Debug.info("KeypressTracer: slow keypress \"%s\" took %.1fms: %s", label, total / 1e6, breakdown());
+        }
+        Runnable onTrace = listener;
+        if (onTrace != null) {
+            onTrace.run();
+        }
+    }
+
+    private static String breakdown() {
+        StringBuilder text = new StringBuilder();
+        for (Stage stage : STAGES) {
+            if ((entered & 1 << stage.ordinal()) == 0) {
+                continue;
+            }
+            if (text.length() > 0) {
+                text.append(", ");
+            }
+            text.append(stage).append('=').append(String.format("%.1fms", stageNanos[stage.ordinal()] / 1e6));
+        }
+        return text.toString();
+    }
+}
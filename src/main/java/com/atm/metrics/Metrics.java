@@ -0,0 +1,150 @@
+package com.atm.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.atm.Outcome;
+
+/**
+ * Registry of latency histograms and outcome counters for the bank and
+ * persistence operations.
+ * <p>
+ * Every histogram and counter is created up front, one per operation and per
+ * operation and outcome, so {@link #record} only indexes into arrays: no map
+ * lookups, locks or allocation on the path being measured. Counters are
+ * {@link LongAdder}s so terminals updating the same one do not contend.
+ * {@link #registerMBeans()} publishes the numbers over JMX, where jconsole or
+ * any JMX client can read them.
+ * </p>
+ */
+public class Metrics {
+
+    /**
+     * The operations measured.
+     */
+    public enum Operation {
+        DEPOSIT, WITHDRAW, TRANSFER, SAVE_ACCOUNTS, LOG_TRANSACTION, READ_TRANSACTIONS
+    }
+
+    private static final Outcome[] OUTCOMES = Outcome.values();
+    private static final Operation[] OPERATIONS = Operation.values();
+
+    private static final LatencyHistogram[] histograms = new LatencyHistogram[OPERATIONS.length];
+    private static final LongAdder[][] counters = new LongAdder[OPERATIONS.length][OUTCOMES.length];
+
+    static {
+        for (Operation operation : OPERATIONS) {
+            histograms[operation.ordinal()] = new LatencyHistogram();
+            for (Outcome outcome : OUTCOMES) {
+                counters[operation.ordinal()][outcome.ordinal()] = new LongAdder();
+            }
+        }
+    }
+
+    private static boolean registered = false;
+
+    private Metrics() {
+    }
+
+    /**
+     * Records one timed call.
+     *
+     * @param operation the operation
+     * @param outcome   how it ended
+     * @param nanos     how long it took
+     */
+    public static void record(Operation operation, Outcome outcome, long nanos) {
+        histograms[operation.ordinal()].record(nanos);
+        counters[operation.ordinal()][outcome.ordinal()].increment();
+    }
+
+    /**
+     * Returns the latency histogram of an operation.
+     *
+     * @param operation the operation
+     * @return its histogram
+     */
+    public static LatencyHistogram histogram(Operation operation) {
+        return histograms[operation.ordinal()];
+    }
+
+    /**
+     * Returns how many calls of an operation ended a given way.
+     *
+     * @param operation the operation
+     * @param outcome   the outcome
+     * @return the count
+     */
+    public static long count(Operation operation, Outcome outcome) {
+        return counters[operation.ordinal()][outcome.ordinal()].sum();
+    }
+
+    /**
+     * Clears every histogram and counter.
+     */
+    public static void reset() {
+        for (Operation operation : OPERATIONS) {
+            view(operation).reset();
+        }
+    }
+
+    /**
+     * Registers one MXBean per operation with the platform MBean server. Safe
+     * to call more than once.
+     */
+    public static synchronized void registerMBeans() {
+        if (registered) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            for (Operation operation : OPERATIONS) {
+                server.registerMBean(view(operation), objectName(operation));
+            }
+            registered = true;
+        } catch (JMException e) {
+            System.err.println("Error registering metrics MBeans: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the JMX name an operation is registered under.
+     *
+     * @param operation the operation
+     * @return {@code com.atm:type=Metrics,operation=<name>}
+     * @throws JMException if the name is malformed
+     */
+    public static ObjectName objectName(Operation operation) throws JMException {
+        return new ObjectName("com.atm:type=Metrics,operation=" + operation.name().toLowerCase(Locale.ROOT));
+    }
+
+    private static OperationMetricsMXBean view(Operation operation) {
+        LatencyHistogram histogram = histograms[operation.ordinal()];
+        LongAdder[] outcomes = counters[operation.ordinal()];
+        return new OperationMetricsMXBean() {
+            public long getCount() { return histogram.getCount(); }
+            public double getMeanMicros() { return histogram.getMean() / 1000.0; }
+            public double getP50Micros() { return histogram.getPercentile(50) / 1000.0; }
+            public double getP90Micros() { return histogram.getPercentile(90) / 1000.0; }
+            public double getP99Micros() { return histogram.getPercentile(99) / 1000.0; }
+            public double getP999Micros() { return histogram.getPercentile(99.9) / 1000.0; }
+            public double getMaxMicros() { return histogram.getMax() / 1000.0; }
+            public long getSuccessCount() { return outcomes[Outcome.SUCCESS.ordinal()].sum(); }
+            public long getLimitExceededCount() { return outcomes[Outcome.LIMIT_EXCEEDED.ordinal()].sum(); }
+            public long getOverdraftCount() { return outcomes[Outcome.OVERDRAFT.ordinal()].sum(); }
+            public long getNotFoundCount() { return outcomes[Outcome.NOT_FOUND.ordinal()].sum(); }
+            public long getRejectedCount() { return outcomes[Outcome.REJECTED.ordinal()].sum(); }
+            public void reset() {
+                histogram.reset();
+                for (LongAdder counter : outcomes) {
+                    counter.reset();
+                }
+            }
+        };
+    }
+}
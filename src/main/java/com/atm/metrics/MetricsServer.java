@@ -0,0 +1,215 @@
+package com.atm.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.DoubleSupplier;
+
+import com.atm.Outcome;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Embedded HTTP endpoint for operators.
+ * <p>
+ * {@code /metrics} serves the {@link Metrics} registry in the Prometheus text
+ * format: one {@code atm_operations_total} counter per operation and outcome,
+ * and one {@code atm_operation_latency_seconds} summary per operation with
+ * its 0.5, 0.9, 0.99 and 0.999 quantiles. Gauges registered with
+ * {@link #gauge} are added to it. {@code /} is a small status page with the
+ * same figures.
+ * </p>
+ * <p>
+ * Requests are handled one at a time on a single low-priority daemon thread,
+ * which only reads counters and histograms that are updated without locks.
+ * A scrape therefore never blocks an ATM operation. The server is opt-in:
+ * {@code Main} starts it only when {@code atm.metrics.port} is set. It listens
+ * on the loopback interface unless {@code atm.metrics.host} says otherwise.
+ * </p>
+ */
+public class MetricsServer {
+
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+    /**
+     * A value sampled at scrape time.
+     */
+    private static class Gauge {
+        final String name;
+        final String help;
+        final DoubleSupplier value;
+
+        Gauge(String name, String help, DoubleSupplier value) {
+            this.name = name;
+            this.help = help;
+            this.value = value;
+        }
+    }
+
+    private final List<Gauge> gauges = new ArrayList<>();
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * Creates a server bound to a port; call {@link #start()} to serve.
+     *
+     * @param host the address to listen on
+     * @param port the port, or 0 for any free port
+     * @throws IOException if the port cannot be bound
+     */
+    public MetricsServer(String host, int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(host, port), 0);
+        executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "metrics-http");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        server.setExecutor(executor);
+        server.createContext("/metrics", exchange -> respond(exchange, "text/plain; version=0.0.4", render()));
+        // A context matches every path under it, so other paths are answered here
+        server.createContext("/", exchange -> {
+            if (exchange.getRequestURI().getPath().equals("/")) {
+                respond(exchange, "text/html", statusPage());
+            } else {
+                respond(exchange, 404, "text/plain", "Not found\n");
+            }
+        });
+    }
+
+    /**
+     * Adds a gauge. Gauges must be added before {@link #start()}.
+     *
+     * @param name  the metric name, e.g. {@code atm_accounts}
+     * @param help  one line describing it
+     * @param value read on each scrape; must not block
+     * @return this server
+     */
+    public MetricsServer gauge(String name, String help, DoubleSupplier value) {
+        gauges.add(new Gauge(name, help, value));
+        return this;
+    }
+
+    /**
+     * Starts serving requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops serving and releases the port.
+     */
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    /**
+     * @return the port the server listens on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Renders every metric in the Prometheus text format.
+     *
+     * @return the exposition text
+     */
+    public String render() {
+        StringBuilder out = new StringBuilder(4096);
+        out.append("# HELP atm_operations_total Operations completed, by outcome.\n");
+        out.append("# TYPE atm_operations_total counter\n");
+        for (Metrics.Operation operation : Metrics.Operation.values()) {
+            for (Outcome outcome : Outcome.values()) {
+                out.append("atm_operations_total{operation=\"").append(name(operation))
+                        .append("\",outcome=\"").append(label(outcome)).append("\"} ")
+                        .append(Metrics.count(operation, outcome)).append('\n');
+            }
+        }
+        out.append("# HELP atm_operation_latency_seconds Operation latency.\n");
+        out.append("# TYPE atm_operation_latency_seconds summary\n");
+        for (Metrics.Operation operation : Metrics.Operation.values()) {
+            LatencyHistogram histogram = Metrics.histogram(operation);
+            String labels = "operation=\"" + name(operation) + "\"";
+            for (double quantile : QUANTILES) {
+                out.append("atm_operation_latency_seconds{").append(labels).append(",quantile=\"")
+                        .append(quantile).append("\"} ")
+                        .append(seconds(histogram.getPercentile(quantile * 100))).append('\n');
+            }
+            out.append("atm_operation_latency_seconds_sum{").append(labels).append("} ")
+                    .append(seconds(histogram.getSum())).append('\n');
+            out.append("atm_operation_latency_seconds_count{").append(labels).append("} ")
+                    .append(histogram.getCount()).append('\n');
+        }
+        for (Gauge gauge : gauges) {
+            out.append("# HELP ").append(gauge.name).append(' ').append(gauge.help).append('\n');
+            out.append("# TYPE ").append(gauge.name).append(" gauge\n");
+            out.append(gauge.name).append(' ').append(gauge.value.getAsDouble()).append('\n');
+        }
+        return out.toString();
+    }
+
+    private String statusPage() {
+        StringBuilder html = new StringBuilder(4096);
+        html.append("<!DOCTYPE html><html><head><title>ATM status</title>")
+                .append("<meta http-equiv=\"refresh\" content=\"5\"></head><body><h1>ATM status</h1>");
+        html.append("<table border=\"1\"><tr><th>Gauge</th><th>Value</th></tr>");
+        for (Gauge gauge : gauges) {
+            html.append(String.format("<tr><td title=\"%s\">%s</td><td>%s</td></tr>",
+                    gauge.help, gauge.name, gauge.value.getAsDouble()));
+        }
+        html.append("</table><h2>Operations</h2><table border=\"1\"><tr><th>Operation</th><th>Count</th>");
+        for (Outcome outcome : Outcome.values()) {
+            html.append("<th>").append(label(outcome)).append("</th>");
+        }
+        html.append("<th>p50 ms</th><th>p99 ms</th><th>max ms</th></tr>");
+        for (Metrics.Operation operation : Metrics.Operation.values()) {
+            LatencyHistogram histogram = Metrics.histogram(operation);
+            html.append("<tr><td>").append(name(operation)).append("</td><td>").append(histogram.getCount())
+                    .append("</td>");
+            for (Outcome outcome : Outcome.values()) {
+                html.append("<td>").append(Metrics.count(operation, outcome)).append("</td>");
+            }
+            html.append(String.format("<td>%.3f</td><td>%.3f</td><td>%.3f</td></tr>",
+                    histogram.getPercentile(50) / 1e6, histogram.getPercentile(99) / 1e6,
+                    histogram.getMax() / 1e6));
+        }
+        html.append("</table><p><a href=\"/metrics\">/metrics</a></p></body></html>");
+        return html.toString();
+    }
+
+    private static void respond(HttpExchange exchange, String contentType, String body) throws IOException {
+        respond(exchange, 200, contentType, body);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body)
+            throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    // Label values must not change with the JVM's locale, e.g. "I" to a dotless "ı" in Turkish
+    private static String name(Metrics.Operation operation) {
+        return operation.name().toLowerCase(Locale.ROOT);
+    }
+
+    private static String label(Outcome outcome) {
+        return outcome.name().toLowerCase(Locale.ROOT);
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1e9;
+    }
+}
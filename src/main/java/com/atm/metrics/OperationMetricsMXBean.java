@@ -0,0 +1,47 @@
+package com.atm.metrics;
+
+/**
+ * JMX view of one operation's latency and outcome counts. Latencies are in
+ * microseconds; registered as {@code com.atm:type=Metrics,operation=<name>}.
+ */
+public interface OperationMetricsMXBean {
+
+    /** @return the number of calls timed */
+    long getCount();
+
+    /** @return the mean latency */
+    double getMeanMicros();
+
+    /** @return the median latency */
+    double getP50Micros();
+
+    /** @return the 90th percentile latency */
+    double getP90Micros();
+
+    /** @return the 99th percentile latency */
+    double getP99Micros();
+
+    /** @return the 99.9th percentile latency */
+    double getP999Micros();
+
+    /** @return the largest latency */
+    double getMaxMicros();
+
+    /** @return calls that succeeded */
+    long getSuccessCount();
+
+    /** @return calls refused for exceeding a limit */
+    long getLimitExceededCount();
+
+    /** @return calls refused because of the overdraft limit */
+    long getOverdraftCount();
+
+    /** @return calls that named an account that does not exist */
+    long getNotFoundCount();
+
+    /** @return calls refused for any other reason */
+    long getRejectedCount();
+
+    /** Clears the histogram and counters. */
+    void reset();
+}
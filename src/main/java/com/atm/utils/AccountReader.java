@@ -11,7 +11,9 @@ import java.util.List;
  * utility class responsible for reading account data from a csv file.
  * <p>
  * supports loading all accounts and finding a specific account by account number.
- * passwords are decrypted before returning.
+ * passwords are returned in their stored form (a pin hash or an encrypted
+ * password) and are never decrypted here; they are only checked when that
+ * account logs in.
  *
  * @author mertcan
  * @version week 8 implementation
@@ -25,34 +27,44 @@ public class AccountReader {
      * reads all account records from the csv file.
      * <p>
      * each line in the file should contain: accNumber, encryptedPassword, accType, balance.
-     * the method decrypts the password before returning.
+     * the password is returned in its stored form without being decrypted.
      *
      * @return a list of account data arrays (each array has 4 strings)
      */
     public static List<String[]> readAccounts() {
+        return readAccounts(FILE_PATH);
+    }
+
+    /**
+     * reads all account records from the given csv file.
+     *
+     * @param filePath the accounts file to read
+     * @return a list of account data arrays (each array has 4 strings)
+     */
+    public static List<String[]> readAccounts(String filePath) {
         List<String[]> accounts = new ArrayList<>();
-        File file = new File(FILE_PATH);
+        File file = new File(filePath);
         
         // Check if file exists, if not, return empty accounts list
         if (!file.exists()) {
             return accounts;
         }
         
-        try (BufferedReader reader = new BufferedReader(new FileReader(FILE_PATH))) {
+        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
             String line;
             while ((line = reader.readLine()) != null) {
                 // parse csv line into array
                 String[] parts = line.split(",");
                 if (parts.length >= 4) {
-                    // decrypt password (acc number remains as plain for now)
+                    // keep the password encrypted until login (acc number remains as plain for now)
                     /* String decryptedAccNumber = PasswordCrypt.decrypt(parts[0]); */
                     String accNumber = parts[0];
-                    String decryptedPassword = PasswordCrypt.decrypt(parts[1]);
+                    String storedPassword = PinHasher.isHashed(parts[1]) ? parts[1] : PasswordCrypt.toStoredForm(parts[1]);
                     String accType = parts[2];
                     String balance = parts[3];
 
                    // add account to list
-                    accounts.add(new String[]{accNumber, decryptedPassword, accType, balance});
+                    accounts.add(new String[]{accNumber, storedPassword, accType, balance});
                 }
             }
         } catch (IOException e) {
@@ -69,7 +81,18 @@ public class AccountReader {
      * @return the account as a string array if found, otherwise null
      */
     public static String[] findAccount(String accNumber) {
-        List<String[]> accounts = readAccounts();
+        return findAccount(FILE_PATH, accNumber);
+    }
+
+    /**
+     * searches the given csv file for an account with a matching account number.
+     *
+     * @param filePath  the accounts file to search
+     * @param accNumber the account number to search for
+     * @return the account as a string array if found, otherwise null
+     */
+    public static String[] findAccount(String filePath, String accNumber) {
+        List<String[]> accounts = readAccounts(filePath);
         for (String[] account : accounts) {
             if (account[0].equals(accNumber)) {
                 return account;
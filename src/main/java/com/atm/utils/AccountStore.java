@@ -0,0 +1,55 @@
+package com.atm.utils;
+
+import java.util.List;
+
+/**
+ * Where a {@link com.atm.Bank} keeps its accounts and transaction log.
+ * <p>
+ * Account rows are {@code [accNumber, storedPassword, accType, balance]}, as
+ * read by {@link AccountReader}. The ATM uses {@link CsvAccountStore};
+ * {@link MemoryAccountStore} keeps everything in memory, for tests and for
+ * benchmarks that should measure only the CPU cost of the bank.
+ * {@link ShadowAccountStore} mirrors one store's writes into another.
+ * </p>
+ */
+public interface AccountStore {
+
+    /**
+     * Reads every account.
+     *
+     * @return the account rows, empty if there are none
+     */
+    List<String[]> readAccounts();
+
+    /**
+     * Replaces every account with the given rows.
+     *
+     * @param accounts the account rows
+     * @return the number of bytes stored
+     */
+    long writeAccounts(List<String[]> accounts);
+
+    /**
+     * Appends one transaction to the log.
+     *
+     * @param accountNumber the account number
+     * @param type          the type of transaction (e.g., "Deposit", "Withdraw")
+     * @param amount        the transaction amount
+     * @param balance       the account balance after the transaction
+     * @return the number of bytes appended, 0 for stores that keep no log,
+     *         or -1 if the transaction could not be logged
+     */
+    int logTransaction(String accountNumber, String type, double amount, double balance);
+
+    /**
+     * Reads the most recent transactions of one account. Stores that keep no
+     * transaction log return none.
+     *
+     * @param accountNumber the account number
+     * @param count         the most transactions to return
+     * @return the transaction lines, oldest first, empty if there are none
+     */
+    default List<String> readTransactions(String accountNumber, int count) {
+        return List.of();
+    }
+}
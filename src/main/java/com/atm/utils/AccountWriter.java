@@ -12,7 +12,9 @@ import java.util.List;
  * account records are stored in a file named "accounts.csv" and include
  * account number, encrypted password, account type, and balance.
  * <p>
- * note: passwords are encrypted before being saved for basic security.
+ * note: passwords already in stored form (a {@link PinHasher} hash or a
+ * {@link PasswordCrypt} encrypted password) are saved as they are, so saving
+ * does not re-encrypt every row; a plain password is encrypted first.
  * the file is created automatically if it doesn't exist.
  */
 
@@ -26,16 +28,30 @@ public class AccountWriter {
      * appends to the file if it already exists.
      *
      * @param accNumber   the account number (currently not encrypted)
-     * @param accPassword the plain text password to be encrypted before writing
+     * @param accPassword the stored form, or a plain text password to be encrypted before writing
      * @param accType     the type of account (e.g., "savings", "checking")
      * @param balance     the account balance to be stored
      */
     public static void writeAccount(String accNumber, String accPassword, String accType, double balance) {
-        ensureFileExists();
-        try (PrintWriter writer = new PrintWriter(new FileWriter(FILE_PATH, true))) {
+        writeAccount(FILE_PATH, accNumber, accPassword, accType, balance);
+    }
+
+    /**
+     * appends a single account record to the given csv file.
+     *
+     * @param filePath    the accounts file to append to
+     * @param accNumber   the account number (currently not encrypted)
+     * @param accPassword the stored form, or a plain text password to be encrypted before writing
+     * @param accType     the type of account
+     * @param balance     the account balance to be stored
+     */
+    public static void writeAccount(String filePath, String accNumber, String accPassword, String accType,
+                                    double balance) {
+        ensureFileExists(filePath);
+        try (PrintWriter writer = new PrintWriter(new FileWriter(filePath, true))) {
             // encrypt only the password for now
             /* String encryptedAccNumber = PasswordCrypt.encrypt(accNumber); */
-            String encryptedPassword = PasswordCrypt.encrypt(accPassword);
+            String encryptedPassword = toStoredForm(accPassword);
 
             // Write account details in CSV format
             writer.println(String.format("%s,%s,%s,%.2f",
@@ -54,16 +70,28 @@ public class AccountWriter {
      *
      * @param accounts a list of string arrays, each representing an account.
      *                 expected format: [accNumber, accPassword, accType, balance]
+     * @return the size of the file written, in bytes
      */
-    public static void writeAccounts(List<String[]> accounts) {
-        ensureFileExists();
-        try (PrintWriter writer = new PrintWriter(new FileWriter(FILE_PATH))) {
+    public static long writeAccounts(List<String[]> accounts) {
+        return writeAccounts(FILE_PATH, accounts);
+    }
+
+    /**
+     * writes a list of account records to the given csv file, overwriting it.
+     *
+     * @param filePath the accounts file to write
+     * @param accounts a list of string arrays, each representing an account.
+     * @return the size of the file written, in bytes
+     */
+    public static long writeAccounts(String filePath, List<String[]> accounts) {
+        ensureFileExists(filePath);
+        try (PrintWriter writer = new PrintWriter(new FileWriter(filePath))) {
             for (String[] account : accounts) {
                 if (account.length >= 4) {
-                    // only encrypt the password (index 1)
+                    // only the password (index 1) is encrypted, and only if it is still plain
                     /* String encryptedAccNumber = PasswordCrypt.encrypt(account[0]); */
                     
-                    String encryptedPassword = PasswordCrypt.encrypt(account[1]);
+                    String encryptedPassword = toStoredForm(account[1]);
                     writer.println(String.format("%s,%s,%s,%s",
                             account[0], // acc number
                             encryptedPassword,
@@ -74,14 +102,28 @@ public class AccountWriter {
         } catch (IOException e) {
             throw new RuntimeException("Error writing accounts data", e);
         }
+        return new File(filePath).length();
+    }
+
+    /**
+     * returns the form of a password that goes into the file.
+     *
+     * @param accPassword a password in stored form or in plain text
+     * @return the stored form unchanged, or the encrypted password
+     */
+    private static String toStoredForm(String accPassword) {
+        if (PinHasher.isHashed(accPassword) || PasswordCrypt.isEncrypted(accPassword)) {
+            return accPassword;
+        }
+        return PasswordCrypt.encryptForStorage(accPassword);
     }
 
     /**
-     * ensures that the csv file exists before writing.
+     * ensures that a csv file exists before writing.
      * if the file or parent directory does not exist, it will be created.
      */
-    private static void ensureFileExists() {
-        File file = new File(FILE_PATH);
+    private static void ensureFileExists(String filePath) {
+        File file = new File(filePath);
         if (!file.exists()) {
             try {
                 File parentDir = file.getParentFile();
@@ -0,0 +1,48 @@
+package com.atm.utils;
+
+import java.util.List;
+
+/**
+ * Keeps accounts and transactions in the CSV files read and written by
+ * {@link AccountReader}, {@link AccountWriter}, {@link TransactionWriter} and
+ * {@link TransactionReader}.
+ */
+public class CsvAccountStore implements AccountStore {
+
+    /** The store the ATM uses: {@code accounts.csv} and {@code transactions.csv} in the working directory. */
+    public static final CsvAccountStore DEFAULT = new CsvAccountStore("accounts.csv", "transactions.csv");
+
+    private final String accountsPath;
+    private final String transactionsPath;
+
+    /**
+     * Creates a store on the given files.
+     *
+     * @param accountsPath     the accounts file
+     * @param transactionsPath the transaction log
+     */
+    public CsvAccountStore(String accountsPath, String transactionsPath) {
+        this.accountsPath = accountsPath;
+        this.transactionsPath = transactionsPath;
+    }
+
+    @Override
+    public List<String[]> readAccounts() {
+        return AccountReader.readAccounts(accountsPath);
+    }
+
+    @Override
+    public long writeAccounts(List<String[]> accounts) {
+        return AccountWriter.writeAccounts(accountsPath, accounts);
+    }
+
+    @Override
+    public int logTransaction(String accountNumber, String type, double amount, double balance) {
+        return TransactionWriter.logTransaction(transactionsPath, accountNumber, type, amount, balance);
+    }
+
+    @Override
+    public List<String> readTransactions(String accountNumber, int count) {
+        return TransactionReader.getTransactions(transactionsPath, accountNumber, count);
+    }
+}
@@ -0,0 +1,372 @@
+package com.atm.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * utility class that writes a synthetic accounts.csv and transactions.csv for
+ * load tests and benchmarks.
+ * <p>
+ * every attribute of account {@code i} (number, pin, type and opening
+ * balance) is a pure function of the seed and {@code i}, so the two files
+ * agree without sharing state, the same seed always gives the same data, and
+ * a load generator can work out any account's pin with {@link #pin(int)}.
+ * pins are stored encrypted with {@link PasswordCrypt} under the current key
+ * version, exactly as {@link AccountWriter} stores them. account types follow
+ * a configurable student:gold:platinum mix.
+ * <p>
+ * the account of each transaction is drawn from a zipf distribution, so a
+ * few accounts are very busy and most are quiet; the busiest ranks are
+ * scattered over the account numbers rather than being the first accounts.
+ * timestamps rise through the file across the configured span, with random
+ * spacing. balances in the transaction log are plausible for the account
+ * type but are not a running total.
+ * <p>
+ * rows are generated in chunks on a worker pool and written in order, with
+ * only a few chunks in memory at a time, as {@link KeyRotator} does; the data
+ * does not depend on the number of threads.
+ * <p>
+ * usage: {@code DatasetGenerator <dir> <accounts> <transactions> [zipfExponent]
+ * [student:gold:platinum] [threads] [seed]}
+ */
+public class DatasetGenerator {
+
+    /** rows generated as one unit of work */
+    public static final int DEFAULT_CHUNK_ROWS = 65536;
+
+    private static final String[] TYPES = { "student", "gold", "platinum" };
+    /** the highest opening balance of each type */
+    private static final int[] MAX_BALANCE = { 2_000, 25_000, 250_000 };
+    private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    /** a prime, so multiplying by it modulo the account count shuffles the zipf ranks */
+    private static final long SCATTER = 1_000_000_007L;
+
+    private final int accounts;
+    private final long transactions;
+    private final int width;
+    private int[] mix = { 70, 25, 5 };
+    private double exponent = 1.0;
+    private long seed = 42;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int chunkRows = DEFAULT_CHUNK_ROWS;
+    private long from = LocalDateTime.of(2024, 1, 1, 0, 0).toEpochSecond(ZoneOffset.UTC);
+    private long to = LocalDateTime.of(2025, 1, 1, 0, 0).toEpochSecond(ZoneOffset.UTC);
+
+    /**
+     * counts and timing of a finished run.
+     */
+    public static class Report {
+        /** account rows written */
+        public final long accounts;
+        /** transaction rows written */
+        public final long transactions;
+        /** bytes written to both files */
+        public final long bytes;
+        /** wall clock time of the whole run */
+        public final long nanos;
+
+        Report(long accounts, long transactions, long bytes, long nanos) {
+            this.accounts = accounts;
+            this.transactions = transactions;
+            this.bytes = bytes;
+            this.nanos = nanos;
+        }
+
+        /**
+         * @return rows written per second
+         */
+        public double rowsPerSecond() {
+            return nanos == 0 ? 0 : (accounts + transactions) * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("generated %d accounts and %d transactions (%.1f MB) in %.2f s, %.0f rows/s",
+                    accounts, transactions, bytes / 1e6, nanos / 1e9, rowsPerSecond());
+        }
+    }
+
+    /**
+     * creates a generator with the default mix (70:25:5), zipf exponent (1.0),
+     * seed and span (the year 2024).
+     *
+     * @param accounts     the number of accounts
+     * @param transactions the number of transactions
+     */
+    public DatasetGenerator(int accounts, long transactions) {
+        if (accounts < 1 || transactions < 0) {
+            throw new IllegalArgumentException("need at least one account");
+        }
+        this.accounts = accounts;
+        this.transactions = transactions;
+        this.width = Math.max(5, String.valueOf(accounts - 1).length());
+    }
+
+    /**
+     * sets the relative numbers of student, gold and platinum accounts.
+     *
+     * @param student  the weight of student accounts
+     * @param gold     the weight of gold accounts
+     * @param platinum the weight of platinum accounts
+     * @return this generator
+     */
+    public DatasetGenerator mix(int student, int gold, int platinum) {
+        if (student < 0 || gold < 0 || platinum < 0 || student + gold + platinum == 0) {
+            throw new IllegalArgumentException("mix weights must be non-negative and not all zero");
+        }
+        this.mix = new int[] { student, gold, platinum };
+        return this;
+    }
+
+    /**
+     * sets how skewed activity is: 0 spreads transactions evenly, 1 is a
+     * classic zipf distribution.
+     *
+     * @param exponent the zipf exponent, at least 0
+     * @return this generator
+     */
+    public DatasetGenerator zipf(double exponent) {
+        new ZipfSampler(1, exponent); // validates
+        this.exponent = exponent;
+        return this;
+    }
+
+    /**
+     * @param seed the seed all the data is derived from
+     * @return this generator
+     */
+    public DatasetGenerator seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * @param threads the number of generating threads
+     * @return this generator
+     */
+    public DatasetGenerator threads(int threads) {
+        this.threads = Math.max(1, threads);
+        return this;
+    }
+
+    /**
+     * sets the number of rows in each unit of work.
+     *
+     * @param chunkRows rows per chunk
+     * @return this generator
+     */
+    public DatasetGenerator chunkRows(int chunkRows) {
+        this.chunkRows = Math.max(1, chunkRows);
+        return this;
+    }
+
+    /**
+     * sets the period the transaction timestamps fall in.
+     *
+     * @param start the earliest timestamp
+     * @param end   the end of the period, exclusive
+     * @return this generator
+     */
+    public DatasetGenerator span(LocalDateTime start, LocalDateTime end) {
+        if (!end.isAfter(start)) {
+            throw new IllegalArgumentException("span must end after it starts");
+        }
+        this.from = start.toEpochSecond(ZoneOffset.UTC);
+        this.to = end.toEpochSecond(ZoneOffset.UTC);
+        return this;
+    }
+
+    /**
+     * @param index an account index, from 0
+     * @return its account number, zero-padded to at least five digits
+     */
+    public String accountNumber(int index) {
+        String digits = Integer.toString(index);
+        StringBuilder number = new StringBuilder(width);
+        for (int i = digits.length(); i < width; i++) {
+            number.append('0');
+        }
+        return number.append(digits).toString();
+    }
+
+    /**
+     * @param index an account index, from 0
+     * @return its plain five-digit pin
+     */
+    public String pin(int index) {
+        return Integer.toString(10000 + (int) Math.floorMod(hash(index, 1), 90000L));
+    }
+
+    /**
+     * @param index an account index, from 0
+     * @return its account type: student, gold or platinum
+     */
+    public String accountType(int index) {
+        return TYPES[typeOf(index)];
+    }
+
+    /**
+     * writes accounts.csv and transactions.csv into a directory, replacing
+     * any files already there.
+     *
+     * @param dir the directory, created if missing
+     * @return counts and timing of the run
+     * @throws IOException if a file cannot be written
+     */
+    public Report generate(Path dir) throws IOException {
+        long start = System.nanoTime();
+        Files.createDirectories(dir);
+        // check the key before spending any time
+        PasswordCrypt.encryptForStorage("");
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            long bytes = write(pool, dir.resolve("accounts.csv"), accounts, this::accountChunk);
+            ZipfSampler sampler = new ZipfSampler(accounts, exponent);
+            bytes += write(pool, dir.resolve("transactions.csv"), transactions,
+                    (first, count) -> transactionChunk(sampler, first, count));
+            return new Report(accounts, transactions, bytes, System.nanoTime() - start);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * generates the rows {@code [first, first + count)} of a file.
+     */
+    private interface Chunk {
+        byte[] rows(long first, int count);
+    }
+
+    private long write(ExecutorService pool, Path file, long rows, Chunk chunk) throws IOException {
+        ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>();
+        int maxPending = threads * 2;
+        long bytes = 0;
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 20)) {
+            for (long first = 0; first < rows; first += chunkRows) {
+                long chunkStart = first;
+                int count = (int) Math.min(chunkRows, rows - first);
+                pending.addLast(pool.submit(() -> chunk.rows(chunkStart, count)));
+                while (pending.size() >= maxPending) {
+                    bytes += drain(pending.removeFirst(), out);
+                }
+            }
+            while (!pending.isEmpty()) {
+                bytes += drain(pending.removeFirst(), out);
+            }
+        }
+        return bytes;
+    }
+
+    private static int drain(Future<byte[]> chunk, OutputStream out) throws IOException {
+        try {
+            byte[] rows = chunk.get();
+            out.write(rows);
+            return rows.length;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Dataset generation interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error generating dataset", e.getCause());
+        }
+    }
+
+    private byte[] accountChunk(long first, int count) {
+        StringBuilder out = new StringBuilder(count * 64);
+        for (int i = (int) first; i < first + count; i++) {
+            int type = typeOf(i);
+            long pennies = Math.floorMod(hash(i, 3), MAX_BALANCE[type] * 100L);
+            out.append(accountNumber(i)).append(',')
+                    .append(PasswordCrypt.encryptForStorage(pin(i))).append(',')
+                    .append(TYPES[type]).append(',')
+                    .append(pennies / 100).append('.').append(pennies % 100 / 10).append(pennies % 10)
+                    .append('\n');
+        }
+        return out.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private byte[] transactionChunk(ZipfSampler sampler, long first, int count) {
+        SplittableRandom random = new SplittableRandom(hash(first, 4));
+        StringBuilder out = new StringBuilder(count * 56);
+        // each row gets its own slot of the span and a random second within it, so time only moves forward
+        double step = (double) (to - from) / Math.max(1, transactions);
+        long lastSecond = Long.MIN_VALUE;
+        String stamp = "";
+        for (long row = first; row < first + count; row++) {
+            long second = from + (long) ((row + random.nextDouble()) * step);
+            if (second != lastSecond) {
+                stamp = formatter.format(LocalDateTime.ofEpochSecond(second, 0, ZoneOffset.UTC));
+                lastSecond = second;
+            }
+            int account = (int) ((sampler.sample(random) - 1) * SCATTER % accounts);
+            boolean deposit = random.nextInt(100) < 55;
+            int amount = 10 * (1 + (int) Math.min(49, -Math.log(1 - random.nextDouble()) * 6));
+            double balance = random.nextInt(MAX_BALANCE[typeOf(account)] * 100) / 100.0;
+            out.append(stamp).append(',')
+                    .append(accountNumber(account)).append(',')
+                    .append(deposit ? "Deposit" : "Withdraw").append(',')
+                    .append((double) amount).append(',')
+                    .append(balance).append('\n');
+        }
+        return out.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private int typeOf(int index) {
+        int total = mix[0] + mix[1] + mix[2];
+        long pick = Math.floorMod(hash(index, 2), (long) total);
+        return pick < mix[0] ? 0 : pick < mix[0] + mix[1] ? 1 : 2;
+    }
+
+    /**
+     * mixes the seed, a value and a stream number into 64 well-spread bits
+     * (the splitmix64 finaliser).
+     */
+    private long hash(long value, int stream) {
+        long z = seed + value * 0x9E3779B97F4A7C15L + stream * 0xD1B54A32D192ED03L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * command line entry point.
+     *
+     * @param args directory, accounts, transactions, then optionally zipf
+     *             exponent, student:gold:platinum mix, threads and seed
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("usage: DatasetGenerator <dir> <accounts> <transactions> "
+                    + "[zipfExponent] [student:gold:platinum] [threads] [seed]");
+            System.exit(2);
+        }
+        DatasetGenerator generator = new DatasetGenerator(Integer.parseInt(args[1]), Long.parseLong(args[2]));
+        if (args.length > 3) {
+            generator.zipf(Double.parseDouble(args[3]));
+        }
+        if (args.length > 4) {
+            String[] weights = args[4].split(":");
+            generator.mix(Integer.parseInt(weights[0]), Integer.parseInt(weights[1]), Integer.parseInt(weights[2]));
+        }
+        if (args.length > 5) {
+            generator.threads(Integer.parseInt(args[5]));
+        }
+        if (args.length > 6) {
+            generator.seed(Long.parseLong(args[6]));
+        }
+        System.out.println(generator.generate(Paths.get(args[0])));
+    }
+}
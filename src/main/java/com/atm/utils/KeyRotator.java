@@ -0,0 +1,211 @@
+package com.atm.utils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * utility class that moves every encrypted password in the accounts file to a
+ * new key version.
+ * <p>
+ * the file is streamed in chunks of rows; each chunk is re-encrypted on a
+ * worker pool while the next one is read, and finished chunks are written in
+ * their original order to a new file generation next to the old one. only a
+ * few chunks are held at a time, so memory stays bounded however large the
+ * store is. once the new generation is complete and synced it replaces the old
+ * file with a single atomic rename, so readers see either the old file or the
+ * new one, never a mix.
+ * <p>
+ * pin hashes and passwords already under the target version are copied as
+ * they are. older key versions must still be configured (see
+ * {@link PasswordCrypt}) so their rows can be read.
+ * <p>
+ * this is the offline path for a store that is not loaded by a running atm;
+ * a running atm should use {@code Bank.rotateKeys} instead, otherwise its next
+ * save writes the old generation's passwords back.
+ * <p>
+ * usage: {@code KeyRotator <targetVersion> [file] [threads] [chunkRows]}
+ */
+public class KeyRotator {
+    // file path for the accounts csv file
+    private static final String FILE_PATH = "accounts.csv";
+
+    /** rows re-encrypted as one unit of work */
+    public static final int DEFAULT_CHUNK_ROWS = 65536;
+
+    /**
+     * counts and timing of a finished rotation.
+     */
+    public static class Report {
+        /** rows copied to the new generation */
+        public final long rows;
+        /** rows whose password was re-encrypted */
+        public final long reencrypted;
+        /** wall clock time of the whole rotation */
+        public final long nanos;
+
+        Report(long rows, long reencrypted, long nanos) {
+            this.rows = rows;
+            this.reencrypted = reencrypted;
+            this.nanos = nanos;
+        }
+
+        /**
+         * @return rows processed per second
+         */
+        public double rowsPerSecond() {
+            return nanos == 0 ? 0 : rows * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("rotated %d rows (%d re-encrypted) in %.2f s, %.0f rows/s",
+                    rows, reencrypted, nanos / 1e9, rowsPerSecond());
+        }
+    }
+
+    /**
+     * rotates the accounts file to the given key version.
+     *
+     * @param filePath   the accounts file to rotate
+     * @param keyVersion the key version every encrypted password should use
+     * @param threads    the number of re-encryption threads
+     * @param chunkRows  rows per unit of work
+     * @return counts and timing of the rotation
+     * @throws IOException if the file cannot be read or the new generation written
+     */
+    public static Report rotate(String filePath, int keyVersion, int threads, int chunkRows) throws IOException {
+        long start = System.nanoTime();
+        Path source = Paths.get(filePath).toAbsolutePath();
+        Path next = source.resolveSibling(source.getFileName() + ".next");
+        AtomicLong reencrypted = new AtomicLong();
+        long rows = 0;
+
+        // check the target key before touching anything
+        PasswordCrypt.encryptForStorage("", keyVersion);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        // chunks in flight, oldest first; bounded so memory does not grow with the file
+        ArrayDeque<Future<String>> pending = new ArrayDeque<>();
+        int maxPending = threads * 2;
+        boolean replaced = false;
+        try {
+            try (BufferedReader reader = Files.newBufferedReader(source, StandardCharsets.UTF_8);
+                 BufferedWriter writer = Files.newBufferedWriter(next, StandardCharsets.UTF_8)) {
+                List<String> chunk = new ArrayList<>(chunkRows);
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    chunk.add(line);
+                    rows++;
+                    if (chunk.size() == chunkRows) {
+                        submit(pool, pending, chunk, keyVersion, reencrypted);
+                        chunk = new ArrayList<>(chunkRows);
+                        while (pending.size() >= maxPending) {
+                            writer.write(await(pending.removeFirst()));
+                        }
+                    }
+                }
+                if (!chunk.isEmpty()) {
+                    submit(pool, pending, chunk, keyVersion, reencrypted);
+                }
+                while (!pending.isEmpty()) {
+                    writer.write(await(pending.removeFirst()));
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+
+            // make sure the new generation is on disk before it replaces the old one
+            try (FileChannel channel = FileChannel.open(next, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(next, source, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            replaced = true;
+        } finally {
+            if (!replaced) {
+                // never leave a half-made generation behind, whatever failed
+                try {
+                    Files.deleteIfExists(next);
+                } catch (IOException e) {
+                    System.err.println("Failed to remove " + next + ": " + e.getMessage());
+                }
+            }
+        }
+        return new Report(rows, reencrypted.get(), System.nanoTime() - start);
+    }
+
+    private static void submit(ExecutorService pool, ArrayDeque<Future<String>> pending, List<String> chunk,
+                               int keyVersion, AtomicLong reencrypted) {
+        pending.addLast(pool.submit(() -> rotateChunk(chunk, keyVersion, reencrypted)));
+    }
+
+    private static String await(Future<String> chunk) throws IOException {
+        try {
+            return chunk.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Key rotation interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error re-encrypting accounts", e.getCause());
+        }
+    }
+
+    /**
+     * re-encrypts the password column of each row in a chunk.
+     *
+     * @return the rotated rows, each followed by a newline
+     */
+    private static String rotateChunk(List<String> chunk, int keyVersion, AtomicLong reencrypted) {
+        StringBuilder out = new StringBuilder(chunk.size() * 64);
+        long count = 0;
+        for (String line : chunk) {
+            // accNumber,password,accType,balance - only the password changes
+            int first = line.indexOf(',');
+            int second = first < 0 ? -1 : line.indexOf(',', first + 1);
+            if (second < 0) {
+                out.append(line).append('\n');
+                continue;
+            }
+            String password = line.substring(first + 1, second);
+            String rotated = PinHasher.isHashed(password) ? password : PasswordCrypt.reencrypt(password, keyVersion);
+            if (!rotated.equals(password)) {
+                count++;
+            }
+            out.append(line, 0, first + 1).append(rotated).append(line, second, line.length()).append('\n');
+        }
+        reencrypted.addAndGet(count);
+        return out.toString();
+    }
+
+    /**
+     * command line entry point.
+     *
+     * @param args target key version, then optionally file, threads and chunk rows
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: KeyRotator <targetVersion> [file] [threads] [chunkRows]");
+            System.exit(2);
+        }
+        int keyVersion = Integer.parseInt(args[0]);
+        String file = args.length > 1 ? args[1] : FILE_PATH;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        int chunkRows = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_CHUNK_ROWS;
+        System.out.println(rotate(file, keyVersion, threads, chunkRows));
+    }
+}
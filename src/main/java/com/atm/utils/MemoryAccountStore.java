@@ -0,0 +1,63 @@
+package com.atm.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps accounts in memory and only counts transactions, so no operation
+ * touches the disk. Rows are copied in and out, so the store never shares
+ * arrays with the bank.
+ */
+public class MemoryAccountStore implements AccountStore {
+
+    private List<String[]> accounts;
+    private long transactions = 0;
+
+    /**
+     * Creates an empty store.
+     */
+    public MemoryAccountStore() {
+        this(new ArrayList<>());
+    }
+
+    /**
+     * Creates a store holding the given account rows.
+     *
+     * @param accounts the initial rows
+     */
+    public MemoryAccountStore(List<String[]> accounts) {
+        this.accounts = copy(accounts);
+    }
+
+    @Override
+    public synchronized List<String[]> readAccounts() {
+        return copy(accounts);
+    }
+
+    @Override
+    public synchronized long writeAccounts(List<String[]> rows) {
+        accounts = copy(rows);
+        return 0;
+    }
+
+    @Override
+    public synchronized int logTransaction(String accountNumber, String type, double amount, double balance) {
+        transactions++;
+        return 0;
+    }
+
+    /**
+     * @return how many transactions have been logged
+     */
+    public synchronized long getTransactionCount() {
+        return transactions;
+    }
+
+    private static List<String[]> copy(List<String[]> rows) {
+        List<String[]> copy = new ArrayList<>(rows.size());
+        for (String[] row : rows) {
+            copy.add(row.clone());
+        }
+        return copy;
+    }
+}
@@ -1,7 +1,11 @@
 package com.atm.utils;
 
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.crypto.Cipher;
 import javax.crypto.spec.SecretKeySpec;
@@ -13,6 +17,24 @@ import javax.crypto.spec.SecretKeySpec;
  * note: the secret key is hardcoded and should be handled more securely in production.
  * <strong>Version:</strong> Week 8 implementation for PasswordEncryption.
  * </p>
+ * <p>
+ * each thread keeps its own initialised {@link Cipher} per key and direction, so
+ * encrypting or decrypting no longer builds a key spec and cipher per call.
+ * </p>
+ * <p>
+ * passwords kept in memory or in the accounts file use the stored form
+ * <code>aes$keyVersion$base64</code>, so they can be told apart from plain
+ * pins and from pin hashes without decrypting them. rows written before the
+ * stored form existed hold the bare base64 text and are read as key version 1.
+ * </p>
+ * <p>
+ * key version 1 is {@link #SECRET_KEY}. further versions are read from the
+ * {@code atm.key.<version>} system property or the {@code ATM_KEY_<version>}
+ * environment variable (16, 24 or 32 characters), and new passwords are
+ * encrypted under the version named by {@code atm.key.version} /
+ * {@code ATM_KEY_VERSION}. every configured version stays readable, so
+ * stored passwords can be moved to a new key with {@link KeyRotator} at any time.
+ * </p>
  *
  * @author Mertcan (Week 8 implementation)
  */
@@ -21,6 +43,18 @@ public class PasswordCrypt {
     private static final String ALGORITHM = "AES";
     private static final String SECRET_KEY = "UoBATMSecretKey1"; // 16 characters for AES-128
 
+    /** prefix of the stored form of an encrypted password */
+    private static final String PREFIX = "aes$";
+    /** version of {@link #SECRET_KEY} in the stored form */
+    private static final int LEGACY_KEY_VERSION = 1;
+
+    /** keys by version, loaded on first use */
+    private static final Map<Integer, SecretKeySpec> keys = new ConcurrentHashMap<>();
+
+    /** each thread's initialised ciphers by key version */
+    private static final ThreadLocal<Map<Integer, Cipher>> encryptors = ThreadLocal.withInitial(HashMap::new);
+    private static final ThreadLocal<Map<Integer, Cipher>> decryptors = ThreadLocal.withInitial(HashMap::new);
+
 
     /**
      * encrypts the given plain text using aes encryption.
@@ -29,16 +63,7 @@ public class PasswordCrypt {
      * @return base64 encoded encrypted string
      */
     public static String encrypt(String data) {
-        try {
-            SecretKeySpec key = new SecretKeySpec(SECRET_KEY.getBytes(StandardCharsets.UTF_8), ALGORITHM);
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            cipher.init(Cipher.ENCRYPT_MODE, key);
-            byte[] encryptedBytes = cipher.doFinal(data.getBytes(StandardCharsets.UTF_8));
-            return Base64.getEncoder().encodeToString(encryptedBytes);
-        } catch (Exception e) {
-            // encryption failed, rethrowing as runtime exception
-            throw new RuntimeException("Error encrypting data", e);
-        }
+        return encrypt(data, LEGACY_KEY_VERSION);
     }
 
 
@@ -49,15 +74,145 @@ public class PasswordCrypt {
      * @return decrypted plain text
      */
     public static String decrypt(String encryptedData) {
+        return decrypt(encryptedData, LEGACY_KEY_VERSION);
+    }
+
+    /**
+     * returns the key version new passwords are encrypted under.
+     *
+     * @return the value of {@code atm.key.version} / {@code ATM_KEY_VERSION}, or 1
+     */
+    public static int getCurrentKeyVersion() {
+        String version = setting("atm.key.version", "ATM_KEY_VERSION");
+        return version == null ? LEGACY_KEY_VERSION : Integer.parseInt(version.trim());
+    }
+
+    /**
+     * encrypts a password into its stored form under the current key version.
+     *
+     * @param data the plain text password
+     * @return the stored form, <code>aes$keyVersion$base64</code>
+     */
+    public static String encryptForStorage(String data) {
+        return encryptForStorage(data, getCurrentKeyVersion());
+    }
+
+    /**
+     * encrypts a password into its stored form under the given key version.
+     *
+     * @param data       the plain text password
+     * @param keyVersion the key version to encrypt with
+     * @return the stored form, <code>aes$keyVersion$base64</code>
+     */
+    public static String encryptForStorage(String data, int keyVersion) {
+        return PREFIX + keyVersion + "$" + encrypt(data, keyVersion);
+    }
+
+    /**
+     * decrypts a password from its stored form, using the key version it names.
+     *
+     * @param stored the stored form, or the bare base64 text of an older row
+     * @return decrypted plain text
+     */
+    public static String decryptStored(String stored) {
+        // aes$keyVersion$base64 - base64 never contains '$'
+        String[] parts = toStoredForm(stored).split("\\$", 3);
+        return decrypt(parts[2], Integer.parseInt(parts[1]));
+    }
+
+    /**
+     * returns the key version a stored password is encrypted under.
+     *
+     * @param stored the stored form, or the bare base64 text of an older row
+     * @return the key version
+     */
+    public static int keyVersionOf(String stored) {
+        return Integer.parseInt(toStoredForm(stored).split("\\$", 3)[1]);
+    }
+
+    /**
+     * re-encrypts a stored password under another key version, without the
+     * plain text leaving this class.
+     *
+     * @param stored     the stored form, or the bare base64 text of an older row
+     * @param keyVersion the key version to move to
+     * @return the new stored form, or {@code stored} if it already uses that version
+     */
+    public static String reencrypt(String stored, int keyVersion) {
+        if (isEncrypted(stored) && keyVersionOf(stored) == keyVersion) {
+            return stored;
+        }
+        return encryptForStorage(decryptStored(stored), keyVersion);
+    }
+
+    /**
+     * tells whether a stored credential is an encrypted password in stored form.
+     *
+     * @param stored the stored credential
+     * @return true if it starts with the stored form prefix
+     */
+    public static boolean isEncrypted(String stored) {
+        return stored != null && stored.startsWith(PREFIX);
+    }
+
+    /**
+     * turns a password column read from the file into the stored form,
+     * without decrypting it.
+     *
+     * @param column the stored form, or the bare base64 text of an older row
+     * @return the stored form
+     */
+    public static String toStoredForm(String column) {
+        return isEncrypted(column) ? column : PREFIX + LEGACY_KEY_VERSION + "$" + column;
+    }
+
+    private static String encrypt(String data, int keyVersion) {
+        Map<Integer, Cipher> ciphers = encryptors.get();
         try {
-            SecretKeySpec key = new SecretKeySpec(SECRET_KEY.getBytes(StandardCharsets.UTF_8), ALGORITHM);
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            cipher.init(Cipher.DECRYPT_MODE, key);
+            Cipher cipher = ciphers.computeIfAbsent(keyVersion, v -> newCipher(Cipher.ENCRYPT_MODE, v));
+            byte[] encryptedBytes = cipher.doFinal(data.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(encryptedBytes);
+        } catch (GeneralSecurityException e) {
+            ciphers.remove(keyVersion); // don't reuse a cipher that failed mid-operation
+            // encryption failed, rethrowing as runtime exception
+            throw new RuntimeException("Error encrypting data", e);
+        }
+    }
+
+    private static String decrypt(String encryptedData, int keyVersion) {
+        Map<Integer, Cipher> ciphers = decryptors.get();
+        try {
+            Cipher cipher = ciphers.computeIfAbsent(keyVersion, v -> newCipher(Cipher.DECRYPT_MODE, v));
             byte[] decryptedBytes = cipher.doFinal(Base64.getDecoder().decode(encryptedData));
             return new String(decryptedBytes, StandardCharsets.UTF_8);
-        } catch (Exception e) {
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            ciphers.remove(keyVersion); // don't reuse a cipher that failed mid-operation
             // decryption failed, throwing runtime exception
             throw new RuntimeException("Error decrypting data", e);
         }
     }
+
+    private static Cipher newCipher(int mode, int keyVersion) {
+        try {
+            Cipher cipher = Cipher.getInstance(ALGORITHM);
+            cipher.init(mode, keys.computeIfAbsent(keyVersion, PasswordCrypt::loadKey));
+            return cipher;
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Error creating cipher", e);
+        }
+    }
+
+    private static SecretKeySpec loadKey(int keyVersion) {
+        String secret = keyVersion == LEGACY_KEY_VERSION ? SECRET_KEY
+                : setting("atm.key." + keyVersion, "ATM_KEY_" + keyVersion);
+        if (secret == null) {
+            throw new IllegalStateException("No key configured for key version " + keyVersion);
+        }
+        return new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+    }
+
+    private static String setting(String property, String environmentVariable) {
+        String value = System.getProperty(property);
+        return value != null ? value : System.getenv(environmentVariable);
+    }
 }
@@ -0,0 +1,120 @@
+package com.atm.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.security.spec.KeySpec;
+import java.util.Base64;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * utility class for storing pins as salted pbkdf2 hashes.
+ * <p>
+ * unlike {@link PasswordCrypt}, a hash cannot be turned back into the pin, so
+ * the stored value is only ever checked with {@link #verify(String, String)}.
+ * the stored form is <code>pbkdf2$iterations$salt$hash</code> (salt and hash
+ * base64 encoded), which keeps the cost setting next to each hash so it can be
+ * raised later without breaking existing accounts.
+ * <p>
+ * the iteration count is read from the {@code atm.pin.iterations} system
+ * property and defaults to {@value #DEFAULT_ITERATIONS}.
+ */
+public class PinHasher {
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final String PREFIX = "pbkdf2$";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    /** iteration count used when {@code atm.pin.iterations} is not set */
+    public static final int DEFAULT_ITERATIONS = 65536;
+
+    private static final SecureRandom random = new SecureRandom();
+
+    /**
+     * returns the configured pbkdf2 iteration count.
+     *
+     * @return the value of {@code atm.pin.iterations}, or the default
+     */
+    public static int getIterations() {
+        return Integer.getInteger("atm.pin.iterations", DEFAULT_ITERATIONS);
+    }
+
+    /**
+     * hashes a pin with a fresh random salt at the configured cost.
+     *
+     * @param pin the plain text pin
+     * @return the stored form of the hash
+     */
+    public static String hash(String pin) {
+        return hash(pin, getIterations());
+    }
+
+    /**
+     * hashes a pin with a fresh random salt at the given cost.
+     *
+     * @param pin        the plain text pin
+     * @param iterations the pbkdf2 iteration count
+     * @return the stored form of the hash
+     */
+    public static String hash(String pin, int iterations) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        byte[] hash = derive(pin, salt, iterations);
+        Base64.Encoder encoder = Base64.getEncoder();
+        return PREFIX + iterations + "$" + encoder.encodeToString(salt) + "$" + encoder.encodeToString(hash);
+    }
+
+    /**
+     * checks a pin against a stored hash.
+     * <p>
+     * the comparison takes the same time wherever the first differing byte is.
+     *
+     * @param pin    the plain text pin entered by the user
+     * @param stored the stored form produced by {@link #hash(String)}
+     * @return true if the pin matches
+     */
+    public static boolean verify(String pin, String stored) {
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4 || !isHashed(stored)) {
+            return false;
+        }
+        Base64.Decoder decoder = Base64.getDecoder();
+        byte[] salt = decoder.decode(parts[2]);
+        byte[] expected = decoder.decode(parts[3]);
+        byte[] actual = derive(pin, salt, Integer.parseInt(parts[1]));
+        return MessageDigest.isEqual(expected, actual);
+    }
+
+    /**
+     * checks two plain text values without leaking where they differ.
+     *
+     * @param a the first value
+     * @param b the second value
+     * @return true if both are equal
+     */
+    public static boolean constantTimeEquals(String a, String b) {
+        return MessageDigest.isEqual(a.getBytes(StandardCharsets.UTF_8), b.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * tells whether a stored credential is a pbkdf2 hash rather than a pin.
+     *
+     * @param stored the stored credential
+     * @return true if it was produced by {@link #hash(String)}
+     */
+    public static boolean isHashed(String stored) {
+        return stored != null && stored.startsWith(PREFIX);
+    }
+
+    private static byte[] derive(String pin, byte[] salt, int iterations) {
+        try {
+            KeySpec spec = new PBEKeySpec(pin.toCharArray(), salt, iterations, HASH_BITS);
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (Exception e) {
+            // hashing failed, rethrowing as runtime exception
+            throw new RuntimeException("Error hashing pin", e);
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package com.atm.utils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.atm.metrics.LatencyHistogram;
+
+/**
+ * Runs a candidate store in the shadow of the store the bank really uses.
+ * <p>
+ * Reads and writes go to the primary store, and the caller gets the
+ * primary's answer as soon as it has one. Every write is then handed to a
+ * single background thread that applies it to the candidate, so the two can
+ * be compared under production traffic before switching over. The
+ * candidate's latency is measured alongside the primary's. After a number of
+ * account saves (every save by default) the candidate is read back and
+ * checked against the rows the primary saved. Candidate failures and
+ * differences count as mismatches, and each one is logged.
+ * </p>
+ * <p>
+ * The primary path never waits for the candidate. If the candidate falls
+ * behind, a queued account save is replaced by the newer one, since each
+ * save holds every account. Transactions wait in a bounded queue and are
+ * dropped and counted when it is full.
+ * </p>
+ */
+public class ShadowAccountStore implements AccountStore {
+
+    /**
+     * The writes that are mirrored.
+     */
+    public enum Operation {
+        WRITE_ACCOUNTS, LOG_TRANSACTION
+    }
+
+    private final AccountStore primary;
+    private final AccountStore candidate;
+    private final ThreadPoolExecutor shadow;
+    private final LatencyHistogram[] primaryLatency = new LatencyHistogram[Operation.values().length];
+    private final LatencyHistogram[] candidateLatency = new LatencyHistogram[Operation.values().length];
+    // The newest account save not yet applied to the candidate
+    private final AtomicReference<List<String[]>> pendingSave = new AtomicReference<>();
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong mismatches = new AtomicLong();
+    private volatile String lastMismatch = null;
+    private int verifyEvery = 1;
+    private long saves = 0; // only touched by the shadow thread
+
+    /**
+     * Shadows a primary store with a candidate, queueing up to 10000 writes.
+     *
+     * @param primary   the store the bank uses
+     * @param candidate the store being evaluated
+     */
+    public ShadowAccountStore(AccountStore primary, AccountStore candidate) {
+        this(primary, candidate, 10_000);
+    }
+
+    /**
+     * Shadows a primary store with a candidate.
+     *
+     * @param primary       the store the bank uses
+     * @param candidate     the store being evaluated
+     * @param queueCapacity the most writes waiting for the candidate
+     */
+    public ShadowAccountStore(AccountStore primary, AccountStore candidate, int queueCapacity) {
+        this.primary = primary;
+        this.candidate = candidate;
+        for (int i = 0; i < primaryLatency.length; i++) {
+            primaryLatency[i] = new LatencyHistogram();
+            candidateLatency[i] = new LatencyHistogram();
+        }
+        shadow = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "shadow-store");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                });
+    }
+
+    /**
+     * Sets how often the candidate is read back and compared with the
+     * primary's last save.
+     *
+     * @param saves compare after this many account saves; 0 never compares
+     * @return this store
+     */
+    public ShadowAccountStore verifyEvery(int saves) {
+        this.verifyEvery = saves;
+        return this;
+    }
+
+    @Override
+    public List<String[]> readAccounts() {
+        return primary.readAccounts();
+    }
+
+    @Override
+    public List<String> readTransactions(String accountNumber, int count) {
+        return primary.readTransactions(accountNumber, count);
+    }
+
+    @Override
+    public long writeAccounts(List<String[]> accounts) {
+        long start = System.nanoTime();
+        long bytes = primary.writeAccounts(accounts);
+        primaryLatency[Operation.WRITE_ACCOUNTS.ordinal()].record(System.nanoTime() - start);
+        List<String[]> rows = List.copyOf(accounts);
+        if (pendingSave.getAndSet(rows) != null) {
+            // The queued save has not started; it will pick up these rows instead
+            coalesced.incrementAndGet();
+        } else if (!submit(this::applySave)) {
+            pendingSave.compareAndSet(rows, null);
+        }
+        return bytes;
+    }
+
+    @Override
+    public int logTransaction(String accountNumber, String type, double amount, double balance) {
+        long start = System.nanoTime();
+        int bytes = primary.logTransaction(accountNumber, type, amount, balance);
+        primaryLatency[Operation.LOG_TRANSACTION.ordinal()].record(System.nanoTime() - start);
+        submit(() -> {
+            long began = System.nanoTime();
+            try {
+                candidate.logTransaction(accountNumber, type, amount, balance);
+            } catch (RuntimeException e) {
+                mismatch("candidate failed to log a transaction for " + accountNumber + ": " + e);
+            }
+            candidateLatency[Operation.LOG_TRANSACTION.ordinal()].record(System.nanoTime() - began);
+        });
+        return bytes;
+    }
+
+    private boolean submit(Runnable write) {
+        submitted.incrementAndGet();
+        try {
+            shadow.execute(() -> {
+                try {
+                    write.run();
+                } finally {
+                    completed.incrementAndGet();
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            submitted.decrementAndGet();
+            dropped.incrementAndGet();
+            return false;
+        }
+    }
+
+    private void applySave() {
+        List<String[]> rows = pendingSave.getAndSet(null);
+        if (rows == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            candidate.writeAccounts(rows);
+        } catch (RuntimeException e) {
+            candidateLatency[Operation.WRITE_ACCOUNTS.ordinal()].record(System.nanoTime() - start);
+            mismatch("candidate failed to save accounts: " + e);
+            return;
+        }
+        candidateLatency[Operation.WRITE_ACCOUNTS.ordinal()].record(System.nanoTime() - start);
+        saves++;
+        if (verifyEvery > 0 && saves % verifyEvery == 0) {
+            verify(rows);
+        }
+    }
+
+    private void verify(List<String[]> expected) {
+        List<String[]> actual;
+        try {
+            actual = candidate.readAccounts();
+        } catch (RuntimeException e) {
+            mismatch("candidate failed to read accounts: " + e);
+            return;
+        }
+        if (actual.size() != expected.size()) {
+            mismatch("candidate holds " + actual.size() + " accounts, primary saved " + expected.size());
+            return;
+        }
+        for (int i = 0; i < expected.size(); i++) {
+            if (!Arrays.equals(expected.get(i), actual.get(i))) {
+                mismatch("candidate row " + i + " is " + Arrays.toString(actual.get(i))
+                        + ", primary saved " + Arrays.toString(expected.get(i)));
+                return;
+            }
+        }
+    }
+
+    private void mismatch(String description) {
+        mismatches.incrementAndGet();
+        lastMismatch = description;
+        System.err.println("Shadow store mismatch: " + description);
+    }
+
+    /**
+     * Waits until every queued write has been applied to the candidate.
+     *
+     * @param timeoutMillis the longest to wait
+     * @return {@code true} if the candidate caught up in time
+     */
+    public boolean awaitIdle(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (completed.get() < submitted.get()) {
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            Thread.sleep(1);
+        }
+        return true;
+    }
+
+    /**
+     * Stops the shadow thread once the queued writes are applied.
+     */
+    public void close() {
+        shadow.shutdown();
+    }
+
+    /**
+     * @param operation a mirrored write
+     * @return the primary store's latencies for it
+     */
+    public LatencyHistogram getPrimaryLatency(Operation operation) {
+        return primaryLatency[operation.ordinal()];
+    }
+
+    /**
+     * @param operation a mirrored write
+     * @return the candidate store's latencies for it
+     */
+    public LatencyHistogram getCandidateLatency(Operation operation) {
+        return candidateLatency[operation.ordinal()];
+    }
+
+    /**
+     * @return the candidate failures and differences found
+     */
+    public long getMismatches() {
+        return mismatches.get();
+    }
+
+    /**
+     * @return the most recent mismatch, or {@code null} if there was none
+     */
+    public String getLastMismatch() {
+        return lastMismatch;
+    }
+
+    /**
+     * @return the account saves replaced by a newer one before reaching the candidate
+     */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    /**
+     * @return the writes dropped because the candidate's queue was full
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return the primary and candidate p50/p99 of each write, and the counts
+     *         of mismatches, coalesced saves and dropped writes
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram p = getPrimaryLatency(operation);
+            LatencyHistogram c = getCandidateLatency(operation);
+            text.append(String.format("%-15s primary n=%d p50=%.3fms p99=%.3fms candidate n=%d p50=%.3fms p99=%.3fms%n",
+                    operation.name().toLowerCase(), p.getCount(), p.getPercentile(50) / 1e6,
+                    p.getPercentile(99) / 1e6, c.getCount(), c.getPercentile(50) / 1e6, c.getPercentile(99) / 1e6));
+        }
+        text.append(String.format("mismatches=%d coalesced=%d dropped=%d%n", getMismatches(), getCoalesced(),
+                getDropped()));
+        return text.toString();
+    }
+}
@@ -0,0 +1,229 @@
+package com.atm.utils;
+
+import java.util.function.LongSupplier;
+
+/**
+ * A hashed timing wheel: schedules and cancels timeouts in constant time,
+ * however many are pending.
+ * <p>
+ * Time is cut into ticks, and the wheel has one bucket per tick, round and
+ * round. A timeout goes into the bucket of the tick it is due in, with the
+ * number of full turns of the wheel still to wait. Each tick, the wheel
+ * visits one bucket: it runs the timeouts with no turns left and counts the
+ * others down. Scheduling and cancelling only link and unlink an entry, so
+ * tens of thousands of sessions cost the same per keypress as one, and one
+ * thread serves them all. Timeouts run up to a tick late, never early.
+ * </p>
+ * <p>
+ * {@link #start(String)} runs the ticks on a daemon thread. Without it,
+ * ticks are run by calling {@link #advance()}, which with a clock of one's
+ * own makes the wheel step through time on demand.
+ * </p>
+ */
+public class TimingWheel {
+
+    /**
+     * A scheduled timeout.
+     */
+    public final class Timeout {
+        private final Runnable task;
+        private long rounds;
+        private Timeout previous;
+        private Timeout next;
+        private int bucket = -1; // -1 once it has run or been cancelled
+
+        private Timeout(Runnable task) {
+            this.task = task;
+        }
+
+        /**
+         * Stops the timeout from running, if it has not already.
+         *
+         * @return {@code true} if it was still pending
+         */
+        public boolean cancel() {
+            synchronized (TimingWheel.this) {
+                if (bucket < 0) {
+                    return false;
+                }
+                unlink(this);
+                return true;
+            }
+        }
+
+        /**
+         * @return {@code true} if the timeout has neither run nor been cancelled
+         */
+        public boolean isPending() {
+            synchronized (TimingWheel.this) {
+                return bucket >= 0;
+            }
+        }
+    }
+
+    private final long tickMillis;
+    private final Timeout[] buckets;
+    private final LongSupplier clock;
+    private final long startMillis;
+    private long tick = 0; // the next tick to run
+    private int pending = 0;
+    private Thread ticker;
+
+    /**
+     * Creates a wheel on the system clock.
+     *
+     * @param tickMillis how long a tick is
+     * @param size       the buckets; a turn of the wheel is this many ticks
+     */
+    public TimingWheel(long tickMillis, int size) {
+        this(tickMillis, size, () -> System.nanoTime() / 1_000_000);
+    }
+
+    /**
+     * Creates a wheel on the given clock.
+     *
+     * @param tickMillis how long a tick is
+     * @param size       the buckets; a turn of the wheel is this many ticks
+     * @param clock      the time in milliseconds
+     */
+    public TimingWheel(long tickMillis, int size, LongSupplier clock) {
+        if (tickMillis < 1 || size < 1) {
+            throw new IllegalArgumentException("tick and size must be positive");
+        }
+        this.tickMillis = tickMillis;
+        this.buckets = new Timeout[size];
+        this.clock = clock;
+        this.startMillis = clock.getAsLong();
+    }
+
+    /**
+     * @return the wheel's clock, in milliseconds
+     */
+    public long now() {
+        return clock.getAsLong();
+    }
+
+    /**
+     * Schedules a task to run once a delay has passed. The task runs on the
+     * thread ticking the wheel, so it should hand off anything slow.
+     *
+     * @param task        what to run
+     * @param delayMillis how long from now
+     * @return the timeout, which can be cancelled
+     */
+    public Timeout schedule(Runnable task, long delayMillis) {
+        Timeout timeout = new Timeout(task);
+        long due = Math.max(0, now() + Math.max(0, delayMillis) - startMillis);
+        synchronized (this) {
+            // The first tick ending at or after the deadline, and never one already run
+            long dueTick = Math.max(tick, (due + tickMillis - 1) / tickMillis);
+            timeout.rounds = (dueTick - tick) / buckets.length;
+            timeout.bucket = (int) (dueTick % buckets.length);
+            timeout.next = buckets[timeout.bucket];
+            if (timeout.next != null) {
+                timeout.next.previous = timeout;
+            }
+            buckets[timeout.bucket] = timeout;
+            pending++;
+        }
+        return timeout;
+    }
+
+    /**
+     * Runs every tick up to the clock's current time.
+     *
+     * @return the timeouts run
+     */
+    public int advance() {
+        long now = now() - startMillis;
+        int ran = 0;
+        while (true) {
+            Timeout due = null;
+            synchronized (this) {
+                if (tick * tickMillis > now) {
+                    return ran;
+                }
+                int bucket = (int) (tick % buckets.length);
+                Timeout timeout = buckets[bucket];
+                while (timeout != null) {
+                    Timeout next = timeout.next;
+                    if (timeout.rounds == 0) {
+                        unlink(timeout);
+                        timeout.next = due;
+                        due = timeout;
+                    } else {
+                        timeout.rounds--;
+                    }
+                    timeout = next;
+                }
+                tick++;
+            }
+            // Outside the lock, so tasks can schedule and cancel
+            for (Timeout timeout = due; timeout != null; timeout = timeout.next) {
+                try {
+                    timeout.task.run();
+                } catch (RuntimeException e) {
+                    System.err.println("Timeout failed: " + e);
+                }
+                ran++;
+            }
+        }
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout.previous != null) {
+            timeout.previous.next = timeout.next;
+        } else {
+            buckets[timeout.bucket] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.previous = timeout.previous;
+        }
+        timeout.previous = null;
+        timeout.next = null;
+        timeout.bucket = -1;
+        pending--;
+    }
+
+    /**
+     * @return the timeouts scheduled and not yet run or cancelled
+     */
+    public synchronized int getPending() {
+        return pending;
+    }
+
+    /**
+     * Starts a daemon thread that advances the wheel every tick.
+     *
+     * @param name the thread's name
+     * @return this wheel
+     */
+    public synchronized TimingWheel start(String name) {
+        if (ticker == null) {
+            ticker = new Thread(() -> {
+                while (!Thread.currentThread().isInterrupted()) {
+                    try {
+                        Thread.sleep(tickMillis);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    advance();
+                }
+            }, name);
+            ticker.setDaemon(true);
+            ticker.start();
+        }
+        return this;
+    }
+
+    /**
+     * Stops the thread started by {@link #start(String)}; pending timeouts
+     * stay scheduled.
+     */
+    public synchronized void stop() {
+        if (ticker != null) {
+            ticker.interrupt();
+            ticker = null;
+        }
+    }
+}
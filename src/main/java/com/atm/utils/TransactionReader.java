@@ -16,8 +16,8 @@ import java.util.List;
  * transaction lines matching the given account number, limited to a specified
  * count.
  * <p>
- * <strong>Usage:</strong> Used by {@link com.atm.View} to display transaction
- * receipts.
+ * <strong>Usage:</strong> Used by {@link CsvAccountStore} to read the
+ * transactions shown on the receipts {@link com.atm.View} displays.
  * </p>
  * <p>
  * <strong>File Format:</strong> Expects lines in the format:
@@ -50,15 +50,29 @@ public class TransactionReader {
    * @throws RuntimeException if an I/O error occurs while reading the file
    */
   public static List<String> getTransactions(String accountNumber, int count) {
+    return getTransactions(FILE_PATH, accountNumber, count);
+  }
+
+  /**
+   * Retrieves the most recent transactions for a given account number from the
+   * given CSV file.
+   *
+   * @param filePath      the transaction log to read
+   * @param accountNumber the account number to filter transactions
+   * @param count         the maximum number of transactions to return
+   * @return a {@code List<String>} of transaction lines, or an empty list if none
+   *         found
+   */
+  public static List<String> getTransactions(String filePath, String accountNumber, int count) {
     List<String> recent = new LinkedList<>(); // List to store matching transactions
 
     // Check if file exists, if not, return empty list
-    File file = new File(FILE_PATH);
+    File file = new File(filePath);
     if (!file.exists()) {
       return recent;
     }
 
-    try (BufferedReader reader = new BufferedReader(new FileReader(FILE_PATH))) { // Open CSV file
+    try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) { // Open CSV file
       String line;
       while ((line = reader.readLine()) != null) { // Read each line
         if (line.contains(accountNumber)) { // Check if line contains account number
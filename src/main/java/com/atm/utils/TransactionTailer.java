@@ -0,0 +1,446 @@
+package com.atm.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * The {@code TransactionTailer} class follows the transaction log and hands
+ * every newly appended record to its subscribers, so downstream readers no
+ * longer have to re-read {@code transactions.csv} from the start.
+ * <p>
+ * One tailer reads the file for all of its subscribers. New bytes are read by
+ * memory-mapping only the region past the last complete line, and a
+ * {@link WatchService} on the log's directory wakes the reader when the file
+ * changes. Each subscriber has a name and a durable byte offset stored in
+ * {@code <offsetDir>/<name>.offset}; a subscriber that restarts resumes from
+ * that offset instead of seeing old records again.
+ * </p>
+ * <p>
+ * <strong>Delivery:</strong> records are delivered at least once and in file
+ * order. A subscriber's offset only advances past a record after its consumer
+ * has returned normally; if the consumer throws, delivery to that subscriber
+ * stops for the current pass and is retried on the next one. A trailing line
+ * without a newline is treated as still being written and is not delivered.
+ * </p>
+ * <p>
+ * <strong>File Format:</strong> Records are the lines written by
+ * {@link TransactionWriter}:
+ * <code>timestamp,accountNumber,type,amount,balance</code>
+ * </p>
+ */
+public class TransactionTailer implements Closeable {
+  /** The default transaction log, shared with {@link TransactionWriter}. */
+  private static final String FILE_PATH = "transactions.csv";
+  /** The default directory for subscriber offsets. */
+  private static final String OFFSET_DIR = "offsets";
+  /** The largest region mapped at once, so huge backlogs are read in pieces. */
+  private static final long MAX_MAPPED_BYTES = 64L * 1024 * 1024;
+  /** The longest line that can be delivered; longer ones are skipped. */
+  private static final long MAX_LINE_BYTES = Integer.MAX_VALUE - 8;
+  /** How much of a line longer than a window is read at a time. */
+  private static final int LONG_LINE_CHUNK = 64 * 1024;
+  /** How long the follower waits for a file event before checking anyway. */
+  private static final long FALLBACK_POLL_MILLIS = 1000;
+
+  private final Path logFile;
+  private final Path offsetDir;
+  private final long windowBytes;
+  private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+  /** Byte offset just past the last complete line this tailer has read. */
+  private long position = -1;
+  /** Offset just past the last complete line found by the latest {@link #read}. */
+  private long lineEnd;
+
+  private WatchService watchService;
+  private Thread follower;
+  private volatile boolean running;
+
+  /**
+   * Creates a tailer over {@code transactions.csv} that stores offsets in
+   * the {@code offsets} directory.
+   */
+  public TransactionTailer() {
+    this(FILE_PATH, OFFSET_DIR);
+  }
+
+  /**
+   * Creates a tailer over the given log file.
+   *
+   * @param logPath   the transaction log to follow
+   * @param offsetDir the directory where subscriber offsets are kept
+   */
+  public TransactionTailer(String logPath, String offsetDir) {
+    this(logPath, offsetDir, MAX_MAPPED_BYTES);
+  }
+
+  /**
+   * Creates a tailer that maps at most the given number of bytes at once.
+   *
+   * @param logPath     the transaction log to follow
+   * @param offsetDir   the directory where subscriber offsets are kept
+   * @param windowBytes the largest region mapped at once
+   */
+  TransactionTailer(String logPath, String offsetDir, long windowBytes) {
+    this.logFile = Paths.get(logPath).toAbsolutePath();
+    this.offsetDir = Paths.get(offsetDir);
+    this.windowBytes = windowBytes;
+  }
+
+  /**
+   * Registers a named subscriber.
+   * <p>
+   * The subscriber resumes from its stored offset, or from the start of the
+   * log the first time it is seen. If it is behind the shared reader, the
+   * records it missed are read once for it alone on the next {@link #poll()}.
+   * </p>
+   *
+   * @param name     a stable name used to store the subscriber's offset
+   * @param consumer receives each record line, without the trailing newline
+   * @throws IllegalArgumentException if the name is already subscribed
+   */
+  public synchronized void subscribe(String name, Consumer<String> consumer) {
+    for (Subscription s : subscriptions) {
+      if (s.name.equals(name)) {
+        throw new IllegalArgumentException("Subscriber already registered: " + name);
+      }
+    }
+    subscriptions.add(new Subscription(name, consumer, loadOffset(name)));
+  }
+
+  /**
+   * Returns the stored offset of a subscriber.
+   *
+   * @param name the subscriber name
+   * @return the byte offset of the next record it will receive
+   */
+  public synchronized long getOffset(String name) {
+    for (Subscription s : subscriptions) {
+      if (s.name.equals(name)) {
+        return s.offset;
+      }
+    }
+    return loadOffset(name);
+  }
+
+  /**
+   * Reads any records appended since the last call and delivers them.
+   *
+   * @return the number of new records read from the log
+   * @throws RuntimeException if the log cannot be read
+   */
+  public synchronized int poll() {
+    if (subscriptions.isEmpty() || !Files.exists(logFile)) {
+      return 0;
+    }
+    try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size < position) {
+        // The log was truncated or replaced: everyone starts again from the top
+        for (Subscription s : subscriptions) {
+          s.reset();
+        }
+        position = 0;
+      }
+      for (Subscription s : subscriptions) {
+        if (s.offset > size) {
+          s.reset(); // offset belongs to an older, longer log
+        }
+      }
+      if (position < 0) {
+        position = lowestOffset();
+      }
+      // Subscribers that joined behind the shared reader catch up on their own
+      for (Subscription s : subscriptions) {
+        if (s.offset < position) {
+          readRange(channel, s.offset, position, List.of(s));
+        }
+      }
+      int records = readRange(channel, position, size, subscriptions);
+      position = lineEnd;
+      for (Subscription s : subscriptions) {
+        if (s.dirty) {
+          storeOffset(s);
+        }
+      }
+      return records;
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to read transaction log", e);
+    }
+  }
+
+  /**
+   * Delivers each complete line in {@code [from, to)} to the given
+   * subscribers, mapping at most one window at a time.
+   *
+   * @return the number of complete lines found; {@link #lineEnd} is set to
+   *         the offset just past the last of them
+   */
+  private int readRange(FileChannel channel, long from, long to, List<Subscription> targets)
+      throws IOException {
+    int records = 0;
+    long at = from;
+    while (at < to) {
+      long end = Math.min(to, at + windowBytes);
+      int read = read(channel, at, end, targets);
+      if (read == 0) {
+        // No newline in the window: a partial line, or one longer than the window
+        if (end == to || !readLongLine(channel, at, to, targets)) {
+          break;
+        }
+        read = 1;
+      }
+      records += read;
+      at = lineEnd;
+    }
+    lineEnd = at;
+    return records;
+  }
+
+  /**
+   * Reads the line starting at {@code from} a chunk at a time and delivers
+   * it, for lines that do not fit in one window. Lines too long to hold in
+   * a string are skipped.
+   *
+   * @return {@code false} if the line has no newline before {@code to} yet;
+   *         otherwise {@link #lineEnd} is set to the offset just past it
+   */
+  private boolean readLongLine(FileChannel channel, long from, long to, List<Subscription> targets)
+      throws IOException {
+    ByteArrayOutputStream line = new ByteArrayOutputStream();
+    ByteBuffer chunk = ByteBuffer.allocate(LONG_LINE_CHUNK);
+    long at = from;
+    while (at < to) {
+      chunk.clear();
+      chunk.limit((int) Math.min(LONG_LINE_CHUNK, to - at));
+      int n = channel.read(chunk, at);
+      if (n <= 0) {
+        return false;
+      }
+      for (int i = 0; i < n; i++) {
+        if (chunk.get(i) == '\n') {
+          long end = at + i + 1;
+          if (end - 1 - from > MAX_LINE_BYTES) {
+            System.err.println("Skipping a transaction record of " + (end - 1 - from) + " bytes at " + from);
+            for (Subscription s : targets) {
+              s.skip(from, end);
+            }
+          } else {
+            line.write(chunk.array(), 0, i);
+            String record = line.toString(StandardCharsets.UTF_8);
+            for (Subscription s : targets) {
+              s.deliver(from, end, record);
+            }
+          }
+          lineEnd = end;
+          return true;
+        }
+      }
+      if (line.size() + (long) n <= MAX_LINE_BYTES) {
+        line.write(chunk.array(), 0, n);
+      } else {
+        line.reset(); // Too long to deliver; keep looking for its end
+      }
+      at += n;
+    }
+    return false;
+  }
+
+  /**
+   * Maps {@code [from, to)} and delivers each complete line in it to the given
+   * subscribers whose offset has not yet passed that line.
+   *
+   * @return the number of complete lines found; {@link #lineEnd} is set to
+   *         the offset just past the last of them
+   */
+  private int read(FileChannel channel, long from, long to, List<Subscription> targets)
+      throws IOException {
+    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+    int limit = buffer.limit();
+    int lineStart = 0;
+    int records = 0;
+    for (int i = 0; i < limit; i++) {
+      if (buffer.get(i) != '\n') {
+        continue;
+      }
+      byte[] bytes = new byte[i - lineStart];
+      buffer.get(lineStart, bytes);
+      String record = new String(bytes, StandardCharsets.UTF_8);
+      long start = from + lineStart;
+      long end = from + i + 1;
+      for (Subscription s : targets) {
+        s.deliver(start, end, record);
+      }
+      lineStart = i + 1;
+      records++;
+    }
+    lineEnd = from + lineStart;
+    return records;
+  }
+
+  /**
+   * Starts a background thread that polls whenever the log changes.
+   *
+   * @throws RuntimeException if the directory cannot be watched
+   */
+  public synchronized void start() {
+    if (running) {
+      return;
+    }
+    WatchService watcher;
+    try {
+      watcher = logFile.getFileSystem().newWatchService();
+      logFile.getParent().register(watcher,
+          StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to watch transaction log", e);
+    }
+    watchService = watcher;
+    running = true;
+    // The follower keeps its own reference, as close() clears the field while it runs
+    follower = new Thread(() -> follow(watcher), "transaction-tailer");
+    follower.setDaemon(true);
+    follower.start();
+  }
+
+  private void follow(WatchService watcher) {
+    while (running) {
+      try {
+        // Some platforms deliver file events late, so check the log even without one
+        WatchKey key = watcher.poll(FALLBACK_POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if (key != null) {
+          key.pollEvents();
+          key.reset();
+        }
+        poll();
+      } catch (InterruptedException | ClosedWatchServiceException e) {
+        return;
+      } catch (RuntimeException e) {
+        System.err.println("Transaction tailer: " + e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Stops the background thread, if one was started.
+   */
+  @Override
+  public void close() {
+    Thread thread;
+    synchronized (this) {
+      running = false;
+      thread = follower;
+      follower = null;
+      if (watchService != null) {
+        try {
+          watchService.close();
+        } catch (IOException e) {
+          System.err.println("Failed to close transaction log watcher: " + e.getMessage());
+        }
+        watchService = null;
+      }
+    }
+    if (thread != null) {
+      thread.interrupt();
+    }
+  }
+
+  private long lowestOffset() {
+    long lowest = Long.MAX_VALUE;
+    for (Subscription s : subscriptions) {
+      lowest = Math.min(lowest, s.offset);
+    }
+    return lowest;
+  }
+
+  private long loadOffset(String name) {
+    Path file = offsetDir.resolve(name + ".offset");
+    if (!Files.exists(file)) {
+      return 0;
+    }
+    try {
+      return Long.parseLong(Files.readString(file).trim());
+    } catch (IOException | NumberFormatException e) {
+      System.err.println("Ignoring unreadable offset for " + name + ": " + e.getMessage());
+      return 0;
+    }
+  }
+
+  /**
+   * Writes the offset to a temporary file and moves it into place, so a crash
+   * never leaves a half-written offset behind.
+   */
+  private void storeOffset(Subscription s) throws IOException {
+    Files.createDirectories(offsetDir);
+    Path file = offsetDir.resolve(s.name + ".offset");
+    Path tmp = offsetDir.resolve(s.name + ".offset.tmp");
+    Files.writeString(tmp, Long.toString(s.offset));
+    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    s.dirty = false;
+  }
+
+  /** A named consumer and the byte offset of the next record it needs. */
+  private static final class Subscription {
+    final String name;
+    final Consumer<String> consumer;
+    long offset;
+    boolean dirty;
+    /** Set when the consumer failed during the current pass. */
+    boolean stalled;
+
+    Subscription(String name, Consumer<String> consumer, long offset) {
+      this.name = name;
+      this.consumer = consumer;
+      this.offset = offset;
+    }
+
+    void reset() {
+      offset = 0;
+      dirty = true;
+      stalled = false;
+    }
+
+    void skip(long start, long end) {
+      if (start >= offset && !stalled) {
+        offset = end;
+        dirty = true;
+      }
+    }
+
+    void deliver(long start, long end, String record) {
+      if (start < offset) {
+        return; // already seen before a restart
+      }
+      if (stalled && start > offset) {
+        return;
+      }
+      try {
+        consumer.accept(record);
+        offset = end;
+        dirty = true;
+        stalled = false;
+      } catch (RuntimeException e) {
+        stalled = true;
+        System.err.println("Transaction subscriber " + name + " failed: " + e.getMessage());
+      }
+    }
+  }
+}
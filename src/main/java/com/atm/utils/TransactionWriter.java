@@ -48,11 +48,27 @@ public class TransactionWriter {
    * @param type          the type of transaction (e.g., "Deposit", "Withdraw")
    * @param amount        the transaction amount
    * @param balance       the account balance after the transaction
+   * @return the number of bytes appended, or -1 if the write failed
    * @throws RuntimeException if an I/O error occurs while writing to the file
    */
 
-  public static void logTransaction(String accountNumber, String type, double amount, double balance) {
-    try (FileWriter writer = new FileWriter(FILE_PATH, true)) { // Append mode
+  public static int logTransaction(String accountNumber, String type, double amount, double balance) {
+    return logTransaction(FILE_PATH, accountNumber, type, amount, balance);
+  }
+
+  /**
+   * Logs a transaction to the given CSV file.
+   *
+   * @param filePath      the transaction log to append to
+   * @param accountNumber the account number associated with the transaction
+   * @param type          the type of transaction (e.g., "Deposit", "Withdraw")
+   * @param amount        the transaction amount
+   * @param balance       the account balance after the transaction
+   * @return the number of bytes appended, or -1 if the write failed
+   */
+  public static int logTransaction(String filePath, String accountNumber, String type, double amount,
+      double balance) {
+    try (FileWriter writer = new FileWriter(filePath, true)) { // Append mode
       // Create a comma-separated line with timestamp, account number, type, amount,
       // and balance
 
@@ -63,9 +79,11 @@ public class TransactionWriter {
           String.valueOf(amount), // Convert amount to String
           String.valueOf(balance)); // Convert balance to String
       writer.write(line + "\n"); // Write line to file with newline
+      return line.length() + 1; // the row is ASCII, so one byte per char
     } catch (IOException e) {
       // Log error to stderr if file writing fails
       System.err.println("Failed to log transaction: " + e.getMessage());
+      return -1;
     }
   }
 
@@ -5,7 +5,11 @@ module com.atm {
     requires javafx.media; // Added for AudioClip
     requires java.dotenv; // Environment Variables
     requires java.desktop; // Added by Gur - for sound options
+    requires java.management; // Metrics MXBeans
+    requires jdk.jfr; // Flight Recorder events
+    requires jdk.httpserver; // Metrics endpoint
 
     opens com.atm to javafx.fxml;
     exports com.atm;
+    exports com.atm.metrics; // MXBean interfaces must be visible to JMX
 }
\ No newline at end of file
@@ -0,0 +1,296 @@
+package com.atm;
+
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.BooleanSupplier;
+
+import com.atm.metrics.HeapMeter;
+import com.atm.utils.AccountStore;
+import com.atm.utils.PinHasher;
+
+/**
+ * Measures how much heap the account model holds and how much the bank's
+ * operations allocate, and checks both against budgets.
+ * <p>
+ * For each account type a bank is loaded with that many accounts of the
+ * type, each with its own account number and stored PIN. An account in use
+ * holds nothing more, as the bank keeps the result of a deposit or
+ * withdrawal with the session rather than the account. The heap in use after
+ * collection, less what it was before the bank was built, divided by the
+ * accounts, is the bytes retained per account, including the bank's map
+ * entry for it. Banks smaller than 20000 accounts
+ * are built several times over and measured together.
+ * </p>
+ * <p>
+ * Deposits, withdrawals, transfers and logins are then run on a bank of
+ * mixed accounts, and the bytes the measuring thread allocated are divided
+ * by the operations; a login also counts what the {@code pin-verifier-}
+ * threads allocated, as its PIN is checked on their pool. Each operation is run as many times again beforehand,
+ * so the compiled code is measured. The store ignores what it is given, so
+ * only the bank's own allocation is counted; every deposit, withdrawal and
+ * transfer still copies every account for saving, so those grow with the
+ * bank, and a large bank runs them only a few times.
+ * </p>
+ * <p>
+ * A measure may be given a budget in bytes with
+ * {@code -Datm.footprint.budget.<measure>}, e.g.
+ * {@code -Datm.footprint.budget.gold_account=400}, or for one size of bank
+ * only with {@code -Datm.footprint.budget.deposit.1000=20000}. The report
+ * lists the measures over their budget.
+ * </p>
+ */
+public class AccountFootprint {
+
+    static final String PIN = "12345";
+
+    /**
+     * What is measured: bytes retained per account of a type, or bytes
+     * allocated per operation.
+     */
+    public enum Measure {
+        STUDENT_ACCOUNT("student"), GOLD_ACCOUNT("gold"), PLATINUM_ACCOUNT("platinum"),
+        DEPOSIT(null), WITHDRAWAL(null), TRANSFER(null), LOGIN(null);
+
+        final String type;
+
+        Measure(String type) {
+            this.type = type;
+        }
+    }
+
+    /**
+     * Generates the accounts on every read, so the store holds none of them,
+     * and ignores saves and transactions.
+     */
+    private static class GeneratedStore implements AccountStore {
+        private static final String[] TYPES = { "student", "gold", "platinum" };
+
+        private final int accounts;
+        private final String type;
+        private final String hash;
+        private final boolean distinct;
+
+        GeneratedStore(int accounts, String type, String hash, boolean distinct) {
+            this.accounts = accounts;
+            this.type = type;
+            this.hash = hash;
+            this.distinct = distinct;
+        }
+
+        @Override
+        public List<String[]> readAccounts() {
+            List<String[]> rows = new ArrayList<>(accounts);
+            // Distinct stored PINs of the real length: the hash with its tail replaced
+            String prefix = hash.substring(0, hash.length() - 8);
+            for (int i = 0; i < accounts; i++) {
+                String number = number(i);
+                rows.add(new String[] { number, distinct ? prefix + number : hash,
+                        type != null ? type : TYPES[i % TYPES.length], "1000000.0" });
+            }
+            return rows;
+        }
+
+        @Override
+        public long writeAccounts(List<String[]> accounts) {
+            return 0;
+        }
+
+        @Override
+        public int logTransaction(String accountNumber, String type, double amount, double balance) {
+            return 0;
+        }
+    }
+
+    /**
+     * The measurements of one size of bank.
+     */
+    public static class Report {
+        /** The accounts in the bank */
+        public final int accounts;
+        private final double[] bytes = new double[Measure.values().length];
+
+        Report(int accounts) {
+            this.accounts = accounts;
+        }
+
+        /**
+         * @param measure what was measured
+         * @return bytes per account or per operation, or -1 if the JVM does
+         *         not count allocated bytes
+         */
+        public double bytes(Measure measure) {
+            return bytes[measure.ordinal()];
+        }
+
+        /**
+         * @return the measures over their budget
+         */
+        public List<Measure> overBudget() {
+            List<Measure> over = new ArrayList<>();
+            for (Measure measure : Measure.values()) {
+                long budget = budgetBytes(measure, accounts);
+                if (budget >= 0 && bytes(measure) > budget) {
+                    over.add(measure);
+                }
+            }
+            return over;
+        }
+
+        /**
+         * @return {@code true} if every measure was within its budget
+         */
+        public boolean passed() {
+            return overBudget().isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder(String.format("%d accounts%n", accounts));
+            for (Measure measure : Measure.values()) {
+                long budget = budgetBytes(measure, accounts);
+                text.append(String.format("  %-17s %10.0f bytes %s%s%n", measure.name().toLowerCase(Locale.ROOT),
+                        bytes(measure), measure.type != null ? "per account" : "per operation",
+                        budget < 0 ? "" : budget < bytes(measure) ? " OVER BUDGET " + budget : " budget " + budget));
+            }
+            return text.toString();
+        }
+    }
+
+    private int iterations = 1000;
+    private int logins = 20;
+
+    /**
+     * @param iterations the deposits, withdrawals and transfers measured on a
+     *                   bank of up to 2000 accounts; larger banks run fewer
+     * @return this measurement
+     */
+    public AccountFootprint iterations(int iterations) {
+        this.iterations = iterations;
+        return this;
+    }
+
+    /**
+     * @param logins the logins measured
+     * @return this measurement
+     */
+    public AccountFootprint logins(int logins) {
+        this.logins = logins;
+        return this;
+    }
+
+    /**
+     * Returns the budget of a measure, from
+     * {@code atm.footprint.budget.<measure>.<accounts>} or else
+     * {@code atm.footprint.budget.<measure>}.
+     *
+     * @param measure  the measure
+     * @param accounts the size of the bank
+     * @return bytes, or -1 if it has no budget
+     */
+    public static long budgetBytes(Measure measure, int accounts) {
+        String key = "atm.footprint.budget." + measure.name().toLowerCase(Locale.ROOT);
+        return Long.getLong(key + "." + accounts, Long.getLong(key, -1));
+    }
+
+    /**
+     * Takes every measurement on banks of the given size.
+     *
+     * @param accounts the accounts in each bank, at least 2
+     * @return the report
+     */
+    public Report run(int accounts) {
+        if (accounts < 2) {
+            throw new IllegalArgumentException("need at least 2 accounts");
+        }
+        Report report = new Report(accounts);
+        String hash = PinHasher.hash(PIN);
+        retained("student", 2, hash); // loads the classes involved, so they are not counted
+        for (Measure measure : Measure.values()) {
+            if (measure.type != null) {
+                report.bytes[measure.ordinal()] = retained(measure.type, accounts, hash);
+            }
+        }
+
+        Bank bank = new Bank(new GeneratedStore(accounts, null, hash, false));
+        Bank session = bank.openSession();
+        String from = number(0);
+        String to = number(1);
+        int runs = (int) Math.max(3, Math.min(iterations, 2_000_000L / accounts));
+        session.login(from, PIN);
+        report.bytes[Measure.DEPOSIT.ordinal()] = allocated(runs, () -> session.deposit(1), session, null);
+        report.bytes[Measure.WITHDRAWAL.ordinal()] = allocated(runs, () -> session.withdraw(1), session, null);
+        report.bytes[Measure.TRANSFER.ordinal()] = allocated(runs,
+                () -> session.transfer(to, 1, (recipient, amount) -> true), session, null);
+        report.bytes[Measure.LOGIN.ordinal()] = allocated(logins, () -> session.login(from, PIN), session,
+                "pin-verifier-");
+        return report;
+    }
+
+    private static double retained(String type, int accounts, String hash) {
+        // Small banks are measured several at a time, so the heap's own noise is spread thin
+        int copies = Math.max(1, 20_000 / accounts);
+        GeneratedStore store = new GeneratedStore(accounts, type, hash, true);
+        Bank[] banks = new Bank[copies];
+        long before = HeapMeter.usedAfterGc();
+        for (int copy = 0; copy < copies; copy++) {
+            banks[copy] = new Bank(store);
+        }
+        long after = HeapMeter.usedAfterGc();
+        Reference.reachabilityFence(banks);
+        return (after - before) / ((double) accounts * copies);
+    }
+
+    private static double allocated(int runs, BooleanSupplier operation, Bank session, String workers) {
+        for (int i = 0; i < runs; i++) {
+            check(operation.getAsBoolean(), session);
+        }
+        // After the warm-up, so a pool's threads have all been started
+        long[] threads = workers != null ? HeapMeter.threadIds(workers)
+                : new long[] { Thread.currentThread().threadId() };
+        long before = HeapMeter.allocatedBytes(threads);
+        if (before < 0) {
+            return -1;
+        }
+        boolean succeeded = true;
+        for (int i = 0; i < runs; i++) {
+            succeeded &= operation.getAsBoolean();
+        }
+        long after = HeapMeter.allocatedBytes(threads);
+        check(succeeded, session);
+        return (after - before) / (double) runs;
+    }
+
+    private static void check(boolean succeeded, Bank session) {
+        if (!succeeded) {
+            throw new IllegalStateException("operation failed while measuring: " + session.getLastMessage());
+        }
+    }
+
+    private static String number(int i) {
+        return Integer.toString(100_000_000 + i).substring(1);
+    }
+
+    /**
+     * Measures banks of each size, prints the reports and exits with 1 if a
+     * measure was over its budget. Ten million accounts need about
+     * {@code -Xmx8g}.
+     *
+     * @param args the sizes of bank, by default 1000, 1000000 and 10000000
+     */
+    public static void main(String[] args) {
+        Debug.setLevel(Debug.Level.OFF);
+        if (!HeapMeter.isAllocationCounted()) {
+            System.err.println("This JVM does not count allocated bytes; only retained bytes are measured");
+        }
+        String[] sizes = args.length > 0 ? args : new String[] { "1000", "1000000", "10000000" };
+        boolean passed = true;
+        for (String size : sizes) {
+            Report report = new AccountFootprint().run(Integer.parseInt(size));
+            System.out.print(report);
+            passed &= report.passed();
+        }
+        System.exit(passed ? 0 : 1);
+    }
+}
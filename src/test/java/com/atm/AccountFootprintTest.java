@@ -0,0 +1,108 @@
+package com.atm;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.atm.metrics.HeapMeter;
+
+/**
+ * Test class for the {@link AccountFootprint}.
+ * <p>
+ * These tests verify that:
+ * <ul>
+ *   <li>Accounts and the bank's operations stay within their byte budgets</li>
+ *   <li>A measure over its budget fails the report</li>
+ * </ul>
+ * The budgets run against a bank of 1000 accounts; other sizes can be given
+ * with {@code -Datm.footprint.sizes=1000,1000000,10000000}, which needs a
+ * larger heap, e.g. {@code -DargLine=-Xmx8g}. Budgets given on the command
+ * line replace the ones here.
+ * </p>
+ */
+public class AccountFootprintTest {
+
+    // Bytes retained per account, whatever the size of the bank
+    private static final Map<String, String> BUDGETS = Map.of(
+            "atm.footprint.budget.student_account", "512",
+            "atm.footprint.budget.gold_account", "512",
+            "atm.footprint.budget.platinum_account", "512",
+            // Includes what the pin-verifier threads allocate to check the PIN
+            "atm.footprint.budget.login", "65536",
+            // Every change saves every account, so these hold for 1000 accounts only
+            "atm.footprint.budget.deposit.1000", "250000",
+            "atm.footprint.budget.withdrawal.1000", "250000",
+            "atm.footprint.budget.transfer.1000", "250000");
+
+    private final List<String> set = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        Debug.setLevel(Debug.Level.OFF);
+        System.setProperty("atm.pin.iterations", "1000");
+        BUDGETS.forEach((key, budget) -> {
+            if (System.getProperty(key) == null) {
+                System.setProperty(key, budget);
+                set.add(key);
+            }
+        });
+    }
+
+    @AfterEach
+    public void tearDown() {
+        System.clearProperty("atm.pin.iterations");
+        set.forEach(System::clearProperty);
+    }
+
+    @Test
+    @DisplayName("Test that accounts and operations stay within their budgets")
+    public void testWithinBudgets() {
+        for (String size : System.getProperty("atm.footprint.sizes", "1000").split(",")) {
+            AccountFootprint.Report report = new AccountFootprint().run(Integer.parseInt(size.trim()));
+
+            assertTrue(report.passed(), report.toString());
+            assertTrue(report.bytes(AccountFootprint.Measure.GOLD_ACCOUNT) > 0, report.toString());
+        }
+    }
+
+    @Test
+    @DisplayName("Test that a measure over its budget fails the report")
+    public void testOverBudget() {
+        assumeTrue(HeapMeter.isAllocationCounted());
+        String key = "atm.footprint.budget.deposit.1000";
+        String budget = System.getProperty(key);
+        System.setProperty(key, "1");
+        try {
+            AccountFootprint.Report report = new AccountFootprint().iterations(50).logins(5).run(1000);
+
+            assertFalse(report.passed());
+            assertEquals(List.of(AccountFootprint.Measure.DEPOSIT), report.overBudget());
+            assertTrue(report.toString().contains("OVER BUDGET 1"), report.toString());
+            assertEquals(-1, AccountFootprint.budgetBytes(AccountFootprint.Measure.DEPOSIT, 2000));
+        } finally {
+            System.setProperty(key, budget); // Set by setUp, or given on the command line
+        }
+    }
+
+    @Test
+    @DisplayName("Test that budgets are found whatever the default locale")
+    public void testLocale() {
+        Locale locale = Locale.getDefault();
+        Locale.setDefault(Locale.forLanguageTag("tr-TR")); // Where "I" lowercases to a dotless "ı"
+        try {
+            assertEquals(512, AccountFootprint.budgetBytes(AccountFootprint.Measure.PLATINUM_ACCOUNT, 1000));
+            assertEquals(250000, AccountFootprint.budgetBytes(AccountFootprint.Measure.WITHDRAWAL, 1000));
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.atm;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.atm.metrics.Metrics;
+import com.atm.utils.MemoryAccountStore;
+import com.atm.utils.PinHasher;
+
+/**
+ * Test class for prefetching an account while its PIN is typed.
+ * <p>
+ * These tests verify that:
+ * <ul>
+ *   <li>Login uses the prefetched account and the receipt its transactions</li>
+ *   <li>Transactions logged since the prefetch are read again</li>
+ *   <li>Prefetches that are not used are discarded</li>
+ *   <li>Entering an account number on the keypad starts a prefetch</li>
+ * </ul>
+ * </p>
+ */
+public class AccountPrefetchTest {
+
+    /** Keeps the transaction log in memory and counts its reads. */
+    private static class LogStore extends MemoryAccountStore {
+        private final List<String> log = new ArrayList<>();
+        private int reads = 0;
+
+        LogStore(List<String[]> rows) {
+            super(rows);
+        }
+
+        @Override
+        public synchronized int logTransaction(String accountNumber, String type, double amount, double balance) {
+            log.add("2026-01-01," + accountNumber + "," + type + "," + amount + "," + balance);
+            return super.logTransaction(accountNumber, type, amount, balance);
+        }
+
+        @Override
+        public synchronized List<String> readTransactions(String accountNumber, int count) {
+            reads++;
+            List<String> lines = log.stream().filter(line -> line.contains(accountNumber)).toList();
+            return new ArrayList<>(lines.subList(Math.max(0, lines.size() - count), lines.size()));
+        }
+
+        synchronized int getReads() {
+            return reads;
+        }
+    }
+
+    private LogStore store;
+    private Bank bank;
+
+    @BeforeEach
+    public void setUp() {
+        Debug.setLevel(Debug.Level.OFF);
+        List<String[]> rows = new ArrayList<>();
+        rows.add(new String[] { "11111", PinHasher.hash("12345", 1000), "gold", "500.0" });
+        rows.add(new String[] { "22222", PinHasher.hash("54321", 1000), "gold", "500.0" });
+        store = new LogStore(rows);
+        bank = new Bank(store);
+        store.logTransaction("11111", "Deposit", 50, 500);
+    }
+
+    private AccountPrefetch prefetch(String accNumber) throws InterruptedException {
+        bank.prefetch(accNumber);
+        AccountPrefetch prefetch = bank.getPrefetch();
+        assertTrue(prefetch.await(5000));
+        return prefetch;
+    }
+
+    @Test
+    @DisplayName("Test that login and the receipt use what was prefetched")
+    public void testUsed() throws InterruptedException {
+        AccountPrefetch prefetch = prefetch("11111");
+        assertEquals(1, store.getReads());
+
+        assertTrue(bank.login("11111", "12345"));
+        assertSame(prefetch, bank.getPrefetch());
+        assertSame(prefetch.getAccount(), bank.getCurrentAccount());
+        List<String> recent = bank.getRecentTransactions(1);
+        assertEquals(1, recent.size());
+        assertTrue(recent.get(0).contains(",Deposit,50.0,"), recent.get(0));
+        assertEquals(1, store.getReads());
+    }
+
+    @Test
+    @DisplayName("Test that transactions logged since the prefetch are read again")
+    public void testStale() throws InterruptedException {
+        prefetch("11111");
+        assertTrue(bank.login("11111", "12345"));
+        assertTrue(bank.withdraw(20));
+
+        List<String> recent = bank.getRecentTransactions(1);
+        assertTrue(recent.get(0).contains(",Withdraw,20.0,"), recent.get(0));
+        assertEquals(2, store.getReads());
+    }
+
+    @Test
+    @DisplayName("Test that prefetches that are not used are discarded")
+    public void testDiscarded() throws InterruptedException {
+        AccountPrefetch other = prefetch("22222");
+        AccountPrefetch wrongPin = prefetch("11111");
+        assertNull(other.getAccount());
+
+        assertFalse(bank.login("11111", "99999"));
+        assertNull(bank.getPrefetch());
+        assertNull(wrongPin.getAccount());
+        assertNull(wrongPin.getRecentTransactions(1));
+
+        AccountPrefetch unknown = prefetch("99999");
+        assertNull(unknown.getAccount());
+        assertTrue(bank.login("11111", "12345"));
+        assertNull(bank.getPrefetch());
+        Metrics.reset();
+        assertEquals(1, bank.getRecentTransactions(1).size());
+        assertEquals(1, Metrics.count(Metrics.Operation.READ_TRANSACTIONS, Outcome.SUCCESS));
+
+        prefetch("11111");
+        bank.logout();
+        assertNull(bank.getPrefetch());
+        assertEquals(List.of(), bank.getRecentTransactions(1));
+        assertEquals(1, Metrics.histogram(Metrics.Operation.READ_TRANSACTIONS).getCount());
+    }
+
+    @Test
+    @DisplayName("Test that entering an account number starts a prefetch")
+    public void testKeypad() {
+        HeadlessDisplay display = new HeadlessDisplay();
+        Controller controller = HeadlessDisplay.start(bank, display);
+        for (String label : new String[] { "1", "1", "1", "1", "1", "Ent" }) {
+            controller.process(label);
+        }
+        assertNotNull(bank.getPrefetch());
+        assertEquals("11111", bank.getPrefetch().getAccNumber());
+    }
+}
@@ -0,0 +1,352 @@
+package com.atm;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import com.atm.utils.MemoryAccountStore;
+import com.atm.utils.PinHasher;
+
+/**
+ * Hammers a shared {@link Bank} from many threads and then checks that no
+ * money was lost or made.
+ * <p>
+ * The bank holds a few hot accounts of every type, so sessions collide on
+ * the same accounts all the time. Each thread runs its own
+ * {@link Bank#openSession() session}: it logs in to a random account, makes
+ * a few random deposits, withdrawals and transfers to other hot accounts, and
+ * moves on. Every successful operation is tallied by the thread that made it,
+ * and every transaction the accounts log is kept in order.
+ * </p>
+ * <p>
+ * Afterwards the harness checks that:
+ * <ul>
+ * <li>the total of the balances is the opening total plus deposits, less
+ * withdrawals and every commission charged; transfers move money between
+ * accounts but charge a commission on each leg;</li>
+ * <li>no account went below its overdraft limit, commission included;</li>
+ * <li>replaying each account's logged transactions from its opening balance
+ * gives every balance logged and ends at the final balance;</li>
+ * <li>the last accounts saved to the store hold the final balances.</li>
+ * </ul>
+ * Any broken invariant is listed in the report, along with the throughput.
+ * </p>
+ */
+public class BankStressHarness {
+
+    static final String PIN = "12345";
+    private static final String[] TYPES = { "student", "gold", "platinum" };
+
+    /**
+     * One logged transaction.
+     */
+    private static class Logged {
+        final String type;
+        final double amount;
+        final double balance;
+
+        Logged(String type, double amount, double balance) {
+            this.type = type;
+            this.amount = amount;
+            this.balance = balance;
+        }
+    }
+
+    /**
+     * Keeps accounts in memory and every logged transaction, per account and
+     * in the order they were logged.
+     */
+    private static class RecordingStore extends MemoryAccountStore {
+        final Map<String, List<Logged>> log = new HashMap<>();
+
+        RecordingStore(List<String[]> rows) {
+            super(rows);
+        }
+
+        @Override
+        public synchronized int logTransaction(String accountNumber, String type, double amount, double balance) {
+            log.computeIfAbsent(accountNumber, a -> new ArrayList<>()).add(new Logged(type, amount, balance));
+            return super.logTransaction(accountNumber, type, amount, balance);
+        }
+    }
+
+    /**
+     * What one thread did.
+     */
+    private static class Tally {
+        long operations;
+        long deposits;
+        long withdrawals;
+        long transfers;
+        double deposited;
+        double withdrawn;
+        double commissions;
+    }
+
+    /**
+     * The outcome of a stress run.
+     */
+    public static class Report {
+        /** Operations attempted, successful or not */
+        public final long operations;
+        /** Successful deposits, withdrawals and transfers */
+        public final long deposits, withdrawals, transfers;
+        /** How long the threads ran, in nanoseconds */
+        public final long nanos;
+        /** The invariants broken, empty if there were none */
+        public final List<String> violations;
+
+        Report(Tally total, long nanos, List<String> violations) {
+            this.operations = total.operations;
+            this.deposits = total.deposits;
+            this.withdrawals = total.withdrawals;
+            this.transfers = total.transfers;
+            this.nanos = nanos;
+            this.violations = violations;
+        }
+
+        /**
+         * @return operations attempted per second
+         */
+        public double operationsPerSecond() {
+            return nanos == 0 ? 0 : operations * 1e9 / nanos;
+        }
+
+        /**
+         * @return {@code true} if every invariant held
+         */
+        public boolean passed() {
+            return violations.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder(String.format(
+                    "operations=%d ops/s=%.0f deposits=%d withdrawals=%d transfers=%d %s%n", operations,
+                    operationsPerSecond(), deposits, withdrawals, transfers, passed() ? "PASSED" : "FAILED"));
+            for (String violation : violations) {
+                text.append("  ").append(violation).append(System.lineSeparator());
+            }
+            return text.toString();
+        }
+    }
+
+    private final int accounts;
+    private final int threads;
+    private long operationsPerThread = 10_000;
+    private double openingBalance = 500;
+    private long seed = 42;
+
+    /**
+     * Creates a harness.
+     *
+     * @param accounts the hot accounts, at least 2
+     * @param threads  the sessions running at once
+     */
+    public BankStressHarness(int accounts, int threads) {
+        if (accounts < 2 || accounts > 99_999 || threads < 1) {
+            throw new IllegalArgumentException("need 2 to 99999 accounts and at least one thread");
+        }
+        this.accounts = accounts;
+        this.threads = threads;
+    }
+
+    /**
+     * @param operations the operations each thread attempts
+     * @return this harness
+     */
+    public BankStressHarness operationsPerThread(long operations) {
+        this.operationsPerThread = operations;
+        return this;
+    }
+
+    /**
+     * @param balance the balance every account opens with
+     * @return this harness
+     */
+    public BankStressHarness openingBalance(double balance) {
+        this.openingBalance = balance;
+        return this;
+    }
+
+    /**
+     * @param seed where the random choices start
+     * @return this harness
+     */
+    public BankStressHarness seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Builds a bank, runs the threads against it and checks the invariants.
+     *
+     * @return the report
+     */
+    public Report run() throws InterruptedException {
+        String hash = PinHasher.hash(PIN, 1000);
+        List<String[]> rows = new ArrayList<>();
+        String[] numbers = new String[accounts];
+        for (int i = 0; i < accounts; i++) {
+            numbers[i] = String.format("%05d", i);
+            rows.add(new String[] { numbers[i], hash, TYPES[i % TYPES.length], String.valueOf(openingBalance) });
+        }
+        RecordingStore store = new RecordingStore(rows);
+        Bank bank = new Bank(store);
+
+        // Hold on to the account objects, for their final balances and rules
+        Map<String, BankAccount> byNumber = new LinkedHashMap<>();
+        Bank setup = bank.openSession();
+        for (String number : numbers) {
+            setup.login(number, PIN);
+            byNumber.put(number, setup.getCurrentAccount());
+        }
+        setup.logout();
+
+        Tally[] tallies = new Tally[threads];
+        Thread[] workers = new Thread[threads];
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            Tally tally = new Tally();
+            tallies[t] = tally;
+            SplittableRandom random = new SplittableRandom(seed * 7919 + t);
+            Bank session = bank.openSession();
+            workers[t] = new Thread(() -> work(session, numbers, byNumber, random, tally), "stress-" + t);
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long nanos = System.nanoTime() - start;
+
+        Tally total = new Tally();
+        for (Tally tally : tallies) {
+            total.operations += tally.operations;
+            total.deposits += tally.deposits;
+            total.withdrawals += tally.withdrawals;
+            total.transfers += tally.transfers;
+            total.deposited += tally.deposited;
+            total.withdrawn += tally.withdrawn;
+            total.commissions += tally.commissions;
+        }
+        return new Report(total, nanos, check(store, byNumber, total));
+    }
+
+    private void work(Bank session, String[] numbers, Map<String, BankAccount> byNumber, SplittableRandom random,
+                      Tally tally) {
+        long done = 0;
+        while (done < operationsPerThread) {
+            String number = numbers[random.nextInt(numbers.length)];
+            session.login(number, PIN);
+            BankAccount account = byNumber.get(number);
+            for (int burst = 1 + random.nextInt(8); burst > 0 && done < operationsPerThread; burst--, done++) {
+                tally.operations++;
+                int amount = 1 + random.nextInt(150);
+                int choice = random.nextInt(3);
+                if (choice == 0) {
+                    if (session.deposit(amount)) {
+                        tally.deposits++;
+                        tally.deposited += amount;
+                        tally.commissions += account.getCommission();
+                    }
+                } else if (choice == 1) {
+                    if (session.withdraw(amount)) {
+                        tally.withdrawals++;
+                        tally.withdrawn += amount;
+                        tally.commissions += account.getCommission();
+                    }
+                } else {
+                    String recipient = numbers[(Integer.parseInt(number) + 1 + random.nextInt(numbers.length - 1))
+                            % numbers.length];
+                    if (session.transfer(recipient, amount, (r, a) -> true)) {
+                        tally.transfers++;
+                        tally.commissions += account.getCommission() + byNumber.get(recipient).getCommission();
+                    }
+                }
+            }
+            session.logout();
+        }
+    }
+
+    private List<String> check(RecordingStore store, Map<String, BankAccount> byNumber, Tally total) {
+        List<String> violations = new ArrayList<>();
+
+        double balances = 0;
+        for (BankAccount account : byNumber.values()) {
+            balances += account.getBalance();
+        }
+        double expected = openingBalance * accounts + total.deposited - total.withdrawn - total.commissions;
+        if (Math.abs(balances - expected) > 0.005) {
+            violations.add(String.format("money not conserved: balances total %.2f, expected %.2f", balances,
+                    expected));
+        }
+
+        long legs = 0;
+        for (Map.Entry<String, BankAccount> entry : byNumber.entrySet()) {
+            BankAccount account = entry.getValue();
+            double floor = account.getOverdraftLimit();
+            double balance = openingBalance;
+            List<Logged> log = store.log.getOrDefault(entry.getKey(), List.of());
+            legs += log.size();
+            for (int i = 0; i < log.size(); i++) {
+                Logged logged = log.get(i);
+                double change = logged.type.equals("Deposit")
+                        ? logged.amount - account.getCommission()
+                        : -(logged.amount + account.getCommission());
+                balance = Math.round((balance + change) * 100.0) / 100.0;
+                if (Math.abs(balance - logged.balance) > 0.005) {
+                    violations.add(String.format("account %s: transaction %d logged balance %.2f, replay gives %.2f",
+                            entry.getKey(), i, logged.balance, balance));
+                    break;
+                }
+                if (logged.balance < floor - 0.005) {
+                    violations.add(String.format("account %s: balance %.2f below overdraft limit %d",
+                            entry.getKey(), logged.balance, account.getOverdraftLimit()));
+                    break;
+                }
+            }
+            if (Math.abs(balance - account.getBalance()) > 0.005) {
+                violations.add(String.format("account %s: log ends at %.2f, balance is %.2f", entry.getKey(),
+                        balance, account.getBalance()));
+            }
+        }
+        long expectedLegs = total.deposits + total.withdrawals + 2 * total.transfers;
+        if (legs != expectedLegs) {
+            violations.add(String.format("%d transactions logged for %d successful deposits, withdrawals and "
+                    + "transfer legs", legs, expectedLegs));
+        }
+
+        for (String[] row : store.readAccounts()) {
+            double saved = Double.parseDouble(row[3]);
+            if (Math.abs(saved - byNumber.get(row[0]).getBalance()) > 0.005) {
+                violations.add(String.format("account %s: saved balance %.2f, balance is %.2f", row[0], saved,
+                        byNumber.get(row[0]).getBalance()));
+            }
+        }
+        return violations;
+    }
+
+    /**
+     * Runs the harness and exits with 1 if an invariant was broken.
+     *
+     * @param args optionally accounts, threads, operations per thread and seed
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors() * 2;
+        BankStressHarness harness = new BankStressHarness(accounts, threads);
+        if (args.length > 2) {
+            harness.operationsPerThread(Long.parseLong(args[2]));
+        }
+        if (args.length > 3) {
+            harness.seed(Long.parseLong(args[3]));
+        }
+        Debug.setLevel(Debug.Level.OFF);
+        Report report = harness.run();
+        System.out.print(report);
+        System.exit(report.passed() ? 0 : 1);
+    }
+}
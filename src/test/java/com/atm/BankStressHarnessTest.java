@@ -0,0 +1,45 @@
+package com.atm;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for the {@link BankStressHarness}.
+ * <p>
+ * These tests verify that:
+ * <ul>
+ *   <li>The bank keeps every invariant under parallel sessions on hot accounts</li>
+ *   <li>A single session keeps them too, as a baseline</li>
+ * </ul>
+ * </p>
+ */
+public class BankStressHarnessTest {
+
+    @BeforeEach
+    public void setUp() {
+        Debug.setLevel(Debug.Level.OFF);
+    }
+
+    @Test
+    @DisplayName("Test that parallel sessions on hot accounts keep the invariants")
+    public void testParallelSessions() throws InterruptedException {
+        BankStressHarness.Report report = new BankStressHarness(6, 8).operationsPerThread(1500).seed(11).run();
+
+        assertTrue(report.passed(), report.toString());
+        assertEquals(8 * 1500, report.operations);
+        assertTrue(report.deposits > 0 && report.withdrawals > 0 && report.transfers > 0, report.toString());
+        assertTrue(report.operationsPerSecond() > 0);
+    }
+
+    @Test
+    @DisplayName("Test that accounts driven into overdraft keep the invariants")
+    public void testLowBalances() throws InterruptedException {
+        BankStressHarness.Report report = new BankStressHarness(3, 4).operationsPerThread(1000)
+                .openingBalance(0).run();
+
+        assertTrue(report.passed(), report.toString());
+    }
+}
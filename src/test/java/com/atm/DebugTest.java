@@ -0,0 +1,110 @@
+package com.atm;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for the asynchronous {@link Debug} trace facility.
+ * <p>
+ * These tests verify that:
+ * <ul>
+ *   <li>Messages are formatted and printed in order by the writer thread</li>
+ *   <li>Messages below the current level are not printed</li>
+ *   <li>Level names are read in any case, and unknown ones fall back</li>
+ *   <li>Messages from several threads all arrive</li>
+ * </ul>
+ * </p>
+ */
+public class DebugTest {
+
+    private final ByteArrayOutputStream captured = new ByteArrayOutputStream();
+    private PrintStream oldOut;
+    private Debug.Level oldLevel;
+
+    @BeforeEach
+    public void setUp() {
+        oldOut = Debug.setOutput(new PrintStream(captured, true, StandardCharsets.UTF_8));
+        oldLevel = Debug.setLevel(Debug.Level.TRACE);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        Debug.setOutput(oldOut);
+        Debug.setLevel(oldLevel);
+    }
+
+    private String output() {
+        Debug.flush();
+        return captured.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    @DisplayName("Test that messages are formatted in order")
+    public void testFormatting() {
+        Debug.trace("plain 100% text");
+        Debug.trace("one %s", "a");
+        Debug.trace("three %s %s %s", "a", "b", "c");
+        Debug.trace("four %s %s %s %s", "a", "b", "c", "d");
+        Debug.error("failed %d", 42);
+        Debug.trace("%s::deposit", GoldAccount.class);
+
+        String[] lines = output().split("\\R");
+        assertArrayEquals(new String[] {
+                "plain 100% text", "one a", "three a b c", "four a b c d", "ERROR: failed 42",
+                "GoldAccount::deposit" }, lines);
+    }
+
+    @Test
+    @DisplayName("Test that levels filter messages")
+    public void testLevels() {
+        Debug.setLevel(Debug.Level.INFO);
+        Debug.trace("hidden %s", "trace");
+        Debug.info("shown %s", "info");
+        Debug.set(false);
+        Debug.info("hidden info");
+        Debug.assertTrue(false, "shown %s", "assert");
+
+        assertEquals("shown info" + System.lineSeparator() + "ERROR: Assert - shown assert" + System.lineSeparator(),
+                output());
+        assertFalse(Debug.isEnabled(Debug.Level.TRACE));
+    }
+
+    @Test
+    @DisplayName("Test that level names are read in any case")
+    public void testParseLevel() {
+        assertEquals(Debug.Level.INFO, Debug.parseLevel("info", Debug.Level.TRACE));
+        assertEquals(Debug.Level.OFF, Debug.parseLevel(" Off ", Debug.Level.TRACE));
+        assertEquals(Debug.Level.TRACE, Debug.parseLevel("verbose", Debug.Level.TRACE));
+        assertEquals(Debug.Level.ERROR, Debug.parseLevel(null, Debug.Level.ERROR));
+    }
+
+    @Test
+    @DisplayName("Test that messages from several threads all arrive")
+    public void testConcurrentProducers() throws InterruptedException {
+        long droppedBefore = Debug.getDropped();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            int id = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 500; i++) {
+                    Debug.trace("t%d %d", id, i);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        long lines = output().lines().count();
+        assertEquals(2000, lines + Debug.getDropped() - droppedBefore, "Every message is printed or counted as dropped");
+    }
+}
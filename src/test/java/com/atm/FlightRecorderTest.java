@@ -0,0 +1,84 @@
+package com.atm;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test class for the {@link FlightRecorder} black box.
+ * <p>
+ * These tests verify that:
+ * <ul>
+ *   <li>Recorded events come out in order with their outcome and values</li>
+ *   <li>Only the most recent events are kept once the ring is full</li>
+ *   <li>A dump is written to the configured directory</li>
+ * </ul>
+ * </p>
+ */
+public class FlightRecorderTest {
+
+    @TempDir
+    Path dir;
+
+    private static List<String> contents() {
+        StringWriter text = new StringWriter();
+        FlightRecorder.write(new PrintWriter(text));
+        return text.toString().lines().toList();
+    }
+
+    @Test
+    @DisplayName("Test that events are written in order")
+    public void testRecord() {
+        FlightRecorder.state("account_no", "password");
+        FlightRecorder.record(FlightRecorder.Kind.WITHDRAW, false, 500, 2_000_000);
+        FlightRecorder.record(FlightRecorder.Kind.SAVE_ACCOUNTS, true, 3, 1_500_000);
+
+        List<String> lines = contents();
+        int n = lines.size();
+        assertTrue(n >= 3);
+        assertTrue(lines.get(n - 3).endsWith("STATE account_no -> password"), lines.get(n - 3));
+        assertTrue(lines.get(n - 2).endsWith("WITHDRAW failed amount=500 took=2.000ms"), lines.get(n - 2));
+        assertTrue(lines.get(n - 1).endsWith("SAVE_ACCOUNTS ok rows=3 took=1.500ms"), lines.get(n - 1));
+    }
+
+    @Test
+    @DisplayName("Test that the ring keeps only the latest events")
+    public void testWrapAround() {
+        for (int i = 0; i < 40_000; i++) {
+            FlightRecorder.record(FlightRecorder.Kind.DEPOSIT, true, i, 0);
+        }
+
+        List<String> lines = contents();
+        assertEquals(16384, lines.size(), "Ring should hold its default capacity");
+        assertTrue(lines.get(0).contains("amount=" + (40_000 - 16384) + " "), lines.get(0));
+        assertTrue(lines.get(lines.size() - 1).contains("amount=39999 "));
+    }
+
+    @Test
+    @DisplayName("Test that a dump is written to a file")
+    public void testDump() throws IOException {
+        System.setProperty("atm.flight.dir", dir.toString());
+        try {
+            FlightRecorder.record(FlightRecorder.Kind.LOGIN, true, 0, 1000);
+            Path file = FlightRecorder.dump("on demand");
+
+            assertNotNull(file);
+            assertEquals(dir, file.getParent());
+            assertTrue(file.getFileName().toString().endsWith("-on_demand.log"));
+            List<String> lines = Files.readAllLines(file);
+            assertEquals("# flight recorder dump: on demand", lines.get(0));
+            assertTrue(lines.get(lines.size() - 1).contains("LOGIN ok"));
+        } finally {
+            System.clearProperty("atm.flight.dir");
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.atm;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.atm.utils.MemoryAccountStore;
+import com.atm.utils.PinHasher;
+
+/**
+ * Test class for running the Model and Controller on a {@link HeadlessDisplay}.
+ * <p>
+ * These tests verify that:
+ * <ul>
+ *   <li>A session can log in, deposit and check the balance without JavaFX</li>
+ *   <li>Transfers are confirmed or refused by the display's answer</li>
+ *   <li>Many sessions can run side by side in one JVM</li>
+ * </ul>
+ * </p>
+ */
+public class HeadlessDisplayTest {
+
+    private MemoryAccountStore store;
+
+    @BeforeEach
+    public void setUp() {
+        Debug.setLevel(Debug.Level.OFF);
+        List<String[]> rows = new ArrayList<>();
+        rows.add(new String[] { "11111", PinHasher.hash("12345", 1000), "gold", "500.0" });
+        rows.add(new String[] { "22222", PinHasher.hash("54321", 1000), "gold", "50.0" });
+        store = new MemoryAccountStore(rows);
+    }
+
+    private static void press(Controller controller, String... keys) {
+        for (String key : keys) {
+            controller.process(key);
+        }
+    }
+
+    private static void type(Controller controller, String digits) {
+        for (char digit : digits.toCharArray()) {
+            controller.process(String.valueOf(digit));
+        }
+    }
+
+    private static void logIn(Controller controller, String accNumber, String pin) {
+        type(controller, accNumber);
+        press(controller, "Ent");
+        type(controller, pin);
+        press(controller, "Ent");
+    }
+
+    @Test
+    @DisplayName("Test that a headless session logs in, deposits and shows the balance")
+    public void testSession() {
+        Bank bank = new Bank(store);
+        HeadlessDisplay display = new HeadlessDisplay();
+        Controller controller = HeadlessDisplay.start(bank, display);
+        assertTrue(display.getReply().contains("Enter your account number"));
+
+        logIn(controller, "11111", "12345");
+        assertTrue(display.getReply().startsWith("Accepted"), display.getReply());
+
+        type(controller, "100");
+        press(controller, "Dep", "Bal");
+        // gold accounts pay 0.5 commission
+        assertEquals("Your balance is: 599.5", display.getReply());
+        assertEquals(1, store.getTransactionCount());
+        assertNull(display.getError());
+        assertTrue(display.getUpdates() > 10);
+    }
+
+    @Test
+    @DisplayName("Test that transfers follow the display's answer")
+    public void testTransferConfirmation() {
+        Controller accepting = HeadlessDisplay.start(new Bank(store), new HeadlessDisplay(true));
+        logIn(accepting, "11111", "12345");
+        press(accepting, "Send Money");
+        type(accepting, "22222");
+        press(accepting, "Ent");
+        type(accepting, "50");
+        press(accepting, "Ent");
+        // the amount and the 0.5 commission
+        assertEquals("449.5", store.readAccounts().get(0)[3]);
+
+        HeadlessDisplay refusing = new HeadlessDisplay(false);
+        Controller controller = HeadlessDisplay.start(new Bank(store), refusing);
+        logIn(controller, "11111", "12345");
+        press(controller, "Send Money");
+        type(controller, "22222");
+        press(controller, "Ent");
+        type(controller, "50");
+        press(controller, "Ent");
+        assertTrue(refusing.getReply().startsWith("Transfer failed"), refusing.getReply());
+        assertEquals("449.5", store.readAccounts().get(0)[3]);
+    }
+
+    @Test
+    @DisplayName("Test that many sessions run side by side")
+    public void testManySessions() {
+        List<HeadlessDisplay> displays = new ArrayList<>();
+        List<Controller> controllers = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            HeadlessDisplay display = new HeadlessDisplay();
+            displays.add(display);
+            controllers.add(HeadlessDisplay.start(new Bank(store), display));
+        }
+        for (int i = 0; i < controllers.size(); i++) {
+            Controller controller = controllers.get(i);
+            if (i % 2 == 0) {
+                logIn(controller, "11111", "12345");
+            } else {
+                logIn(controller, "22222", "99999");
+            }
+        }
+        for (int i = 0; i < displays.size(); i++) {
+            String reply = displays.get(i).getReply();
+            if (i % 2 == 0) {
+                assertTrue(reply.startsWith("Accepted"), reply);
+            } else {
+                assertTrue(reply.contains("Unknown account/password"), reply);
+            }
+        }
+    }
+}
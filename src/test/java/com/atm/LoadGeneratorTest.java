@@ -0,0 +1,125 @@
+package com.atm;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.atm.utils.AccountReader;
+import com.atm.utils.DatasetGenerator;
+import com.atm.utils.MemoryAccountStore;
+import com.atm.utils.PinHasher;
+
+/**
+ * Test class for the {@link LoadGenerator} and the bank sessions it runs on.
+ * <p>
+ * These tests verify that:
+ * <ul>
+ *   <li>Sessions share accounts but not who is logged in</li>
+ *   <li>A fleet of terminals completes sessions and reports every flow in the mix</li>
+ *   <li>A bank opened for the ramp has every PIN hashed already</li>
+ * </ul>
+ * </p>
+ */
+public class LoadGeneratorTest {
+
+    @TempDir
+    Path dir;
+
+    private DatasetGenerator dataset;
+    private MemoryAccountStore store;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        Debug.setLevel(Debug.Level.OFF);
+        // PINs are upgraded to hashes at first login; keep that cheap
+        System.setProperty("atm.pin.iterations", "1000");
+        dataset = new DatasetGenerator(50, 0).seed(3);
+        dataset.generate(dir);
+        store = new MemoryAccountStore(AccountReader.readAccounts(dir.resolve("accounts.csv").toString()));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        System.clearProperty("atm.pin.iterations");
+    }
+
+    @Test
+    @DisplayName("Test that sessions share accounts but not the logged-in account")
+    public void testSessions() {
+        Bank bank = new Bank(store);
+        Bank one = bank.openSession();
+        Bank two = bank.openSession();
+
+        assertTrue(one.login(dataset.accountNumber(0), dataset.pin(0)));
+        assertFalse(two.loggedIn());
+        assertTrue(two.login(dataset.accountNumber(1), dataset.pin(1)));
+        assertEquals(dataset.accountNumber(0), one.getCurrentAccount().getAccNumber());
+
+        double before = one.getBalance();
+        assertTrue(two.transfer(dataset.accountNumber(0), 10, (recipient, amount) -> true));
+        assertEquals(before + 10, one.getBalance(), 0.001);
+
+        assertEquals(2, bank.getActiveSessions());
+        one.logout();
+        one.logout();
+        assertEquals(1, two.getActiveSessions());
+    }
+
+    @Test
+    @DisplayName("Test that sessions share the limit on accounts")
+    public void testSharedAccountLimit() {
+        Bank bank = new Bank(new MemoryAccountStore());
+        Bank one = bank.openSession();
+        Bank two = bank.openSession();
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(one.addBankAccount(new StudentAccount(String.format("%05d", i), "12345", 0)));
+        }
+        assertFalse(two.addBankAccount(new StudentAccount("99999", "12345", 0)));
+        assertEquals(10, bank.getAccountCount());
+    }
+
+    @Test
+    @DisplayName("Test that a fleet of terminals runs every flow in the mix")
+    public void testRun() throws InterruptedException {
+        LoadGenerator generator = new LoadGenerator(new Bank(store), dataset).mix(1, 1, 1, 1, 1);
+        List<LoadGenerator.Step> steps = generator.ramp(new int[] { 1, 3 }, 300);
+
+        assertEquals(2, steps.size());
+        LoadGenerator.Step step = steps.get(1);
+        assertEquals(3, step.terminals);
+        assertTrue(step.getSessions() > 10, "sessions: " + step.getSessions());
+        assertTrue(step.sessionsPerSecond() > 0);
+        assertEquals(step.getSessions(), step.latency(LoadGenerator.Flow.LOGIN).getCount());
+        assertEquals(0, step.errorRate(LoadGenerator.Flow.LOGIN));
+        assertEquals(0, step.errorRate(LoadGenerator.Flow.BALANCE));
+        assertTrue(step.latency(LoadGenerator.Flow.TRANSFER).getCount() > 0);
+        assertTrue(step.toString().contains("deposit"));
+    }
+
+    @Test
+    @DisplayName("Test that account numbers must fit on the keypad")
+    public void testTooManyAccounts() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new LoadGenerator(new Bank(store), new DatasetGenerator(200_000, 0)));
+    }
+
+    @Test
+    @DisplayName("Test that the bank for the ramp is opened with hashed PINs")
+    public void testOpenBank() throws IOException {
+        Bank bank = LoadGenerator.openBank(dataset, dir.resolve("ramp"), "csv");
+
+        for (String[] row : AccountReader.readAccounts(dir.resolve("ramp/accounts.csv").toString())) {
+            assertTrue(PinHasher.isHashed(row[1]), row[0]);
+        }
+        assertTrue(bank.login(dataset.accountNumber(7), dataset.pin(7)));
+    }
+}
@@ -0,0 +1,163 @@
+package com.atm;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.atm.utils.MemoryAccountStore;
+import com.atm.utils.PinHasher;
+
+/**
+ * Test class for the {@link Model}'s transition table.
+ * <p>
+ * These tests verify that:
+ * <ul>
+ *   <li>Button labels map to keys, and unknown labels to {@code UNKNOWN}</li>
+ *   <li>Keys a state does not accept are refused without changing the account</li>
+ *   <li>The password change flow has its own answers to Clear and transactions</li>
+ *   <li>A display with an event thread is not held up while the PIN is checked</li>
+ *   <li>A stored PIN that cannot be decrypted fails the login</li>
+ * </ul>
+ * </p>
+ */
+public class ModelTest {
+
+    /** A display whose event thread is the test: actions wait until it runs them. */
+    private static class QueuedDisplay extends HeadlessDisplay {
+        private final BlockingQueue<Runnable> actions = new LinkedBlockingQueue<>();
+
+        @Override
+        public void runLater(Runnable action) {
+            actions.add(action);
+        }
+
+        @Override
+        public boolean hasEventThread() {
+            return true;
+        }
+
+        void runNext() throws InterruptedException {
+            Runnable action = actions.poll(5, TimeUnit.SECONDS);
+            assertNotNull(action, "nothing was handed back to the display");
+            action.run();
+        }
+    }
+
+    private final List<String[]> rows = new ArrayList<>();
+    private Controller controller;
+    private HeadlessDisplay display;
+
+    @BeforeEach
+    public void setUp() {
+        Debug.setLevel(Debug.Level.OFF);
+        rows.add(new String[] { "11111", PinHasher.hash("12345", 1000), "gold", "500.0" });
+        display = new HeadlessDisplay();
+        controller = HeadlessDisplay.start(new Bank(new MemoryAccountStore(rows)), display);
+    }
+
+    private void press(String... labels) {
+        for (String label : labels) {
+            controller.process(label);
+        }
+    }
+
+    @Test
+    @DisplayName("Test that labels map to keys")
+    public void testKeys() {
+        assertEquals(Model.Key.DIGIT, Model.Key.of("0"));
+        assertEquals(Model.Key.DIGIT, Model.Key.of("9"));
+        assertEquals(Model.Key.ENTER, Model.Key.of("Ent"));
+        assertEquals(Model.Key.SEND_MONEY, Model.Key.of("Send Money"));
+        assertEquals(Model.Key.UNKNOWN, Model.Key.of("10"));
+        assertEquals(Model.Key.UNKNOWN, Model.Key.of(""));
+    }
+
+    @Test
+    @DisplayName("Test that transactions are refused before logging in")
+    public void testRefused() {
+        for (String label : new String[] { "W/D", "Dep", "Bal", "Fin", "Change PIN", "Send Money" }) {
+            press("1", "0", label);
+            assertEquals(Model.State.ACCOUNT_NO, controller.model.state, label);
+            assertTrue(display.getReply().startsWith("You are not logged in"), label);
+            assertEquals("", display.getMessage(), label);
+        }
+        press("1", "1", "1", "1", "1", "Ent", "1", "2", "3", "4", "5", "Ent");
+        assertEquals(Model.State.LOGGED_IN, controller.model.state);
+        press("Bal");
+        assertEquals("Your balance is: 500.0", display.getReply());
+    }
+
+    @Test
+    @DisplayName("Test that the password change flow answers Clear and transactions")
+    public void testPasswordChange() {
+        press("1", "1", "1", "1", "1", "Ent", "1", "2", "3", "4", "5", "Ent", "Change PIN");
+        assertEquals(Model.State.CHANGE_PASSWORD, controller.model.state);
+        assertTrue(controller.model.isEnteringPin());
+
+        press("Dep");
+        assertTrue(display.getReply().startsWith("Please complete password change"));
+        assertEquals(Model.State.CHANGE_PASSWORD, controller.model.state);
+
+        press("CLR");
+        assertEquals(Model.State.LOGGED_IN, controller.model.state);
+        assertTrue(display.getReply().startsWith("Password change cancelled"), display.getReply());
+        assertFalse(controller.model.isEnteringPin());
+    }
+
+    @Test
+    @DisplayName("Test that a display with an event thread does not wait for the PIN check")
+    public void testAsyncLogin() throws InterruptedException {
+        QueuedDisplay queued = new QueuedDisplay();
+        Bank bank = new Bank(new MemoryAccountStore(rows));
+        controller = HeadlessDisplay.start(bank, queued);
+
+        press("1", "1", "1", "1", "1", "Ent", "5", "4", "3", "2", "1", "Ent");
+        assertEquals("Checking your password...", queued.getReply());
+        press("9", "Bal");
+        assertEquals(Model.State.PASSWORD, controller.model.state);
+        queued.runNext();
+        assertEquals(Model.State.ACCOUNT_NO, controller.model.state);
+        assertTrue(queued.getReply().startsWith("Unknown account/password"), queued.getReply());
+
+        press("1", "1", "1", "1", "1", "Ent", "1", "2", "3", "4", "5", "Ent");
+        assertFalse(bank.loggedIn());
+        queued.runNext();
+        assertTrue(bank.loggedIn());
+        assertEquals(Model.State.LOGGED_IN, controller.model.state);
+        assertTrue(queued.getReply().startsWith("Accepted"), queued.getReply());
+        assertEquals("", queued.getMessage());
+    }
+
+    @Test
+    @DisplayName("Test that a saturated PIN pool is reported as busy, not as a wrong PIN")
+    public void testBusy() {
+        assertEquals(Outcome.BUSY, Bank.loginOutcome(null, null,
+                new CompletionException(new RejectedExecutionException("full"))));
+        assertEquals(Outcome.REJECTED, Bank.loginOutcome(null, null,
+                new CompletionException(new IllegalStateException("unreadable"))));
+        assertEquals(Outcome.NOT_FOUND, Bank.loginOutcome(null, false, null));
+    }
+
+    @Test
+    @DisplayName("Test that a stored PIN that cannot be decrypted fails the login")
+    public void testUnreadablePin() {
+        rows.add(new String[] { "22222", "aes$99$bm90IGEgY2lwaGVydGV4dA==", "gold", "500.0" });
+        Bank bank = new Bank(new MemoryAccountStore(rows));
+        controller = HeadlessDisplay.start(bank, display);
+
+        assertFalse(PinVerificationService.getDefault().verify("12345", "aes$99$bm90IGEgY2lwaGVydGV4dA=="));
+        press("2", "2", "2", "2", "2", "Ent", "1", "2", "3", "4", "5", "Ent");
+        assertFalse(bank.loggedIn());
+        assertTrue(display.getReply().startsWith("Unknown account/password"), display.getReply());
+    }
+}
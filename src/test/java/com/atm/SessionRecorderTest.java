@@ -0,0 +1,153 @@
+package com.atm;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.atm.utils.DatasetGenerator;
+
+/**
+ * Test class for the {@link SessionRecorder} and {@link SessionReplayer}.
+ * <p>
+ * These tests verify that:
+ * <ul>
+ *   <li>Presses are recorded per session, in order, with PIN digits redacted</li>
+ *   <li>A replay logs in with the real PIN and repeats the recorded deposits,
+ *       and types a wrong PIN where a login was refused</li>
+ *   <li>A replay can be saved and compared with a later one</li>
+ * </ul>
+ * </p>
+ */
+public class SessionRecorderTest {
+
+    @TempDir
+    Path dir;
+
+    private DatasetGenerator dataset;
+
+    @BeforeEach
+    public void setUp() {
+        Debug.setLevel(Debug.Level.OFF);
+        System.setProperty("atm.pin.iterations", "1000");
+        dataset = new DatasetGenerator(20, 0).seed(5);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        System.clearProperty("atm.pin.iterations");
+    }
+
+    private static void type(Controller controller, String... labels) {
+        for (String label : labels) {
+            if (label.chars().allMatch(Character::isDigit)) {
+                for (char digit : label.toCharArray()) {
+                    controller.process(String.valueOf(digit));
+                }
+            } else {
+                controller.process(label);
+            }
+        }
+    }
+
+    private Path record() throws IOException {
+        Bank bank = LoadGenerator.openBank(dataset, dir.resolve("recorded"), "memory");
+        Path file = dir.resolve("session.atmr");
+        try (SessionRecorder recorder = new SessionRecorder(file)) {
+            for (int i = 0; i < 2; i++) {
+                Controller controller = HeadlessDisplay.start(bank.openSession(), new HeadlessDisplay());
+                recorder.attach(controller);
+                type(controller, dataset.accountNumber(i), "Ent", dataset.pin(i), "Ent", "100", "Dep", "Fin");
+            }
+        }
+        return file;
+    }
+
+    @Test
+    @DisplayName("Test that presses are recorded per session with PINs redacted")
+    public void testRecord() throws IOException {
+        Path file = record();
+        List<SessionRecorder.Session> sessions = SessionRecorder.read(file);
+
+        assertEquals(2, sessions.size());
+        List<SessionRecorder.Press> presses = sessions.get(1).presses;
+        assertEquals(5 + 1 + 5 + 1 + 3 + 2, presses.size());
+        assertEquals(dataset.accountNumber(1).substring(0, 1), presses.get(0).label);
+        assertEquals("Ent", presses.get(5).label);
+        for (int i = 6; i < 11; i++) {
+            assertEquals(SessionRecorder.PIN_DIGIT, presses.get(i).label);
+        }
+        assertEquals("Dep", presses.get(15).label);
+        assertEquals(List.of(true), sessions.get(1).logins);
+        assertFalse(new String(Files.readAllBytes(file)).contains(dataset.pin(1)));
+        // about four bytes a press
+        assertTrue(Files.size(file) < 13 + 2 * presses.size() * 6);
+    }
+
+    @Test
+    @DisplayName("Test that a replay logs in and repeats the deposits")
+    public void testReplay() throws IOException, InterruptedException {
+        List<SessionRecorder.Session> sessions = SessionRecorder.read(record());
+        Bank bank = LoadGenerator.openBank(dataset, dir.resolve("replayed"), "memory");
+        Bank check = bank.openSession();
+        check.login(dataset.accountNumber(0), dataset.pin(0));
+        double before = check.getBalance();
+
+        SessionReplayer.Result result = new SessionReplayer(sessions,
+                accNumber -> dataset.pin(Integer.parseInt(accNumber))).replay(bank);
+
+        assertEquals(sessions.get(0).presses.size() + sessions.get(1).presses.size(), result.getPresses());
+        assertEquals(10, result.latency(SessionRecorder.PIN_DIGIT).getCount());
+        assertEquals(2, result.latency("Dep").getCount());
+        // the 100 deposited, less the commission of the account's type
+        assertTrue(check.getBalance() > before + 99, "balance: " + check.getBalance());
+    }
+
+    @Test
+    @DisplayName("Test that a refused login is replayed with a wrong PIN")
+    public void testWrongPin() throws IOException, InterruptedException {
+        Bank recorded = LoadGenerator.openBank(dataset, dir.resolve("recorded"), "memory");
+        Path file = dir.resolve("wrong.atmr");
+        try (SessionRecorder recorder = new SessionRecorder(file)) {
+            Controller controller = HeadlessDisplay.start(recorded.openSession(), new HeadlessDisplay());
+            recorder.attach(controller);
+            type(controller, dataset.accountNumber(0), "Ent", SessionReplayer.wrongPin(dataset.pin(0), 5), "Ent",
+                    dataset.accountNumber(0), "Ent", dataset.pin(0), "Ent", "100", "Dep", "Fin");
+        }
+        List<SessionRecorder.Session> sessions = SessionRecorder.read(file);
+        assertEquals(List.of(false, true), sessions.get(0).logins);
+
+        Bank bank = LoadGenerator.openBank(dataset, dir.resolve("replayed"), "memory");
+        Bank check = bank.openSession();
+        check.login(dataset.accountNumber(0), dataset.pin(0));
+        double before = check.getBalance();
+        new SessionReplayer(sessions, accNumber -> dataset.pin(Integer.parseInt(accNumber))).replay(bank);
+
+        // Had the first PIN been accepted, the second account number and PIN would be typed as the amount
+        assertEquals(before + 100, check.getBalance(), 1.0);
+    }
+
+    @Test
+    @DisplayName("Test that a replay is compared with a saved baseline")
+    public void testCompare() throws IOException, InterruptedException {
+        List<SessionRecorder.Session> sessions = SessionRecorder.read(record());
+        SessionReplayer replayer = new SessionReplayer(sessions, accNumber -> dataset.pin(Integer.parseInt(accNumber)));
+        Path baseline = dir.resolve("baseline.csv");
+        Files.writeString(baseline, replayer.replay(LoadGenerator.openBank(dataset, dir.resolve("a"), "memory")).toCsv());
+
+        Map<String, long[]> saved = SessionReplayer.Result.readCsv(baseline);
+        assertEquals(2, saved.get("Dep")[0]);
+        String table = replayer.replay(LoadGenerator.openBank(dataset, dir.resolve("b"), "memory")).compare(saved);
+        assertTrue(table.contains("Dep"));
+        assertTrue(table.contains("%"));
+    }
+}
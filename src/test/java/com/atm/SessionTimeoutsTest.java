@@ -0,0 +1,154 @@
+package com.atm;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.atm.utils.MemoryAccountStore;
+import com.atm.utils.PinHasher;
+import com.atm.utils.TimingWheel;
+
+/**
+ * Test class for session timeouts, with a {@link TimingWheel} on a clock the
+ * tests move by hand.
+ * <p>
+ * These tests verify that:
+ * <ul>
+ *   <li>An idle session is logged out and the screen reset</li>
+ *   <li>Keypresses keep a session alive until its time limit</li>
+ *   <li>A session that has ended is not timed out later</li>
+ *   <li>The Logout button logs out</li>
+ *   <li>A session running out while the transfer dialog is shown ends only
+ *       after the transfer, and the dialog's time is not idle time</li>
+ * </ul>
+ * </p>
+ */
+public class SessionTimeoutsTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private TimingWheel wheel;
+    private Bank bank;
+    private Controller controller;
+    private HeadlessDisplay display;
+
+    @BeforeEach
+    public void setUp() {
+        Debug.setLevel(Debug.Level.OFF);
+        List<String[]> rows = new ArrayList<>();
+        rows.add(new String[] { "11111", PinHasher.hash("12345", 1000), "gold", "500.0" });
+        rows.add(new String[] { "22222", PinHasher.hash("12345", 1000), "gold", "500.0" });
+        bank = new Bank(new MemoryAccountStore(rows));
+        display = new HeadlessDisplay();
+        controller = HeadlessDisplay.start(bank, display);
+        wheel = new TimingWheel(100, 64, clock::get);
+        controller.model.timeSessions(wheel, 30_000, 120_000);
+    }
+
+    private void press(String... labels) {
+        for (String label : labels) {
+            controller.process(label);
+        }
+    }
+
+    private void logIn() {
+        press("1", "1", "1", "1", "1", "Ent", "1", "2", "3", "4", "5", "Ent");
+        assertTrue(bank.loggedIn());
+    }
+
+    private void elapse(long millis) {
+        clock.addAndGet(millis);
+        wheel.advance();
+    }
+
+    @Test
+    @DisplayName("Test that an idle session is logged out")
+    public void testIdle() {
+        logIn();
+        elapse(29_000);
+        assertTrue(bank.loggedIn());
+
+        elapse(1_100);
+        assertFalse(bank.loggedIn());
+        assertEquals(Model.State.ACCOUNT_NO, controller.model.state);
+        assertTrue(display.getReply().startsWith("Session timed out"), display.getReply());
+        assertEquals(0, wheel.getPending());
+    }
+
+    @Test
+    @DisplayName("Test that keypresses keep a session alive until its time limit")
+    public void testAbsolute() {
+        logIn();
+        for (int i = 0; i < 5; i++) {
+            elapse(20_000);
+            press("Bal");
+            assertTrue(bank.loggedIn());
+            assertEquals(1, wheel.getPending());
+        }
+        elapse(20_100);
+        assertFalse(bank.loggedIn());
+        assertTrue(display.getReply().startsWith("Session ended: time limit reached"), display.getReply());
+    }
+
+    @Test
+    @DisplayName("Test that a finished session is not timed out later")
+    public void testFinished() {
+        logIn();
+        press("Fin");
+        assertEquals(0, wheel.getPending());
+        press("1", "1");
+        elapse(60_000);
+        assertEquals("11", display.getMessage());
+        assertFalse(display.getReply().startsWith("Session"));
+    }
+
+    @Test
+    @DisplayName("Test that a session running out at the transfer dialog waits for the transfer")
+    public void testExpiryDuringTransfer() {
+        display = new HeadlessDisplay() {
+            @Override
+            public boolean confirmTransfer(String recipientAccNumber, double amount) {
+                elapse(40_000); // The timeout is delivered while the dialog is shown
+                return true;
+            }
+        };
+        controller = HeadlessDisplay.start(bank, display);
+        controller.model.timeSessions(wheel, 30_000, 120_000);
+        logIn();
+        press("Send Money", "2", "2", "2", "2", "2", "Ent", "1", "0", "Ent");
+
+        assertTrue(display.getReply().startsWith("Transfer successful"), display.getReply());
+        assertTrue(bank.loggedIn(), "Answering the dialog is not being idle");
+        assertEquals(1, wheel.getPending());
+        elapse(30_100);
+        assertFalse(bank.loggedIn());
+        assertTrue(display.getReply().startsWith("Session timed out"), display.getReply());
+    }
+
+    @Test
+    @DisplayName("Test that a transfer confirmed after its session was logged out is refused")
+    public void testLoggedOutAtDialog() {
+        logIn();
+        assertFalse(bank.transfer("22222", 10, (recipient, amount) -> {
+            bank.logout();
+            return true;
+        }));
+        assertEquals("No account is currently logged in", bank.getLastMessage());
+    }
+
+    @Test
+    @DisplayName("Test that the Logout button logs out")
+    public void testLogout() {
+        logIn();
+        press("Bal", "Logout");
+        assertFalse(bank.loggedIn());
+        assertEquals(Model.State.ACCOUNT_NO, controller.model.state);
+        assertFalse(controller.model.hasCheckedBalance());
+        assertEquals(0, wheel.getPending());
+    }
+}
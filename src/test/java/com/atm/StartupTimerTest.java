@@ -0,0 +1,110 @@
+package com.atm;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test class for the {@link StartupTimer} report.
+ * <p>
+ * These tests verify that:
+ * <ul>
+ *   <li>Phases are timed, only the first time, and unfinished phases are
+ *       reported as -1</li>
+ *   <li>Phases over their configured budget are flagged</li>
+ *   <li>The JSON report is written to the configured file, with a decimal
+ *       point in any locale</li>
+ * </ul>
+ * </p>
+ */
+public class StartupTimerTest {
+
+    @TempDir
+    Path dir;
+
+    @AfterEach
+    public void tearDown() {
+        System.clearProperty("atm.startup.budget.account_read");
+        System.clearProperty("atm.startup.budget.first_frame");
+        System.clearProperty("atm.startup.report");
+        StartupTimer.reset();
+    }
+
+    @Test
+    @DisplayName("Test that phases are timed")
+    public void testTiming() throws InterruptedException {
+        StartupTimer.reset();
+        StartupTimer.begin(StartupTimer.Phase.ACCOUNT_READ);
+        Thread.sleep(5);
+        StartupTimer.end(StartupTimer.Phase.ACCOUNT_READ);
+
+        assertTrue(StartupTimer.millis(StartupTimer.Phase.ACCOUNT_READ) >= 5);
+        assertEquals(-1, StartupTimer.millis(StartupTimer.Phase.FIRST_FRAME));
+
+        double first = StartupTimer.millis(StartupTimer.Phase.ACCOUNT_READ);
+        StartupTimer.begin(StartupTimer.Phase.ACCOUNT_READ); // e.g. a second Bank
+        StartupTimer.end(StartupTimer.Phase.ACCOUNT_READ);
+        StartupTimer.record(StartupTimer.Phase.ACCOUNT_READ, 0);
+        assertEquals(first, StartupTimer.millis(StartupTimer.Phase.ACCOUNT_READ));
+    }
+
+    @Test
+    @DisplayName("Test that phases over budget are flagged")
+    public void testBudget() {
+        StartupTimer.reset();
+        System.setProperty("atm.startup.budget.account_read", "10");
+        System.setProperty("atm.startup.budget.first_frame", "10");
+        StartupTimer.record(StartupTimer.Phase.ACCOUNT_READ, 20_000_000);
+        StartupTimer.record(StartupTimer.Phase.FIRST_FRAME, 5_000_000);
+
+        assertEquals(List.of(StartupTimer.Phase.ACCOUNT_READ), StartupTimer.overBudget());
+        assertTrue(StartupTimer.toJson().contains(
+                "{\"phase\": \"account_read\", \"millis\": 20.000, \"budgetMillis\": 10, \"overBudget\": true}"));
+        assertTrue(StartupTimer.toJson().contains("\"withinBudget\": false"));
+    }
+
+    @Test
+    @DisplayName("Test that the report is written")
+    public void testFinish() throws IOException {
+        StartupTimer.reset();
+        Path report = dir.resolve("startup.json");
+        System.setProperty("atm.startup.report", report.toString());
+        StartupTimer.record(StartupTimer.Phase.UI_CONSTRUCTION, 30_000_000);
+
+        assertTrue(StartupTimer.finish());
+        String json = Files.readString(report);
+        assertTrue(json.contains("\"phase\": \"ui_construction\", \"millis\": 30.000"));
+        assertTrue(json.contains("\"phase\": \"welcome_page\", \"millis\": -1.000"));
+        assertTrue(json.contains("\"withinBudget\": true"));
+    }
+
+    @Test
+    @DisplayName("Test that the report does not use the default locale")
+    public void testLocale() {
+        Locale locale = Locale.getDefault();
+        Locale.setDefault(Locale.GERMANY);
+        try {
+            StartupTimer.reset();
+            StartupTimer.record(StartupTimer.Phase.ACCOUNT_READ, 1_500_000);
+
+            assertTrue(StartupTimer.toJson().contains("\"millis\": 1.500,"), StartupTimer.toJson());
+
+            Locale.setDefault(Locale.forLanguageTag("tr-TR")); // Where "I" lowercases to a dotless "ı"
+            System.setProperty("atm.startup.budget.first_frame", "10");
+            StartupTimer.record(StartupTimer.Phase.FIRST_FRAME, 20_000_000);
+            assertEquals(10, StartupTimer.budgetMillis(StartupTimer.Phase.FIRST_FRAME));
+            assertTrue(StartupTimer.toJson().contains("\"phase\": \"first_frame\""), StartupTimer.toJson());
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+}
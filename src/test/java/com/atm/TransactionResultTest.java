@@ -0,0 +1,118 @@
+package com.atm;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.atm.utils.MemoryAccountStore;
+import com.atm.utils.PinHasher;
+
+/**
+ * Test class for the {@link TransactionResult}s of withdrawals and deposits.
+ * <p>
+ * These tests verify that:
+ * <ul>
+ *   <li>Results carry the outcome, the new balance and the low balance flag</li>
+ *   <li>A withdrawal whose commission would pass the overdraft limit is refused</li>
+ *   <li>Account messages are built from the result, with the warning when low</li>
+ *   <li>The bank's messages are built from the result when they are asked for,
+ *       and the result is kept by the session, not the shared account</li>
+ * </ul>
+ * </p>
+ */
+public class TransactionResultTest {
+
+    private Bank bank;
+
+    @BeforeEach
+    public void setUp() {
+        Debug.setLevel(Debug.Level.OFF);
+        List<String[]> rows = new ArrayList<>();
+        rows.add(new String[] { "11111", PinHasher.hash("12345", 1000), "student", "60.0" });
+        bank = new Bank(new MemoryAccountStore(rows));
+        bank.login("11111", "12345");
+    }
+
+    @Test
+    @DisplayName("Test that a result carries the outcome, balance and low balance flag")
+    public void testResult() {
+        BankAccount account = bank.getCurrentAccount();
+        assertNull(account.getLastResult());
+
+        assertTrue(account.withdraw(20));
+        TransactionResult result = account.getLastResult();
+        assertEquals(TransactionResult.Kind.WITHDRAWAL, result.getKind());
+        assertEquals(Outcome.SUCCESS, result.getOutcome());
+        assertEquals(40.0, result.getBalance());
+        assertFalse(result.isLowBalance());
+        assertNull(result.getWarning());
+
+        assertTrue(account.withdraw(35));
+        assertTrue(account.getLastResult().isLowBalance());
+
+        assertFalse(account.deposit(500));
+        assertEquals(Outcome.LIMIT_EXCEEDED, account.getLastResult().getOutcome());
+        assertEquals(Outcome.LIMIT_EXCEEDED, account.getLastOutcome());
+        assertFalse(account.getLastResult().isLowBalance());
+    }
+
+    @Test
+    @DisplayName("Test that the commission counts towards the overdraft limit")
+    public void testOverdraftWithCommission() {
+        BankAccount account = new PlatinumAccount("22222", "12345", -1300);
+        account.setStore(new MemoryAccountStore());
+
+        assertFalse(account.withdraw(200)); // -1500, then -1500.7 with the commission
+        assertEquals(Outcome.OVERDRAFT, account.getLastOutcome());
+        assertTrue(account.withdraw(199));
+        assertEquals(-1499.7, account.getBalance(), 0.001);
+    }
+
+    @Test
+    @DisplayName("Test that account messages are built from the result")
+    public void testAccountMessages() {
+        BankAccount account = bank.getCurrentAccount();
+
+        account.deposit(10);
+        assertEquals("Deposited £10 (Commission: £0.0). New balance: £70.0", account.getLastMessage());
+        account.withdraw(500);
+        assertEquals("Invalid withdrawal amount.\nMust be positive and no more than £150.", account.getLastMessage());
+        account.withdraw(100);
+        assertEquals("Withdrawal would exceed overdraft limit. Current balance: £70.0", account.getLastMessage());
+        account.deposit(0);
+        assertEquals("Invalid deposit amount.\nMust be positive and no more than £250.", account.getLastMessage());
+        account.withdraw(61);
+        assertEquals("Withdrawn £61. New balance: £9.0\n\nWARNING: LOW BALANCE ALERT!\nYour balance (£9.0) is "
+                + "below the threshold of £10.0.\nPlease deposit funds to avoid potential issues.",
+                account.getLastMessage());
+    }
+
+    @Test
+    @DisplayName("Test that the bank's messages are built from the result")
+    public void testBankMessages() {
+        assertTrue(bank.deposit(10));
+        assertEquals("Deposit successful: £10 deposited.\nCurrent balance: £70.0", bank.getLastMessage());
+        assertTrue(bank.withdraw(61));
+        assertEquals("Withdrawal successful: £61 withdrawn\n Current Balance: £9.0\nWARNING: LOW BALANCE ALERT!\n"
+                + "Your balance (£9.0) is below the threshold of £10.0.\nPlease deposit funds to avoid potential "
+                + "issues.", bank.getLastMessage());
+        assertFalse(bank.withdraw(50));
+        assertEquals("Withdrawal failed: Withdrawal would exceed overdraft limit. Current balance: £9.0",
+                bank.getLastMessage());
+        assertEquals(Outcome.OVERDRAFT, bank.getLastResult().getOutcome());
+
+        assertNull(bank.getCurrentAccount().getLastResult(), "the bank keeps results per session");
+        TransactionResult result = bank.getCurrentAccount().makeWithdrawal(500);
+        assertEquals(Outcome.LIMIT_EXCEEDED, result.getOutcome());
+        assertNull(bank.getCurrentAccount().getLastResult());
+
+        bank.logout();
+        assertFalse(bank.deposit(10));
+        assertEquals("No account is currently logged in", bank.getLastMessage());
+    }
+}
@@ -0,0 +1,79 @@
+package com.atm.jfr;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.atm.Outcome;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Test class for the ATM Flight Recorder events.
+ * <p>
+ * These tests verify that:
+ * <ul>
+ *   <li>A finished event is recorded with its fields while JFR records</li>
+ *   <li>Amounts are reported as buckets</li>
+ * </ul>
+ * </p>
+ */
+public class AtmEventTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    @DisplayName("Test that events are recorded with their fields")
+    public void testRecorded() throws IOException {
+        Path file = dir.resolve("atm.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("com.atm.Withdraw");
+            recording.enable("com.atm.AccountSave");
+            recording.start();
+
+            WithdrawEvent withdraw = new WithdrawEvent();
+            withdraw.begin();
+            withdraw.finish("gold", 120, Outcome.OVERDRAFT, 0);
+            AccountSaveEvent save = new AccountSaveEvent();
+            save.begin();
+            save.finish(null, 0, Outcome.SUCCESS, 4096);
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        RecordedEvent withdraw = find(events, "com.atm.Withdraw");
+        assertEquals("gold", withdraw.getString("accountType"));
+        assertEquals("100-199", withdraw.getString("amountBucket"));
+        assertEquals("OVERDRAFT", withdraw.getString("outcome"));
+        RecordedEvent save = find(events, "com.atm.AccountSave");
+        assertEquals(4096, save.getLong("bytesWritten"));
+        assertNull(save.getString("accountType"));
+    }
+
+    @Test
+    @DisplayName("Test amount buckets")
+    public void testAmountBucket() {
+        assertEquals("0", AtmEvent.amountBucket(0));
+        assertEquals("1-49", AtmEvent.amountBucket(49.99));
+        assertEquals("200-499", AtmEvent.amountBucket(200));
+        assertEquals("500+", AtmEvent.amountBucket(5000));
+    }
+
+    private static RecordedEvent find(List<RecordedEvent> events, String name) {
+        return events.stream()
+                .filter(e -> e.getEventType().getName().equals(name))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("No " + name + " event recorded"));
+    }
+}
@@ -0,0 +1,114 @@
+package com.atm.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+
+/**
+ * Reads how much heap is in use and how much threads have allocated, for
+ * footprint and allocation measurements.
+ * <p>
+ * Allocated bytes come from the HotSpot {@code ThreadMXBean}, which counts
+ * every byte a thread has been given since it started, whether or not it is
+ * still reachable. The bean is reached by reflection, so the application
+ * module does not need to require {@code jdk.management} for the sake of
+ * this tool; JVMs without it report -1. Heap in use is read after asking for
+ * full collections until it stops shrinking, so what is left is close to
+ * what is retained.
+ * </p>
+ */
+public class HeapMeter {
+
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private static final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private static final Method threadAllocatedBytes = allocationMethod();
+
+    private HeapMeter() {
+    }
+
+    private static Method allocationMethod() {
+        try {
+            Class<?> hotspot = Class.forName("com.sun.management.ThreadMXBean");
+            if (!hotspot.isInstance(threads)
+                    || !(Boolean) hotspot.getMethod("isThreadAllocatedMemorySupported").invoke(threads)) {
+                return null;
+            }
+            hotspot.getMethod("setThreadAllocatedMemoryEnabled", boolean.class).invoke(threads, true);
+            return hotspot.getMethod("getThreadAllocatedBytes", long[].class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return {@code true} if this JVM counts the bytes each thread allocates
+     */
+    public static boolean isAllocationCounted() {
+        return threadAllocatedBytes != null;
+    }
+
+    /**
+     * @return the bytes the current thread has allocated so far, or -1 if
+     *         this JVM does not count them
+     */
+    public static long allocatedBytes() {
+        return allocatedBytes(new long[] { Thread.currentThread().threadId() });
+    }
+
+    /**
+     * Returns the ids of the current thread and of every live thread whose
+     * name starts with the given prefix, such as the {@code pin-verifier-}
+     * threads that hash PINs for their callers. Threads started later are not
+     * included, so a pool should be warmed up first.
+     *
+     * @param workers the name prefix of the worker threads
+     * @return the thread ids, for {@link #allocatedBytes(long[])}
+     */
+    public static long[] threadIds(String workers) {
+        Thread current = Thread.currentThread();
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(t -> t == current || t.getName().startsWith(workers))
+                .mapToLong(Thread::threadId).toArray();
+    }
+
+    /**
+     * @param ids the threads to count, from {@link #threadIds(String)}
+     * @return the bytes the threads have allocated so far, together, or -1
+     *         if this JVM does not count them
+     */
+    public static long allocatedBytes(long[] ids) {
+        if (!isAllocationCounted()) {
+            return -1;
+        }
+        try {
+            long total = 0;
+            for (long bytes : (long[]) threadAllocatedBytes.invoke(threads, (Object) ids)) {
+                // A thread that has ended reads -1
+                total += Math.max(0, bytes);
+            }
+            return total;
+        } catch (ReflectiveOperationException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Collects garbage until the heap stops shrinking and returns what is
+     * still in use.
+     *
+     * @return the bytes of heap in use
+     */
+    public static long usedAfterGc() {
+        long used = memory.getHeapMemoryUsage().getUsed();
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            long now = memory.getHeapMemoryUsage().getUsed();
+            if (now >= used && i > 1) {
+                return now;
+            }
+            used = now;
+        }
+        return used;
+    }
+}
@@ -0,0 +1,118 @@
+package com.atm.metrics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link KeypressTracer}.
+ * <p>
+ * These tests verify that:
+ * <ul>
+ *   <li>Nested stages are charged only their own time</li>
+ *   <li>A trace waits for the layout pulse and reports the wait as RENDER</li>
+ *   <li>Marks from other threads and outside a trace are ignored</li>
+ *   <li>The summary lists each label</li>
+ * </ul>
+ * </p>
+ */
+public class KeypressTracerTest {
+
+    @BeforeEach
+    public void setUp() {
+        KeypressTracer.reset();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    @DisplayName("Test that nested stages are charged their own time")
+    public void testNestedStages() {
+        KeypressTracer.begin("W/D");
+        KeypressTracer.enter(KeypressTracer.Stage.MODEL);
+        sleep(5);
+        KeypressTracer.enter(KeypressTracer.Stage.STORAGE);
+        sleep(20);
+        KeypressTracer.exit();
+        KeypressTracer.exit();
+        KeypressTracer.end();
+
+        long model = KeypressTracer.histogram("W/D", KeypressTracer.Stage.MODEL).getMax();
+        long storage = KeypressTracer.histogram("W/D", KeypressTracer.Stage.STORAGE).getMax();
+        long total = KeypressTracer.histogram("W/D").getMax();
+        assertTrue(storage >= 20_000_000, "Storage should include its sleep");
+        assertTrue(model >= 5_000_000 && model < 20_000_000, "Model should exclude the nested storage time");
+        assertTrue(total >= model + storage);
+    }
+
+    @Test
+    @DisplayName("Test that stages a press never entered are not recorded")
+    public void testUnenteredStages() {
+        KeypressTracer.begin("Bal");
+        KeypressTracer.enter(KeypressTracer.Stage.BANK);
+        KeypressTracer.exit();
+        KeypressTracer.end();
+        KeypressTracer.begin("Bal");
+        KeypressTracer.end();
+
+        assertEquals(1, KeypressTracer.histogram("Bal", KeypressTracer.Stage.BANK).getCount());
+        assertEquals(0, KeypressTracer.histogram("Bal", KeypressTracer.Stage.STORAGE).getCount());
+        assertEquals(0, KeypressTracer.histogram("Bal", KeypressTracer.Stage.RENDER).getCount());
+    }
+
+    @Test
+    @DisplayName("Test that a trace ends at the layout pulse")
+    public void testRender() {
+        KeypressTracer.begin("Ent");
+        KeypressTracer.awaitRender();
+        assertNull(KeypressTracer.histogram("Ent"), "Trace should wait for the pulse");
+        sleep(10);
+        KeypressTracer.endPending();
+        KeypressTracer.endPending(); // a later pulse must not record it again
+
+        assertEquals(1, KeypressTracer.histogram("Ent").getCount());
+        assertTrue(KeypressTracer.histogram("Ent", KeypressTracer.Stage.RENDER).getMax() >= 10_000_000);
+    }
+
+    @Test
+    @DisplayName("Test that marks outside the traced thread are ignored")
+    public void testOtherThreads() throws InterruptedException {
+        KeypressTracer.enter(KeypressTracer.Stage.BANK); // no trace open
+        KeypressTracer.exit();
+        KeypressTracer.begin("Bal");
+        Thread other = new Thread(() -> {
+            KeypressTracer.enter(KeypressTracer.Stage.BANK);
+            sleep(10);
+            KeypressTracer.exit();
+            KeypressTracer.end();
+        });
+        other.start();
+        other.join();
+        assertNull(KeypressTracer.histogram("Bal"), "Another thread must not end the trace");
+        KeypressTracer.end();
+
+        assertEquals(0, KeypressTracer.histogram("Bal", KeypressTracer.Stage.BANK).getMax());
+    }
+
+    @Test
+    @DisplayName("Test that the summary lists each label")
+    public void testSummary() {
+        for (String label : new String[] { "1", "Ent", "1" }) {
+            KeypressTracer.begin(label);
+            KeypressTracer.end();
+        }
+
+        String summary = KeypressTracer.summary();
+        assertTrue(summary.contains("n=2"), summary);
+        assertTrue(summary.lines().anyMatch(l -> l.startsWith("Ent ")), summary);
+        assertEquals(2, summary.lines().count());
+    }
+}
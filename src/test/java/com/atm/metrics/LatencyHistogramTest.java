@@ -0,0 +1,61 @@
+package com.atm.metrics;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+/**
+ * Test class for {@link LatencyHistogram}.
+ * <p>
+ * These tests verify that:
+ * <ul>
+ *   <li>Percentiles are reported within the bucket precision</li>
+ *   <li>Count, mean and max are exact</li>
+ *   <li>Every value maps to a bucket whose range contains it</li>
+ * </ul>
+ * </p>
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    @DisplayName("Test percentiles of a uniform spread")
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long v = 1; v <= 100_000; v++) {
+            histogram.record(v * 1000);
+        }
+
+        assertEquals(100_000, histogram.getCount());
+        assertEquals(100_000_000, histogram.getMax());
+        assertEquals(50_000_500.0, histogram.getMean(), 0.001);
+        assertEquals(50_000_000, histogram.getPercentile(50), 50_000_000 * 0.07);
+        assertEquals(99_000_000, histogram.getPercentile(99), 99_000_000 * 0.07);
+        assertEquals(100_000_000, histogram.getPercentile(100));
+    }
+
+    @Test
+    @DisplayName("Test that buckets cover their values")
+    public void testBuckets() {
+        long previous = -1;
+        for (long v : new long[] { 0, 1, 15, 16, 17, 31, 32, 1000, 123_456_789, Long.MAX_VALUE }) {
+            int bucket = LatencyHistogram.bucketOf(v);
+            assertTrue(bucket >= previous, "Buckets should be ordered");
+            assertTrue(LatencyHistogram.upperBoundOf(bucket) >= v, "Bucket should contain " + v);
+            previous = bucket;
+        }
+    }
+
+    @Test
+    @DisplayName("Test that an empty or reset histogram reports zero")
+    public void testReset() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(99));
+
+        histogram.record(5000);
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getPercentile(50));
+    }
+}
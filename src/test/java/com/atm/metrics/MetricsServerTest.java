@@ -0,0 +1,97 @@
+package com.atm.metrics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.atm.Outcome;
+
+/**
+ * Test class for the {@link MetricsServer} endpoint.
+ * <p>
+ * These tests verify that:
+ * <ul>
+ *   <li>Counters, latency summaries and gauges are rendered in the Prometheus
+ *       text format</li>
+ *   <li>{@code /metrics} and the status page are served over HTTP, and other
+ *       paths are not found</li>
+ * </ul>
+ * </p>
+ */
+public class MetricsServerTest {
+
+    @Test
+    @DisplayName("Test that counters, summaries and gauges are rendered")
+    public void testRender() throws IOException {
+        Metrics.reset();
+        Metrics.record(Metrics.Operation.DEPOSIT, Outcome.SUCCESS, 2_000_000);
+        Metrics.record(Metrics.Operation.DEPOSIT, Outcome.LIMIT_EXCEEDED, 1_000_000);
+        MetricsServer server = new MetricsServer("127.0.0.1", 0).gauge("atm_accounts", "Accounts.", () -> 7);
+        try {
+            String text = server.render();
+            assertTrue(text.contains("atm_operations_total{operation=\"deposit\",outcome=\"success\"} 1\n"));
+            assertTrue(text.contains("atm_operations_total{operation=\"deposit\",outcome=\"limit_exceeded\"} 1\n"));
+            assertTrue(text.contains("atm_operation_latency_seconds_count{operation=\"deposit\"} 2\n"));
+            assertTrue(text.contains("atm_operation_latency_seconds_sum{operation=\"deposit\"} 0.003\n"));
+            assertTrue(text.contains("atm_operation_latency_seconds{operation=\"deposit\",quantile=\"0.99\"} 0.002"));
+            assertTrue(text.contains("# TYPE atm_accounts gauge\natm_accounts 7.0\n"));
+
+            Locale locale = Locale.getDefault();
+            Locale.setDefault(Locale.forLanguageTag("tr-TR"));
+            try {
+                assertTrue(server.render().contains("outcome=\"limit_exceeded\""));
+            } finally {
+                Locale.setDefault(locale);
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    @DisplayName("Test that the endpoint and status page are served")
+    public void testServe() throws IOException {
+        Metrics.reset();
+        MetricsServer server = new MetricsServer("127.0.0.1", 0).gauge("atm_active_sessions", "Sessions.", () -> 1);
+        server.start();
+        try {
+            String metrics = get(server.getPort(), "/metrics");
+            assertTrue(metrics.contains("atm_active_sessions 1.0"));
+            String status = get(server.getPort(), "/");
+            assertTrue(status.contains("<h1>ATM status</h1>"));
+            assertTrue(status.contains("atm_active_sessions"));
+            assertEquals(404, status(server.getPort(), "/favicon.ico"));
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static String get(int port, String path) throws IOException {
+        HttpURLConnection connection = open(port, path);
+        assertEquals(200, connection.getResponseCode());
+        try (InputStream in = connection.getInputStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static int status(int port, String path) throws IOException {
+        HttpURLConnection connection = open(port, path);
+        try {
+            return connection.getResponseCode();
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static HttpURLConnection open(int port, String path) throws IOException {
+        return (HttpURLConnection) URI.create("http://127.0.0.1:" + port + path).toURL().openConnection();
+    }
+}
@@ -0,0 +1,109 @@
+package com.atm.metrics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.atm.Bank;
+import com.atm.Debug;
+import com.atm.Outcome;
+import com.atm.utils.MemoryAccountStore;
+import com.atm.utils.PinHasher;
+
+/**
+ * Test class for the {@link Metrics} registry.
+ * <p>
+ * These tests verify that:
+ * <ul>
+ *   <li>Calls are counted per operation and outcome</li>
+ *   <li>The numbers can be read over JMX</li>
+ *   <li>Transfers are timed without the confirmation dialog</li>
+ * </ul>
+ * </p>
+ */
+public class MetricsTest {
+
+    @Test
+    @DisplayName("Test that calls are counted by outcome")
+    public void testRecord() {
+        Metrics.reset();
+        Metrics.record(Metrics.Operation.WITHDRAW, Outcome.SUCCESS, 1000);
+        Metrics.record(Metrics.Operation.WITHDRAW, Outcome.OVERDRAFT, 3000);
+        Metrics.record(Metrics.Operation.WITHDRAW, Outcome.OVERDRAFT, 2000);
+
+        assertEquals(1, Metrics.count(Metrics.Operation.WITHDRAW, Outcome.SUCCESS));
+        assertEquals(2, Metrics.count(Metrics.Operation.WITHDRAW, Outcome.OVERDRAFT));
+        assertEquals(0, Metrics.count(Metrics.Operation.DEPOSIT, Outcome.SUCCESS));
+        assertEquals(3, Metrics.histogram(Metrics.Operation.WITHDRAW).getCount());
+        assertEquals(3000, Metrics.histogram(Metrics.Operation.WITHDRAW).getMax());
+    }
+
+    @Test
+    @DisplayName("Test that the metrics are published over JMX")
+    public void testMBeans() throws Exception {
+        Metrics.reset();
+        Metrics.registerMBeans();
+        Metrics.registerMBeans(); // a second call must not fail
+        Metrics.record(Metrics.Operation.TRANSFER, Outcome.NOT_FOUND, 2_000_000);
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("com.atm:type=Metrics,operation=transfer");
+        assertEquals(1L, server.getAttribute(name, "Count"));
+        assertEquals(1L, server.getAttribute(name, "NotFoundCount"));
+        assertEquals(2000.0, (Double) server.getAttribute(name, "MaxMicros"), 0.001);
+    }
+
+    @Test
+    @DisplayName("Test that transfers are timed without the confirmation dialog")
+    public void testTransferExcludesDialog() {
+        Debug.setLevel(Debug.Level.OFF);
+        List<String[]> rows = new ArrayList<>();
+        rows.add(new String[] { "11111", PinHasher.hash("12345", 1000), "gold", "500.0" });
+        rows.add(new String[] { "22222", PinHasher.hash("12345", 1000), "gold", "500.0" });
+        Bank bank = new Bank(new MemoryAccountStore(rows));
+        assertTrue(bank.login("11111", "12345"));
+        Metrics.reset();
+
+        assertTrue(bank.transfer("22222", 10, (recipient, amount) -> {
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        }));
+
+        assertEquals(1, Metrics.count(Metrics.Operation.TRANSFER, Outcome.SUCCESS));
+        long max = Metrics.histogram(Metrics.Operation.TRANSFER).getMax();
+        assertTrue(max < 250_000_000, "transfer timed at " + max + "ns");
+    }
+
+    @Test
+    @DisplayName("Test that a transaction the store could not log is not counted as a success")
+    public void testFailedLog() {
+        Debug.setLevel(Debug.Level.OFF);
+        List<String[]> rows = new ArrayList<>();
+        rows.add(new String[] { "11111", PinHasher.hash("12345", 1000), "gold", "500.0" });
+        Bank bank = new Bank(new MemoryAccountStore(rows) {
+            @Override
+            public int logTransaction(String accountNumber, String type, double amount, double balance) {
+                return -1;
+            }
+        });
+        assertTrue(bank.login("11111", "12345"));
+        Metrics.reset();
+
+        assertTrue(bank.deposit(10));
+
+        assertEquals(0, Metrics.count(Metrics.Operation.LOG_TRANSACTION, Outcome.SUCCESS));
+        assertEquals(1, Metrics.count(Metrics.Operation.LOG_TRANSACTION, Outcome.REJECTED));
+    }
+}
@@ -0,0 +1,70 @@
+package com.atm.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.atm.Bank;
+
+/**
+ * Test class for the {@link AccountStore} implementations.
+ * <p>
+ * These tests verify that:
+ * <ul>
+ *   <li>A CSV store reads back the accounts it wrote, in its own files</li>
+ *   <li>A bank on a memory store saves and logs without touching the disk</li>
+ * </ul>
+ * </p>
+ */
+public class AccountStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private static List<String[]> rows() {
+        List<String[]> rows = new ArrayList<>();
+        rows.add(new String[] { "11111", PinHasher.hash("12345", 1000), "gold", "500.0" });
+        rows.add(new String[] { "22222", PinHasher.hash("54321", 1000), "student", "50.0" });
+        return rows;
+    }
+
+    @Test
+    @DisplayName("Test that a CSV store round-trips accounts and logs transactions")
+    public void testCsvStore() throws IOException {
+        Path accounts = dir.resolve("accounts.csv");
+        Path transactions = dir.resolve("transactions.csv");
+        CsvAccountStore store = new CsvAccountStore(accounts.toString(), transactions.toString());
+
+        assertTrue(store.writeAccounts(rows()) > 0);
+        List<String[]> read = store.readAccounts();
+        assertEquals(2, read.size());
+        assertEquals("22222", read.get(1)[0]);
+        assertEquals("student", read.get(1)[2]);
+
+        int bytes = store.logTransaction("11111", "Deposit", 20, 520);
+        assertEquals(Files.size(transactions), bytes);
+    }
+
+    @Test
+    @DisplayName("Test that a bank on a memory store keeps its changes in memory")
+    public void testMemoryStore() {
+        MemoryAccountStore store = new MemoryAccountStore(rows());
+        Bank bank = new Bank(store);
+
+        assertEquals(2, bank.getAccountCount());
+        assertTrue(bank.login("11111", "12345"));
+        assertTrue(bank.deposit(100));
+
+        assertEquals(1, store.getTransactionCount());
+        assertEquals(String.valueOf(bank.getBalance()), store.readAccounts().get(0)[3]);
+        assertEquals(2, new Bank(store).getAccountCount());
+    }
+}
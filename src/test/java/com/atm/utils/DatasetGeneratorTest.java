@@ -0,0 +1,85 @@
+package com.atm.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test class for the {@link DatasetGenerator} utility.
+ * <p>
+ * These tests verify that:
+ * <ul>
+ *   <li>Accounts can be read back, with encrypted pins and the requested mix</li>
+ *   <li>Transactions are skewed towards a few accounts and in time order</li>
+ *   <li>The same seed gives the same files whatever the number of threads</li>
+ * </ul>
+ * </p>
+ */
+public class DatasetGeneratorTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    @DisplayName("Test that generated accounts can be read back")
+    public void testAccounts() throws IOException {
+        DatasetGenerator generator = new DatasetGenerator(1000, 0).mix(50, 50, 0).chunkRows(128);
+        DatasetGenerator.Report report = generator.generate(dir);
+        List<String[]> accounts = AccountReader.readAccounts(dir.resolve("accounts.csv").toString());
+
+        assertEquals(1000, report.accounts);
+        assertEquals(1000, accounts.size());
+        String[] account = accounts.get(123);
+        assertEquals("00123", account[0]);
+        assertTrue(PasswordCrypt.isEncrypted(account[1]));
+        assertEquals(generator.pin(123), PasswordCrypt.decryptStored(account[1]));
+        assertEquals(generator.accountType(123), account[2]);
+        assertTrue(Double.parseDouble(account[3]) >= 0);
+        assertFalse(accounts.stream().anyMatch(a -> a[2].equals("platinum")));
+        long students = accounts.stream().filter(a -> a[2].equals("student")).count();
+        assertTrue(students > 400 && students < 600, "students: " + students);
+    }
+
+    @Test
+    @DisplayName("Test that transactions are skewed and in time order")
+    public void testTransactions() throws IOException {
+        new DatasetGenerator(1000, 20000).zipf(1.0).chunkRows(1000).generate(dir);
+        List<String> lines = Files.readAllLines(dir.resolve("transactions.csv"));
+
+        assertEquals(20000, lines.size());
+        Map<String, Integer> perAccount = new HashMap<>();
+        String previous = "";
+        for (String line : lines) {
+            String[] parts = line.split(",");
+            assertEquals(5, parts.length);
+            assertTrue(parts[0].compareTo(previous) >= 0, "out of order: " + line);
+            previous = parts[0];
+            perAccount.merge(parts[1], 1, Integer::sum);
+        }
+        int busiest = perAccount.values().stream().max(Integer::compare).orElse(0);
+        // uniform activity would give about 20 each
+        assertTrue(busiest > 1000, "busiest account: " + busiest);
+    }
+
+    @Test
+    @DisplayName("Test that the data depends only on the seed")
+    public void testDeterministic() throws IOException {
+        Path one = dir.resolve("one");
+        Path four = dir.resolve("four");
+        new DatasetGenerator(500, 5000).seed(7).threads(1).chunkRows(100).generate(one);
+        new DatasetGenerator(500, 5000).seed(7).threads(4).chunkRows(100).generate(four);
+
+        assertEquals(Files.readString(one.resolve("accounts.csv")), Files.readString(four.resolve("accounts.csv")));
+        assertEquals(Files.readString(one.resolve("transactions.csv")),
+                Files.readString(four.resolve("transactions.csv")));
+    }
+}
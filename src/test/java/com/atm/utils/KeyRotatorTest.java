@@ -0,0 +1,102 @@
+package com.atm.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test class for the {@link KeyRotator} utility.
+ * <p>
+ * These tests verify that:
+ * <ul>
+ *   <li>Every encrypted password is moved to the target key version</li>
+ *   <li>Rows keep their order and their other columns across chunks</li>
+ *   <li>PIN hashes are copied unchanged</li>
+ *   <li>Rotating twice changes nothing the second time</li>
+ * </ul>
+ * </p>
+ */
+public class KeyRotatorTest {
+
+    /** A version no other test configures. */
+    private static final int KEY_VERSION = 7;
+
+    @TempDir
+    Path dir;
+
+    @BeforeAll
+    public static void configureKey() {
+        System.setProperty("atm.key." + KEY_VERSION, "RotatedTestKey07");
+    }
+
+    @AfterAll
+    public static void clearKey() {
+        System.clearProperty("atm.key." + KEY_VERSION);
+    }
+
+    @Test
+    @DisplayName("Test that rows are re-encrypted in order across chunks")
+    public void testRotate() throws IOException {
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            // mix legacy bare rows and stored-form rows
+            String password = i % 2 == 0 ? PasswordCrypt.encrypt("pin" + i) : PasswordCrypt.encryptForStorage("pin" + i, 1);
+            rows.add(String.format("%08d,%s,Standard,%d", i, password, i * 10));
+        }
+        Path file = dir.resolve("accounts.csv");
+        Files.write(file, rows);
+
+        KeyRotator.Report report = KeyRotator.rotate(file.toString(), KEY_VERSION, 3, 4);
+
+        assertEquals(25, report.rows);
+        assertEquals(25, report.reencrypted);
+        List<String> rotated = Files.readAllLines(file);
+        assertEquals(25, rotated.size());
+        for (int i = 0; i < 25; i++) {
+            String[] columns = rotated.get(i).split(",");
+            assertEquals(String.format("%08d", i), columns[0], "Row order should be preserved");
+            assertEquals(KEY_VERSION, PasswordCrypt.keyVersionOf(columns[1]));
+            assertEquals("pin" + i, PasswordCrypt.decryptStored(columns[1]));
+            assertEquals(String.valueOf(i * 10), columns[3]);
+        }
+        assertFalse(Files.exists(dir.resolve("accounts.csv.next")), "New generation should replace the file");
+    }
+
+    @Test
+    @DisplayName("Test that hashes are kept and a second rotation is a no-op")
+    public void testHashesAndCurrentRowsUntouched() throws IOException {
+        String hash = PinHasher.hash("12345", 1000);
+        Path file = dir.resolve("accounts.csv");
+        Files.write(file, List.of(
+                "00000001," + hash + ",Standard,100",
+                "00000002," + PasswordCrypt.encryptForStorage("54321", 1) + ",Business,200"));
+
+        assertEquals(1, KeyRotator.rotate(file.toString(), KEY_VERSION, 2, 1).reencrypted);
+        List<String> once = Files.readAllLines(file);
+        assertEquals("00000001," + hash + ",Standard,100", once.get(0), "Hash row should be copied as is");
+
+        assertEquals(0, KeyRotator.rotate(file.toString(), KEY_VERSION, 2, 1).reencrypted);
+        assertEquals(once, Files.readAllLines(file));
+    }
+
+    @Test
+    @DisplayName("Test that an unknown target key leaves the file alone")
+    public void testUnknownKey() throws IOException {
+        Path file = dir.resolve("accounts.csv");
+        List<String> rows = List.of("00000001," + PasswordCrypt.encryptForStorage("12345", 1) + ",Standard,100");
+        Files.write(file, rows);
+
+        assertThrows(RuntimeException.class, () -> KeyRotator.rotate(file.toString(), 99, 1, 1));
+        assertEquals(rows, Files.readAllLines(file));
+    }
+}
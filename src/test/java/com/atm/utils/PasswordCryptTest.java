@@ -78,4 +78,34 @@ public class PasswordCryptTest {
         
         assertEquals(original, decrypted, "Numeric strings should be preserved after encryption and decryption");
     }
-} 
\ No newline at end of file
+    
+    @Test
+    @DisplayName("Test the stored form round trip")
+    public void testStoredFormRoundTrip() {
+        String stored = PasswordCrypt.encryptForStorage("01234");
+        
+        assertTrue(PasswordCrypt.isEncrypted(stored), "Stored form should be recognised as encrypted");
+        assertFalse(stored.contains("01234"), "Stored form should not contain the password");
+        assertEquals("01234", PasswordCrypt.decryptStored(stored), "Stored form should decrypt to the original");
+    }
+    
+    @Test
+    @DisplayName("Test rows written before the stored form are still readable")
+    public void testLegacyColumn() {
+        String legacy = PasswordCrypt.encrypt("12345");
+        
+        assertFalse(PasswordCrypt.isEncrypted(legacy), "A bare base64 column is not yet in stored form");
+        String stored = PasswordCrypt.toStoredForm(legacy);
+        assertTrue(PasswordCrypt.isEncrypted(stored));
+        assertEquals(stored, PasswordCrypt.toStoredForm(stored), "Converting twice should change nothing");
+        assertEquals("12345", PasswordCrypt.decryptStored(stored));
+    }
+    
+    @Test
+    @DisplayName("Test a failed decryption does not break later calls")
+    public void testRecoversAfterFailure() {
+        assertThrows(RuntimeException.class, () -> PasswordCrypt.decrypt("bm90IGNpcGhlcnRleHQ="));
+        
+        assertEquals("12345", PasswordCrypt.decrypt(PasswordCrypt.encrypt("12345")));
+    }
+}
@@ -0,0 +1,62 @@
+package com.atm.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+/**
+ * Test class for the {@link PinHasher} utility.
+ * <p>
+ * These tests verify that:
+ * <ul>
+ *   <li>The correct PIN verifies and a wrong PIN does not</li>
+ *   <li>Each hash uses its own salt</li>
+ *   <li>The iteration count is stored with the hash</li>
+ *   <li>Hashes can be told apart from legacy stored passwords</li>
+ * </ul>
+ * </p>
+ */
+public class PinHasherTest {
+
+    /** Low cost keeps the tests fast; the cost does not change the behaviour. */
+    private static final int ITERATIONS = 1000;
+
+    @Test
+    @DisplayName("Test that the correct PIN verifies and a wrong PIN does not")
+    public void testVerify() {
+        String stored = PinHasher.hash("01234", ITERATIONS);
+
+        assertTrue(PinHasher.verify("01234", stored), "Correct PIN should verify");
+        assertFalse(PinHasher.verify("1234", stored), "Leading zeros should be significant");
+        assertFalse(PinHasher.verify("01235", stored), "Wrong PIN should not verify");
+    }
+
+    @Test
+    @DisplayName("Test that the same PIN hashes differently each time")
+    public void testSaltedHashes() {
+        String first = PinHasher.hash("12345", ITERATIONS);
+        String second = PinHasher.hash("12345", ITERATIONS);
+
+        assertNotEquals(first, second, "Each hash should use a fresh salt");
+        assertFalse(first.contains("12345"), "Hash should not contain the PIN");
+        assertTrue(PinHasher.verify("12345", second));
+    }
+
+    @Test
+    @DisplayName("Test that the cost setting is kept with the hash")
+    public void testIterationsStored() {
+        String stored = PinHasher.hash("12345", 2000);
+
+        assertTrue(stored.startsWith("pbkdf2$2000$"), "Iteration count should be stored");
+        assertTrue(PinHasher.verify("12345", stored), "Hash should verify at its own cost");
+    }
+
+    @Test
+    @DisplayName("Test hashes are told apart from legacy passwords")
+    public void testIsHashed() {
+        assertTrue(PinHasher.isHashed(PinHasher.hash("12345", ITERATIONS)));
+        assertFalse(PinHasher.isHashed(PasswordCrypt.encrypt("12345")));
+        assertFalse(PinHasher.isHashed("12345"));
+        assertFalse(PinHasher.verify("12345", "12345"), "A plain value is not a hash");
+    }
+}
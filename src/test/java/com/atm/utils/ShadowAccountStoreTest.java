@@ -0,0 +1,109 @@
+package com.atm.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.atm.Bank;
+
+/**
+ * Test class for the {@link ShadowAccountStore}.
+ * <p>
+ * These tests verify that:
+ * <ul>
+ *   <li>A bank's writes reach the candidate, with latencies for both stores</li>
+ *   <li>A candidate that stores something else is flagged</li>
+ *   <li>A stuck candidate never holds up the primary</li>
+ * </ul>
+ * </p>
+ */
+public class ShadowAccountStoreTest {
+
+    private static List<String[]> rows() {
+        List<String[]> rows = new ArrayList<>();
+        rows.add(new String[] { "11111", PinHasher.hash("12345", 1000), "gold", "500.0" });
+        rows.add(new String[] { "22222", PinHasher.hash("54321", 1000), "student", "50.0" });
+        return rows;
+    }
+
+    @Test
+    @DisplayName("Test that a bank's writes are mirrored to the candidate")
+    public void testMirror() throws InterruptedException {
+        MemoryAccountStore candidate = new MemoryAccountStore();
+        ShadowAccountStore store = new ShadowAccountStore(new MemoryAccountStore(rows()), candidate);
+        Bank bank = new Bank(store);
+
+        assertTrue(bank.login("11111", "12345"));
+        assertTrue(bank.deposit(100));
+        assertTrue(bank.withdraw(20));
+        assertTrue(store.awaitIdle(5000));
+        store.close();
+
+        assertEquals(2, candidate.getTransactionCount());
+        assertEquals(String.valueOf(bank.getBalance()), candidate.readAccounts().get(0)[3]);
+        assertEquals(0, store.getMismatches(), store.getLastMismatch());
+        assertEquals(2, store.getPrimaryLatency(ShadowAccountStore.Operation.LOG_TRANSACTION).getCount());
+        assertEquals(2, store.getCandidateLatency(ShadowAccountStore.Operation.LOG_TRANSACTION).getCount());
+        long saves = store.getCandidateLatency(ShadowAccountStore.Operation.WRITE_ACCOUNTS).getCount();
+        assertEquals(store.getPrimaryLatency(ShadowAccountStore.Operation.WRITE_ACCOUNTS).getCount(),
+                saves + store.getCoalesced());
+    }
+
+    @Test
+    @DisplayName("Test that a candidate storing different rows is flagged")
+    public void testMismatch() throws InterruptedException {
+        MemoryAccountStore lossy = new MemoryAccountStore() {
+            @Override
+            public synchronized long writeAccounts(List<String[]> rows) {
+                return super.writeAccounts(rows.subList(0, rows.size() - 1));
+            }
+        };
+        ShadowAccountStore store = new ShadowAccountStore(new MemoryAccountStore(), lossy);
+
+        store.writeAccounts(rows());
+        assertTrue(store.awaitIdle(5000));
+        store.close();
+
+        assertEquals(1, store.getMismatches());
+        assertTrue(store.getLastMismatch().contains("1 accounts"), store.getLastMismatch());
+    }
+
+    @Test
+    @DisplayName("Test that a stuck candidate does not slow the primary")
+    public void testStuckCandidate() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        MemoryAccountStore stuck = new MemoryAccountStore() {
+            @Override
+            public synchronized int logTransaction(String accountNumber, String type, double amount, double balance) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.logTransaction(accountNumber, type, amount, balance);
+            }
+        };
+        MemoryAccountStore primary = new MemoryAccountStore();
+        ShadowAccountStore store = new ShadowAccountStore(primary, stuck, 4);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            store.logTransaction("11111", "Deposit", 20, 520);
+            store.writeAccounts(rows());
+        }
+        assertTrue(System.nanoTime() - start < 1_000_000_000L);
+        assertEquals(100, primary.getTransactionCount());
+        assertTrue(store.getDropped() > 0);
+        assertTrue(store.getCoalesced() > 0);
+
+        release.countDown();
+        assertTrue(store.awaitIdle(5000));
+        store.close();
+        assertEquals(0, store.getMismatches(), store.getLastMismatch());
+    }
+}
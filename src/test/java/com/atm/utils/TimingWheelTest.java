@@ -0,0 +1,101 @@
+package com.atm.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for the {@link TimingWheel}.
+ * <p>
+ * These tests verify that:
+ * <ul>
+ *   <li>Timeouts run at the first tick after they are due, never before</li>
+ *   <li>Timeouts longer than a turn of the wheel wait out their turns</li>
+ *   <li>Cancelled timeouts never run</li>
+ *   <li>A started wheel runs timeouts on its own thread</li>
+ * </ul>
+ * </p>
+ */
+public class TimingWheelTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000);
+
+    @Test
+    @DisplayName("Test that timeouts run once due, never before")
+    public void testDue() {
+        TimingWheel wheel = new TimingWheel(10, 8, clock::get);
+        List<String> ran = new ArrayList<>();
+        wheel.schedule(() -> ran.add("a"), 25);
+        wheel.schedule(() -> ran.add("b"), 10);
+
+        clock.addAndGet(9);
+        assertEquals(0, wheel.advance());
+        clock.addAndGet(1);
+        assertEquals(1, wheel.advance());
+        assertEquals(List.of("b"), ran);
+        clock.addAndGet(15);
+        assertEquals(0, wheel.advance());
+        clock.addAndGet(5);
+        assertEquals(1, wheel.advance());
+        assertEquals(List.of("b", "a"), ran);
+        assertEquals(0, wheel.getPending());
+    }
+
+    @Test
+    @DisplayName("Test that long timeouts wait out their turns of the wheel")
+    public void testRounds() {
+        TimingWheel wheel = new TimingWheel(10, 4, clock::get);
+        List<Long> ran = new ArrayList<>();
+        for (long delay : new long[] { 30, 70, 150 }) {
+            wheel.schedule(() -> ran.add(delay), delay);
+        }
+
+        for (int step = 0; step < 20; step++) {
+            clock.addAndGet(10);
+            wheel.advance();
+            for (long delay : ran) {
+                assertTrue((step + 1) * 10 >= delay, delay + " ran at " + (step + 1) * 10);
+            }
+        }
+        assertEquals(List.of(30L, 70L, 150L), ran);
+    }
+
+    @Test
+    @DisplayName("Test that a cancelled timeout never runs")
+    public void testCancel() {
+        TimingWheel wheel = new TimingWheel(10, 8, clock::get);
+        List<Integer> ran = new ArrayList<>();
+        List<TimingWheel.Timeout> timeouts = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            int id = i;
+            timeouts.add(wheel.schedule(() -> ran.add(id), 5 + i % 200));
+        }
+        for (int i = 0; i < 1000; i += 2) {
+            assertTrue(timeouts.get(i).cancel());
+        }
+        assertFalse(timeouts.get(0).cancel());
+        assertEquals(500, wheel.getPending());
+
+        clock.addAndGet(300);
+        assertEquals(500, wheel.advance());
+        assertTrue(ran.stream().allMatch(id -> id % 2 == 1));
+        assertFalse(timeouts.get(1).isPending());
+    }
+
+    @Test
+    @DisplayName("Test that a started wheel runs timeouts on its own")
+    public void testStart() throws InterruptedException {
+        TimingWheel wheel = new TimingWheel(5, 16).start("wheel-test");
+        CountDownLatch latch = new CountDownLatch(1);
+        wheel.schedule(latch::countDown, 20);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        wheel.stop();
+    }
+}
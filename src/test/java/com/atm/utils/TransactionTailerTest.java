@@ -0,0 +1,166 @@
+package com.atm.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test class for {@link TransactionTailer}.
+ * <p>
+ * These tests verify that:
+ * <ul>
+ *   <li>Appended records are delivered once, in order</li>
+ *   <li>A partially written line is held back until its newline arrives</li>
+ *   <li>Several subscribers share one reader</li>
+ *   <li>A subscriber resumes from its stored offset after a restart</li>
+ *   <li>Backlogs and lines larger than one mapped window are read in pieces</li>
+ * </ul>
+ * </p>
+ */
+public class TransactionTailerTest {
+
+    @TempDir
+    Path dir;
+
+    private Path log;
+    private String offsets;
+
+    @BeforeEach
+    public void setUp() {
+        log = dir.resolve("transactions.csv");
+        offsets = dir.resolve("offsets").toString();
+    }
+
+    private void append(String text) throws IOException {
+        Files.writeString(log, text, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    @Test
+    @DisplayName("Test appended records are delivered in order")
+    public void testDeliversAppendedRecords() throws IOException {
+        List<String> seen = new ArrayList<>();
+        TransactionTailer tailer = new TransactionTailer(log.toString(), offsets);
+        tailer.subscribe("statements", seen::add);
+
+        append("2025-04-18 12:06:02,36143,Deposit,50.0,50.0\n");
+        assertEquals(1, tailer.poll());
+        append("2025-04-18 12:07:00,36143,Withdraw,20.0,29.5\n");
+        assertEquals(1, tailer.poll());
+        assertEquals(0, tailer.poll(), "Nothing new should be read twice");
+
+        assertEquals(List.of(
+                "2025-04-18 12:06:02,36143,Deposit,50.0,50.0",
+                "2025-04-18 12:07:00,36143,Withdraw,20.0,29.5"), seen);
+    }
+
+    @Test
+    @DisplayName("Test a partial line waits for its newline")
+    public void testPartialLineHeldBack() throws IOException {
+        List<String> seen = new ArrayList<>();
+        TransactionTailer tailer = new TransactionTailer(log.toString(), offsets);
+        tailer.subscribe("fraud", seen::add);
+
+        append("2025-04-18 12:06:02,36143,Dep");
+        assertEquals(0, tailer.poll());
+        append("osit,50.0,50.0\n");
+        assertEquals(1, tailer.poll());
+        assertEquals(List.of("2025-04-18 12:06:02,36143,Deposit,50.0,50.0"), seen);
+    }
+
+    @Test
+    @DisplayName("Test several subscribers share one reader")
+    public void testSharedReader() throws IOException {
+        List<String> fraud = new ArrayList<>();
+        List<String> statements = new ArrayList<>();
+        TransactionTailer tailer = new TransactionTailer(log.toString(), offsets);
+        tailer.subscribe("fraud", fraud::add);
+        tailer.subscribe("statements", statements::add);
+
+        append("a,1,Deposit,1.0,1.0\nb,2,Deposit,2.0,2.0\n");
+        assertEquals(2, tailer.poll());
+        assertEquals(fraud, statements);
+        assertEquals(Files.size(log), tailer.getOffset("fraud"));
+    }
+
+    @Test
+    @DisplayName("Test a subscriber resumes from its stored offset")
+    public void testResumeAfterRestart() throws IOException {
+        append("a,1,Deposit,1.0,1.0\n");
+        TransactionTailer first = new TransactionTailer(log.toString(), offsets);
+        first.subscribe("reconciliation", line -> { });
+        first.poll();
+
+        append("b,2,Deposit,2.0,2.0\n");
+        List<String> seen = new ArrayList<>();
+        TransactionTailer restarted = new TransactionTailer(log.toString(), offsets);
+        restarted.subscribe("reconciliation", seen::add);
+        restarted.poll();
+
+        assertEquals(List.of("b,2,Deposit,2.0,2.0"), seen);
+    }
+
+    @Test
+    @DisplayName("Test a failing subscriber gets the record again")
+    public void testRetryAfterFailure() throws IOException {
+        List<String> seen = new ArrayList<>();
+        boolean[] fail = {true};
+        TransactionTailer tailer = new TransactionTailer(log.toString(), offsets);
+        tailer.subscribe("flaky", line -> {
+            if (fail[0]) {
+                throw new IllegalStateException("downstream unavailable");
+            }
+            seen.add(line);
+        });
+
+        append("a,1,Deposit,1.0,1.0\nb,2,Deposit,2.0,2.0\n");
+        tailer.poll();
+        assertEquals(0, tailer.getOffset("flaky"));
+
+        fail[0] = false;
+        tailer.poll();
+        assertEquals(List.of("a,1,Deposit,1.0,1.0", "b,2,Deposit,2.0,2.0"), seen);
+    }
+
+    @Test
+    @DisplayName("Test catching up and long lines are read a window at a time")
+    public void testWindows() throws IOException {
+        StringBuilder text = new StringBuilder();
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            lines.add(i + ",36143,Deposit,1.0," + i + ".0");
+        }
+        lines.add(10, "long," + "9".repeat(200) + ",Deposit,1.0,1.0");
+        for (String line : lines) {
+            text.append(line).append('\n');
+        }
+        append(text.toString());
+
+        List<String> first = new ArrayList<>();
+        TransactionTailer tailer = new TransactionTailer(log.toString(), offsets, 64);
+        tailer.subscribe("first", first::add);
+        assertEquals(21, tailer.poll());
+        assertEquals(lines, first);
+
+        // Joins behind the shared reader, so catches up on its own
+        List<String> late = new ArrayList<>();
+        tailer.subscribe("late", late::add);
+        append("x".repeat(100));
+        assertEquals(0, tailer.poll());
+        assertEquals(lines, late);
+
+        append("\n");
+        assertEquals(1, tailer.poll());
+        assertEquals("x".repeat(100), first.get(21));
+        assertEquals(Files.size(log), tailer.getOffset("late"));
+    }
+}